@@ -1,11 +1,27 @@
 package cloud.timo.TimoCloud.api.async;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public interface APIRequest<T> {
 
+    /**
+     * Sends the request to the core. If no response arrives within the default timeout of 30 seconds, the request fails.
+     *
+     * @return A future which will be completed as soon as the response arrives
+     */
     APIRequestFuture<T> submit();
 
+    /**
+     * Sends the request to the core. If no response arrives within the given timeout, the request fails with error code 16.
+     * Implementations which do not support custom timeouts submit the request with their default timeout.
+     *
+     * @return A future which will be completed as soon as the response arrives
+     */
+    default APIRequestFuture<T> submit(long timeout, TimeUnit unit) {
+        return submit();
+    }
+
     /**
      * @return A unique ID identifying the API request
      */
@@ -1,6 +1,10 @@
 package cloud.timo.TimoCloud.api.async;
 
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public interface APIRequestFuture<T> {
 
@@ -54,6 +58,52 @@ public interface APIRequestFuture<T> {
      */
     T awaitResponse() throws APIRequestError;
 
+    /**
+     * Stops the current thread to wait for a response, but at most for the given time
+     * @return The response to the API request
+     * @throws APIRequestError If the API request is not valid or no response arrived in time
+     */
+    default T awaitResponse(long timeout, TimeUnit unit) throws APIRequestError {
+        try {
+            return toCompletableFuture().get(timeout, unit);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof APIRequestError) throw (APIRequestError) e.getCause();
+            throw new APIRequestError(String.valueOf(e.getCause()));
+        } catch (TimeoutException e) {
+            throw new APIRequestError("No response arrived within " + unit.toMillis(timeout) + "ms", 16);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new APIRequestError("Interrupted while waiting for the response", 17);
+        }
+    }
+
+    /**
+     * Fails the API request with error code 17 if it has not been completed yet. A response arriving later is ignored.
+     * Implementations which do not support cancellation never cancel the request.
+     * @return Whether the request has been cancelled
+     */
+    default boolean cancel() {
+        return false;
+    }
+
+    /**
+     * @return Whether the API request has been cancelled before its response arrived
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+
+    /**
+     * @return A CompletableFuture which is completed with the response, or completed exceptionally with the APIRequestError.
+     * Completing or cancelling it does not affect the API request.
+     */
+    default CompletableFuture<T> toCompletableFuture() {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        onCompletion((APIRequestFutureListenerWithParams<T>) future::complete);
+        onError(future::completeExceptionally);
+        return future;
+    }
+
     /**
      * @param listener The given listener will not be notified about the APIRequest's response
      * @return The same APIRequestFuture this call is made on, for chaining statements
@@ -49,12 +49,16 @@ public enum APIRequestType {
     P_GET_LOG_FRACTION                  (PROXY),
     P_SEND_PLAYER                       (PROXY),
     P_SEND_MESSAGE                       (PROXY),
+    P_SUBSCRIBE_LOG                     (PROXY),
+    P_UNSUBSCRIBE_LOG                   (PROXY),
 
     S_EXECUTE_COMMAND                   (SERVER),
     S_STOP                              (SERVER),
     S_SET_STATE                         (SERVER),
     S_SET_EXTRA                         (SERVER),
     S_GET_LOG_FRACTION                  (SERVER),
+    S_SUBSCRIBE_LOG                     (SERVER),
+    S_UNSUBSCRIBE_LOG                   (SERVER),
 
     ;
 
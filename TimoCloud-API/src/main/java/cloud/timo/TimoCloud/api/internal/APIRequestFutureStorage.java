@@ -2,36 +2,106 @@ package cloud.timo.TimoCloud.api.internal;
 
 import cloud.timo.TimoCloud.api.async.APIRequestFuture;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Keeps the futures of submitted API requests until their response arrives. Futures whose response did not arrive in time are evicted.
+ */
 public class APIRequestFutureStorage {
 
-    private Map<String, APIRequestFuture> futures;
+    private final Map<String, Entry> futures;
+    private final AtomicLong timedOut = new AtomicLong();
+    private volatile ScheduledThreadPoolExecutor expiryScheduler;
 
     public APIRequestFutureStorage() {
-        this.futures = new HashMap<>();
+        this.futures = new ConcurrentHashMap<>();
     }
 
+    /**
+     * Stores a future without a deadline
+     */
     public void addFuture(String id, APIRequestFuture future) {
-        futures.put(id, future);
+        futures.put(id, new Entry(future));
     }
 
+    /**
+     * @param onExpiry Called if the future is still stored when the timeout has passed, after it has been removed
+     */
+    public void addFuture(String id, APIRequestFuture future, long timeout, TimeUnit unit, Runnable onExpiry) {
+        Entry entry = new Entry(future);
+        futures.put(id, entry);
+        entry.expiry = getExpiryScheduler().schedule(() -> {
+            if (!futures.remove(id, entry)) return;
+            timedOut.incrementAndGet();
+            onExpiry.run();
+        }, timeout, unit);
+    }
 
     public void removeFuture(String futureId) {
-        futures.remove(futureId);
+        Entry entry = futures.remove(futureId);
+        if (entry != null) entry.cancelExpiry();
     }
 
     public APIRequestFuture getFuture(String id) {
-        return futures.get(id);
+        Entry entry = futures.get(id);
+        return entry == null ? null : entry.future;
     }
 
     /**
      * Returns an APIRequestFuture and deletes it from the storage
      */
     public APIRequestFuture pollFuture(String id) {
-        APIRequestFuture future = getFuture(id);
-        removeFuture(id);
-        return future;
+        Entry entry = futures.remove(id);
+        if (entry == null) return null;
+        entry.cancelExpiry();
+        return entry.future;
+    }
+
+    /**
+     * @return The number of futures waiting for a response
+     */
+    public int getPendingCount() {
+        return futures.size();
+    }
+
+    /**
+     * @return The number of futures which have been evicted because no response arrived in time
+     */
+    public long getTimedOutCount() {
+        return timedOut.get();
+    }
+
+    private ScheduledThreadPoolExecutor getExpiryScheduler() {
+        if (expiryScheduler == null) {
+            synchronized (this) {
+                if (expiryScheduler == null) {
+                    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                        Thread thread = new Thread(runnable, "TimoCloud-API-Request-Timeouts");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    scheduler.setRemoveOnCancelPolicy(true); // Answered requests must not keep their future referenced until the deadline
+                    expiryScheduler = scheduler;
+                }
+            }
+        }
+        return expiryScheduler;
+    }
+
+    private static class Entry {
+
+        private final APIRequestFuture future;
+        private volatile ScheduledFuture<?> expiry;
+
+        private Entry(APIRequestFuture future) {
+            this.future = future;
+        }
+
+        private void cancelExpiry() {
+            ScheduledFuture<?> expiry = this.expiry;
+            if (expiry != null) expiry.cancel(false);
+        }
     }
 }
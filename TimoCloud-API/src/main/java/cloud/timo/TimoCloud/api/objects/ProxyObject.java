@@ -3,7 +3,10 @@ package cloud.timo.TimoCloud.api.objects;
 import cloud.timo.TimoCloud.api.async.APIRequestFuture;
 import cloud.timo.TimoCloud.api.messages.objects.MessageClientAddress;
 import cloud.timo.TimoCloud.api.messages.objects.PluginMessage;
+import cloud.timo.TimoCloud.api.objects.log.LogEntryListener;
+import cloud.timo.TimoCloud.api.objects.log.LogFilter;
 import cloud.timo.TimoCloud.api.objects.log.LogFractionObject;
+import cloud.timo.TimoCloud.api.objects.log.LogSubscription;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -96,4 +99,11 @@ public interface ProxyObject extends IdentifiableObject {
      * @return A LogFractionObject containing all log entries after the given start time
      */
     APIRequestFuture<LogFractionObject> getLogFraction(long startTime);
+
+    /**
+     * Creates a subscription which receives the entries of the proxy's log as they are logged. Call {@link LogSubscription#subscribe()} to start it.
+     * @param filter The entries which shall be received
+     * @param listener Called for every received entry
+     */
+    LogSubscription createLogSubscription(LogFilter filter, LogEntryListener listener);
 }
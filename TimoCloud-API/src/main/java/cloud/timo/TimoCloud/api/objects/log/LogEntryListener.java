@@ -0,0 +1,11 @@
+package cloud.timo.TimoCloud.api.objects.log;
+
+@FunctionalInterface
+public interface LogEntryListener {
+
+    /**
+     * Called for every log entry matching the subscription's filter, in the order the entries have been logged
+     */
+    void onLogEntry(LogEntryObject entry);
+
+}
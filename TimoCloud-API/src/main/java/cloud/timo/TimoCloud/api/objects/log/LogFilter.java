@@ -0,0 +1,48 @@
+package cloud.timo.TimoCloud.api.objects.log;
+
+/**
+ * Selects which log entries a {@link LogSubscription} receives. Entries are filtered by the core, so entries not matching the filter are not sent at all.
+ */
+public class LogFilter {
+
+    private long cursor = -1;
+    private LogLevel minimumLevel;
+    private String pattern;
+
+    public long getCursor() {
+        return cursor;
+    }
+
+    /**
+     * @param cursor The cursor of the first entry which shall be received, e.g. {@link LogSubscription#getCursor()} of an earlier subscription. 0 for all stored entries, -1 (default) for new entries only
+     */
+    public LogFilter setCursor(long cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
+    public LogLevel getMinimumLevel() {
+        return minimumLevel;
+    }
+
+    /**
+     * @param minimumLevel Only entries with this level or a more severe one are received, null (default) for all levels
+     */
+    public LogFilter setMinimumLevel(LogLevel minimumLevel) {
+        this.minimumLevel = minimumLevel;
+        return this;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @param pattern A regular expression which has to be found in the message of an entry, null (default) for all messages
+     */
+    public LogFilter setPattern(String pattern) {
+        this.pattern = pattern;
+        return this;
+    }
+
+}
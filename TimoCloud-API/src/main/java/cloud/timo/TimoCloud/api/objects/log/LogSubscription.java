@@ -0,0 +1,28 @@
+package cloud.timo.TimoCloud.api.objects.log;
+
+import cloud.timo.TimoCloud.api.async.APIRequestFuture;
+
+/**
+ * Follows the log of a server or proxy. New entries matching the filter are sent to the {@link LogEntryListener} as they are logged.
+ */
+public interface LogSubscription {
+
+    String getId();
+
+    /**
+     * @return The cursor of the next entry, all entries before it have been received or did not match the filter
+     */
+    long getCursor();
+
+    /**
+     * Starts receiving entries from the current cursor on. Call it again after the connection to the core has been lost in order to continue
+     * where the subscription left off, no entry is received twice.
+     */
+    APIRequestFuture<Void> subscribe();
+
+    /**
+     * Stops receiving entries
+     */
+    APIRequestFuture<Void> cancel();
+
+}
@@ -4,14 +4,19 @@ import cloud.timo.TimoCloud.api.TimoCloudAPI;
 import cloud.timo.TimoCloud.api.TimoCloudUniversalAPI;
 import cloud.timo.TimoCloud.api.async.APIRequestFuture;
 import cloud.timo.TimoCloud.api.events.Event;
+import cloud.timo.TimoCloud.api.events.EventType;
 import cloud.timo.TimoCloud.api.implementations.async.APIRequestImplementation;
 import cloud.timo.TimoCloud.api.implementations.listeners.TimoCloudUniversalAPIStorageUpdateListener;
+import cloud.timo.TimoCloud.api.implementations.managers.EventManager;
 import cloud.timo.TimoCloud.api.implementations.storage.IdentifiableObjectStorage;
 import cloud.timo.TimoCloud.api.objects.*;
 import cloud.timo.TimoCloud.api.objects.properties.ProxyGroupProperties;
 import cloud.timo.TimoCloud.api.objects.properties.ServerGroupProperties;
 import cloud.timo.TimoCloud.api.utils.EventUtil;
 import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+import cloud.timo.TimoCloud.common.utils.EnumUtil;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -24,13 +29,7 @@ import static cloud.timo.TimoCloud.api.async.APIRequestType.*;
 
 public class TimoCloudUniversalAPIBasicImplementation implements TimoCloudUniversalAPI {
 
-    private IdentifiableObjectStorage<ServerGroupObject> serverGroups = new IdentifiableObjectStorage<>();
-    private IdentifiableObjectStorage<ProxyGroupObject> proxyGroups = new IdentifiableObjectStorage<>();
-    private IdentifiableObjectStorage<ServerObject> servers = new IdentifiableObjectStorage<>();
-    private IdentifiableObjectStorage<ProxyObject> proxies = new IdentifiableObjectStorage<>();
-    private IdentifiableObjectStorage<BaseObject> bases = new IdentifiableObjectStorage<>();
-    private IdentifiableObjectStorage<PlayerObject> players = new IdentifiableObjectStorage<>();
-    private IdentifiableObjectStorage<CordObject> cords = new IdentifiableObjectStorage<>();
+    private volatile State state = new State(); // Replaced as a whole by a new snapshot
 
     private final Class<? extends ServerObject> serverObjectImplementation;
     private final Class<? extends ProxyObject> proxyObjectImplementation;
@@ -41,8 +40,12 @@ public class TimoCloudUniversalAPIBasicImplementation implements TimoCloudUniver
     private final Class<? extends CordObject> cordObjectImplementation;
 
     private boolean gotAnyData = false;
+    private String stateEpoch; // Identifies the core run the state version belongs to
+    private long stateVersion; // Version of the last applied change
 
     private ObjectMapper objectMapper;
+    private final TimoCloudUniversalAPIStorageUpdateListener storageUpdateListener = new TimoCloudUniversalAPIStorageUpdateListener(this);
+    private final EventManager stateEventManager = new EventManager(); // Only updates the state, used for events which happened before the snapshot
 
     public TimoCloudUniversalAPIBasicImplementation(Class<? extends ServerObject> serverObjectImplementation, Class<? extends ProxyObject> proxyObjectImplementation, Class<? extends ServerGroupObject> serverGroupObjectImplementation, Class<? extends ProxyGroupObject> proxyGroupObjectImplementation, Class<? extends PlayerObject> playerObjectImplementation, Class<? extends BaseObject> baseObjectImplementation, Class<? extends CordObject> cordObjectImplementation) {
         this.serverObjectImplementation = serverObjectImplementation;
@@ -54,6 +57,7 @@ public class TimoCloudUniversalAPIBasicImplementation implements TimoCloudUniver
         this.cordObjectImplementation = cordObjectImplementation;
 
         this.objectMapper = prepareObjectMapper();
+        this.stateEventManager.registerListener(storageUpdateListener);
     }
 
     private ObjectMapper prepareObjectMapper() {
@@ -80,91 +84,164 @@ public class TimoCloudUniversalAPIBasicImplementation implements TimoCloudUniver
         return objectMapper;
     }
 
-    public void setData(Map<String, Object> json) {
+    /**
+     * @return A GET_API_DATA request asking only for the changes since the state known so far
+     */
+    public synchronized Message createDataRequest() {
+        return Message.create()
+                .setType(MessageType.GET_API_DATA)
+                .set("versioned", true)
+                .setIfNotNull("epoch", stateEpoch)
+                .setIfCondition("v", stateVersion, stateEpoch != null)
+                .setIfNotNull("subscription", getEventSubscription());
+    }
+
+    /**
+     * Instances which only need some events can limit them with the java parameters -Dtimocloud-subscribed-events (event types),
+     * -Dtimocloud-subscribed-groups and -Dtimocloud-subscribed-instances (names), each separated by commas.
+     * Objects whose events are not subscribed are not kept up to date in this API.
+     *
+     * @return The subscription to send to the core, or null to receive all events
+     */
+    private static Map<String, Object> getEventSubscription() {
+        Map<String, Object> subscription = new LinkedHashMap<>();
+        putList(subscription, "types", System.getProperty("timocloud-subscribed-events"));
+        putList(subscription, "groups", System.getProperty("timocloud-subscribed-groups"));
+        putList(subscription, "instances", System.getProperty("timocloud-subscribed-instances"));
+        return subscription.isEmpty() ? null : subscription;
+    }
+
+    private static void putList(Map<String, Object> map, String key, String commaSeparated) {
+        if (commaSeparated == null || commaSeparated.trim().isEmpty()) return;
+        List<String> values = new ArrayList<>();
+        for (String value : commaSeparated.split(",")) {
+            if (!value.trim().isEmpty()) values.add(value.trim());
+        }
+        map.put(key, values);
+    }
+
+    /**
+     * Applies an API_DATA message, which contains a snapshot of the whole state and/or the changes since the requested version.
+     * The changes have happened while this instance was not connected, so they only update the state and are not passed to listeners.
+     */
+    public synchronized void onData(Message message) throws Exception {
+        if (message.getData() != null) setData((Map<String, Object>) message.getData());
+        if (!message.containsKey("epoch")) return; // Core without versions
+        if (message.getData() != null || !((String) message.get("epoch")).equals(stateEpoch)) stateVersion = 0;
+        stateEpoch = (String) message.get("epoch");
+        for (Map<String, Object> event : (List<Map<String, Object>>) message.get("events")) applyEvent(Message.create(event), stateEventManager);
+        stateVersion = Math.max(stateVersion, ((Number) message.get("v")).longValue());
+    }
+
+    /**
+     * Applies an EVENT_FIRED message unless the change is part of the state already
+     */
+    public synchronized void onEventFired(Message message) throws Exception {
+        applyEvent(message, (EventManager) TimoCloudAPI.getEventAPI());
+    }
+
+    private void applyEvent(Message message, EventManager eventManager) throws Exception {
+        Number version = (Number) message.get("v");
+        if (version != null && stateEpoch != null && version.longValue() <= stateVersion) return;
+        eventManager.callEvent(readEvent(message));
+        if (version != null) stateVersion = version.longValue();
+    }
+
+    Event readEvent(Message message) throws Exception {
+        EventType eventType = EnumUtil.valueOf(EventType.class, (String) message.get("eT"));
+        return getObjectMapper().readValue((String) message.getData(), EventUtil.getClassByEventType(eventType));
+    }
+
+    /**
+     * Replaces the whole state. The new state is built first and then published at once, so that no other thread sees it half filled.
+     */
+    public synchronized void setData(Map<String, Object> json) {
+        State state = new State();
         try {
             ((Collection) json.get("serverGroups")).stream()
                     .map(object -> readValue((String) object, serverGroupObjectImplementation))
-                    .forEach(serverGroup -> this.serverGroups.add((ServerGroupObject) serverGroup));
+                    .forEach(object -> state.serverGroups.add((ServerGroupObject) object));
             ((Collection) json.get("proxyGroups")).stream()
                     .map(object -> readValue((String) object, proxyGroupObjectImplementation))
-                    .forEach(proxyGroup -> this.proxyGroups.add((ProxyGroupObject) proxyGroup));
+                    .forEach(object -> state.proxyGroups.add((ProxyGroupObject) object));
             ((Collection) json.get("servers")).stream()
                     .map(object -> readValue((String) object, serverObjectImplementation))
-                    .forEach(server -> this.servers.add((ServerObject) server));
+                    .forEach(object -> state.servers.add((ServerObject) object));
             ((Collection) json.get("proxies")).stream()
                     .map(object -> readValue((String) object, proxyObjectImplementation))
-                    .forEach(proxy -> this.proxies.add((ProxyObject) proxy));
+                    .forEach(object -> state.proxies.add((ProxyObject) object));
             ((Collection) json.get("bases")).stream()
                     .map(object -> readValue((String) object, baseObjectImplementation))
-                    .forEach(base -> this.bases.add((BaseObject) base));
+                    .forEach(object -> state.bases.add((BaseObject) object));
             ((Collection) json.get("players")).stream()
                     .map(object -> readValue((String) object, playerObjectImplementation))
-                    .forEach(player -> this.players.add((PlayerObject) player));
+                    .forEach(object -> state.players.add((PlayerObject) object));
             ((Collection) json.get("cords")).stream()
                     .map(object -> readValue((String) object, cordObjectImplementation))
-                    .forEach(cord -> this.cords.add((CordObject) cord));
+                    .forEach(object -> state.cords.add((CordObject) object));
         } catch (Exception e) {
             e.printStackTrace();
         }
+        this.state = state;
         if (! this.gotAnyData) {
-            TimoCloudAPI.getEventAPI().registerListener(new TimoCloudUniversalAPIStorageUpdateListener(this));
+            TimoCloudAPI.getEventAPI().registerListener(storageUpdateListener);
         }
         this.gotAnyData = true;
     }
 
     @Override
     public Set<ServerGroupObject> getServerGroups() {
-        return Collections.unmodifiableSet(new HashSet<>(serverGroups.values()));
+        return Collections.unmodifiableSet(new HashSet<>(state.serverGroups.values()));
     }
 
     @Override
     public ServerGroupObject getServerGroup(String identifier) {
-        return serverGroups.getByIdentifier(identifier);
+        return state.serverGroups.getByIdentifier(identifier);
     }
 
     @Override
     public ServerObject getServer(String identifier) {
-        return servers.getByIdentifier(identifier);
+        return state.servers.getByIdentifier(identifier);
     }
 
     @Override
     public Collection<ServerObject> getServers() {
-        return servers.values();
+        return state.servers.values();
     }
 
     @Override
     public Set<ProxyGroupObject> getProxyGroups() {
-        return Collections.unmodifiableSet(new HashSet<>(proxyGroups.values()));
+        return Collections.unmodifiableSet(new HashSet<>(state.proxyGroups.values()));
     }
 
     @Override
     public ProxyGroupObject getProxyGroup(String identifier) {
-        return proxyGroups.getByIdentifier(identifier);
+        return state.proxyGroups.getByIdentifier(identifier);
     }
 
     @Override
     public ProxyObject getProxy(String identifier) {
-        return proxies.getByIdentifier(identifier);
+        return state.proxies.getByIdentifier(identifier);
     }
 
     @Override
     public Collection<ProxyObject> getProxies() {
-        return proxies.values();
+        return state.proxies.values();
     }
 
     @Override
     public PlayerObject getPlayer(UUID uuid) {
-        return players.getById(uuid.toString());
+        return state.players.getById(uuid.toString());
     }
 
     @Override
     public PlayerObject getPlayer(String name) {
-        return players.getByName(name);
+        return state.players.getByName(name);
     }
 
     @Override
     public Collection<PlayerObject> getPlayers() {
-        return players.values();
+        return state.players.values();
     }
 
     @Override
@@ -175,22 +252,22 @@ public class TimoCloudUniversalAPIBasicImplementation implements TimoCloudUniver
 
     @Override
     public Collection<BaseObject> getBases() {
-        return Collections.unmodifiableSet(new HashSet<>(bases.values()));
+        return Collections.unmodifiableSet(new HashSet<>(state.bases.values()));
     }
 
     @Override
     public BaseObject getBase(String identifier) {
-        return bases.getByIdentifier(identifier);
+        return state.bases.getByIdentifier(identifier);
     }
 
     @Override
     public Collection<CordObject> getCords() {
-        return Collections.unmodifiableSet(new HashSet<>(cords.values()));
+        return Collections.unmodifiableSet(new HashSet<>(state.cords.values()));
     }
 
     @Override
     public CordObject getCord(String identifier) {
-        return cords.getByIdentifier(identifier);
+        return state.cords.getByIdentifier(identifier);
     }
 
     @Override
@@ -204,31 +281,31 @@ public class TimoCloudUniversalAPIBasicImplementation implements TimoCloudUniver
     }
 
     public IdentifiableObjectStorage<ServerGroupObject> getServerGroupStorage() {
-        return serverGroups;
+        return state.serverGroups;
     }
 
     public IdentifiableObjectStorage<ProxyGroupObject> getProxyGroupStorage() {
-        return proxyGroups;
+        return state.proxyGroups;
     }
 
     public IdentifiableObjectStorage<ServerObject> getServerStorage() {
-        return servers;
+        return state.servers;
     }
 
     public IdentifiableObjectStorage<ProxyObject> getProxyStorage() {
-        return proxies;
+        return state.proxies;
     }
 
     public IdentifiableObjectStorage<BaseObject> getBaseStorage() {
-        return bases;
+        return state.bases;
     }
 
     public IdentifiableObjectStorage<PlayerObject> getPlayerStorage() {
-        return players;
+        return state.players;
     }
 
     public IdentifiableObjectStorage<CordObject> getCordStorage() {
-        return cords;
+        return state.cords;
     }
 
     private <T> T readValue(String input, Class<? extends T> clazz) {
@@ -247,4 +324,16 @@ public class TimoCloudUniversalAPIBasicImplementation implements TimoCloudUniver
     public synchronized boolean gotAnyData() {
         return gotAnyData;
     }
+
+    private static class State {
+
+        private final IdentifiableObjectStorage<ServerGroupObject> serverGroups = new IdentifiableObjectStorage<>();
+        private final IdentifiableObjectStorage<ProxyGroupObject> proxyGroups = new IdentifiableObjectStorage<>();
+        private final IdentifiableObjectStorage<ServerObject> servers = new IdentifiableObjectStorage<>();
+        private final IdentifiableObjectStorage<ProxyObject> proxies = new IdentifiableObjectStorage<>();
+        private final IdentifiableObjectStorage<BaseObject> bases = new IdentifiableObjectStorage<>();
+        private final IdentifiableObjectStorage<PlayerObject> players = new IdentifiableObjectStorage<>();
+        private final IdentifiableObjectStorage<CordObject> cords = new IdentifiableObjectStorage<>();
+    }
+
 }
@@ -0,0 +1,103 @@
+package cloud.timo.TimoCloud.api.implementations.async;
+
+import cloud.timo.TimoCloud.api.async.APIRequestType;
+import cloud.timo.TimoCloud.api.internal.TimoCloudInternalAPI;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the API requests submitted within a short window and sends them to the core in one API_REQUESTS frame, which is answered by one API_RESPONSES frame.
+ * Setters of the same target and type submitted within one window only send the last value, at the position of the first one. The futures of the
+ * replaced requests complete together with it. Setters are not collapsed across other requests for the same target, as those might depend on the
+ * value set before them.
+ */
+public class APIRequestBatcher {
+
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private final long window;
+    private final ScheduledExecutorService scheduler;
+    private LinkedHashMap<String, PendingRequest> pending = new LinkedHashMap<>(); // Guarded by this
+    private Map<String, Integer> barriers = new HashMap<>(); // Number of pending requests per target which setters must not be collapsed across, guarded by this
+    private boolean scheduled; // Guarded by this
+
+    /**
+     * @param window Milliseconds a request may wait for others to be sent with
+     */
+    public APIRequestBatcher(long window) {
+        this.window = window;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TimoCloud-API-Requests");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void submit(APIRequestImplementation request, APIRequestFutureImplementation future) {
+        boolean flushNow = false;
+        boolean schedule = false;
+        synchronized (this) {
+            String key;
+            if (isCollapsible(request.getType())) {
+                key = request.getType().name() + ":" + request.getTarget() + ":" + barriers.getOrDefault(request.getTarget(), 0);
+            } else {
+                key = request.getId();
+                barriers.merge(request.getTarget(), 1, Integer::sum);
+            }
+            PendingRequest replaced = pending.put(key, new PendingRequest(request, future)); // Keeps the position of the replaced request
+            if (replaced != null) future.addCollapsed(replaced.future);
+            if (pending.size() >= MAX_BATCH_SIZE) {
+                flushNow = true;
+            } else if (!scheduled) {
+                scheduled = true;
+                schedule = true;
+            }
+        }
+        if (flushNow) flush();
+        else if (schedule) scheduler.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends all pending requests now
+     */
+    public void flush() {
+        Collection<PendingRequest> batch;
+        synchronized (this) {
+            scheduled = false;
+            if (pending.isEmpty()) return;
+            batch = pending.values();
+            pending = new LinkedHashMap<>();
+            barriers = new HashMap<>();
+        }
+        List<Map<String, Object>> requests = new ArrayList<>(batch.size());
+        for (PendingRequest request : batch) requests.add(request.request.toMap());
+        TimoCloudInternalAPI.getInternalMessageAPI().sendMessageToCore(Message.create()
+                .setType(MessageType.API_REQUESTS)
+                .set("requests", requests)
+                .toString());
+    }
+
+    /**
+     * Setters only have to be sent with their last value, the values before would be overwritten anyway
+     */
+    private static boolean isCollapsible(APIRequestType type) {
+        return type.name().contains("_SET_");
+    }
+
+    private static class PendingRequest {
+
+        private final APIRequestImplementation request;
+        private final APIRequestFutureImplementation future;
+
+        private PendingRequest(APIRequestImplementation request, APIRequestFutureImplementation future) {
+            this.request = request;
+            this.future = future;
+        }
+    }
+
+}
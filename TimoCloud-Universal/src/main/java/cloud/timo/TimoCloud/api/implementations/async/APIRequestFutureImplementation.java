@@ -1,22 +1,29 @@
 package cloud.timo.TimoCloud.api.implementations.async;
 
 import cloud.timo.TimoCloud.api.async.*;
+import cloud.timo.TimoCloud.api.internal.TimoCloudInternalAPI;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
-import java.util.concurrent.CountDownLatch;
+import java.util.List;
+import java.util.concurrent.*;
 
 public class APIRequestFutureImplementation<T> implements APIRequestFuture<T> {
 
+    public static final int TIMEOUT_ERROR_CODE = 16;
+    public static final int CANCELLED_ERROR_CODE = 17;
+
     private APIRequest<T> request;
-    private Collection<APIRequestFutureListener<T>> listeners = new LinkedHashSet<>();
-    private Collection<APIRequestErrorHandler> errorHandlers = new LinkedHashSet<>();
+    private final Collection<APIRequestFutureListener<T>> listeners = new LinkedHashSet<>(); // Guarded by this
+    private final Collection<APIRequestErrorHandler> errorHandlers = new LinkedHashSet<>(); // Guarded by this
+    private final CompletableFuture<T> completion = new CompletableFuture<>();
     private volatile T response;
     private volatile APIRequestError error;
-    private volatile Boolean completed = false;
-    private Boolean success;
-    private volatile Collection<CountDownLatch> latches = new HashSet<>();
+    private volatile boolean completed = false;
+    private volatile Boolean success;
+    private volatile boolean cancelled;
+    private final List<APIRequestFutureImplementation<T>> collapsed = new ArrayList<>(); // Guarded by this
 
     public APIRequestFutureImplementation(APIRequest<T> request) {
         this.request = request;
@@ -33,30 +40,32 @@ public class APIRequestFutureImplementation<T> implements APIRequestFuture<T> {
     }
 
     private APIRequestFuture<T> onCompletionGeneral(APIRequestFutureListener<T> listener) {
-        listeners.add(listener);
-        if (response != null) {
-            callOnCompletion(listener);
+        synchronized (this) {
+            listeners.add(listener);
+            if (!completed) return this;
         }
+        if (Boolean.TRUE.equals(success)) callOnCompletion(listener);
         return this;
     }
 
     @Override
     public APIRequestFuture<T> onError(APIRequestErrorHandler handler) {
-        errorHandlers.add(handler);
-        if (error != null) {
-            callExceptionCaught(handler);
+        synchronized (this) {
+            errorHandlers.add(handler);
+            if (!completed) return this;
         }
+        if (error != null) callExceptionCaught(handler);
         return this;
     }
 
     @Override
-    public APIRequestFuture<T> removeListener(APIRequestFutureListener listener) {
+    public synchronized APIRequestFuture<T> removeListener(APIRequestFutureListener listener) {
         listeners.remove(listener);
         return this;
     }
 
     @Override
-    public APIRequestFuture<T> removeErrorHandler(APIRequestErrorHandler errorHandler) {
+    public synchronized APIRequestFuture<T> removeErrorHandler(APIRequestErrorHandler errorHandler) {
         errorHandlers.remove(errorHandler);
         return this;
     }
@@ -79,41 +88,114 @@ public class APIRequestFutureImplementation<T> implements APIRequestFuture<T> {
 
     @Override
     public T awaitResponse() throws APIRequestError {
-        CountDownLatch latch = new CountDownLatch(1);
-        this.latches.add(latch);
-        while (latch.getCount() > 0) {
-            try {
-                latch.await();
-            } catch (Exception e) {
-                e.printStackTrace(); // This should never happen
-            }
+        try {
+            return completion.join(); // Every submitted request has a deadline, so this cannot wait forever
+        } catch (CompletionException e) {
+            throw (APIRequestError) e.getCause();
         }
-        if (isSuccess()) {
-            return response;
+    }
+
+    @Override
+    public T awaitResponse(long timeout, TimeUnit unit) throws APIRequestError {
+        try {
+            return completion.get(timeout, unit);
+        } catch (ExecutionException e) {
+            throw (APIRequestError) e.getCause();
+        } catch (TimeoutException e) {
+            throw new APIRequestError("No response arrived within " + unit.toMillis(timeout) + "ms", TIMEOUT_ERROR_CODE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new APIRequestError("Interrupted while waiting for the response", CANCELLED_ERROR_CODE);
         }
-        throw getError();
+    }
+
+    @Override
+    public boolean cancel() {
+        if (!complete(false, null, new APIRequestError("The request has been cancelled", CANCELLED_ERROR_CODE), true)) return false;
+        TimoCloudInternalAPI.getApiRequestStorage().removeFuture(request.getId());
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public CompletableFuture<T> toCompletableFuture() {
+        return completion.thenApply(response -> response);
     }
 
     public void requestComplete(APIResponse<T> response) {
-        this.completed = true;
-        this.success = response.isSuccess();
-        if (response.isSuccess()) {
-            this.response = response.getData();
-            for (APIRequestFutureListener<T> listener : getListeners()) {
+        complete(response.isSuccess(), response.getData(), response.getError(), false);
+    }
+
+    /**
+     * Called by the storage if no response arrived before the request's deadline
+     */
+    void requestTimedOut(long timeoutMillis) {
+        System.err.println(String.format("API request %s (%s) timed out after %dms. Pending requests: %d, timed out so far: %d",
+                request.getId(), request.getType(), timeoutMillis,
+                TimoCloudInternalAPI.getApiRequestStorage().getPendingCount(), TimoCloudInternalAPI.getApiRequestStorage().getTimedOutCount()));
+        complete(false, null, new APIRequestError("No response arrived within " + timeoutMillis + "ms", TIMEOUT_ERROR_CODE), false);
+    }
+
+    /**
+     * The given future belongs to an earlier request which has been replaced by this one before it was sent. It completes together with this one.
+     */
+    void addCollapsed(APIRequestFutureImplementation<T> future) {
+        synchronized (this) {
+            if (!completed) {
+                collapsed.add(future);
+                return;
+            }
+        }
+        completeCollapsed(future);
+    }
+
+    private void completeCollapsed(APIRequestFutureImplementation<T> future) {
+        TimoCloudInternalAPI.getApiRequestStorage().removeFuture(future.getAPIRequest().getId());
+        future.complete(success, response, error, false);
+    }
+
+    /**
+     * @return False if the request has been completed already
+     */
+    private boolean complete(boolean success, T response, APIRequestError error, boolean cancel) {
+        List<APIRequestFutureListener<T>> listeners;
+        List<APIRequestErrorHandler> errorHandlers;
+        List<APIRequestFutureImplementation<T>> collapsed;
+        synchronized (this) {
+            if (completed) return false;
+            if (!success && error == null) error = new APIRequestError("The request failed without an error");
+            this.success = success;
+            this.response = response;
+            this.error = error;
+            this.cancelled = cancel;
+            this.completed = true;
+            listeners = new ArrayList<>(this.listeners);
+            errorHandlers = new ArrayList<>(this.errorHandlers);
+            collapsed = new ArrayList<>(this.collapsed);
+            this.collapsed.clear();
+        }
+        for (APIRequestFutureImplementation<T> future : collapsed) completeCollapsed(future);
+        if (success) {
+            for (APIRequestFutureListener<T> listener : listeners) {
                 callOnCompletion(listener);
             }
+            completion.complete(response);
         } else {
-            this.error = response.getError();
-            for (APIRequestErrorHandler handler : getErrorHandlers()) {
+            for (APIRequestErrorHandler handler : errorHandlers) {
                 callExceptionCaught(handler);
             }
+            completion.completeExceptionally(error);
         }
-        notifyLatches();
+        return true;
     }
 
     @Override
-    public Collection<APIRequestFutureListener<T>> getListeners() {
-        return listeners;
+    public synchronized Collection<APIRequestFutureListener<T>> getListeners() {
+        return new ArrayList<>(listeners);
     }
 
     @Override
@@ -127,8 +209,8 @@ public class APIRequestFutureImplementation<T> implements APIRequestFuture<T> {
     }
 
     @Override
-    public Collection<APIRequestErrorHandler> getErrorHandlers() {
-        return errorHandlers;
+    public synchronized Collection<APIRequestErrorHandler> getErrorHandlers() {
+        return new ArrayList<>(errorHandlers);
     }
 
     private void callOnCompletion(APIRequestFutureListener<T> listener) {
@@ -152,11 +234,4 @@ public class APIRequestFutureImplementation<T> implements APIRequestFuture<T> {
             e.printStackTrace();
         }
     }
-
-    private void notifyLatches() {
-        for (CountDownLatch latch : latches) {
-            latch.countDown();
-        }
-        this.latches.clear();
-    }
 }
@@ -10,9 +10,15 @@ import cloud.timo.TimoCloud.common.datatypes.TypeMap;
 import cloud.timo.TimoCloud.common.utils.RandomIdGenerator;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class APIRequestImplementation<T> implements APIRequest<T> {
+
+    private static final long DEFAULT_TIMEOUT = 30; // Seconds
+    private static volatile APIRequestBatcher batcher; // Null if requests are sent one by one
+
     private APIRequestType type;
     private String id;
     private String target;
@@ -52,13 +58,30 @@ public class APIRequestImplementation<T> implements APIRequest<T> {
 
     @Override
     public APIRequestFuture<T> submit() {
-        APIRequestFuture<T> future = new APIRequestFutureImplementation<>(this);
+        return submit(DEFAULT_TIMEOUT, TimeUnit.SECONDS);
+    }
 
-        TimoCloudInternalAPI.getApiRequestStorage().addFuture(getId(), future);
-        TimoCloudAPI.getMessageAPI().sendMessageToCore(generatePluginMessage(getData()));
+    @Override
+    public APIRequestFuture<T> submit(long timeout, TimeUnit unit) {
+        APIRequestFutureImplementation<T> future = new APIRequestFutureImplementation<>(this);
+
+        TimoCloudInternalAPI.getApiRequestStorage().addFuture(getId(), future, timeout, unit, () -> future.requestTimedOut(unit.toMillis(timeout)));
+        APIRequestBatcher batcher = APIRequestImplementation.batcher;
+        if (batcher != null) {
+            batcher.submit(this, future);
+        } else {
+            TimoCloudAPI.getMessageAPI().sendMessageToCore(generatePluginMessage(getData()));
+        }
         return future;
     }
 
+    /**
+     * Makes all requests submitted from now on be sent in batches
+     */
+    public static void setBatcher(APIRequestBatcher batcher) {
+        APIRequestImplementation.batcher = batcher;
+    }
+
     private static String generateId() {
         return RandomIdGenerator.generateId();
     }
@@ -91,6 +114,15 @@ public class APIRequestImplementation<T> implements APIRequest<T> {
         return data;
     }
 
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("rtype", getType().name());
+        map.put("id", getId());
+        map.put("target", getTarget());
+        map.put("data", getData());
+        return map;
+    }
+
     public static APIRequestImplementation fromMap(Map map) {
         APIRequestImplementation request = new APIRequestImplementation(
                 APIRequestType.valueOf((String) map.get("rtype")),
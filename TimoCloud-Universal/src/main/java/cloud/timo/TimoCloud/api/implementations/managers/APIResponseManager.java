@@ -6,6 +6,9 @@ import cloud.timo.TimoCloud.api.internal.TimoCloudInternalAPI;
 import cloud.timo.TimoCloud.api.messages.listeners.MessageListener;
 import cloud.timo.TimoCloud.api.messages.objects.AddressedPluginMessage;
 import cloud.timo.TimoCloud.api.messages.objects.PluginMessage;
+import cloud.timo.TimoCloud.common.json.JsonConverter;
+
+import java.util.Collection;
 
 public class APIResponseManager implements MessageListener {
 
@@ -16,9 +19,22 @@ public class APIResponseManager implements MessageListener {
             return;
         }
 
-        APIResponse apiResponse = APIResponse.fromPluginMessage(message);
+        onResponse(APIResponse.fromPluginMessage(message));
+    }
+
+    /**
+     * Handles an API_RESPONSES frame answering a batch of requests
+     */
+    public static void onResponses(Collection<?> responses) {
+        for (Object response : responses) {
+            onResponse(JsonConverter.convertMapIfNecessary(response, APIResponse.class));
+        }
+    }
 
-        ((APIRequestFutureImplementation) TimoCloudInternalAPI.getApiRequestStorage().pollFuture(apiResponse.getId())).requestComplete(apiResponse);
+    private static void onResponse(APIResponse apiResponse) {
+        APIRequestFutureImplementation future = (APIRequestFutureImplementation) TimoCloudInternalAPI.getApiRequestStorage().pollFuture(apiResponse.getId());
+        if (future == null) return; // Timed out or cancelled
+        future.requestComplete(apiResponse);
     }
 
 }
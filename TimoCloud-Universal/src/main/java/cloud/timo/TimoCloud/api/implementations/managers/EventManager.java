@@ -5,53 +5,118 @@ import cloud.timo.TimoCloud.api.events.Event;
 import cloud.timo.TimoCloud.api.events.EventHandler;
 import cloud.timo.TimoCloud.api.events.Listener;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
-import java.util.Collection;
-import java.util.LinkedHashSet;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Listeners' {@link EventHandler} methods are looked up once when they are registered and called through method handles.
+ * The handlers of every event class are cached, so firing an event only calls the handlers accepting it.
+ */
 public class EventManager implements TimoCloudEventAPI {
 
-    private Collection<Listener> listeners;
+    private static final MethodType HANDLER_TYPE = MethodType.methodType(void.class, Event.class);
+    private static final RegisteredHandler[] NO_HANDLERS = new RegisteredHandler[0];
+
+    private final Map<Listener, List<RegisteredHandler>> listeners; // Guarded by this
+    private volatile Map<Class<?>, RegisteredHandler[]> handlersByEvent; // Replaced whenever listeners change
 
     public EventManager() {
-        listeners = new LinkedHashSet<>();
+        listeners = new LinkedHashMap<>();
+        handlersByEvent = new ConcurrentHashMap<>();
     }
 
     @Override
-    public void registerListener(Listener listener) {
-        if (getListeners().contains(listener)) return;
-        getListeners().add(listener);
+    public synchronized void registerListener(Listener listener) {
+        if (listeners.containsKey(listener)) return;
+        listeners.put(listener, findHandlers(listener));
+        handlersByEvent = new ConcurrentHashMap<>();
     }
 
     @Override
-    public void unregisterListener(Listener listener) {
-        if (!getListeners().contains(listener)) return;
-        getListeners().remove(listener);
+    public synchronized void unregisterListener(Listener listener) {
+        if (listeners.remove(listener) == null) return;
+        handlersByEvent = new ConcurrentHashMap<>();
     }
 
     public void callEvent(Event event) {
         fireEvent(event);
     }
 
-    private void fireEvent(Event event) {
-        for (Listener listener : getListeners()) {
-            Class c = listener.getClass();
-            final Method[] methods = c.getDeclaredMethods();
-            for (Method method : methods) {
-                try {
-                    EventHandler eventHandler = method.getAnnotation(EventHandler.class);
-                    if (eventHandler == null) continue;
-                    if (method.getParameterTypes().length != 1 || ! method.getParameterTypes()[0].isAssignableFrom(event.getClass())) continue;
-                    method.invoke(listener, event);
-                } catch (Exception e) {
-                    System.err.println("Uncaught exception while firing event: ");
-                    e.printStackTrace();
+    protected void fireEvent(Event event) {
+        for (RegisteredHandler handler : getHandlers(event.getClass())) handler.handle(event);
+    }
+
+    /**
+     * @return The handlers accepting events of the given class, grouped by listener in registration order
+     */
+    protected RegisteredHandler[] getHandlers(Class<?> eventClass) {
+        RegisteredHandler[] handlers = handlersByEvent.get(eventClass);
+        if (handlers != null) return handlers;
+        synchronized (this) {
+            List<RegisteredHandler> matching = new ArrayList<>();
+            for (List<RegisteredHandler> listenerHandlers : listeners.values()) {
+                for (RegisteredHandler handler : listenerHandlers) {
+                    if (handler.eventClass.isAssignableFrom(eventClass)) matching.add(handler);
                 }
             }
+            handlers = matching.isEmpty() ? NO_HANDLERS : matching.toArray(new RegisteredHandler[0]);
+            handlersByEvent.put(eventClass, handlers);
+            return handlers;
         }
     }
 
-    public Collection<Listener> getListeners() {
-        return listeners;
+    private static List<RegisteredHandler> findHandlers(Listener listener) {
+        List<RegisteredHandler> handlers = new ArrayList<>();
+        for (Method method : listener.getClass().getDeclaredMethods()) {
+            if (method.getAnnotation(EventHandler.class) == null) continue;
+            if (method.getParameterCount() != 1 || !Event.class.isAssignableFrom(method.getParameterTypes()[0])) continue;
+            try {
+                method.setAccessible(true);
+                MethodHandle handle = MethodHandles.lookup().unreflect(method);
+                if (!Modifier.isStatic(method.getModifiers())) handle = handle.bindTo(listener);
+                handle = handle.asType(HANDLER_TYPE);
+                handlers.add(new RegisteredHandler(listener, method.getParameterTypes()[0], handle));
+            } catch (Exception e) {
+                System.err.println("Could not register event handler " + method + ": ");
+                e.printStackTrace();
+            }
+        }
+        return handlers;
+    }
+
+    public synchronized Collection<Listener> getListeners() {
+        return new ArrayList<>(listeners.keySet());
+    }
+
+    protected static class RegisteredHandler {
+
+        private final Listener listener;
+        private final Class<?> eventClass;
+        private final MethodHandle handle; // (Event)void, bound to the listener
+
+        private RegisteredHandler(Listener listener, Class<?> eventClass, MethodHandle handle) {
+            this.listener = listener;
+            this.eventClass = eventClass;
+            this.handle = handle;
+        }
+
+        public Listener getListener() {
+            return listener;
+        }
+
+        public void handle(Event event) {
+            try {
+                handle.invokeExact(event);
+            } catch (Throwable e) {
+                System.err.println("Uncaught exception while firing event: ");
+                e.printStackTrace();
+            }
+        }
     }
+
 }
@@ -0,0 +1,51 @@
+package cloud.timo.TimoCloud.api.implementations.managers;
+
+import cloud.timo.TimoCloud.api.implementations.objects.log.LogEntryObjectImplementation;
+import cloud.timo.TimoCloud.api.implementations.objects.log.LogSubscriptionImplementation;
+import cloud.timo.TimoCloud.api.messages.listeners.MessageListener;
+import cloud.timo.TimoCloud.api.messages.objects.AddressedPluginMessage;
+import cloud.timo.TimoCloud.api.messages.objects.PluginMessage;
+import cloud.timo.TimoCloud.api.objects.log.LogEntryObject;
+import cloud.timo.TimoCloud.common.json.JsonConverter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Passes the log entries sent by the core to the subscription they belong to
+ */
+public class LogSubscriptionManager implements MessageListener {
+
+    private static final Map<String, LogSubscriptionImplementation> subscriptions = new ConcurrentHashMap<>();
+
+    public static void register(LogSubscriptionImplementation subscription) {
+        subscriptions.put(subscription.getId(), subscription);
+    }
+
+    public static void unregister(LogSubscriptionImplementation subscription) {
+        subscriptions.remove(subscription.getId());
+    }
+
+    @Override
+    public void onPluginMessage(AddressedPluginMessage addressedPluginMessage) {
+        PluginMessage message = addressedPluginMessage.getMessage();
+        if (! "TIMOCLOUD_LOG_ENTRIES".equals(message.getType())) {
+            return;
+        }
+
+        LogSubscriptionImplementation subscription = subscriptions.get(message.getString("subscription"));
+        if (subscription == null) return; // Cancelled
+        List<LogEntryObject> entries = new ArrayList<>();
+        for (Object entry : (List<?>) message.get("entries")) {
+            entries.add(JsonConverter.convertMapIfNecessary(entry, LogEntryObjectImplementation.class));
+        }
+        List<Long> sequences = new ArrayList<>();
+        for (Object sequence : (List<?>) message.get("sequences")) {
+            sequences.add(((Number) sequence).longValue());
+        }
+        subscription.onEntries(entries, sequences, message.getLong("cursor"));
+    }
+
+}
@@ -12,7 +12,11 @@ import cloud.timo.TimoCloud.api.objects.BaseObject;
 import cloud.timo.TimoCloud.api.objects.PlayerObject;
 import cloud.timo.TimoCloud.api.objects.ProxyGroupObject;
 import cloud.timo.TimoCloud.api.objects.ProxyObject;
+import cloud.timo.TimoCloud.api.implementations.objects.log.LogSubscriptionImplementation;
+import cloud.timo.TimoCloud.api.objects.log.LogEntryListener;
+import cloud.timo.TimoCloud.api.objects.log.LogFilter;
 import cloud.timo.TimoCloud.api.objects.log.LogFractionObject;
+import cloud.timo.TimoCloud.api.objects.log.LogSubscription;
 import cloud.timo.TimoCloud.common.datatypes.TypeMap;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -147,6 +151,11 @@ public class ProxyObjectBasicImplementation implements ProxyObject, LinkableObje
                 .submit();
     }
 
+    @Override
+    public LogSubscription createLogSubscription(LogFilter filter, LogEntryListener listener) {
+        return new LogSubscriptionImplementation(getId(), P_SUBSCRIBE_LOG, P_UNSUBSCRIBE_LOG, filter, listener);
+    }
+
     public void addPlayer(PlayerObjectLink playerObjectLink) {
         this.onlinePlayers.add(playerObjectLink);
     }
@@ -12,7 +12,11 @@ import cloud.timo.TimoCloud.api.objects.BaseObject;
 import cloud.timo.TimoCloud.api.objects.PlayerObject;
 import cloud.timo.TimoCloud.api.objects.ServerGroupObject;
 import cloud.timo.TimoCloud.api.objects.ServerObject;
+import cloud.timo.TimoCloud.api.implementations.objects.log.LogSubscriptionImplementation;
+import cloud.timo.TimoCloud.api.objects.log.LogEntryListener;
+import cloud.timo.TimoCloud.api.objects.log.LogFilter;
 import cloud.timo.TimoCloud.api.objects.log.LogFractionObject;
+import cloud.timo.TimoCloud.api.objects.log.LogSubscription;
 import cloud.timo.TimoCloud.common.datatypes.TypeMap;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -207,6 +211,11 @@ public class ServerObjectBasicImplementation implements ServerObject, LinkableOb
                 .submit();
     }
 
+    @Override
+    public LogSubscription createLogSubscription(LogFilter filter, LogEntryListener listener) {
+        return new LogSubscriptionImplementation(getId(), S_SUBSCRIBE_LOG, S_UNSUBSCRIBE_LOG, filter, listener);
+    }
+
     @Override
     public String toString() {
         return getName();
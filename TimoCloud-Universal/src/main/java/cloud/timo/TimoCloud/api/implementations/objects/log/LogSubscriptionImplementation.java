@@ -0,0 +1,86 @@
+package cloud.timo.TimoCloud.api.implementations.objects.log;
+
+import cloud.timo.TimoCloud.api.TimoCloudAPI;
+import cloud.timo.TimoCloud.api.async.APIRequestFuture;
+import cloud.timo.TimoCloud.api.async.APIRequestType;
+import cloud.timo.TimoCloud.api.implementations.async.APIRequestImplementation;
+import cloud.timo.TimoCloud.api.implementations.managers.LogSubscriptionManager;
+import cloud.timo.TimoCloud.api.objects.log.LogEntryListener;
+import cloud.timo.TimoCloud.api.objects.log.LogEntryObject;
+import cloud.timo.TimoCloud.api.objects.log.LogFilter;
+import cloud.timo.TimoCloud.api.objects.log.LogSubscription;
+import cloud.timo.TimoCloud.common.datatypes.TypeMap;
+import cloud.timo.TimoCloud.common.utils.RandomIdGenerator;
+
+import java.util.List;
+
+public class LogSubscriptionImplementation implements LogSubscription {
+
+    private final String id;
+    private final String target;
+    private final APIRequestType subscribeType;
+    private final APIRequestType unsubscribeType;
+    private final LogFilter filter;
+    private final LogEntryListener listener;
+    private long cursor; // Guarded by this
+
+    public LogSubscriptionImplementation(String target, APIRequestType subscribeType, APIRequestType unsubscribeType, LogFilter filter, LogEntryListener listener) {
+        this.id = RandomIdGenerator.generateId();
+        this.target = target;
+        this.subscribeType = subscribeType;
+        this.unsubscribeType = unsubscribeType;
+        this.filter = filter;
+        this.listener = listener;
+        this.cursor = filter.getCursor();
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public synchronized long getCursor() {
+        return cursor;
+    }
+
+    @Override
+    public APIRequestFuture<Void> subscribe() {
+        LogSubscriptionManager.register(this);
+        return new APIRequestImplementation<Void>(subscribeType, target, new TypeMap()
+                .put("subscription", getId())
+                .put("subscriber", TimoCloudAPI.getMessageAPI().getOwnAddress().toString())
+                .put("cursor", getCursor())
+                .putIfNotNull("minimumLevel", filter.getMinimumLevel() == null ? null : filter.getMinimumLevel().name())
+                .putIfNotNull("pattern", filter.getPattern()))
+                .submit();
+    }
+
+    @Override
+    public APIRequestFuture<Void> cancel() {
+        LogSubscriptionManager.unregister(this);
+        return new APIRequestImplementation<Void>(unsubscribeType, target, new TypeMap()
+                .put("subscription", getId()))
+                .submit();
+    }
+
+    /**
+     * Called when entries arrive. Entries before the cursor have been received already, which happens if entries were on their way while subscribing again.
+     *
+     * @param sequences The cursor of every entry
+     * @param cursor    The cursor after the last entry the core looked at
+     */
+    public synchronized void onEntries(List<LogEntryObject> entries, List<Long> sequences, long cursor) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (this.cursor >= 0 && sequences.get(i) < this.cursor) continue;
+            try {
+                listener.onLogEntry(entries.get(i));
+            } catch (Exception e) {
+                System.err.println("Error while calling method onLogEntry on LogEntryListener");
+                e.printStackTrace();
+            }
+        }
+        this.cursor = Math.max(this.cursor, cursor);
+    }
+
+}
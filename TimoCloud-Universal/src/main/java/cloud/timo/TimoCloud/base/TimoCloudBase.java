@@ -10,31 +10,41 @@ import cloud.timo.TimoCloud.base.sockets.BaseSocketClient;
 import cloud.timo.TimoCloud.base.sockets.BaseSocketClientHandler;
 import cloud.timo.TimoCloud.base.sockets.BaseSocketMessageManager;
 import cloud.timo.TimoCloud.base.sockets.BaseStringHandler;
+import cloud.timo.TimoCloud.base.utils.InstanceProvisioner;
+import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyPairRetriever;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyUtil;
+import cloud.timo.TimoCloud.common.log.LogShipper;
 import cloud.timo.TimoCloud.common.modules.ModuleType;
 import cloud.timo.TimoCloud.common.modules.TimoCloudModule;
+import cloud.timo.TimoCloud.common.protocol.BinaryMessageCodec;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.common.sockets.AESDecrypter;
 import cloud.timo.TimoCloud.common.sockets.AESEncrypter;
+import cloud.timo.TimoCloud.common.sockets.MessageDecoder;
+import cloud.timo.TimoCloud.common.sockets.MessageEncoder;
 import cloud.timo.TimoCloud.common.sockets.RSAHandshakeHandler;
+import cloud.timo.TimoCloud.common.utils.HashUtil;
+import cloud.timo.TimoCloud.common.utils.files.FileHashIndex;
 import cloud.timo.TimoCloud.common.utils.network.InetAddressUtil;
 import cloud.timo.TimoCloud.common.utils.options.OptionSet;
 import io.netty.channel.Channel;
-import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
 import io.netty.util.CharsetUtil;
 import org.apache.commons.io.FileDeleteStrategy;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.security.KeyPair;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -106,15 +116,21 @@ public class TimoCloudBase implements TimoCloudModule {
 
     @Override
     public void unload() {
-
+        if (getInstanceManager() != null) getInstanceManager().shutdown();
+        try {
+            if (HashUtil.getIndex() != null) HashUtil.getIndex().close();
+        } catch (IOException e) {
+            severe(e);
+        }
     }
 
     private void makeInstances() throws Exception {
         instance = this;
         fileManager = new BaseFileManager();
+        loadHashIndex();
         rsaKeyPairRetriever = new RSAKeyPairRetriever(new File(getFileManager().getBaseDirectory(), "keys/"));
         resourceManager = new BaseResourceManager();
-        instanceManager = new BaseInstanceManager(getServerManagerDelayMillis());
+        instanceManager = new BaseInstanceManager(getServerManagerDelayMillis(), getParallelStarts(), new InstanceProvisioner(getProvisioningMode(), getHardlinkPatterns()), getLogTailerThreads());
         templateManager = new BaseTemplateManager();
         socketClient = new BaseSocketClient();
         socketClientHandler = new BaseSocketClientHandler();
@@ -124,6 +140,16 @@ public class TimoCloudBase implements TimoCloudModule {
         APIInstanceUtil.setInternalMessageInstance(new TimoCloudInternalMessageAPIBaseImplementation());
     }
 
+    private void loadHashIndex() {
+        FileHashIndex hashIndex = new FileHashIndex(new File(getFileManager().getCacheDirectory(), "hashes.idx"));
+        HashUtil.setIndex(hashIndex);
+        try {
+            hashIndex.watch(getFileManager().getTemplatesDirectory());
+        } catch (IOException e) {
+            warning("Could not watch templates for changes, template files will be checked on every start: " + e.getMessage());
+        }
+    }
+
     private void scheduleConnecting() {
         scheduler.scheduleAtFixedRate(this::connectToSocket, 0, 1, TimeUnit.SECONDS);
         alertConnecting();
@@ -174,12 +200,13 @@ public class TimoCloudBase implements TimoCloudModule {
             KeyPair keyPair = getRsaKeyPairRetriever().getKeyPair();
             new RSAHandshakeHandler(channel, keyPair, (aesKey -> {
                 channel.pipeline().addBefore("prepender", "decrypter", new AESDecrypter(aesKey));
-                channel.pipeline().addBefore("prepender", "decoder", new StringDecoder(CharsetUtil.UTF_8));
+                channel.pipeline().addBefore("prepender", "decoder", new MessageDecoder());
                 channel.pipeline().addBefore("prepender", "handler", TimoCloudBase.getInstance().getStringHandler());
                 channel.pipeline().addLast( "encrypter", new AESEncrypter(aesKey));
                 channel.pipeline().addLast("encoder", new StringEncoder(CharsetUtil.UTF_8));
+                channel.pipeline().addLast("messageEncoder", new MessageEncoder());
 
-                getSocketMessageManager().sendMessage(Message.create().setType(MessageType.BASE_HANDSHAKE).set("publicAddress", getPublicIpAddress()));
+                getSocketMessageManager().sendMessage(Message.create().setType(MessageType.BASE_HANDSHAKE).set("publicAddress", getPublicIpAddress()).set("codec", BinaryMessageCodec.NAME).set("cipher", AESEncryptionUtil.GCM_NAME).set("batchedFrames", true).set("batchedPidRequests", true).set("streamedTemplates", true));
                 info("Successfully connected to Core socket!");
             })).startHandshake();
         } catch (Exception e) {
@@ -194,6 +221,7 @@ public class TimoCloudBase implements TimoCloudModule {
     }
 
     public void onSocketDisconnect() {
+        getTemplateManager().execute(getTemplateManager()::abortTransfers); // After offers which are still being prepared
         if (isConnected()) {
             if (handshakePerformed) info("Disconnected from Core. Reconnecting...");
             else {
@@ -254,6 +282,56 @@ public class TimoCloudBase implements TimoCloudModule {
         return (Integer) getFileManager().getConfig().get("core-port");
     }
 
+    /**
+     * @return How many servers and proxies may be prepared at the same time
+     */
+    public int getParallelStarts() {
+        Object parallelStarts = getFileManager().getConfig().get("parallel-starts");
+        return parallelStarts instanceof Number ? Math.max(1, ((Number) parallelStarts).intValue()) : 1;
+    }
+
+    /**
+     * @return How the directories of non-static instances are created, see {@link InstanceProvisioner}
+     */
+    public InstanceProvisioner.Mode getProvisioningMode() {
+        Object mode = getFileManager().getConfig().get("provisioning-mode");
+        try {
+            return InstanceProvisioner.Mode.valueOf(String.valueOf(mode).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            warning("Unknown provisioning-mode '" + mode + "', copying templates instead.");
+            return InstanceProvisioner.Mode.COPY;
+        }
+    }
+
+    /**
+     * @return How many log lines of one instance may be sent to the core per second, more lines are dropped
+     */
+    public int getLogLinesPerSecond() {
+        Object linesPerSecond = getFileManager().getConfig().get("log-lines-per-second");
+        return linesPerSecond instanceof Number ? ((Number) linesPerSecond).intValue() : LogShipper.DEFAULT_LINES_PER_SECOND;
+    }
+
+    /**
+     * @return Milliseconds log lines are collected before they are sent to the core
+     */
+    public long getLogBatchInterval() {
+        Object interval = getFileManager().getConfig().get("log-batch-interval");
+        return interval instanceof Number ? ((Number) interval).longValue() : LogShipper.DEFAULT_INTERVAL;
+    }
+
+    /**
+     * @return Number of threads reading the log files of all instances
+     */
+    public int getLogTailerThreads() {
+        Object threads = getFileManager().getConfig().get("log-tailer-threads");
+        return threads instanceof Number ? Math.max(1, ((Number) threads).intValue()) : 2;
+    }
+
+    public List<String> getHardlinkPatterns() {
+        Object patterns = getFileManager().getConfig().get("hardlink-patterns");
+        return patterns instanceof List ? (List<String>) patterns : Collections.emptyList();
+    }
+
     public static TimoCloudBase getInstance() {
         return instance;
     }
@@ -6,18 +6,21 @@ import cloud.timo.TimoCloud.base.exceptions.ProxyStartException;
 import cloud.timo.TimoCloud.base.exceptions.ServerStartException;
 import cloud.timo.TimoCloud.base.objects.BaseProxyObject;
 import cloud.timo.TimoCloud.base.objects.BaseServerObject;
+import cloud.timo.TimoCloud.base.utils.InstanceProvisioner;
 import cloud.timo.TimoCloud.base.utils.LogTailerListener;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyPairRetriever;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyUtil;
 import cloud.timo.TimoCloud.common.log.LogEntry;
 import cloud.timo.TimoCloud.common.log.LogEntryReader;
+import cloud.timo.TimoCloud.common.log.LogShipper;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.common.utils.HashUtil;
 import cloud.timo.TimoCloud.common.utils.RandomIdGenerator;
-import cloud.timo.TimoCloud.common.utils.files.tailer.FileTailer;
+import cloud.timo.TimoCloud.common.utils.files.tailer.FileTailerService;
 import cloud.timo.TimoCloud.cord.utils.MathUtil;
 import com.moandjiezana.toml.Toml;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
@@ -30,10 +33,14 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.security.PublicKey;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Matcher;
@@ -47,27 +54,58 @@ public class BaseInstanceManager {
     private static final Integer SERVER_PORT_MAX = 42000;
     private static final Integer PROXY_PORT_START = 40000;
     private static final Integer PROXY_PORT_MAX = 40300;
+    private static final long LOG_SWEEP_INTERVAL = 1000; // Log files are checked this often even if the watch service did not notice a change
     private final ScheduledExecutorService scheduler;
-    private LinkedList<BaseServerObject> serverQueue;
-    private LinkedList<BaseProxyObject> proxyQueue;
-    private Map<String, FileTailer> logTailers;
-
-    private boolean startingServer = false;
-    private Integer currentServerPort = SERVER_PORT_START;
-
-    private boolean startingProxy = false;
-    private Integer currentProxyPort = PROXY_PORT_START;
-
-    private boolean downloadingTemplate = false;
-
-    public BaseInstanceManager(long millis) {
+    private final ExecutorService startExecutor;
+    private final int parallelStarts;
+    private final LinkedList<BaseServerObject> serverQueue; // Guarded by this
+    private final LinkedList<BaseProxyObject> proxyQueue; // Guarded by this
+    private final AtomicInteger startingInstances;
+    private final FileTailerService logTailerService;
+    private final Map<String, FileTailerService.Tailer> logTailers;
+    private final Map<String, LogShipper> logShippers;
+    private final InstanceProvisioner provisioner;
+
+    private final Object portLock = new Object();
+    private int currentServerPort = SERVER_PORT_START;
+    private int currentProxyPort = PROXY_PORT_START;
+
+    /**
+     * @param parallelStarts How many instances may be prepared and started at the same time
+     * @param provisioner    Creates the directories of non-static instances from their templates
+     * @param tailerThreads  Number of threads reading the log files of all instances
+     */
+    public BaseInstanceManager(long millis, int parallelStarts, InstanceProvisioner provisioner, int tailerThreads) throws IOException {
+        this.parallelStarts = Math.max(1, parallelStarts);
+        this.provisioner = provisioner;
         serverQueue = new LinkedList<>();
         proxyQueue = new LinkedList<>();
+        startingInstances = new AtomicInteger();
         scheduler = Executors.newScheduledThreadPool(1);
-        logTailers = new HashMap<>();
+        startExecutor = Executors.newFixedThreadPool(this.parallelStarts, new DefaultThreadFactory("TimoCloud-InstanceStart"));
+        logTailerService = new FileTailerService(tailerThreads, LOG_SWEEP_INTERVAL);
+        logTailers = new ConcurrentHashMap<>();
+        logShippers = new ConcurrentHashMap<>();
         scheduler.scheduleAtFixedRate(this::everySecond, millis, millis, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Stops starting instances and sends what the instances have logged until now
+     */
+    public void shutdown() {
+        scheduler.shutdown();
+        startExecutor.shutdown();
+        logTailers.clear();
+        logTailerService.shutdown();
+        try {
+            logTailerService.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (LogShipper logShipper : logShippers.values()) logShipper.flush();
+        logShippers.clear();
+    }
+
     private static File getServerLogFile(String id) {
         return new File(TimoCloudBase.getInstance().getFileManager().getServerLogsDirectory(), id + ".log");
     }
@@ -79,7 +117,7 @@ public class BaseInstanceManager {
     public void updateResources() {
         double cpu = TimoCloudBase.getInstance().getResourceManager().getCpuUsage();
         cpu = MathUtil.round(cpu, 2); // Do not send all decimal places
-        boolean ready = serverQueue.isEmpty() && proxyQueue.isEmpty() && !startingServer && !startingProxy;
+        boolean ready = !hasQueuedInstances() && startingInstances.get() == 0;
         long freeRam = TimoCloudBase.getInstance().getResourceManager().getFreeMemory();
         TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(
                 Message.create().setType(MessageType.BASE_RESOURCES)
@@ -89,14 +127,18 @@ public class BaseInstanceManager {
                                 .set("cpuLoad", cpu)));
     }
 
-    public void addToServerQueue(BaseServerObject server) {
+    public synchronized void addToServerQueue(BaseServerObject server) {
         serverQueue.add(server);
     }
 
-    public void addToProxyQueue(BaseProxyObject proxy) {
+    public synchronized void addToProxyQueue(BaseProxyObject proxy) {
         proxyQueue.add(proxy);
     }
 
+    private synchronized boolean hasQueuedInstances() {
+        return !serverQueue.isEmpty() || !proxyQueue.isEmpty();
+    }
+
     private void everySecond() {
         try {
             startNext();
@@ -105,39 +147,75 @@ public class BaseInstanceManager {
         }
     }
 
+    /**
+     * Hands queued instances to the start workers until all of them are busy.
+     * Instances whose templates are currently being downloaded stay queued without blocking the others.
+     */
     public void startNext() {
-        if (isDownloadingTemplate()) return;
-        startNextServer();
-        startNextProxy();
+        Runnable start;
+        while (startingInstances.get() < parallelStarts && (start = pollNextStart()) != null) {
+            startingInstances.incrementAndGet();
+            Runnable task = start;
+            startExecutor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    TimoCloudBase.getInstance().severe(e);
+                } finally {
+                    startingInstances.decrementAndGet();
+                }
+            });
+        }
         updateResources();
     }
 
-    public void startNextServer() {
-        if (serverQueue.isEmpty()) return;
-        BaseServerObject server = serverQueue.pop();
-        if (server == null) {
-            startNextServer();
-            return;
-        }
-        startingServer = true;
-        startServer(server);
-        startingServer = false;
+    private synchronized Runnable pollNextStart() {
+        BaseProxyObject proxy = pollStartable(proxyQueue, this::getTemplateDirectories);
+        if (proxy != null) return () -> startProxy(proxy);
+        BaseServerObject server = pollStartable(serverQueue, this::getTemplateDirectories);
+        if (server != null) return () -> startServer(server);
+        return null;
     }
 
-    public void startNextProxy() {
-        if (proxyQueue.isEmpty()) return;
-        BaseProxyObject proxy = proxyQueue.pop();
-        if (proxy == null) {
-            startNextProxy();
-            return;
+    private <T> T pollStartable(LinkedList<T> queue, Function<T, List<File>> templateDirectories) {
+        for (Iterator<T> iterator = queue.iterator(); iterator.hasNext(); ) {
+            T instance = iterator.next();
+            if (instance == null) {
+                iterator.remove();
+                continue;
+            }
+            if (TimoCloudBase.getInstance().getTemplateManager().isDownloading(templateDirectories.apply(instance))) continue;
+            iterator.remove();
+            return instance;
         }
-        startingProxy = true;
-        startProxy(proxy);
-        startingProxy = false;
+        return null;
     }
 
-    private void copyDirectory(File from, File to) throws IOException {
-        FileUtils.copyDirectory(from, to);
+    private File getTemplateDirectory(BaseServerObject server) {
+        return new File((server.isStatic() ? TimoCloudBase.getInstance().getFileManager().getServerStaticDirectory() : TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory()), server.getGroup());
+    }
+
+    private File getMapDirectory(BaseServerObject server) {
+        return new File(TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory(), server.getGroup() + "_" + server.getMap());
+    }
+
+    private File getTemplateDirectory(BaseProxyObject proxy) {
+        return new File((proxy.isStatic() ? TimoCloudBase.getInstance().getFileManager().getProxyStaticDirectory() : TimoCloudBase.getInstance().getFileManager().getProxyTemplatesDirectory()), proxy.getGroup());
+    }
+
+    /**
+     * @return All directories the server is built from
+     */
+    private List<File> getTemplateDirectories(BaseServerObject server) {
+        List<File> directories = new ArrayList<>();
+        directories.add(getTemplateDirectory(server));
+        if (!server.isStatic() && server.getMap() != null) directories.add(getMapDirectory(server));
+        directories.add(TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory());
+        return directories;
+    }
+
+    private List<File> getTemplateDirectories(BaseProxyObject proxy) {
+        return Arrays.asList(getTemplateDirectory(proxy), TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory());
     }
 
     private void copyDirectoryCarefully(File from, File to, long value, int layer) throws IOException {
@@ -161,63 +239,71 @@ public class BaseInstanceManager {
         TimoCloudBase.getInstance().info("Starting server " + server.getName() + "...");
         double millisBefore = System.currentTimeMillis();
         try {
-            File templateDirectory = new File((server.isStatic() ? TimoCloudBase.getInstance().getFileManager().getServerStaticDirectory() : TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory()), server.getGroup());
+            File templateDirectory = getTemplateDirectory(server);
             if (!templateDirectory.exists()) templateDirectory.mkdirs();
 
-            File mapDirectory = new File(TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory(), server.getGroup() + "_" + server.getMap());
-
-            Map<String, Object> templateHashes = server.isStatic() ? null : HashUtil.getHashes(templateDirectory);
-            Map<String, Object> mapHashes = (!server.isStatic() && server.getMapHash() != null) ? HashUtil.getHashes(mapDirectory) : null;
-            Map<String, Object> globalHashes = HashUtil.getHashes(TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory());
-
-            if (server.getTemplateHash() != null)
-                HashUtil.deleteIfNotExisting(templateDirectory, "", templateHashes, server.getTemplateHash());
-            if (server.getMapHash() != null)
-                HashUtil.deleteIfNotExisting(mapDirectory, "", mapHashes, server.getMapHash());
-            HashUtil.deleteIfNotExisting(TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory(), "", globalHashes, server.getGlobalHash());
-
-            templateHashes = server.isStatic() ? null : HashUtil.getHashes(templateDirectory);
-            mapHashes = (!server.isStatic() && server.getMapHash() != null) ? HashUtil.getHashes(mapDirectory) : null;
-            globalHashes = HashUtil.getHashes(TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory());
-
-            List<String> templateDifferences = server.isStatic() ? new ArrayList<>() : HashUtil.getDifferentFiles("", server.getTemplateHash(), templateHashes);
-            List<String> mapDifferences = (!server.isStatic() && server.getMapHash() != null) ? HashUtil.getDifferentFiles("", server.getMapHash(), mapHashes) : new ArrayList<>();
-            List<String> globalDifferences = HashUtil.getDifferentFiles("", server.getGlobalHash(), globalHashes);
-
-            if (templateDifferences.size() > 0 || mapDifferences.size() > 0 || globalDifferences.size() > 0) {
-                TimoCloudBase.getInstance().info("New server template updates found! Stopping and downloading updates...");
-                TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
-                        .setType(MessageType.BASE_SERVER_TEMPLATE_REQUEST)
-                        .setTarget(server.getId())
-                        .setIfCondition("template", templateDirectory.getName(), templateDifferences.size() > 0)
-                        .setIfCondition("map", server.getMap(), mapDifferences.size() > 0)
-                        .set("differences",
-                                Message.create()
-                                        .setIfCondition("templateDifferences", templateDifferences, templateDifferences.size() > 0)
-                                        .setIfCondition("mapDifferences", mapDifferences, mapDifferences.size() > 0)
-                                        .setIfCondition("globalDifferences", globalDifferences, globalDifferences.size() > 0)));
-                setDownloadingTemplate(true);
-                return;
-            }
-
+            File mapDirectory = getMapDirectory(server);
+            File globalDirectory = TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory();
             File temporaryDirectory = server.isStatic() ? templateDirectory : new File(TimoCloudBase.getInstance().getFileManager().getServerTemporaryDirectory(), server.getId());
-            if (!server.isStatic()) {
-                if (temporaryDirectory.exists()) BaseFileManager.deleteDirectory(temporaryDirectory);
-                copyDirectory(TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory(), temporaryDirectory);
-            }
+            InstanceProvisioner.Statistics provisioning = new InstanceProvisioner.Statistics();
+
+            try (BaseTemplateManager.TemplateLock templateLock = TimoCloudBase.getInstance().getTemplateManager().lockTemplates(getTemplateDirectories(server))) {
+                Map<String, Object> templateHashes = server.isStatic() ? null : HashUtil.getHashes(templateDirectory);
+                Map<String, Object> mapHashes = (!server.isStatic() && server.getMapHash() != null) ? HashUtil.getHashes(mapDirectory) : null;
+                Map<String, Object> globalHashes = HashUtil.getHashes(globalDirectory);
+
+                if (server.getTemplateHash() != null)
+                    HashUtil.deleteIfNotExisting(templateDirectory, "", templateHashes, server.getTemplateHash());
+                if (server.getMapHash() != null)
+                    HashUtil.deleteIfNotExisting(mapDirectory, "", mapHashes, server.getMapHash());
+                HashUtil.deleteIfNotExisting(globalDirectory, "", globalHashes, server.getGlobalHash());
+
+                templateHashes = server.isStatic() ? null : HashUtil.getHashes(templateDirectory);
+                mapHashes = (!server.isStatic() && server.getMapHash() != null) ? HashUtil.getHashes(mapDirectory) : null;
+                globalHashes = HashUtil.getHashes(globalDirectory);
+
+                List<String> templateDifferences = server.isStatic() ? new ArrayList<>() : HashUtil.getDifferentFiles("", server.getTemplateHash(), templateHashes);
+                List<String> mapDifferences = (!server.isStatic() && server.getMapHash() != null) ? HashUtil.getDifferentFiles("", server.getMapHash(), mapHashes) : new ArrayList<>();
+                List<String> globalDifferences = HashUtil.getDifferentFiles("", server.getGlobalHash(), globalHashes);
+
+                if (templateDifferences.size() > 0 || mapDifferences.size() > 0 || globalDifferences.size() > 0) {
+                    TimoCloudBase.getInstance().info("New server template updates found! Stopping and downloading updates...");
+                    if (templateDifferences.size() > 0) TimoCloudBase.getInstance().getTemplateManager().setDownloading(templateDirectory, true);
+                    if (mapDifferences.size() > 0) TimoCloudBase.getInstance().getTemplateManager().setDownloading(mapDirectory, true);
+                    if (globalDifferences.size() > 0) TimoCloudBase.getInstance().getTemplateManager().setDownloading(globalDirectory, true);
+                    TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
+                            .setType(MessageType.BASE_SERVER_TEMPLATE_REQUEST)
+                            .setTarget(server.getId())
+                            .setIfCondition("template", templateDirectory.getName(), templateDifferences.size() > 0)
+                            .setIfCondition("map", server.getMap(), mapDifferences.size() > 0)
+                            .set("differences",
+                                    Message.create()
+                                            .setIfCondition("templateDifferences", templateDifferences, templateDifferences.size() > 0)
+                                            .setIfCondition("mapDifferences", mapDifferences, mapDifferences.size() > 0)
+                                            .setIfCondition("globalDifferences", globalDifferences, globalDifferences.size() > 0)));
+                    return;
+                }
 
-            if (server.isStatic()) {
-                copyDirectoryCarefully(TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory(), temporaryDirectory, STATIC_CREATE_TIME, 1);
-            } else {
-                copyDirectory(templateDirectory, temporaryDirectory);
+                templateLock.downgrade(); // Templates are up to date, other starts may copy them now as well
+
+                if (!server.isStatic()) {
+                    if (temporaryDirectory.exists()) BaseFileManager.deleteDirectory(temporaryDirectory);
+                    provisioner.provisionDirectory(globalDirectory, temporaryDirectory, provisioning);
+                }
+
+                if (server.isStatic()) {
+                    copyDirectoryCarefully(globalDirectory, temporaryDirectory, STATIC_CREATE_TIME, 1);
+                } else {
+                    provisioner.provisionDirectory(templateDirectory, temporaryDirectory, provisioning);
+                }
+
+                if (!server.isStatic() && server.getMap() != null) {
+                    if (mapDirectory.exists()) provisioner.provisionDirectory(mapDirectory, temporaryDirectory, provisioning);
+                }
             }
 
             boolean randomMap = server.getMap() != null;
             String mapName = server.getMap() == null ? "Default" : server.getMap();
-            if (!server.isStatic() && server.getMap() != null) {
-                randomMap = true;
-                if (mapDirectory.exists()) copyDirectory(mapDirectory, temporaryDirectory);
-            }
 
             File spigotJar = new File(temporaryDirectory, "spigot.jar");
             if (!spigotJar.exists()) {
@@ -232,15 +318,16 @@ public class BaseInstanceManager {
             File plugin = new File(plugins, "TimoCloud.jar");
             if (plugin.exists()) plugin.delete();
             try {
-                Files.copy(new File(TimoCloudBase.class.getProtectionDomain().getCodeSource().getLocation().getPath()).toPath(), plugin.toPath());
+                File pluginSource = new File(TimoCloudBase.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+                if (server.isStatic()) Files.copy(pluginSource.toPath(), plugin.toPath());
+                else provisioner.provisionFile(pluginSource, plugin, provisioning);
             } catch (Exception e) {
                 TimoCloudBase.getInstance().severe("Error while copying plugin into template:");
                 TimoCloudBase.getInstance().severe(e);
                 throw new ServerStartException("Could not copy TimoCloud.jar into template");
             }
 
-            Integer serverPort = getFreePortCommon(SERVER_PORT_START, currentServerPort, SERVER_PORT_MAX);
-            currentServerPort = serverPort + 1;
+            int serverPort = allocateServerPort();
 
             PublicKey publicKey = new RSAKeyPairRetriever(new File(temporaryDirectory, "plugins/TimoCloud/keys/")).generateKeyPair().getPublic();
 
@@ -263,18 +350,12 @@ public class BaseInstanceManager {
 
             double millisNow = System.currentTimeMillis();
             TimoCloudBase.getInstance().info("Successfully prepared starting server " + server.getName() + " in " + (millisNow - millisBefore) / 1000 + " seconds.");
+            if (!server.isStatic()) TimoCloudBase.getInstance().info("Provisioned directory of server " + server.getName() + ": " + provisioning);
 
             File logFile = getServerLogFile(server.getId());
             logFile.createNewFile();
 
-            FileTailer logTailer = generateLogTailer(logFile, (logEntry) -> {
-                TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
-                        .setType(MessageType.SERVER_LOG_ENTRY)
-                        .setData(logEntry)
-                        .setTarget(server.getId()));
-            });
-            new Thread(logTailer).start();
-            this.logTailers.put(server.getId(), logTailer);
+            this.logTailers.put(server.getId(), followLog(logFile, createLogShipper(MessageType.SERVER_LOG_ENTRIES, server.getId())));
 
             try {
                 String logString = "";
@@ -379,46 +460,54 @@ public class BaseInstanceManager {
         TimoCloudBase.getInstance().info("Starting proxy " + proxy.getName() + "...");
         double millisBefore = System.currentTimeMillis();
         try {
-            File templateDirectory = new File((proxy.isStatic() ? TimoCloudBase.getInstance().getFileManager().getProxyStaticDirectory() : TimoCloudBase.getInstance().getFileManager().getProxyTemplatesDirectory()), proxy.getGroup());
+            File templateDirectory = getTemplateDirectory(proxy);
             if (!templateDirectory.exists()) templateDirectory.mkdirs();
 
-            Map<String, Object> templateHashes = proxy.isStatic() ? null : HashUtil.getHashes(templateDirectory);
-            Map<String, Object> globalHashes = HashUtil.getHashes(TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory());
-
-            if (proxy.getTemplateHash() != null)
-                HashUtil.deleteIfNotExisting(templateDirectory, "", templateHashes, proxy.getTemplateHash());
-            HashUtil.deleteIfNotExisting(TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory(), "", globalHashes, proxy.getGlobalHash());
-
-            templateHashes = HashUtil.getHashes(templateDirectory);
-            globalHashes = HashUtil.getHashes(TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory());
-
-            List<String> templateDifferences = proxy.isStatic() ? new ArrayList<>() : HashUtil.getDifferentFiles("", proxy.getTemplateHash(), templateHashes);
-            List<String> gloalDifferences = HashUtil.getDifferentFiles("", proxy.getGlobalHash(), globalHashes);
-
-            if (templateDifferences.size() > 0 || gloalDifferences.size() > 0) {
-                TimoCloudBase.getInstance().info("New proxy template updates found! Stopping and downloading updates...");
-                TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(
-                        Message.create()
-                                .setType(MessageType.BASE_PROXY_TEMPLATE_REQUEST)
-                                .setTarget(proxy.getId())
-                                .setIfCondition("template", templateDirectory.getName(), templateDifferences.size() > 0)
-                                .set("differences", Message.create()
-                                        .setIfCondition("templateDifferences", templateDifferences, templateDifferences.size() > 0)
-                                        .setIfCondition("globalDifferences", gloalDifferences, gloalDifferences.size() > 0)));
-                setDownloadingTemplate(true);
-                return;
-            }
-
+            File globalDirectory = TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory();
             File temporaryDirectory = proxy.isStatic() ? templateDirectory : new File(TimoCloudBase.getInstance().getFileManager().getProxyTemporaryDirectory(), proxy.getId());
-            if (!proxy.isStatic()) {
-                if (temporaryDirectory.exists()) BaseFileManager.deleteDirectory(temporaryDirectory);
-                copyDirectory(TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory(), temporaryDirectory);
-            }
+            InstanceProvisioner.Statistics provisioning = new InstanceProvisioner.Statistics();
+
+            try (BaseTemplateManager.TemplateLock templateLock = TimoCloudBase.getInstance().getTemplateManager().lockTemplates(getTemplateDirectories(proxy))) {
+                Map<String, Object> templateHashes = proxy.isStatic() ? null : HashUtil.getHashes(templateDirectory);
+                Map<String, Object> globalHashes = HashUtil.getHashes(globalDirectory);
+
+                if (proxy.getTemplateHash() != null)
+                    HashUtil.deleteIfNotExisting(templateDirectory, "", templateHashes, proxy.getTemplateHash());
+                HashUtil.deleteIfNotExisting(globalDirectory, "", globalHashes, proxy.getGlobalHash());
+
+                templateHashes = HashUtil.getHashes(templateDirectory);
+                globalHashes = HashUtil.getHashes(globalDirectory);
+
+                List<String> templateDifferences = proxy.isStatic() ? new ArrayList<>() : HashUtil.getDifferentFiles("", proxy.getTemplateHash(), templateHashes);
+                List<String> gloalDifferences = HashUtil.getDifferentFiles("", proxy.getGlobalHash(), globalHashes);
+
+                if (templateDifferences.size() > 0 || gloalDifferences.size() > 0) {
+                    TimoCloudBase.getInstance().info("New proxy template updates found! Stopping and downloading updates...");
+                    if (templateDifferences.size() > 0) TimoCloudBase.getInstance().getTemplateManager().setDownloading(templateDirectory, true);
+                    if (gloalDifferences.size() > 0) TimoCloudBase.getInstance().getTemplateManager().setDownloading(globalDirectory, true);
+                    TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(
+                            Message.create()
+                                    .setType(MessageType.BASE_PROXY_TEMPLATE_REQUEST)
+                                    .setTarget(proxy.getId())
+                                    .setIfCondition("template", templateDirectory.getName(), templateDifferences.size() > 0)
+                                    .set("differences", Message.create()
+                                            .setIfCondition("templateDifferences", templateDifferences, templateDifferences.size() > 0)
+                                            .setIfCondition("globalDifferences", gloalDifferences, gloalDifferences.size() > 0)));
+                    return;
+                }
 
-            if (proxy.isStatic()) {
-                copyDirectoryCarefully(TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory(), temporaryDirectory, STATIC_CREATE_TIME, 1);
-            } else {
-                copyDirectory(templateDirectory, temporaryDirectory);
+                templateLock.downgrade(); // Templates are up to date, other starts may copy them now as well
+
+                if (!proxy.isStatic()) {
+                    if (temporaryDirectory.exists()) BaseFileManager.deleteDirectory(temporaryDirectory);
+                    provisioner.provisionDirectory(globalDirectory, temporaryDirectory, provisioning);
+                }
+
+                if (proxy.isStatic()) {
+                    copyDirectoryCarefully(globalDirectory, temporaryDirectory, STATIC_CREATE_TIME, 1);
+                } else {
+                    provisioner.provisionDirectory(templateDirectory, temporaryDirectory, provisioning);
+                }
             }
             ProxyType proxyType = ProxyType.BUNGEE;
             File bungeeJar = new File(temporaryDirectory, "BungeeCord.jar");
@@ -446,15 +535,16 @@ public class BaseInstanceManager {
             File plugin = new File(plugins, "TimoCloud.jar");
             if (plugin.exists()) plugin.delete();
             try {
-                Files.copy(new File(TimoCloudBase.class.getProtectionDomain().getCodeSource().getLocation().getPath()).toPath(), plugin.toPath());
+                File pluginSource = new File(TimoCloudBase.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+                if (proxy.isStatic()) Files.copy(pluginSource.toPath(), plugin.toPath());
+                else provisioner.provisionFile(pluginSource, plugin, provisioning);
             } catch (Exception e) {
                 TimoCloudBase.getInstance().severe("Error while copying plugin into template:");
                 TimoCloudBase.getInstance().severe(e);
                 throw new ProxyStartException("Could not copy TimoCloud.jar into template");
             }
 
-            Integer proxyPort = getFreePortCommon(PROXY_PORT_START, currentProxyPort, PROXY_PORT_MAX);
-            currentProxyPort = proxyPort + 1;
+            int proxyPort = allocateProxyPort();
 
             PublicKey publicKey = new RSAKeyPairRetriever(new File(temporaryDirectory, "plugins/TimoCloud/keys/")).generateKeyPair().getPublic();
             switch (proxyType) {
@@ -525,18 +615,12 @@ public class BaseInstanceManager {
 
             double millisNow = System.currentTimeMillis();
             TimoCloudBase.getInstance().info("Successfully prepared starting proxy " + proxy.getName() + " in " + (millisNow - millisBefore) / 1000 + " seconds.");
+            if (!proxy.isStatic()) TimoCloudBase.getInstance().info("Provisioned directory of proxy " + proxy.getName() + ": " + provisioning);
 
             File logFile = getProxyLogFile(proxy.getId());
             logFile.createNewFile();
 
-            FileTailer logTailer = generateLogTailer(logFile, (logEntry) -> {
-                TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
-                        .setType(MessageType.PROXY_LOG_ENTRY)
-                        .setData(logEntry)
-                        .setTarget(proxy.getId()));
-            });
-            new Thread(logTailer).start();
-            this.logTailers.put(proxy.getId(), logTailer);
+            this.logTailers.put(proxy.getId(), followLog(logFile, createLogShipper(MessageType.PROXY_LOG_ENTRIES, proxy.getId())));
 
             try {
                 String logString = "";
@@ -611,6 +695,22 @@ public class BaseInstanceManager {
         }
     }
 
+    private int allocateServerPort() throws InstanceStartException {
+        synchronized (portLock) {
+            int port = getFreePortCommon(SERVER_PORT_START, currentServerPort, SERVER_PORT_MAX);
+            currentServerPort = port + 1;
+            return port;
+        }
+    }
+
+    private int allocateProxyPort() throws InstanceStartException {
+        synchronized (portLock) {
+            int port = getFreePortCommon(PROXY_PORT_START, currentProxyPort, PROXY_PORT_MAX);
+            currentProxyPort = port + 1;
+            return port;
+        }
+    }
+
     private Integer getFreePortCommon(int startPort, int currentPort, int maxPort) throws InstanceStartException {
         if (currentPort == maxPort) currentPort = startPort;
 
@@ -679,17 +779,22 @@ public class BaseInstanceManager {
         }
     }
 
-    private FileTailer generateLogTailer(File logFile, Consumer<LogEntry> onMessage) {
+    private LogShipper createLogShipper(MessageType type, String instanceId) {
+        LogShipper logShipper = new LogShipper(type, instanceId, message -> TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(message),
+                TimoCloudBase.getInstance().getLogLinesPerSecond(), TimoCloudBase.getInstance().getLogBatchInterval());
+        logShippers.put(instanceId, logShipper);
+        return logShipper;
+    }
+
+    private FileTailerService.Tailer followLog(File logFile, Consumer<LogEntry> onMessage) throws IOException {
         LogEntryReader logEntryReader = new LogEntryReader(onMessage);
-        return new FileTailer(logFile, new LogTailerListener(logEntryReader), 500);
+        return logTailerService.follow(logFile, new LogTailerListener(logEntryReader));
     }
 
     public void onServerStopped(String id) {
-        FileTailer tailer = logTailers.get(id);
-        if (tailer != null) {
-            tailer.stop();
-            logTailers.remove(id);
-        }
+        FileTailerService.Tailer tailer = logTailers.remove(id);
+        if (tailer != null) tailer.stop();
+        logShippers.remove(id); // Sends the last lines on its own
 
         new Timer().schedule(new TimerTask() {
             @Override
@@ -702,11 +807,9 @@ public class BaseInstanceManager {
     }
 
     public void onProxyStopped(String id) {
-        FileTailer tailer = logTailers.get(id);
-        if (tailer != null) {
-            tailer.stop();
-            logTailers.remove(id);
-        }
+        FileTailerService.Tailer tailer = logTailers.remove(id);
+        if (tailer != null) tailer.stop();
+        logShippers.remove(id); // Sends the last lines on its own
 
         new Timer().schedule(new TimerTask() {
             @Override
@@ -718,14 +821,6 @@ public class BaseInstanceManager {
         }, 5 * 60 * 1000);
     }
 
-    public boolean isDownloadingTemplate() {
-        return downloadingTemplate;
-    }
-
-    public void setDownloadingTemplate(boolean downloadingTemplate) {
-        this.downloadingTemplate = downloadingTemplate;
-    }
-
     private String buildStartParameters(List<String> parameters) {
         return parameters.stream().filter(Objects::nonNull).collect(Collectors.joining(" "));
     }
@@ -2,7 +2,9 @@ package cloud.timo.TimoCloud.base.managers;
 
 
 import cloud.timo.TimoCloud.base.TimoCloudBase;
+import cloud.timo.TimoCloud.base.utils.ProcessTable;
 import com.sun.management.OperatingSystemMXBean;
+import oshi.SystemInfo;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -13,12 +15,27 @@ public class BaseResourceManager {
 
     private OperatingSystemMXBean operatingSystemMXBean;
     private double lastCpuLoad;
+    private SystemInfo systemInfo;
+    private ProcessTable processTable;
+
+    private static final long PROCESS_TABLE_MAX_AGE = 1000; // Milliseconds
 
     public BaseResourceManager() {
         this.operatingSystemMXBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
         this.lastCpuLoad = 0.0;
     }
 
+    /**
+     * @return A process table which is at most one tick old, so that many PID requests at once only cause one scan
+     */
+    public synchronized ProcessTable getProcessTable() {
+        if (processTable == null || System.currentTimeMillis() - processTable.getCreated() >= PROCESS_TABLE_MAX_AGE) {
+            if (systemInfo == null) systemInfo = new SystemInfo();
+            processTable = ProcessTable.scan(systemInfo);
+        }
+        return processTable;
+    }
+
     public long getFreeMemory() {
         return (getOperatingSystemMXBean().getFreePhysicalMemorySize()) / (1024 * 1024) + getCache();
     }
@@ -1,38 +1,581 @@
 package cloud.timo.TimoCloud.base.managers;
 
+import cloud.timo.TimoCloud.base.TimoCloudBase;
+import cloud.timo.TimoCloud.common.utils.files.BlockDelta;
+import cloud.timo.TimoCloud.common.utils.files.FileHashIndex;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.apache.commons.io.FileDeleteStrategy;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 public class BaseTemplateManager {
 
     private static final int BUFFER = 1024;
+    private static final long DOWNLOAD_TIMEOUT = 5 * 60 * 1000; // Milliseconds after which a requested template which never arrived does not block starts anymore
+    private static final long PARTIAL_FILE_LIFETIME = 24 * 60 * 60 * 1000; // Milliseconds after which partially received files are not resumed anymore
+    private static final long OBJECT_LIFETIME = 7 * 24 * 60 * 60 * 1000; // Milliseconds after which unused files are removed from the object store
+    private static final long MIN_OBJECT_SIZE = 16 * 1024; // Smaller files are cheaper to transfer again than to store twice
 
+    private final Map<String, ReentrantReadWriteLock> locks = new ConcurrentHashMap<>();
+    private final Map<String, Long> downloading = new ConcurrentHashMap<>(); // Template directory -> time the update has been requested
+    private final Map<String, IncomingTransfer> transfers = new ConcurrentHashMap<>();
+    private final Set<String> failedDeltas = ConcurrentHashMap.newKeySet(); // Files which could not be reconstructed from a delta, they are requested completely
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("TimoCloud-Template"));
+
+    public BaseTemplateManager() {
+        cleanupCache();
+    }
+
+    /**
+     * Runs work reading or writing whole template files, e.g. hashing, on the template thread instead of the socket's event loop.
+     * Tasks run one after another in the order they have been submitted.
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Replaces the files of a template with the zipped files sent by an older core. Holds the template's write lock while extracting,
+     * so this should be called via {@link #execute(Runnable)}.
+     */
     public void extractFiles(InputStream inputStream, File destination) throws IOException {
-        destination.mkdirs();
-        ZipInputStream zipInputStream = new ZipInputStream(inputStream);
-        ZipEntry zipEntry;
-        while ((zipEntry = zipInputStream.getNextEntry()) != null) {
-            File file = new File(destination, zipEntry.getName());
-            if (zipEntry.getName().endsWith("/")) {
-                file.mkdirs();
+        ReentrantReadWriteLock lock = getLock(destination);
+        lock.writeLock().lock();
+        try {
+            destination.mkdirs();
+            ZipInputStream zipInputStream = new ZipInputStream(inputStream);
+            ZipEntry zipEntry;
+            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+                File file = new File(destination, zipEntry.getName());
+                if (zipEntry.getName().endsWith("/")) {
+                    file.mkdirs();
+                    continue;
+                }
+                if (file.exists()) {
+                    if (file.isDirectory()) FileDeleteStrategy.FORCE.deleteQuietly(file);
+                    else Files.delete(file.toPath());
+                }
+                file.getParentFile().mkdirs();
+                Files.copy(zipInputStream, file.toPath());
+                file.setLastModified(zipEntry.getTime());
+                zipInputStream.closeEntry();
+            }
+            zipInputStream.close();
+        } finally {
+            setDownloading(destination, false);
+            lock.writeLock().unlock();
+        }
+    }
+
+    public File getTransferDestination(String transferType, String template) {
+        switch (transferType) {
+            case "SERVER_TEMPLATE":
+                return new File(TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory(), template);
+            case "SERVER_GLOBAL_TEMPLATE":
+                return TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory();
+            case "PROXY_TEMPLATE":
+                return new File(TimoCloudBase.getInstance().getFileManager().getProxyTemplatesDirectory(), template);
+            case "PROXY_GLOBAL_TEMPLATE":
+                return TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory();
+            default:
+                throw new IllegalArgumentException("Unknown transfer type " + transferType);
+        }
+    }
+
+    /**
+     * Prepares receiving a streamed template transfer. Files are written to the cache directory first and moved into the template once all of them have arrived.
+     * Files whose content is already in the object store are not requested at all, files the template has an old version of are requested as block delta,
+     * see {@link #getSignatures(String)}. Computing the signatures reads the old versions completely, so this should be called via {@link #execute(Runnable)}.
+     *
+     * @return Offsets to start sending each file at. Files which have been received partially before are continued.
+     */
+    public Map<String, Long> onTransferOffer(String transferId, String transferType, String template, List<Map<String, Object>> files) throws IOException {
+        File destination = getTransferDestination(transferType, template);
+        File partsDirectory = getPartsDirectory();
+        partsDirectory.mkdirs();
+        IncomingTransfer transfer = new IncomingTransfer(transferType, template, destination);
+        Map<String, Long> offsets = new LinkedHashMap<>();
+        for (Map<String, Object> file : files) {
+            String path = (String) file.get("path");
+            File target = new File(destination, path);
+            if (!isInside(destination, target)) throw new IOException("File " + path + " is not part of template " + destination.getName());
+            if (Boolean.TRUE.equals(file.get("directory"))) {
+                transfer.directories.add(target);
                 continue;
             }
-            if (file.exists()) {
-                if (file.isDirectory()) FileDeleteStrategy.FORCE.deleteQuietly(file);
-                else Files.delete(file.toPath());
+            long size = ((Number) file.get("size")).longValue();
+            long modified = ((Number) file.get("modified")).longValue();
+            String digest = (String) file.get("digest");
+            String partName = UUID.nameUUIDFromBytes((getKey(target) + ":" + size + ":" + modified).getBytes(StandardCharsets.UTF_8)) + ".part";
+            File part = new File(partsDirectory, partName);
+            if (part.length() > size) Files.delete(part.toPath());
+            IncomingFile incomingFile = new IncomingFile(target, part, size, modified, digest);
+            transfer.files.put(path, incomingFile);
+            File object = getObject(digest);
+            if (object != null && object.isFile() && object.length() == size) {
+                incomingFile.object = object;
+                continue;
+            }
+            if (!part.exists() && target.isFile() && target.length() >= MIN_OBJECT_SIZE && !failedDeltas.contains(getKey(target))) {
+                BlockDelta.Signature signature = BlockDelta.computeSignature(target, BlockDelta.chooseBlockSize(target.length()));
+                if (signature.getBlockCount() > 0) {
+                    incomingFile.basis = target;
+                    incomingFile.blockSize = signature.getBlockSize();
+                    transfer.signatures.put(path, signature.toMap());
+                }
+            }
+            offsets.put(path, part.exists() ? part.length() : 0);
+        }
+        transfers.put(transferId, transfer);
+        return offsets;
+    }
+
+    /**
+     * @return Block signatures of the old versions of offered files, by path, to be sent back to the core along with the offsets
+     */
+    public Map<String, Object> getSignatures(String transferId) {
+        IncomingTransfer transfer = transfers.get(transferId);
+        return transfer == null ? Collections.emptyMap() : transfer.signatures;
+    }
+
+    /**
+     * Writes a received chunk straight to the file's partial file. Blocks on the disk, so this should be called via {@link #execute(Runnable)}.
+     */
+    public void onTransferChunk(String transferId, String path, long offset, byte[] data) throws IOException {
+        IncomingTransfer transfer = transfers.get(transferId);
+        if (transfer == null) return; // Aborted
+        transfer.write(path, offset, data);
+    }
+
+    /**
+     * Appends a received delta to the file's partial file. Reads the blocks from the old version, so this should be called via {@link #execute(Runnable)}.
+     *
+     * @param operations Indices of blocks to copy from the old version of the file, or base64 encoded literal data
+     */
+    public void onTransferDelta(String transferId, String path, List<Object> operations) throws IOException {
+        IncomingTransfer transfer = transfers.get(transferId);
+        if (transfer == null) return;
+        transfer.applyDelta(path, operations);
+    }
+
+    /**
+     * Called when an offered file has been deleted from the core's template before it could be sent
+     */
+    public void onTransferFileRemoved(String transferId, String path) throws IOException {
+        IncomingTransfer transfer = transfers.get(transferId);
+        if (transfer == null) return;
+        transfer.remove(path);
+    }
+
+    /**
+     * Verifies all received files and moves them into the template once all of them are complete. Files which arrived incomplete or corrupted,
+     * e.g. because a delta has been applied to a basis which changed meanwhile, are requested again without delta, nothing is moved until they have arrived.
+     * If a file fails again, the template keeps its old version of it. Holds the template's write lock while verifying and moving the files,
+     * so this should be called via {@link #execute(Runnable)}.
+     *
+     * @return The files which have to be requested again, or that the transfer is finished. Null if the transfer is unknown.
+     */
+    public TransferEnd onTransferEnd(String transferId) throws IOException {
+        IncomingTransfer transfer = transfers.remove(transferId);
+        if (transfer == null) return null;
+        transfer.closeFile();
+        ReentrantReadWriteLock lock = getLock(transfer.destination);
+        lock.writeLock().lock();
+        boolean requestingAgain = false;
+        try {
+            Map<String, Long> requestedAgain = new LinkedHashMap<>();
+            List<IncomingFile> verified = new ArrayList<>();
+            for (Map.Entry<String, IncomingFile> entry : transfer.files.entrySet()) {
+                IncomingFile file = entry.getValue();
+                if (file.removed || file.failed) continue;
+                String problem = verify(file);
+                if (problem == null) {
+                    verified.add(file);
+                    continue;
+                }
+                Files.deleteIfExists(file.part.toPath());
+                if (file.basis != null) failedDeltas.add(getKey(file.target));
+                if (file.requestedAgain) {
+                    file.failed = true;
+                    TimoCloudBase.getInstance().severe(problem + ", keeping the old version.");
+                    continue;
+                }
+                TimoCloudBase.getInstance().warning(problem + ", requesting it again.");
+                file.requestedAgain = true;
+                file.object = null;
+                file.basis = null;
+                file.written = 0;
+                requestedAgain.put(entry.getKey(), 0L);
+            }
+            if (!requestedAgain.isEmpty()) {
+                transfers.put(transferId, transfer);
+                requestingAgain = true;
+                return new TransferEnd(transfer.transferType, transfer.template, requestedAgain);
+            }
+            for (File directory : transfer.directories) directory.mkdirs();
+            for (IncomingFile file : transfer.files.values()) {
+                if (!file.removed) continue;
+                Files.deleteIfExists(file.part.toPath());
+                if (file.target.isFile()) Files.delete(file.target.toPath());
+            }
+            for (IncomingFile file : verified) {
+                if (file.object == null) addObject(file);
+                if (file.target.isDirectory()) FileDeleteStrategy.FORCE.deleteQuietly(file.target);
+                file.target.getParentFile().mkdirs();
+                Files.move(file.part.toPath(), file.target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                file.target.setLastModified(file.modified);
+            }
+            return new TransferEnd(transfer.transferType, transfer.template, Collections.emptyMap());
+        } finally {
+            if (!requestingAgain) setDownloading(transfer.destination, false);
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Prepares the file's partial file for being moved into the template
+     *
+     * @return Why the file cannot be used, null if it is complete and intact
+     */
+    private static String verify(IncomingFile file) throws IOException {
+        if (file.object != null) {
+            linkOrCopy(file.object, file.part);
+            file.object.setLastModified(System.currentTimeMillis());
+        } else if (file.size == 0 && !file.part.exists()) {
+            file.part.createNewFile(); // No chunks are sent for empty files
+        }
+        if (file.part.length() != file.size) {
+            return "Only received " + file.part.length() + " of " + file.size + " bytes of " + file.target.getAbsolutePath();
+        }
+        if (file.object == null && file.digest != null && !file.digest.equals(FileHashIndex.computeDigest(file.part.toPath()))) {
+            if (file.basis != null) return "File " + file.target.getAbsolutePath() + " has been reconstructed incorrectly from its delta";
+            return "File " + file.target.getAbsolutePath() + " has been received corrupted";
+        }
+        return null;
+    }
+
+    /**
+     * Called when the connection to the core has been lost. Partially received files are kept, so the transfers can be resumed.
+     */
+    public void abortTransfers() {
+        for (IncomingTransfer transfer : transfers.values()) {
+            try {
+                transfer.closeFile();
+            } catch (IOException e) {
+                TimoCloudBase.getInstance().severe(e);
+            }
+        }
+        transfers.clear();
+        cleanupCache();
+    }
+
+    /**
+     * Deletes partial files which are too old to be resumed and objects which have not been used for a while
+     */
+    private void cleanupCache() {
+        File[] parts = getPartsDirectory().listFiles();
+        if (parts != null) {
+            for (File part : parts) {
+                if (System.currentTimeMillis() - part.lastModified() > PARTIAL_FILE_LIFETIME) part.delete();
+            }
+        }
+        File[] prefixes = getObjectsDirectory().listFiles();
+        if (prefixes == null) return;
+        for (File prefix : prefixes) {
+            File[] objects = prefix.listFiles();
+            if (objects == null) continue;
+            for (File object : objects) {
+                if (isLinked(object)) continue; // Still part of a template, keeping it takes no space
+                if (System.currentTimeMillis() - object.lastModified() > OBJECT_LIFETIME) object.delete();
+            }
+            prefix.delete(); // Only succeeds if empty
+        }
+    }
+
+    /**
+     * Puts a completely received and verified file into the object store, so the same content is never transferred again, e.g. when another template contains it too
+     */
+    private void addObject(IncomingFile file) {
+        if (file.digest == null || file.size < MIN_OBJECT_SIZE) return;
+        File object = getObject(file.digest);
+        if (object.exists()) return;
+        try {
+            object.getParentFile().mkdirs();
+            File temporary = new File(object.getParentFile(), object.getName() + ".tmp");
+            linkOrCopy(file.part, temporary);
+            Files.move(temporary.toPath(), object.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            TimoCloudBase.getInstance().severe("Could not add " + file.target.getAbsolutePath() + " to the template object store: ");
+            TimoCloudBase.getInstance().severe(e);
+        }
+    }
+
+    /**
+     * Files are never changed in place once they have been moved into a template, only replaced, so the store can share their content via hard links
+     */
+    private static void linkOrCopy(File source, File target) throws IOException {
+        Files.deleteIfExists(target.toPath());
+        try {
+            Files.createLink(target.toPath(), source.toPath());
+        } catch (IOException | UnsupportedOperationException e) { // Different file systems or no hard link support
+            Files.copy(source.toPath(), target.toPath());
+        }
+    }
+
+    private static boolean isLinked(File object) {
+        try {
+            return ((Number) Files.getAttribute(object.toPath(), "unix:nlink")).intValue() > 1;
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private File getObject(String digest) {
+        if (digest == null || digest.length() < 3 || !digest.matches("[0-9a-f]+")) return null;
+        return new File(new File(getObjectsDirectory(), digest.substring(0, 2)), digest);
+    }
+
+    private File getPartsDirectory() {
+        return new File(TimoCloudBase.getInstance().getFileManager().getCacheDirectory(), "transfers/");
+    }
+
+    private File getObjectsDirectory() {
+        return new File(TimoCloudBase.getInstance().getFileManager().getCacheDirectory(), "objects/");
+    }
+
+    private static boolean isInside(File directory, File file) throws IOException {
+        return file.getCanonicalPath().startsWith(directory.getCanonicalPath() + File.separator);
+    }
+
+    /**
+     * Exclusively locks the given template directories so they can be compared with the core's hashes and cleaned up.
+     * Directories are always locked in the same order, so concurrent starts cannot deadlock.
+     */
+    public TemplateLock lockTemplates(Collection<File> directories) {
+        Map<String, File> sorted = new TreeMap<>();
+        for (File directory : directories) sorted.put(getKey(directory), directory);
+        List<ReentrantReadWriteLock> acquired = new ArrayList<>(sorted.size());
+        for (File directory : sorted.values()) {
+            ReentrantReadWriteLock lock = getLock(directory);
+            lock.writeLock().lock();
+            acquired.add(lock);
+        }
+        return new TemplateLock(acquired);
+    }
+
+    public void setDownloading(File directory, boolean downloading) {
+        if (downloading) this.downloading.put(getKey(directory), System.currentTimeMillis());
+        else this.downloading.remove(getKey(directory));
+    }
+
+    /**
+     * @return Whether an update of one of the given template directories has been requested and not been received yet
+     */
+    public boolean isDownloading(Collection<File> directories) {
+        if (downloading.isEmpty()) return false;
+        for (File directory : directories) {
+            Long requested = downloading.get(getKey(directory));
+            if (requested == null) continue;
+            if (System.currentTimeMillis() - requested < DOWNLOAD_TIMEOUT) return true;
+            downloading.remove(getKey(directory), requested);
+        }
+        return false;
+    }
+
+    private ReentrantReadWriteLock getLock(File directory) {
+        return locks.computeIfAbsent(getKey(directory), key -> new ReentrantReadWriteLock());
+    }
+
+    private static String getKey(File directory) {
+        return directory.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    private static class IncomingTransfer {
+
+        private final String transferType;
+        private final String template;
+        private final File destination;
+        private final Map<String, IncomingFile> files = new LinkedHashMap<>(); // Relative path -> file
+        private final List<File> directories = new ArrayList<>();
+        private final Map<String, Object> signatures = new LinkedHashMap<>(); // Relative path -> signature of the old version
+        private IncomingFile currentFile;
+        private FileChannel currentChannel;
+        private FileChannel currentBasis;
+
+        private IncomingTransfer(String transferType, String template, File destination) {
+            this.transferType = transferType;
+            this.template = template;
+            this.destination = destination;
+        }
+
+        private void write(String path, long offset, byte[] data) throws IOException {
+            openFile(path);
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                offset += currentChannel.write(buffer, offset);
+            }
+        }
+
+        private void applyDelta(String path, List<Object> operations) throws IOException {
+            IncomingFile file = openFile(path);
+            if (file.basis == null) throw new IOException("Received a delta of " + path + " although no signature has been sent");
+            if (currentBasis == null) currentBasis = FileChannel.open(file.basis.toPath(), StandardOpenOption.READ);
+            for (Object operation : operations) {
+                if (operation instanceof Number) {
+                    long start = ((Number) operation).longValue() * file.blockSize;
+                    long copied = 0;
+                    while (copied < file.blockSize) {
+                        long transferred = currentBasis.transferTo(start + copied, file.blockSize - copied, currentChannel);
+                        if (transferred <= 0) throw new IOException("Block " + operation + " of " + path + " does not exist");
+                        copied += transferred;
+                    }
+                    file.written += copied;
+                } else {
+                    ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode((String) operation));
+                    while (buffer.hasRemaining()) {
+                        file.written += currentChannel.write(buffer, file.written);
+                    }
+                }
+                currentChannel.position(file.written);
+            }
+        }
+
+        private void remove(String path) throws IOException {
+            IncomingFile file = files.get(path);
+            if (file == null) throw new IOException("File " + path + " has not been offered");
+            if (file == currentFile) closeFile();
+            file.removed = true;
+        }
+
+        private IncomingFile openFile(String path) throws IOException {
+            IncomingFile file = files.get(path);
+            if (file == null) throw new IOException("Received a chunk of " + path + " which has not been offered");
+            if (file != currentFile) {
+                closeFile();
+                currentChannel = FileChannel.open(file.part.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                currentFile = file;
+            }
+            return file;
+        }
+
+        private void closeFile() throws IOException {
+            if (currentBasis != null) currentBasis.close();
+            currentBasis = null;
+            if (currentChannel == null) return;
+            currentChannel.close();
+            currentChannel = null;
+            currentFile = null;
+        }
+    }
+
+    private static class IncomingFile {
+
+        private final File target;
+        private final File part;
+        private final long size;
+        private final long modified;
+        private final String digest; // SHA-256 of the new content, null if the core did not send it
+        private File object; // Object store entry with the same content, nothing has to be transferred then
+        private File basis; // Old version the delta is applied to
+        private int blockSize;
+        private long written; // Bytes of the delta applied so far
+        private boolean removed; // Deleted from the core's template after it has been offered
+        private boolean requestedAgain; // Requested again without delta after it arrived incomplete or corrupted
+        private boolean failed; // Arrived incomplete or corrupted again, the template keeps its old version
+
+        private IncomingFile(File target, File part, long size, long modified, String digest) {
+            this.target = target;
+            this.part = part;
+            this.size = size;
+            this.modified = modified;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * Result of {@link #onTransferEnd(String)}
+     */
+    public static class TransferEnd {
+
+        private final String transferType;
+        private final String template;
+        private final Map<String, Long> requestedAgain;
+
+        private TransferEnd(String transferType, String template, Map<String, Long> requestedAgain) {
+            this.transferType = transferType;
+            this.template = template;
+            this.requestedAgain = requestedAgain;
+        }
+
+        public String getTransferType() {
+            return transferType;
+        }
+
+        /**
+         * @return The template directory's name, null for global templates
+         */
+        public String getTemplate() {
+            return template;
+        }
+
+        /**
+         * @return Files which have to be sent again completely, by path, with the offsets to start at
+         */
+        public Map<String, Long> getRequestedAgain() {
+            return requestedAgain;
+        }
+
+        /**
+         * @return Whether all files have been moved into the template
+         */
+        public boolean isFinished() {
+            return requestedAgain.isEmpty();
+        }
+    }
+
+    /**
+     * Held while an instance is prepared from its templates. Starts exclusively, {@link #downgrade()} allows other starts to copy the same templates at the same time.
+     */
+    public static class TemplateLock implements AutoCloseable {
+
+        private final List<ReentrantReadWriteLock> locks;
+        private boolean shared;
+
+        private TemplateLock(List<ReentrantReadWriteLock> locks) {
+            this.locks = locks;
+        }
+
+        public void downgrade() {
+            if (shared) return;
+            for (ReentrantReadWriteLock lock : locks) {
+                lock.readLock().lock();
+                lock.writeLock().unlock();
+            }
+            shared = true;
+        }
+
+        @Override
+        public void close() {
+            for (ReentrantReadWriteLock lock : locks) {
+                if (shared) lock.readLock().unlock();
+                else lock.writeLock().unlock();
             }
-            file.getParentFile().mkdirs();
-            Files.copy(zipInputStream, file.toPath());
-            file.setLastModified(zipEntry.getTime());
-            zipInputStream.closeEntry();
         }
-        zipInputStream.close();
     }
 
 }
@@ -1,6 +1,7 @@
 package cloud.timo.TimoCloud.base.sockets;
 
 import cloud.timo.TimoCloud.base.TimoCloudBase;
+import cloud.timo.TimoCloud.common.protocol.Message;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -27,6 +28,10 @@ public class BaseSocketClientHandler extends ChannelInboundHandlerAdapter {
         if (channel != null && channel.isActive()) channel.writeAndFlush(message);
     }
 
+    public void sendMessage(Message message) {
+        if (channel != null && channel.isActive()) channel.writeAndFlush(message);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         // Close the connection when an exception is raised.
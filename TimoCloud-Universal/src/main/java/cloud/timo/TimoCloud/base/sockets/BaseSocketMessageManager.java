@@ -6,7 +6,7 @@ import cloud.timo.TimoCloud.common.protocol.Message;
 public class BaseSocketMessageManager {
 
     public void sendMessage(Message message) {
-        TimoCloudBase.getInstance().getSocketClientHandler().sendMessage(message.toJson());
+        TimoCloudBase.getInstance().getSocketClientHandler().sendMessage(message);
     }
 
 }
@@ -1,24 +1,25 @@
 package cloud.timo.TimoCloud.base.sockets;
 
 import cloud.timo.TimoCloud.base.TimoCloudBase;
+import cloud.timo.TimoCloud.base.managers.BaseTemplateManager;
 import cloud.timo.TimoCloud.base.objects.BaseProxyObject;
 import cloud.timo.TimoCloud.base.objects.BaseServerObject;
+import cloud.timo.TimoCloud.base.utils.ProcessTable;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.common.sockets.BasicStringHandler;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import org.apache.commons.io.FileDeleteStrategy;
-import oshi.SystemInfo;
-import oshi.software.os.OSProcess;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 
 @ChannelHandler.Sharable
 public class BaseStringHandler extends BasicStringHandler {
@@ -36,15 +37,33 @@ public class BaseStringHandler extends BasicStringHandler {
                 break;
             }
             case BASE_PID_EXIST_REQUEST: {
+                ProcessTable processTable = TimoCloudBase.getInstance().getResourceManager().getProcessTable();
+                if (message.containsKey("pids")) { // Batched request from the core's InstanceHealthScheduler
+                    Map<String, Object> pids = (Map<String, Object>) message.get("pids");
+                    Map<String, Boolean> running = new HashMap<>();
+                    Map<String, Object> processes = new HashMap<>();
+                    for (Map.Entry<String, Object> entry : pids.entrySet()) {
+                        int pid = ((Number) entry.getValue()).intValue();
+                        running.put(entry.getKey(), processTable.isRunning(pid));
+                        ProcessTable.ProcessStats stats = processTable.getStats(pid);
+                        if (stats != null) processes.put(entry.getKey(), Message.create()
+                                .set("rss", stats.getResidentSetSize())
+                                .set("cpuTime", stats.getCpuTime()));
+                    }
+                    TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
+                            .setType(MessageType.BASE_PID_EXIST_RESPONSE)
+                            .set("running", running)
+                            .set("processes", processes)
+                    );
+                    break;
+                }
                 String id = (String) message.get("id");
                 int pid = ((Number) message.get("pid")).intValue();
-                SystemInfo si = new SystemInfo();
-                final OSProcess process = si.getOperatingSystem().getProcess(pid);
                 TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
                         .setType(MessageType.BASE_PID_EXIST_RESPONSE)
                         .setTarget(id)
                         .set("requestedPid", pid)
-                        .set("running", Objects.nonNull(process))
+                        .set("running", processTable.isRunning(pid))
                 );
                 break;
             }
@@ -93,35 +112,118 @@ public class BaseStringHandler extends BasicStringHandler {
                 File dir = new File((String) data);
                 if (dir.exists() && dir.isDirectory()) FileDeleteStrategy.FORCE.deleteQuietly(dir);
                 break;
+            case TEMPLATE_TRANSFER_OFFER: {
+                String transferId = (String) message.get("transferId");
+                String transferType = (String) message.get("transferType");
+                String template = (String) message.get("template");
+                TimoCloudBase.getInstance().getTemplateManager().execute(() -> {
+                    try {
+                        Map<String, Long> offsets = TimoCloudBase.getInstance().getTemplateManager().onTransferOffer(transferId, transferType, template, (List<Map<String, Object>>) message.get("files"));
+                        TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
+                                .setType(MessageType.TEMPLATE_TRANSFER_ACCEPT)
+                                .setTarget(message.getTarget())
+                                .set("transferId", transferId)
+                                .set("transferType", transferType)
+                                .setIfNotNull("template", template)
+                                .set("offsets", offsets)
+                                .set("signatures", TimoCloudBase.getInstance().getTemplateManager().getSignatures(transferId)));
+                    } catch (Exception e) {
+                        TimoCloudBase.getInstance().severe("Error while preparing template transfer: ");
+                        TimoCloudBase.getInstance().severe(e);
+                    }
+                });
+                break;
+            }
+            case TEMPLATE_TRANSFER_CHUNK: { // Written on the single template thread in the order received, so the event loop never waits for the disk
+                TimoCloudBase.getInstance().getTemplateManager().execute(() -> {
+                    try {
+                        if (Boolean.TRUE.equals(message.get("removed"))) {
+                            TimoCloudBase.getInstance().getTemplateManager().onTransferFileRemoved((String) message.get("transferId"), (String) message.get("path"));
+                            return;
+                        }
+                        TimoCloudBase.getInstance().getTemplateManager().onTransferChunk(
+                                (String) message.get("transferId"),
+                                (String) message.get("path"),
+                                ((Number) message.get("offset")).longValue(),
+                                stringToByteArray((String) message.get("data")));
+                    } catch (Exception e) {
+                        TimoCloudBase.getInstance().severe("Error while writing transferred file: ");
+                        TimoCloudBase.getInstance().severe(e);
+                    }
+                });
+                break;
+            }
+            case TEMPLATE_TRANSFER_DELTA: {
+                TimoCloudBase.getInstance().getTemplateManager().execute(() -> {
+                    try {
+                        TimoCloudBase.getInstance().getTemplateManager().onTransferDelta(
+                                (String) message.get("transferId"),
+                                (String) message.get("path"),
+                                (List<Object>) message.get("operations"));
+                    } catch (Exception e) {
+                        TimoCloudBase.getInstance().severe("Error while applying transferred delta: ");
+                        TimoCloudBase.getInstance().severe(e);
+                    }
+                });
+                break;
+            }
+            case TEMPLATE_TRANSFER_END: {
+                TimoCloudBase.getInstance().getTemplateManager().execute(() -> {
+                    try {
+                        String transferId = (String) message.get("transferId");
+                        BaseTemplateManager.TransferEnd end = TimoCloudBase.getInstance().getTemplateManager().onTransferEnd(transferId);
+                        if (end == null) return;
+                        if (!end.isFinished()) { // Accepting the transfer again makes the core send these files completely, followed by another end
+                            TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
+                                    .setType(MessageType.TEMPLATE_TRANSFER_ACCEPT)
+                                    .setTarget(message.getTarget())
+                                    .set("transferId", transferId)
+                                    .set("transferType", end.getTransferType())
+                                    .setIfNotNull("template", end.getTemplate())
+                                    .set("offsets", end.getRequestedAgain())
+                                    .set("signatures", Collections.emptyMap()));
+                            return;
+                        }
+                        TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
+                                .setType(end.getTransferType().startsWith("SERVER") ? MessageType.SERVER_TRANSFER_FINISHED : MessageType.PROXY_TRANSFER_FINISHED)
+                                .setTarget(message.getTarget()));
+                    } catch (Exception e) {
+                        TimoCloudBase.getInstance().severe("Error while finishing template transfer: ");
+                        TimoCloudBase.getInstance().severe(e);
+                    }
+                });
+                break;
+            }
             case TRANSFER_TEMPLATE:
-                try {
-                    InputStream inputStream = new ByteArrayInputStream(stringToByteArray((String) message.get("file")));
-                    switch ((String) message.get("transferType")) {
-                        case "SERVER_TEMPLATE":
-                            TimoCloudBase.getInstance().getTemplateManager().extractFiles(inputStream, new File(TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory(), (String) message.get("template")));
-                            TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType(MessageType.SERVER_TRANSFER_FINISHED).setTarget(message.getTarget()));
-                            break;
-                        case "SERVER_GLOBAL_TEMPLATE":
-                            TimoCloudBase.getInstance().getTemplateManager().extractFiles(inputStream, TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory());
-                            TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType(MessageType.SERVER_TRANSFER_FINISHED).setTarget(message.getTarget()));
-                            break;
-                        case "PROXY_TEMPLATE":
-                            TimoCloudBase.getInstance().getTemplateManager().extractFiles(inputStream, new File(TimoCloudBase.getInstance().getFileManager().getProxyTemplatesDirectory(), (String) message.get("template")));
-                            TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType(MessageType.PROXY_TRANSFER_FINISHED).setTarget(message.getTarget()));
-                            break;
-                        case "PROXY_GLOBAL_TEMPLATE":
-                            TimoCloudBase.getInstance().getTemplateManager().extractFiles(inputStream, TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory());
-                            TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType(MessageType.PROXY_TRANSFER_FINISHED).setTarget(message.getTarget()));
-                            break;
+                TimoCloudBase.getInstance().getTemplateManager().execute(() -> {
+                    try {
+                        InputStream inputStream = new ByteArrayInputStream(stringToByteArray((String) message.get("file")));
+                        switch ((String) message.get("transferType")) {
+                            case "SERVER_TEMPLATE":
+                                TimoCloudBase.getInstance().getTemplateManager().extractFiles(inputStream, new File(TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory(), (String) message.get("template")));
+                                TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType(MessageType.SERVER_TRANSFER_FINISHED).setTarget(message.getTarget()));
+                                break;
+                            case "SERVER_GLOBAL_TEMPLATE":
+                                TimoCloudBase.getInstance().getTemplateManager().extractFiles(inputStream, TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory());
+                                TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType(MessageType.SERVER_TRANSFER_FINISHED).setTarget(message.getTarget()));
+                                break;
+                            case "PROXY_TEMPLATE":
+                                TimoCloudBase.getInstance().getTemplateManager().extractFiles(inputStream, new File(TimoCloudBase.getInstance().getFileManager().getProxyTemplatesDirectory(), (String) message.get("template")));
+                                TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType(MessageType.PROXY_TRANSFER_FINISHED).setTarget(message.getTarget()));
+                                break;
+                            case "PROXY_GLOBAL_TEMPLATE":
+                                TimoCloudBase.getInstance().getTemplateManager().extractFiles(inputStream, TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory());
+                                TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType(MessageType.PROXY_TRANSFER_FINISHED).setTarget(message.getTarget()));
+                                break;
+                        }
+                    } catch (Exception e) {
+                        TimoCloudBase.getInstance().severe("Error while unpacking transferred files: ");
+                        TimoCloudBase.getInstance().severe(e);
                     }
-                    TimoCloudBase.getInstance().getInstanceManager().setDownloadingTemplate(false);
-                    break;
-                } catch (Exception e) {
-                    TimoCloudBase.getInstance().severe("Error while unpacking transferred files: ");
-                    TimoCloudBase.getInstance().severe(e);
-                }
+                });
+                break;
             default:
-                TimoCloudBase.getInstance().severe("Could not categorize json message: " + originalMessage);
+                TimoCloudBase.getInstance().severe("Could not categorize message: " + message);
         }
     }
 
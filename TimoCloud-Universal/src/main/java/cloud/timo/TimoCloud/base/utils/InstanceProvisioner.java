@@ -0,0 +1,194 @@
+package cloud.timo.TimoCloud.base.utils;
+
+import cloud.timo.TimoCloud.base.TimoCloudBase;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the directories of non-static instances from their templates without copying every file.
+ * <ul>
+ * <li>REFLINK: Whole templates are cloned copy-on-write (btrfs, XFS, ...). Only blocks the instance writes to are ever materialized.</li>
+ * <li>HARDLINK: Files matching the configured patterns (jars by default) are hard linked, everything else is copied. Linked files share their
+ * content and permissions with the template, so they must not be modified in place. The base replaces template files instead of writing
+ * into them, which leaves the instances' links untouched.</li>
+ * <li>COPY: Everything is copied.</li>
+ * </ul>
+ * AUTO uses reflinks if the file system supports them and hard links otherwise.
+ */
+public class InstanceProvisioner {
+
+    private static final long REFLINK_TIMEOUT = 60; // Seconds
+
+    public enum Mode {
+        AUTO, REFLINK, HARDLINK, COPY
+    }
+
+    private final Mode mode;
+    private final List<PathMatcher> linkPatterns;
+    private final Map<FileStore, Boolean> reflinkSupport = new ConcurrentHashMap<>();
+
+    public InstanceProvisioner(Mode mode, Collection<String> linkPatterns) {
+        this.mode = mode;
+        this.linkPatterns = new ArrayList<>();
+        for (String pattern : linkPatterns) this.linkPatterns.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+    }
+
+    /**
+     * Puts the content of the given template directory into the instance directory, replacing files which already exist
+     */
+    public void provisionDirectory(File from, File to, Statistics statistics) throws IOException {
+        if (!from.isDirectory()) return;
+        to.mkdirs();
+        if (mode != Mode.COPY && mode != Mode.HARDLINK && isReflinkSupported(to) && isSameFileStore(from, to)) {
+            reflinkDirectory(from, to, statistics);
+            return;
+        }
+        Path source = from.toPath();
+        Path target = to.toPath();
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(directory).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                provisionFile(file.toFile(), target.resolve(source.relativize(file).toString()).toFile(), statistics);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Puts a single file into an instance directory, hard linking it if it may be shared
+     */
+    public void provisionFile(File from, File to, Statistics statistics) throws IOException {
+        if (to.isDirectory()) FileUtils.deleteDirectory(to);
+        Files.deleteIfExists(to.toPath());
+        if ((mode == Mode.AUTO || mode == Mode.HARDLINK) && isLinkable(from)) {
+            try {
+                Files.createLink(to.toPath(), from.toPath());
+                statistics.linkedFiles++;
+                statistics.linkedBytes += from.length();
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                // Different file systems or no hard link support, copy instead
+            }
+        }
+        Files.copy(from.toPath(), to.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+        statistics.copiedFiles++;
+        statistics.copiedBytes += from.length();
+    }
+
+    private boolean isLinkable(File file) {
+        Path name = file.toPath().getFileName();
+        for (PathMatcher pattern : linkPatterns) {
+            if (pattern.matches(name)) return true;
+        }
+        return false;
+    }
+
+    private void reflinkDirectory(File from, File to, Statistics statistics) throws IOException {
+        String output = run("cp", "-R", "--reflink=always", "--preserve=timestamps", from.getAbsolutePath() + "/.", to.getAbsolutePath());
+        if (output != null) throw new IOException("Could not clone " + from.getAbsolutePath() + " to " + to.getAbsolutePath() + ": " + output.trim());
+        statistics.linkedBytes += FileUtils.sizeOfDirectory(from);
+    }
+
+    /**
+     * Runs the command with its output written to a temporary file, so that it can never block on a full pipe
+     *
+     * @return Null if the command succeeded, its output otherwise
+     */
+    private static String run(String... command) throws IOException {
+        File output = File.createTempFile("timocloud-cp", ".log");
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(output).start();
+            try {
+                if (!process.waitFor(REFLINK_TIMEOUT, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                    return "Timed out";
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while running " + command[0]);
+            }
+            return process.exitValue() == 0 ? null : new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+        } finally {
+            output.delete();
+        }
+    }
+
+    /**
+     * Tries to clone a small file once per file system to find out whether reflinks are supported
+     */
+    private boolean isReflinkSupported(File directory) {
+        try {
+            FileStore fileStore = Files.getFileStore(directory.toPath());
+            return reflinkSupport.computeIfAbsent(fileStore, store -> probeReflink(directory));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean probeReflink(File directory) {
+        File probe = new File(directory.getParentFile(), ".reflink-probe");
+        File clone = new File(directory.getParentFile(), ".reflink-probe-clone");
+        try {
+            Files.write(probe.toPath(), new byte[]{0});
+            boolean supported = run("cp", "--reflink=always", probe.getAbsolutePath(), clone.getAbsolutePath()) == null;
+            TimoCloudBase.getInstance().info("Reflinks are " + (supported ? "" : "not ") + "supported in " + directory.getParentFile().getAbsolutePath()
+                    + (supported ? ", templates will be cloned copy-on-write." : "."));
+            return supported;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            probe.delete();
+            clone.delete();
+        }
+    }
+
+    private static boolean isSameFileStore(File a, File b) {
+        try {
+            return Files.getFileStore(a.toPath()).equals(Files.getFileStore(b.toPath()));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * What has been done to create one instance directory
+     */
+    public static class Statistics {
+
+        private final long started = System.currentTimeMillis();
+        private long copiedFiles;
+        private long copiedBytes;
+        private long linkedFiles;
+        private long linkedBytes;
+
+        public long getCopiedBytes() {
+            return copiedBytes;
+        }
+
+        public long getLinkedBytes() {
+            return linkedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return (System.currentTimeMillis() - started) + "ms, " + FileUtils.byteCountToDisplaySize(copiedBytes) + " written in " + copiedFiles + " files, "
+                    + FileUtils.byteCountToDisplaySize(linkedBytes) + " shared with templates";
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+package cloud.timo.TimoCloud.base.utils;
+
+import oshi.SystemInfo;
+import oshi.software.os.OSProcess;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot of the processes running on this machine, taken with a single scan of /proc (or one OSHI query on other systems).
+ * Resource usage of a process is read lazily and remembered for the lifetime of the snapshot.
+ */
+public class ProcessTable {
+
+    private static final File PROC_DIRECTORY = new File("/proc");
+    private static final long DEFAULT_CLOCK_TICKS_PER_SECOND = 100; // USER_HZ on all common Linux platforms
+    private static final long CLOCK_TICKS_PER_SECOND = PROC_DIRECTORY.isDirectory() ? readClockTicksPerSecond() : DEFAULT_CLOCK_TICKS_PER_SECOND;
+
+    private final long created;
+    private final Map<Integer, ProcessStats> processes; // Values are null until requested on Linux
+
+    private ProcessTable(long created, Map<Integer, ProcessStats> processes) {
+        this.created = created;
+        this.processes = processes;
+    }
+
+    public static ProcessTable scan(SystemInfo systemInfo) {
+        Map<Integer, ProcessStats> processes = new HashMap<>();
+        String[] entries = PROC_DIRECTORY.isDirectory() ? PROC_DIRECTORY.list() : null;
+        if (entries != null) {
+            for (String entry : entries) {
+                if (entry.isEmpty() || ! Character.isDigit(entry.charAt(0))) continue;
+                try {
+                    processes.put(Integer.parseInt(entry), null);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        } else {
+            List<OSProcess> osProcesses = systemInfo.getOperatingSystem().getProcesses();
+            for (OSProcess process : osProcesses) {
+                processes.put(process.getProcessID(), new ProcessStats(process.getResidentSetSize(), process.getKernelTime() + process.getUserTime()));
+            }
+        }
+        return new ProcessTable(System.currentTimeMillis(), processes);
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public boolean isRunning(int pid) {
+        return processes.containsKey(pid);
+    }
+
+    /**
+     * @return The process' resource usage, or null if the process is not running or its usage could not be determined
+     */
+    public synchronized ProcessStats getStats(int pid) {
+        if (! processes.containsKey(pid)) return null;
+        ProcessStats stats = processes.get(pid);
+        if (stats == null) {
+            stats = readProcStats(pid);
+            if (stats != null) processes.put(pid, stats);
+        }
+        return stats;
+    }
+
+    private static ProcessStats readProcStats(int pid) {
+        try {
+            File directory = new File(PROC_DIRECTORY, String.valueOf(pid));
+            String stat = new String(Files.readAllBytes(new File(directory, "stat").toPath()), StandardCharsets.US_ASCII);
+            List<String> status = Files.readAllLines(new File(directory, "status").toPath(), StandardCharsets.US_ASCII);
+            return new ProcessStats(parseResidentSetSize(status), parseCpuTicks(stat) * 1000 / CLOCK_TICKS_PER_SECOND);
+        } catch (IOException | RuntimeException e) { // Process exited in the meantime
+            return null;
+        }
+    }
+
+    /**
+     * @param stat Content of /proc/[pid]/stat
+     * @return User and kernel CPU time in clock ticks
+     */
+    static long parseCpuTicks(String stat) {
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).trim().split(" "); // The command name may contain spaces, fields[0] is field 3 (state)
+        return Long.parseLong(fields[11]) + Long.parseLong(fields[12]); // utime + stime
+    }
+
+    /**
+     * @param status Lines of /proc/[pid]/status
+     * @return Resident set size in bytes, 0 if not listed (e.g. for zombie processes)
+     */
+    static long parseResidentSetSize(List<String> status) {
+        for (String line : status) {
+            if (! line.startsWith("VmRSS:")) continue;
+            return Long.parseLong(line.substring("VmRSS:".length()).replace("kB", "").trim()) * 1024;
+        }
+        return 0;
+    }
+
+    /**
+     * USER_HZ, the unit of the CPU times in /proc, as reported by {@code getconf CLK_TCK}
+     */
+    private static long readClockTicksPerSecond() {
+        try {
+            Process process = new ProcessBuilder("getconf", "CLK_TCK").redirectErrorStream(true).start();
+            String line;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.US_ASCII))) {
+                line = reader.readLine();
+            }
+            if (process.waitFor(5, TimeUnit.SECONDS) && process.exitValue() == 0 && line != null) {
+                long ticks = Long.parseLong(line.trim());
+                if (ticks > 0) return ticks;
+            }
+        } catch (Exception ignored) { // getconf is not available, use the usual value
+        }
+        return DEFAULT_CLOCK_TICKS_PER_SECOND;
+    }
+
+    public static class ProcessStats {
+
+        private final long residentSetSize;
+        private final long cpuTime;
+
+        public ProcessStats(long residentSetSize, long cpuTime) {
+            this.residentSetSize = residentSetSize;
+            this.cpuTime = cpuTime;
+        }
+
+        /**
+         * @return Resident set size in bytes
+         */
+        public long getResidentSetSize() {
+            return residentSetSize;
+        }
+
+        /**
+         * @return User and kernel CPU time in milliseconds
+         */
+        public long getCpuTime() {
+            return cpuTime;
+        }
+    }
+
+}
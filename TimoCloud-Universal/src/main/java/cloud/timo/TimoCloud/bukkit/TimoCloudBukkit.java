@@ -2,9 +2,12 @@ package cloud.timo.TimoCloud.bukkit;
 
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
+import cloud.timo.TimoCloud.api.implementations.async.APIRequestBatcher;
+import cloud.timo.TimoCloud.api.implementations.async.APIRequestImplementation;
 import cloud.timo.TimoCloud.api.implementations.internal.TimoCloudInternalImplementationAPIBasicImplementation;
 import cloud.timo.TimoCloud.api.implementations.managers.APIResponseManager;
 import cloud.timo.TimoCloud.api.implementations.managers.EventManager;
+import cloud.timo.TimoCloud.api.implementations.managers.LogSubscriptionManager;
 import cloud.timo.TimoCloud.api.utils.APIInstanceUtil;
 import cloud.timo.TimoCloud.bukkit.api.TimoCloudBukkitAPIImplementation;
 import cloud.timo.TimoCloud.bukkit.api.TimoCloudInternalMessageAPIBukkitImplementation;
@@ -20,19 +23,23 @@ import cloud.timo.TimoCloud.bukkit.sockets.BukkitSocketClient;
 import cloud.timo.TimoCloud.bukkit.sockets.BukkitSocketClientHandler;
 import cloud.timo.TimoCloud.bukkit.sockets.BukkitSocketMessageManager;
 import cloud.timo.TimoCloud.bukkit.sockets.BukkitStringHandler;
+import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyPairRetriever;
 import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
+import cloud.timo.TimoCloud.common.log.LogShipper;
 import cloud.timo.TimoCloud.common.log.utils.LogInjectionUtil;
+import cloud.timo.TimoCloud.common.protocol.BinaryMessageCodec;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.common.sockets.AESDecrypter;
 import cloud.timo.TimoCloud.common.sockets.AESEncrypter;
+import cloud.timo.TimoCloud.common.sockets.MessageDecoder;
+import cloud.timo.TimoCloud.common.sockets.MessageEncoder;
 import cloud.timo.TimoCloud.common.sockets.RSAHandshakeHandler;
 import cloud.timo.TimoCloud.common.utils.network.InetAddressUtil;
 import com.google.common.io.ByteArrayDataOutput;
 import com.google.common.io.ByteStreams;
 import io.netty.channel.Channel;
-import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
 import io.netty.util.CharsetUtil;
 import org.bukkit.Bukkit;
@@ -58,6 +65,7 @@ public class TimoCloudBukkit extends JavaPlugin implements TimoCloudLogger {
     private BukkitStringHandler stringHandler;
     private SignManager signManager;
     private StateByEventManager stateByEventManager;
+    private LogShipper logShipper;
     private String prefix = "[TimoCloud] ";
     private boolean enabled = false;
     private boolean disabling = false;
@@ -129,6 +137,7 @@ public class TimoCloudBukkit extends JavaPlugin implements TimoCloudLogger {
     public void onDisable() {
         this.disabling = true;
         info("&chas been disabled!");
+        if (logShipper != null) logShipper.flush();
     }
 
     // Run asynchronously because this thread will stay alive until the connection is closed
@@ -154,12 +163,13 @@ public class TimoCloudBukkit extends JavaPlugin implements TimoCloudLogger {
             KeyPair keyPair = new RSAKeyPairRetriever(new File(getFileManager().getBaseDirectory(), "/keys/")).getKeyPair();
             new RSAHandshakeHandler(channel, keyPair, (aesKey -> {
                 channel.pipeline().addBefore("prepender", "decrypter", new AESDecrypter(aesKey));
-                channel.pipeline().addBefore("prepender", "decoder", new StringDecoder(CharsetUtil.UTF_8));
+                channel.pipeline().addBefore("prepender", "decoder", new MessageDecoder());
                 channel.pipeline().addBefore("prepender", "handler", getStringHandler());
                 channel.pipeline().addLast("encrypter", new AESEncrypter(aesKey));
                 channel.pipeline().addLast("encoder", new StringEncoder(CharsetUtil.UTF_8));
+                channel.pipeline().addLast("messageEncoder", new MessageEncoder());
 
-                getSocketMessageManager().sendMessage(Message.create().setType(MessageType.SERVER_HANDSHAKE).setTarget(getServerId()));
+                getSocketMessageManager().sendMessage(Message.create().setType(MessageType.SERVER_HANDSHAKE).setTarget(getServerId()).set("codec", BinaryMessageCodec.NAME).set("cipher", AESEncryptionUtil.GCM_NAME).set("batchedFrames", true));
             })).startHandshake();
         } catch (Exception e) {
             severe("Error during public key authentification, please report this!");
@@ -178,10 +188,9 @@ public class TimoCloudBukkit extends JavaPlugin implements TimoCloudLogger {
     }
 
     public void onHandshakeSuccess() {
-        LogInjectionUtil.injectSystemOutAndErr(logEntry ->
-                getSocketMessageManager().sendMessage(Message.create()
-                        .setType(MessageType.SERVER_LOG_ENTRY)
-                        .setData(logEntry)));
+        logShipper = new LogShipper(MessageType.SERVER_LOG_ENTRIES, null, message -> getSocketMessageManager().sendMessage(message),
+                LogShipper.DEFAULT_LINES_PER_SECOND, LogShipper.DEFAULT_INTERVAL);
+        LogInjectionUtil.injectSystemOutAndErr(logShipper);
         requestApiData();
         doEverySecond();
     }
@@ -209,6 +218,8 @@ public class TimoCloudBukkit extends JavaPlugin implements TimoCloudLogger {
         APIInstanceUtil.setMessageInstance(new TimoCloudMessageAPIBukkitImplementation());
         APIInstanceUtil.setInternalImplementationAPIInstance(new TimoCloudInternalImplementationAPIBasicImplementation());
         TimoCloudAPI.getMessageAPI().registerMessageListener(new APIResponseManager(), "TIMOCLOUD_API_RESPONSE");
+        TimoCloudAPI.getMessageAPI().registerMessageListener(new LogSubscriptionManager(), "TIMOCLOUD_LOG_ENTRIES");
+        APIRequestImplementation.setBatcher(new APIRequestBatcher(Long.getLong("timocloud-api-batch-window", 20)));
     }
 
     //Check if running on version 1.13 or above by accessing a material only available since 1.13
@@ -299,7 +310,7 @@ public class TimoCloudBukkit extends JavaPlugin implements TimoCloudLogger {
     }
 
     private void requestApiData() {
-        getSocketMessageManager().sendMessage(Message.create().setType(MessageType.GET_API_DATA));
+        getSocketMessageManager().sendMessage(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).createDataRequest());
     }
 
     private void sendMotds() {
@@ -6,6 +6,6 @@ import cloud.timo.TimoCloud.common.protocol.Message;
 public class BukkitSocketMessageManager {
 
     public void sendMessage(Message message) {
-        TimoCloudBukkit.getInstance().getSocketClientHandler().sendMessage(message.toJson());
+        TimoCloudBukkit.getInstance().getSocketClientHandler().sendMessage(message);
     }
 }
@@ -1,22 +1,19 @@
 package cloud.timo.TimoCloud.bukkit.sockets;
 
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
-import cloud.timo.TimoCloud.api.events.EventType;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudMessageAPIBasicImplementation;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
-import cloud.timo.TimoCloud.api.implementations.managers.EventManager;
+import cloud.timo.TimoCloud.api.implementations.managers.APIResponseManager;
 import cloud.timo.TimoCloud.api.messages.objects.AddressedPluginMessage;
-import cloud.timo.TimoCloud.api.utils.EventUtil;
 import cloud.timo.TimoCloud.bukkit.TimoCloudBukkit;
-import cloud.timo.TimoCloud.bukkit.api.TimoCloudUniversalAPIBukkitImplementation;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.common.sockets.BasicStringHandler;
-import cloud.timo.TimoCloud.common.utils.EnumUtil;
 import cloud.timo.TimoCloud.common.utils.PluginMessageSerializer;
 import io.netty.channel.Channel;
 import org.bukkit.Bukkit;
 
+import java.util.Collection;
 import java.util.Map;
 
 public class BukkitStringHandler extends BasicStringHandler {
@@ -34,12 +31,16 @@ public class BukkitStringHandler extends BasicStringHandler {
                 TimoCloudBukkit.getInstance().onHandshakeSuccess();
                 break;
             case API_DATA:
-                ((TimoCloudUniversalAPIBukkitImplementation) TimoCloudAPI.getUniversalAPI()).setData((Map<String, Object>) data);
+                try {
+                    ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).onData(message);
+                } catch (Exception e) {
+                    System.err.println("Error while parsing API data: ");
+                    TimoCloudBukkit.getInstance().severe(e);
+                }
                 break;
             case EVENT_FIRED:
                 try {
-                    EventType eventType = EnumUtil.valueOf(EventType.class, (String) message.get("eT"));
-                    ((EventManager) TimoCloudAPI.getEventAPI()).callEvent(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper().readValue((String) data, EventUtil.getClassByEventType(eventType)));
+                    ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).onEventFired(message);
                 } catch (Exception e) {
                     System.err.println("Error while parsing event from json: ");
                     TimoCloudBukkit.getInstance().severe(e);
@@ -53,6 +54,9 @@ public class BukkitStringHandler extends BasicStringHandler {
                 ((TimoCloudMessageAPIBasicImplementation) TimoCloudAPI.getMessageAPI()).onMessage(addressedPluginMessage);
                 break;
             }
+            case API_RESPONSES:
+                APIResponseManager.onResponses((Collection<?>) message.get("responses"));
+                break;
             case SERVER_STOP: {
                 TimoCloudBukkit.getInstance().stop();
                 break;
@@ -4,9 +4,12 @@ package cloud.timo.TimoCloud.bungeecord;
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudBungeeAPIImplementation;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
+import cloud.timo.TimoCloud.api.implementations.async.APIRequestBatcher;
+import cloud.timo.TimoCloud.api.implementations.async.APIRequestImplementation;
 import cloud.timo.TimoCloud.api.implementations.internal.TimoCloudInternalImplementationAPIBasicImplementation;
 import cloud.timo.TimoCloud.api.implementations.managers.APIResponseManager;
 import cloud.timo.TimoCloud.api.implementations.managers.EventManager;
+import cloud.timo.TimoCloud.api.implementations.managers.LogSubscriptionManager;
 import cloud.timo.TimoCloud.api.utils.APIInstanceUtil;
 import cloud.timo.TimoCloud.bungeecord.api.*;
 import cloud.timo.TimoCloud.bungeecord.commands.FindCommand;
@@ -20,17 +23,21 @@ import cloud.timo.TimoCloud.bungeecord.sockets.BungeeSocketClient;
 import cloud.timo.TimoCloud.bungeecord.sockets.BungeeSocketClientHandler;
 import cloud.timo.TimoCloud.bungeecord.sockets.BungeeSocketMessageManager;
 import cloud.timo.TimoCloud.bungeecord.sockets.BungeeStringHandler;
+import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyPairRetriever;
 import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
+import cloud.timo.TimoCloud.common.log.LogShipper;
 import cloud.timo.TimoCloud.common.log.utils.LogInjectionUtil;
 import cloud.timo.TimoCloud.common.manager.LobbyManager;
+import cloud.timo.TimoCloud.common.protocol.BinaryMessageCodec;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.common.sockets.AESDecrypter;
 import cloud.timo.TimoCloud.common.sockets.AESEncrypter;
+import cloud.timo.TimoCloud.common.sockets.MessageDecoder;
+import cloud.timo.TimoCloud.common.sockets.MessageEncoder;
 import cloud.timo.TimoCloud.common.sockets.RSAHandshakeHandler;
 import io.netty.channel.Channel;
-import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
 import io.netty.util.CharsetUtil;
 import net.md_5.bungee.api.ChatColor;
@@ -54,6 +61,7 @@ public class TimoCloudBungee extends Plugin implements TimoCloudLogger {
     private BungeeSocketMessageManager socketMessageManager;
     private BungeeStringHandler bungeeStringHandler;
     private TimoCloudCommand timoCloudCommand;
+    private LogShipper logShipper;
     private String prefix;
     private boolean shuttingDown = false;
 
@@ -99,6 +107,7 @@ public class TimoCloudBungee extends Plugin implements TimoCloudLogger {
     public void onDisable() {
         setShuttingDown(true);
         info("&cSuccessfully stopped TimoCloudBungee!");
+        if (logShipper != null) logShipper.flush();
     }
 
     private void makeInstances() throws Exception {
@@ -120,6 +129,8 @@ public class TimoCloudBungee extends Plugin implements TimoCloudLogger {
         APIInstanceUtil.setMessageInstance(new TimoCloudMessageAPIBungeeImplementation());
         APIInstanceUtil.setInternalImplementationAPIInstance(new TimoCloudInternalImplementationAPIBasicImplementation());
         TimoCloudAPI.getMessageAPI().registerMessageListener(new APIResponseManager(), "TIMOCLOUD_API_RESPONSE");
+        TimoCloudAPI.getMessageAPI().registerMessageListener(new LogSubscriptionManager(), "TIMOCLOUD_LOG_ENTRIES");
+        APIRequestImplementation.setBatcher(new APIRequestBatcher(Long.getLong("timocloud-api-batch-window", 20)));
     }
 
     private void registerCommands() {
@@ -161,12 +172,13 @@ public class TimoCloudBungee extends Plugin implements TimoCloudLogger {
             KeyPair keyPair = new RSAKeyPairRetriever(new File(getFileManager().getBaseDirectory(), "/keys/")).getKeyPair();
             new RSAHandshakeHandler(channel, keyPair, (aesKey -> {
                 channel.pipeline().addBefore("prepender", "decrypter", new AESDecrypter(aesKey));
-                channel.pipeline().addBefore("prepender", "decoder", new StringDecoder(CharsetUtil.UTF_8));
+                channel.pipeline().addBefore("prepender", "decoder", new MessageDecoder());
                 channel.pipeline().addBefore("prepender", "handler", getBungeeStringHandler());
                 channel.pipeline().addLast("encrypter", new AESEncrypter(aesKey));
                 channel.pipeline().addLast("encoder", new StringEncoder(CharsetUtil.UTF_8));
+                channel.pipeline().addLast("messageEncoder", new MessageEncoder());
 
-                getSocketMessageManager().sendMessage(Message.create().setType(MessageType.PROXY_HANDSHAKE).setTarget(getProxyId()));
+                getSocketMessageManager().sendMessage(Message.create().setType(MessageType.PROXY_HANDSHAKE).setTarget(getProxyId()).set("codec", BinaryMessageCodec.NAME).set("cipher", AESEncryptionUtil.GCM_NAME).set("batchedFrames", true));
             })).startHandshake();
         } catch (Exception e) {
             severe("Error during public key authentification, please report this!");
@@ -181,11 +193,9 @@ public class TimoCloudBungee extends Plugin implements TimoCloudLogger {
     }
 
     public void onHandshakeSuccess() {
-        LogInjectionUtil.injectSystemOutAndErr(logEntry ->
-                getSocketMessageManager().sendMessage(Message.create()
-                        .setType(MessageType.PROXY_LOG_ENTRY)
-                        .setData(logEntry))
-        );
+        logShipper = new LogShipper(MessageType.PROXY_LOG_ENTRIES, null, message -> getSocketMessageManager().sendMessage(message),
+                LogShipper.DEFAULT_LINES_PER_SECOND, LogShipper.DEFAULT_INTERVAL);
+        LogInjectionUtil.injectSystemOutAndErr(logShipper);
         requestApiData();
         everySecond();
     }
@@ -200,7 +210,7 @@ public class TimoCloudBungee extends Plugin implements TimoCloudLogger {
     }
 
     private void requestApiData() {
-        getSocketMessageManager().sendMessage(Message.create().setType(MessageType.GET_API_DATA));
+        getSocketMessageManager().sendMessage(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).createDataRequest());
     }
 
     private void sendEverything() {
@@ -6,7 +6,7 @@ import cloud.timo.TimoCloud.common.protocol.Message;
 public class BungeeSocketMessageManager {
 
     public void sendMessage(Message message) {
-        TimoCloudBungee.getInstance().getSocketClientHandler().sendMessage(message.toJson());
+        TimoCloudBungee.getInstance().getSocketClientHandler().sendMessage(message);
     }
 
 }
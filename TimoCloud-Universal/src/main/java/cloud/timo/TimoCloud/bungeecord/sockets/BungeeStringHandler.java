@@ -1,18 +1,14 @@
 package cloud.timo.TimoCloud.bungeecord.sockets;
 
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
-import cloud.timo.TimoCloud.api.events.EventType;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudMessageAPIBasicImplementation;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
-import cloud.timo.TimoCloud.api.implementations.managers.EventManager;
+import cloud.timo.TimoCloud.api.implementations.managers.APIResponseManager;
 import cloud.timo.TimoCloud.api.messages.objects.AddressedPluginMessage;
-import cloud.timo.TimoCloud.api.utils.EventUtil;
 import cloud.timo.TimoCloud.bungeecord.TimoCloudBungee;
-import cloud.timo.TimoCloud.bungeecord.api.TimoCloudUniversalAPIBungeeImplementation;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.common.sockets.BasicStringHandler;
-import cloud.timo.TimoCloud.common.utils.EnumUtil;
 import cloud.timo.TimoCloud.common.utils.PluginMessageSerializer;
 import cloud.timo.TimoCloud.common.utils.network.InetAddressUtil;
 import io.netty.channel.Channel;
@@ -21,6 +17,7 @@ import net.md_5.bungee.api.connection.ProxiedPlayer;
 import net.md_5.bungee.chat.ComponentSerializer;
 
 import java.net.InetSocketAddress;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
@@ -41,12 +38,16 @@ public class BungeeStringHandler extends BasicStringHandler {
                 TimoCloudBungee.getInstance().onHandshakeSuccess();
                 break;
             case API_DATA:
-                ((TimoCloudUniversalAPIBungeeImplementation) TimoCloudAPI.getUniversalAPI()).setData((Map<String, Object>) data);
+                try {
+                    ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).onData(message);
+                } catch (Exception e) {
+                    System.err.println("Error while parsing API data: ");
+                    TimoCloudBungee.getInstance().severe(e);
+                }
                 break;
             case EVENT_FIRED:
                 try {
-                    EventType eventType = EnumUtil.valueOf(EventType.class, (String) message.get("eT"));
-                    ((EventManager) TimoCloudAPI.getEventAPI()).callEvent(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper().readValue((String) data, EventUtil.getClassByEventType(eventType)));
+                    ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).onEventFired(message);
                 } catch (Exception e) {
                     System.err.println("Error while parsing event from json: ");
                     TimoCloudBungee.getInstance().severe(e);
@@ -103,6 +104,9 @@ public class BungeeStringHandler extends BasicStringHandler {
                 ((TimoCloudMessageAPIBasicImplementation) TimoCloudAPI.getMessageAPI()).onMessage(addressedPluginMessage);
                 break;
             }
+            case API_RESPONSES:
+                APIResponseManager.onResponses((Collection<?>) message.get("responses"));
+                break;
             case PROXY_STOP: {
                 TimoCloudBungee.getInstance().stop();
                 break;
@@ -0,0 +1,103 @@
+package cloud.timo.TimoCloud.common.encryption;
+
+import io.netty.buffer.ByteBuf;
+
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * Holds one initialized {@link Cipher} for one direction of a channel and encrypts {@link ByteBuf}s without intermediate arrays.
+ * Not thread-safe, it is meant to be used from the channel's event loop only.
+ * <p>
+ * Frame layout: IV (CBC) or nonce (GCM) followed by the cipher text (including the authentication tag in GCM mode).
+ */
+public class AESCipher {
+
+    private final SecretKey key;
+    private final SecureRandom random;
+    private final byte[] iv;
+    private Cipher cipher;
+    private volatile boolean gcm;
+    private int noncePrefix;
+    private long nonceCounter;
+
+    public AESCipher(SecretKey key) throws GeneralSecurityException {
+        this.key = key;
+        this.random = new SecureRandom();
+        this.iv = new byte[AESEncryptionUtil.IV_LENGTH];
+        this.cipher = AESEncryptionUtil.createCipher(false);
+    }
+
+    /**
+     * Switches to AES-GCM. Nonces consist of a random prefix and a counter, so they never repeat for this cipher.
+     *
+     * @param initiator Whether this side initiated the switch. Both directions share the same key, so the highest prefix bit keeps their nonces apart.
+     */
+    public void enableGcm(boolean initiator) throws GeneralSecurityException {
+        cipher = AESEncryptionUtil.createCipher(true);
+        noncePrefix = initiator ? random.nextInt() | 0x80000000 : random.nextInt() & 0x7FFFFFFF;
+        nonceCounter = 0;
+        gcm = true;
+    }
+
+    public boolean isGcm() {
+        return gcm;
+    }
+
+    private int getIvLength() {
+        return gcm ? AESEncryptionUtil.GCM_NONCE_LENGTH : AESEncryptionUtil.IV_LENGTH;
+    }
+
+    /**
+     * @return The maximum number of bytes an encrypted frame of the given plain text length takes
+     */
+    public int getEncryptedLength(int length) {
+        return getIvLength() + (gcm ? length + AESEncryptionUtil.GCM_TAG_LENGTH / 8 : (length / 16 + 1) * 16);
+    }
+
+    public void encrypt(ByteBuf in, ByteBuf out) throws GeneralSecurityException {
+        int ivLength = getIvLength();
+        if (gcm) {
+            writeNonce();
+        } else {
+            random.nextBytes(iv);
+        }
+        cipher.init(Cipher.ENCRYPT_MODE, key, AESEncryptionUtil.createParameterSpec(gcm, iv));
+        out.writeBytes(iv, 0, ivLength);
+        doFinal(in, out);
+    }
+
+    public void decrypt(ByteBuf in, ByteBuf out) throws GeneralSecurityException {
+        int ivLength = getIvLength();
+        if (in.readableBytes() < ivLength) throw new IllegalBlockSizeException("Frame is shorter than the initialization vector");
+        in.readBytes(iv, 0, ivLength);
+        cipher.init(Cipher.DECRYPT_MODE, key, AESEncryptionUtil.createParameterSpec(gcm, iv));
+        doFinal(in, out);
+    }
+
+    private void doFinal(ByteBuf in, ByteBuf out) throws GeneralSecurityException {
+        int length = in.readableBytes();
+        out.ensureWritable(cipher.getOutputSize(length));
+        ByteBuffer inBuffer = in.nioBuffer(in.readerIndex(), length);
+        ByteBuffer outBuffer = out.nioBuffer(out.writerIndex(), out.writableBytes());
+        int written = cipher.doFinal(inBuffer, outBuffer);
+        in.skipBytes(length);
+        out.writerIndex(out.writerIndex() + written);
+    }
+
+    private void writeNonce() {
+        long counter = nonceCounter++;
+        iv[0] = (byte) (noncePrefix >>> 24);
+        iv[1] = (byte) (noncePrefix >>> 16);
+        iv[2] = (byte) (noncePrefix >>> 8);
+        iv[3] = (byte) noncePrefix;
+        for (int i = 0; i < 8; i++) {
+            iv[4 + i] = (byte) (counter >>> (56 - 8 * i));
+        }
+    }
+
+}
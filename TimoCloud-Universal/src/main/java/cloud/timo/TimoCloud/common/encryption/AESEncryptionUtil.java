@@ -5,14 +5,24 @@ import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
 
 public class AESEncryptionUtil {
 
     private static final String CIPHER_IDENTIFIER = "AES/CBC/PKCS5PADDING";
-    private static final int IV_LENGTH = 16;
+    private static final String GCM_CIPHER_IDENTIFIER = "AES/GCM/NoPadding";
+    /**
+     * Name used to negotiate AES-GCM after the handshake
+     */
+    public static final String GCM_NAME = "gcm";
+    static final int IV_LENGTH = 16;
+    static final int GCM_NONCE_LENGTH = 12;
+    static final int GCM_TAG_LENGTH = 128;
     private static final int AES_KEY_LENGTH = 128;
 
     private static byte[] generateInitVector() {
@@ -21,6 +31,14 @@ public class AESEncryptionUtil {
         return iv;
     }
 
+    static Cipher createCipher(boolean gcm) throws GeneralSecurityException {
+        return Cipher.getInstance(gcm ? GCM_CIPHER_IDENTIFIER : CIPHER_IDENTIFIER);
+    }
+
+    static AlgorithmParameterSpec createParameterSpec(boolean gcm, byte[] iv) {
+        return gcm ? new GCMParameterSpec(GCM_TAG_LENGTH, iv, 0, GCM_NONCE_LENGTH) : new IvParameterSpec(iv, 0, IV_LENGTH);
+    }
+
     public static SecretKey generateAESKey() {
         try {
             KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
@@ -2,20 +2,11 @@ package cloud.timo.TimoCloud.common.log;
 
 import cloud.timo.TimoCloud.api.objects.log.LogLevel;
 
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class LogEntryReader implements Consumer<String> {
 
     private static final LogLevel FALLBACK_LOG_LEVEL = LogLevel.INFO;
-    private static final Pattern LOG_LEVEL_SEARCH_PATTERN = Pattern.compile("\\[(.*?)]");
-    private static final Pattern PREFIX_SEARCH_PATTERN = Pattern.compile("(^.*?\\[.*?] ?(\\[.*?])?:? ?)");
-
-    private static Map<String, LogLevel> determinedLogLevels = new HashMap<>();
 
     private Consumer<LogEntry> logEntryConsumer;
     private LogLevel defaultLogLevel;
@@ -31,53 +22,30 @@ public class LogEntryReader implements Consumer<String> {
 
     @Override
     public void accept(String message) {
-        LogLevel logLevel = getLogLevel(message);
-        Matcher prefixMatcher = PREFIX_SEARCH_PATTERN.matcher(message);
-        String prefix = prefixMatcher.find() ? prefixMatcher.group() : "";
-        String strippedMessage = stripBrackets(message);
-        long timestamp = new Date().getTime();
-        long nanoTime = System.nanoTime();
-        LogEntry logEntry = new LogEntry(nanoTime, timestamp, logLevel, strippedMessage, prefix);
-        logEntryConsumer.accept(logEntry);
+        logEntryConsumer.accept(read(message));
+    }
+
+    LogEntry read(String message) {
+        long parsed = LogLineParser.parse(message, 0, message.length());
+        int prefixEnd = LogLineParser.getPrefixEnd(parsed);
+        String prefix = message.substring(0, prefixEnd);
+        String strippedMessage = trim(message, prefixEnd, message.length());
+        return new LogEntry(System.nanoTime(), System.currentTimeMillis(), getLogLevel(LogLineParser.getLevel(parsed)), strippedMessage, prefix);
     }
 
-    private LogLevel getLogLevel(String message) {
-        LogLevel determined = determineLogLevel(extractLogLevelString(message));
+    private LogLevel getLogLevel(LogLevel determined) {
         if (determined != null) return determined;
         if (defaultLogLevel != null) return defaultLogLevel;
         return FALLBACK_LOG_LEVEL;
     }
 
-    private static String stripBrackets(String message) {
-        return message.trim().replaceFirst(PREFIX_SEARCH_PATTERN.pattern(), "").trim();
-    }
-
-    private static String extractLogLevelString(String message) {
-        Matcher matcher = LOG_LEVEL_SEARCH_PATTERN.matcher(message);
-        if (! matcher.find()) return null;
-        return matcher.group();
-    }
-
-    private static LogLevel determineLogLevel(String levelString) { // TODO Improve reading of log levels
-        if (levelString == null) return null;
-        if (determinedLogLevels.containsKey(levelString)) {
-            return determinedLogLevels.get(levelString);
-        }
-        levelString = levelString.toLowerCase();
-        LogLevel level = null;
-        if (levelString.contains("info")) {
-            level = LogLevel.INFO;
-        }
-        else if (levelString.contains("warn")) {
-            level = LogLevel.WARNING;
-        }
-        else if (levelString.contains("severe") || levelString.contains("error") || levelString.contains("schwerwiegend")) {
-            level = LogLevel.SEVERE;
-        }
-        if (level != null) {
-            determinedLogLevels.put(levelString, level);
-        }
-        return level;
+    /**
+     * Same as {@link String#trim()} on the substring, without creating the untrimmed substring
+     */
+    private static String trim(String string, int start, int end) {
+        while (start < end && string.charAt(start) <= ' ') start++;
+        while (end > start && string.charAt(end - 1) <= ' ') end--;
+        return string.substring(start, end);
     }
 
 }
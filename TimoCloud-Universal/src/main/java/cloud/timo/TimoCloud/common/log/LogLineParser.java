@@ -0,0 +1,88 @@
+package cloud.timo.TimoCloud.common.log;
+
+import cloud.timo.TimoCloud.api.objects.log.LogLevel;
+
+/**
+ * Finds the prefix and log level of a log line in one pass over the prefix, without creating any objects.
+ * <p>
+ * The prefix is everything up to the first bracket pair, followed by an optional space, a second bracket pair, a colon and another space,
+ * e.g. {@code [12:00:00 INFO]: } (Spigot, Velocity) or {@code 12:00:00 [INFO] } (BungeeCord). The level is read from the first bracket pair.
+ * Both are returned packed into a long, see {@link #getPrefixEnd(long)} and {@link #getLevel(long)}.
+ */
+public final class LogLineParser {
+
+    private static final LogLevel[] LEVELS = LogLevel.values();
+
+    private LogLineParser() {
+    }
+
+    /**
+     * Parses the characters from {@code start} (inclusive) to {@code end} (exclusive)
+     *
+     * @return The packed result
+     */
+    public static long parse(CharSequence line, int start, int end) {
+        int open = indexOf(line, '[', start, end);
+        int close = open < 0 ? -1 : indexOf(line, ']', open + 1, end);
+        if (close < 0) return pack(start, null);
+        LogLevel level = determineLogLevel(line, open + 1, close);
+        int prefixEnd = close + 1;
+        if (prefixEnd < end && line.charAt(prefixEnd) == ' ') prefixEnd++;
+        if (prefixEnd < end && line.charAt(prefixEnd) == '[') {
+            int secondClose = indexOf(line, ']', prefixEnd + 1, end);
+            if (secondClose >= 0) prefixEnd = secondClose + 1;
+        }
+        if (prefixEnd < end && line.charAt(prefixEnd) == ':') prefixEnd++;
+        if (prefixEnd < end && line.charAt(prefixEnd) == ' ') prefixEnd++;
+        return pack(prefixEnd, level);
+    }
+
+    /**
+     * @return Index after the prefix, the start index if the line has no prefix
+     */
+    public static int getPrefixEnd(long result) {
+        return (int) (result >>> 8);
+    }
+
+    /**
+     * @return The level named in the first bracket pair, null if there is none
+     */
+    public static LogLevel getLevel(long result) {
+        int level = (int) (result & 0xFF);
+        return level == 0 ? null : LEVELS[level - 1];
+    }
+
+    private static long pack(int prefixEnd, LogLevel level) {
+        return ((long) prefixEnd << 8) | (level == null ? 0 : level.ordinal() + 1);
+    }
+
+    private static LogLevel determineLogLevel(CharSequence line, int start, int end) {
+        if (contains(line, start, end, "info")) return LogLevel.INFO;
+        if (contains(line, start, end, "warn")) return LogLevel.WARNING;
+        if (contains(line, start, end, "severe") || contains(line, start, end, "error") || contains(line, start, end, "schwerwiegend")) {
+            return LogLevel.SEVERE;
+        }
+        return null;
+    }
+
+    /**
+     * @param lowerCaseWord Has to be lower case, the line is compared ignoring case
+     */
+    private static boolean contains(CharSequence line, int start, int end, String lowerCaseWord) {
+        int last = end - lowerCaseWord.length();
+        for (int i = start; i <= last; i++) {
+            int j = 0;
+            while (j < lowerCaseWord.length() && Character.toLowerCase(line.charAt(i + j)) == lowerCaseWord.charAt(j)) j++;
+            if (j == lowerCaseWord.length()) return true;
+        }
+        return false;
+    }
+
+    private static int indexOf(CharSequence line, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+}
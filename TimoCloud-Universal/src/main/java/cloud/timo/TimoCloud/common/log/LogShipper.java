@@ -0,0 +1,206 @@
+package cloud.timo.TimoCloud.common.log;
+
+import cloud.timo.TimoCloud.api.objects.log.LogLevel;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Sends the log entries of one instance to the core in compressed batches. A batch is sent once it is full or after a short interval.
+ * <p>
+ * Entries beyond the allowed lines per second are dropped and counted, the core adds a warning with the number of dropped lines to the log.
+ * Adding an entry never blocks, batches are encoded and sent on a thread shared by all shippers.
+ */
+public class LogShipper implements Consumer<LogEntry> {
+
+    public static final int DEFAULT_LINES_PER_SECOND = 1000;
+    public static final long DEFAULT_INTERVAL = 100;
+    private static final int MAX_BATCH_ENTRIES = 512;
+    private static final int MAX_BATCH_CHARS = 64 * 1024;
+    private static final LogLevel[] LEVELS = LogLevel.values();
+    private static volatile ScheduledExecutorService scheduler;
+
+    private final MessageType type;
+    private final String target;
+    private final Consumer<Message> sender;
+    private final int linesPerSecond;
+    private final long interval;
+    private List<LogEntry> pending = new ArrayList<>(); // Guarded by this
+    private int pendingChars; // Guarded by this
+    private long droppedSinceLastBatch; // Guarded by this
+    private double tokens; // Guarded by this
+    private long lastRefill = System.nanoTime(); // Guarded by this
+    private boolean scheduled; // Guarded by this
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param type           SERVER_LOG_ENTRIES or PROXY_LOG_ENTRIES
+     * @param target         Id of the instance, null if the instance sends its own log
+     * @param sender         Sends the batch message to the core
+     * @param linesPerSecond Maximum number of entries sent per second, also the number of entries which may be sent at once after a quiet period
+     * @param interval       Milliseconds an entry may wait for others to be sent with
+     */
+    public LogShipper(MessageType type, String target, Consumer<Message> sender, int linesPerSecond, long interval) {
+        this.type = type;
+        this.target = target;
+        this.sender = sender;
+        this.linesPerSecond = linesPerSecond;
+        this.interval = interval;
+        this.tokens = linesPerSecond;
+    }
+
+    @Override
+    public void accept(LogEntry entry) {
+        boolean sendNow = false;
+        boolean schedule = false;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(linesPerSecond, tokens + (now - lastRefill) * linesPerSecond / 1e9);
+            lastRefill = now;
+            if (tokens < 1) {
+                droppedSinceLastBatch++;
+                dropped.incrementAndGet();
+            } else {
+                tokens--;
+                pending.add(entry);
+                pendingChars += length(entry.getPrefix()) + length(entry.getMessage());
+                sendNow = pending.size() >= MAX_BATCH_ENTRIES || pendingChars >= MAX_BATCH_CHARS;
+            }
+            if (!sendNow && !scheduled) { // Dropped entries are reported as well
+                scheduled = true;
+                schedule = true;
+            }
+        }
+        if (sendNow) getScheduler().execute(this::flush);
+        else if (schedule) getScheduler().schedule(this::flush, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends all pending entries now
+     */
+    public void flush() {
+        List<LogEntry> batch;
+        long droppedEntries;
+        synchronized (this) {
+            scheduled = false;
+            if (pending.isEmpty() && droppedSinceLastBatch == 0) return;
+            batch = pending;
+            droppedEntries = droppedSinceLastBatch;
+            pending = new ArrayList<>();
+            pendingChars = 0;
+            droppedSinceLastBatch = 0;
+        }
+        Message message = Message.create()
+                .setType(type)
+                .set("entries", encode(batch))
+                .set("dropped", droppedEntries);
+        if (target != null) message.setTarget(target);
+        sender.accept(message);
+    }
+
+    /**
+     * @return The number of entries which have been dropped because of the rate limit
+     */
+    public long getDroppedEntries() {
+        return dropped.get();
+    }
+
+    /**
+     * @return The entries of a batch message, followed by a warning if entries have been dropped
+     */
+    public static List<LogEntry> readBatch(Map<String, Object> message) {
+        List<LogEntry> entries = decode((String) message.get("entries"));
+        long dropped = ((Number) message.get("dropped")).longValue();
+        if (dropped > 0) {
+            entries.add(new LogEntry(System.nanoTime(), System.currentTimeMillis(), LogLevel.WARNING,
+                    String.format("%d log lines have been dropped because more lines were logged than allowed per second", dropped), "[TimoCloud] "));
+        }
+        return entries;
+    }
+
+    static String encode(List<LogEntry> entries) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(entries.size());
+            for (LogEntry entry : entries) {
+                out.writeLong(entry.getNanoTime());
+                out.writeLong(entry.getTimestamp());
+                out.writeByte((entry.getLevel() == null ? LogLevel.INFO : entry.getLevel()).ordinal());
+                writeString(out, entry.getPrefix());
+                writeString(out, entry.getMessage());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Cannot happen when writing to memory
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    static List<LogEntry> decode(String encoded) {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(encoded))))) {
+            int count = in.readInt();
+            List<LogEntry> entries = new ArrayList<>(count + 1);
+            for (int i = 0; i < count; i++) {
+                long nanoTime = in.readLong();
+                long timestamp = in.readLong();
+                LogLevel level = LEVELS[in.readByte()];
+                String prefix = readString(in);
+                String message = readString(in);
+                entries.add(new LogEntry(nanoTime, timestamp, level, message, prefix));
+            }
+            return entries;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed log entry batch", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int length(String string) {
+        return string == null ? 0 : string.length();
+    }
+
+    private static ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            synchronized (LogShipper.class) {
+                if (scheduler == null) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "TimoCloud-Log-Shipper");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return scheduler;
+    }
+
+}
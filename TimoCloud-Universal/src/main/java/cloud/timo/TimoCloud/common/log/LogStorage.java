@@ -1,53 +1,452 @@
 package cloud.timo.TimoCloud.common.log;
 
+import cloud.timo.TimoCloud.api.objects.log.LogLevel;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Stores the log of one instance with a fixed memory footprint.
+ * <p>
+ * Entries are encoded into a ring of segments with a fixed size. When the ring is full, its oldest segment is handed to a background
+ * thread which compresses and writes it to the spill directory, and a new segment takes its place. Until it has been written, the segment
+ * is still read from memory. If the writer falls too far behind, full segments are dropped instead of blocking the thread adding entries.
+ * Spilled segments are deleted oldest first once they exceed the disk limit. Without a spill directory, the oldest segment is dropped instead.
+ * <p>
+ * Queries return the entries in the order they have been added. Every entry has a sequence number, which listeners can use as a cursor
+ * to continue where they left off.
+ */
 public class LogStorage {
 
-    private TreeMap<Long, Collection<LogEntry>> storage;
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+    private static final int DEFAULT_SEGMENTS = 16;
+    private static final LogLevel[] LEVELS = LogLevel.values();
+    private static final int RECORD_HEADER_SIZE = 8 + 8 + 1 + 4 + 4; // nanoTime, timestamp, level, prefix length, message length
+    private static final int MAX_PENDING_SPILLS = 4; // Segments per storage waiting to be written
+    private static final ExecutorService SPILL_WRITER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TimoCloud-Log-Spill-Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File spillDirectory;
+    private final long maxSpillBytes;
+    private final int segmentSize;
+    private final Executor spillWriter;
+    private final Segment[] ring;
+    private int head; // Index of the segment entries are appended to
+    private final Deque<SpilledSegment> spilled = new ArrayDeque<>(); // Oldest first
+    private long spilledBytes;
+    private long spillSequence;
+    private int pendingSpills;
+    private long droppedEntries;
+    private boolean closed;
+    private long nextSequence;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>(); // Iterated over a snapshot, listeners may remove themselves
 
+    /**
+     * Creates a storage which keeps up to 1MB in memory and drops older entries
+     */
     public LogStorage() {
-        storage = new TreeMap<>();
+        this(DEFAULT_SEGMENT_SIZE, DEFAULT_SEGMENTS, null, 0);
+    }
+
+    /**
+     * @param segmentSize    Bytes of encoded entries per segment, entries longer than that are truncated
+     * @param segments       Number of segments kept in memory, at least 2
+     * @param spillDirectory Directory full segments are written to, null if they should be dropped
+     * @param maxSpillBytes  Maximum size of all compressed segments in the spill directory
+     */
+    public LogStorage(int segmentSize, int segments, File spillDirectory, long maxSpillBytes) {
+        this(segmentSize, segments, spillDirectory, maxSpillBytes, SPILL_WRITER);
+    }
+
+    /**
+     * @param spillWriter Executes the compression and writing of full segments
+     */
+    LogStorage(int segmentSize, int segments, File spillDirectory, long maxSpillBytes, Executor spillWriter) {
+        this.segmentSize = segmentSize;
+        this.spillWriter = spillWriter;
+        this.ring = new Segment[Math.max(2, segments)];
+        this.spillDirectory = spillDirectory;
+        this.maxSpillBytes = maxSpillBytes;
+        ring[0] = new Segment(segmentSize);
+    }
+
+    public synchronized void addEntry(LogEntry entry) {
+        if (!ring[head].tryAppend(entry)) {
+            head = (head + 1) % ring.length;
+            if (ring[head] == null || evict(ring[head])) {
+                ring[head] = new Segment(segmentSize); // The old one is still read until it has been written
+            } else {
+                ring[head].clear();
+            }
+            ring[head].firstSequence = nextSequence;
+            ring[head].append(entry);
+        }
+        long sequence = nextSequence++;
+        for (Listener listener : listeners) listener.onEntry(entry, sequence);
+    }
+
+    /**
+     * Passes all stored entries from the cursor on to the listener, followed by all entries added from now on.
+     * Spilled segments are read without blocking appends, segments spilled in the meantime are read afterwards.
+     *
+     * @param cursor Sequence number of the first entry the listener wants to receive, -1 to only receive new entries
+     */
+    public void addListener(long cursor, Listener listener) {
+        while (true) {
+            List<SpilledSegment> files = new ArrayList<>();
+            synchronized (this) {
+                if (cursor >= 0 && cursor < nextSequence) {
+                    for (SpilledSegment segment : spilled) {
+                        if (segment.firstSequence + segment.count > cursor) files.add(segment);
+                    }
+                }
+                if (files.isEmpty()) {
+                    if (cursor >= 0) {
+                        for (int i = 1; i <= ring.length; i++) {
+                            Segment segment = ring[(head + i) % ring.length];
+                            if (segment != null && segment.firstSequence + segment.count > cursor) segment.replay(cursor, listener);
+                        }
+                    }
+                    listeners.add(listener);
+                    return;
+                }
+            }
+            for (SpilledSegment segment : files) {
+                segment.replay(cursor, listener);
+                cursor = Math.max(cursor, segment.firstSequence + segment.count);
+            }
+        }
+    }
+
+    public synchronized void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return The sequence number the next entry will get
+     */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * @param startTime Minimum timestamp (inclusive), null for no minimum
+     * @param endTime   Maximum timestamp (inclusive), null for now
+     * @return All stored entries within the given time, in the order they have been added
+     */
+    public List<LogEntry> queryEntries(Long startTime, Long endTime) {
+        return query(startTime == null ? Long.MIN_VALUE : startTime, endTime == null ? System.currentTimeMillis() : endTime);
+    }
+
+    public List<LogEntry> queryEntriesByStart(long startTime) {
+        return query(startTime, Long.MAX_VALUE);
+    }
+
+    public List<LogEntry> queryEntriesByEnd(long endTime) {
+        return query(Long.MIN_VALUE, endTime);
+    }
+
+    private List<LogEntry> query(long startTime, long endTime) {
+        List<SpilledSegment> files = new ArrayList<>();
+        List<LogEntry> inMemory = new ArrayList<>();
+        synchronized (this) {
+            for (SpilledSegment segment : spilled) {
+                if (segment.overlaps(startTime, endTime)) files.add(segment);
+            }
+            for (int i = 1; i <= ring.length; i++) { // Oldest segment first, the head is the newest
+                Segment segment = ring[(head + i) % ring.length];
+                if (segment != null && segment.overlaps(startTime, endTime)) segment.collect(startTime, endTime, inMemory);
+            }
+        }
+        if (files.isEmpty()) return inMemory;
+        List<LogEntry> entries = new ArrayList<>();
+        for (SpilledSegment segment : files) segment.collect(startTime, endTime, entries); // Files are read without blocking appends
+        entries.addAll(inMemory);
+        return entries;
+    }
+
+    /**
+     * @return The number of entries which have been discarded because the memory and disk limits were reached
+     */
+    public synchronized long getDroppedEntries() {
+        return droppedEntries;
+    }
+
+    /**
+     * @return The number of bytes the stored entries take up on disk
+     */
+    public synchronized long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * Deletes all spilled segments. Entries added afterwards are only kept in memory.
+     */
+    public synchronized void close() {
+        closed = true;
+        for (Listener listener : listeners) listener.onClose();
+        listeners.clear();
+        for (SpilledSegment segment : spilled) {
+            if (segment.pending == null) segment.file.delete(); // Pending ones are deleted once written
+        }
+        spilled.clear();
+        spilledBytes = 0;
+        if (spillDirectory != null) spillDirectory.delete();
+    }
+
+    /**
+     * @return Whether the segment has been handed to the spill writer, so it must not be reused
+     */
+    private boolean evict(Segment segment) {
+        if (segment.count == 0) return false;
+        if (spillDirectory == null || maxSpillBytes <= 0 || closed || pendingSpills >= MAX_PENDING_SPILLS) {
+            droppedEntries += segment.count;
+            return false;
+        }
+        SpilledSegment spilledSegment = new SpilledSegment(new File(spillDirectory, String.format("%016d.log.gz", spillSequence++)), segment);
+        spilled.addLast(spilledSegment);
+        pendingSpills++;
+        spillWriter.execute(() -> write(spilledSegment));
+        return true;
     }
 
-    public void addEntry(LogEntry entry) {
-        Long key = entry.getTimestamp();
-        storage.putIfAbsent(key, new LinkedHashSet<>());
-        storage.get(key).add(entry);
+    private void write(SpilledSegment segment) {
+        boolean written;
+        try {
+            segment.pending.spill(segment.file);
+            written = true;
+        } catch (IOException e) {
+            written = false;
+        }
+        synchronized (this) {
+            pendingSpills--;
+            segment.pending = null;
+            if (closed) {
+                segment.file.delete();
+                if (pendingSpills == 0) spillDirectory.delete();
+                return;
+            }
+            if (!written) {
+                spilled.remove(segment);
+                droppedEntries += segment.count;
+                return;
+            }
+            segment.length = segment.file.length();
+            spilledBytes += segment.length;
+            while (spilledBytes > maxSpillBytes && !spilled.isEmpty() && spilled.peekFirst().pending == null) {
+                SpilledSegment oldest = spilled.removeFirst();
+                spilledBytes -= oldest.length;
+                droppedEntries += oldest.count;
+                oldest.file.delete();
+            }
+        }
     }
 
-    public void removeEntry(LogEntry entry) {
-        Long key = entry.getTimestamp();
-        if (! storage.containsKey(key)) return;
-        storage.get(key).remove(entry);
+    private static void collect(byte[] data, int[] offsets, int count, long startTime, long endTime, Collection<LogEntry> entries) {
+        for (int i = 0; i < count; i++) {
+            long timestamp = readLong(data, offsets[i] + 8); // Entries outside the time are skipped without decoding their text
+            if (timestamp >= startTime && timestamp <= endTime) entries.add(decode(data, offsets[i]));
+        }
     }
 
-    public Collection<LogEntry> queryEntries(Long startTime, Long endTime) {
-        if (startTime == null) startTime = -1L;
-        if (endTime == null) endTime = new Date().getTime();
-        return extractEntries(
-                storage.subMap(startTime, true, endTime, true)
-        );
+    private static void replay(byte[] data, int[] offsets, int count, long firstSequence, long cursor, Listener listener) {
+        for (int i = (int) Math.max(0, cursor - firstSequence); i < count; i++) listener.onEntry(decode(data, offsets[i]), firstSequence + i);
     }
 
-    public Collection<LogEntry> queryEntriesByStart(long startTime) {
-        return extractEntries(
-                storage.tailMap(startTime, true)
-        );
+    private static LogEntry decode(byte[] data, int offset) {
+        int prefixLength = readInt(data, offset + 17);
+        int messageLength = readInt(data, offset + 21);
+        return new LogEntry(
+                readLong(data, offset),
+                readLong(data, offset + 8),
+                LEVELS[data[offset + 16]],
+                new String(data, offset + RECORD_HEADER_SIZE + prefixLength, messageLength, StandardCharsets.UTF_8),
+                new String(data, offset + RECORD_HEADER_SIZE, prefixLength, StandardCharsets.UTF_8));
     }
 
-    public Collection<LogEntry> queryEntriesByEnd(long endTime) {
-        return extractEntries(
-                storage.headMap(endTime, true)
-        );
+    private static long readLong(byte[] data, int offset) {
+        return ((long) readInt(data, offset) << 32) | (readInt(data, offset + 4) & 0xFFFFFFFFL);
     }
 
-    private Collection<LogEntry> extractEntries(Map<Long, Collection<LogEntry>> map) {
-        return map
-                .values()
-                .stream()
-                .flatMap(Collection::stream)
-                .collect(Collectors.toSet());
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16 | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
     }
+
+    private static void writeLong(byte[] data, int offset, long value) {
+        writeInt(data, offset, (int) (value >>> 32));
+        writeInt(data, offset + 4, (int) value);
+    }
+
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Receives the entries of a storage together with their sequence number. Except for replayed spilled entries, listeners are called
+     * while the storage is locked, so they should only hand the entries over.
+     */
+    public interface Listener {
+
+        void onEntry(LogEntry entry, long sequence);
+
+        /**
+         * Called when the storage is closed, no entries follow
+         */
+        default void onClose() {
+        }
+    }
+
+    /**
+     * Encoded entries in one array, with the offset of every entry. The arrays are reused when the segment is cleared.
+     */
+    private static class Segment {
+
+        private final byte[] data;
+        private int[] offsets = new int[256];
+        private int size;
+        private int count;
+        private long firstSequence;
+        private long minTimestamp = Long.MAX_VALUE;
+        private long maxTimestamp = Long.MIN_VALUE;
+
+        private Segment(int size) {
+            this.data = new byte[size];
+        }
+
+        /**
+         * @return False if the entry does not fit into this segment anymore
+         */
+        private boolean tryAppend(LogEntry entry) {
+            byte[] prefix = bytes(entry.getPrefix());
+            byte[] message = bytes(entry.getMessage());
+            if (size + RECORD_HEADER_SIZE + prefix.length + message.length > data.length) {
+                if (count > 0) return false;
+                prefix = truncate(prefix, data.length - RECORD_HEADER_SIZE); // The entry does not even fit into an empty segment
+                message = truncate(message, data.length - RECORD_HEADER_SIZE - prefix.length);
+            }
+            if (count == offsets.length) offsets = Arrays.copyOf(offsets, count * 2);
+            offsets[count++] = size;
+            writeLong(data, size, entry.getNanoTime());
+            writeLong(data, size + 8, entry.getTimestamp());
+            data[size + 16] = (byte) (entry.getLevel() == null ? LogLevel.INFO : entry.getLevel()).ordinal();
+            writeInt(data, size + 17, prefix.length);
+            writeInt(data, size + 21, message.length);
+            System.arraycopy(prefix, 0, data, size + RECORD_HEADER_SIZE, prefix.length);
+            System.arraycopy(message, 0, data, size + RECORD_HEADER_SIZE + prefix.length, message.length);
+            size += RECORD_HEADER_SIZE + prefix.length + message.length;
+            minTimestamp = Math.min(minTimestamp, entry.getTimestamp());
+            maxTimestamp = Math.max(maxTimestamp, entry.getTimestamp());
+            return true;
+        }
+
+        private void append(LogEntry entry) {
+            tryAppend(entry); // Always succeeds on an empty segment
+        }
+
+        private boolean overlaps(long startTime, long endTime) {
+            return count > 0 && minTimestamp <= endTime && maxTimestamp >= startTime;
+        }
+
+        private void collect(long startTime, long endTime, Collection<LogEntry> entries) {
+            LogStorage.collect(data, offsets, count, startTime, endTime, entries);
+        }
+
+        private void replay(long cursor, Listener listener) {
+            LogStorage.replay(data, offsets, count, firstSequence, cursor, listener);
+        }
+
+        private void spill(File file) throws IOException {
+            file.getParentFile().mkdirs();
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file))))) {
+                out.writeInt(count);
+                out.writeInt(size);
+                for (int i = 0; i < count; i++) out.writeInt(offsets[i]);
+                out.write(data, 0, size);
+            }
+        }
+
+        private void clear() {
+            size = 0;
+            count = 0;
+            minTimestamp = Long.MAX_VALUE;
+            maxTimestamp = Long.MIN_VALUE;
+        }
+
+        private static byte[] bytes(String string) {
+            return string == null ? new byte[0] : string.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static byte[] truncate(byte[] bytes, int length) {
+            return bytes.length <= length ? bytes : Arrays.copyOf(bytes, Math.max(0, length));
+        }
+    }
+
+    private static class SpilledSegment {
+
+        private final File file;
+        private final int count;
+        private final long firstSequence;
+        private final long minTimestamp;
+        private final long maxTimestamp;
+        private volatile Segment pending; // The segment itself until it has been written, it is not changed anymore
+        private long length; // Compressed size, once written
+
+        private SpilledSegment(File file, Segment segment) {
+            this.file = file;
+            this.count = segment.count;
+            this.firstSequence = segment.firstSequence;
+            this.minTimestamp = segment.minTimestamp;
+            this.maxTimestamp = segment.maxTimestamp;
+            this.pending = segment;
+        }
+
+        private boolean overlaps(long startTime, long endTime) {
+            return minTimestamp <= endTime && maxTimestamp >= startTime;
+        }
+
+        private void collect(long startTime, long endTime, Collection<LogEntry> entries) {
+            Segment segment = read();
+            if (segment != null) segment.collect(startTime, endTime, entries);
+        }
+
+        private void replay(long cursor, Listener listener) {
+            Segment segment = read();
+            if (segment != null) segment.replay(cursor, listener);
+        }
+
+        /**
+         * @return The decompressed segment, null if it has been deleted since the query started
+         */
+        private Segment read() {
+            Segment pending = this.pending;
+            if (pending != null) return pending;
+            try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+                int count = in.readInt();
+                Segment segment = new Segment(in.readInt());
+                segment.offsets = new int[count];
+                for (int i = 0; i < count; i++) segment.offsets[i] = in.readInt();
+                in.readFully(segment.data);
+                segment.size = segment.data.length;
+                segment.count = count;
+                segment.firstSequence = firstSequence;
+                return segment;
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
 }
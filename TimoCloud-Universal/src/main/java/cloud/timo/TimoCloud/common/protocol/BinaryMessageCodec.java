@@ -0,0 +1,268 @@
+package cloud.timo.TimoCloud.common.protocol;
+
+import cloud.timo.TimoCloud.common.json.GsonFactory;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.EncoderException;
+import io.netty.util.CharsetUtil;
+
+import java.lang.reflect.Array;
+import java.util.*;
+
+/**
+ * Compact binary representation of a {@link Message}.
+ * <p>
+ * Layout: {@link #FORMAT_MARKER}, varint {@link MessageType} id (0 if none), varint entry count, then per entry a string key and a tagged value.
+ * Numbers are written typed (zig-zag varints or IEEE doubles), but decoded as {@link Double}s, so handlers written against Gson-parsed messages keep working.
+ */
+public class BinaryMessageCodec {
+
+    /**
+     * Name used to negotiate this codec during the handshake
+     */
+    public static final String NAME = "binary";
+
+    /**
+     * First byte of every binary frame. JSON frames always start with '{', so both formats can share one channel.
+     */
+    public static final byte FORMAT_MARKER = 0x00;
+
+    private static final String TYPE_KEY = "t";
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INT = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_DOUBLE = 4;
+    private static final byte TAG_TRUE = 5;
+    private static final byte TAG_FALSE = 6;
+    private static final byte TAG_LIST = 7;
+    private static final byte TAG_MAP = 8;
+
+    private static final int MAX_COLLECTION_SIZE = 1 << 24;
+
+    public static boolean isBinaryFrame(ByteBuf byteBuf) {
+        return byteBuf.isReadable() && byteBuf.getByte(byteBuf.readerIndex()) == FORMAT_MARKER;
+    }
+
+    /**
+     * @return Whether the message's type can be written as id. Messages with any other type have to be sent as JSON, which both sides can always decode.
+     */
+    public static boolean canEncode(Message message) {
+        Object type = message.get(TYPE_KEY);
+        return type == null || type instanceof Number;
+    }
+
+    public static void encode(Message message, ByteBuf out) {
+        if (!canEncode(message)) throw new EncoderException("Message type " + message.get(TYPE_KEY) + " is not a type id");
+        out.writeByte(FORMAT_MARKER);
+        Object type = message.get(TYPE_KEY);
+        writeVarInt(out, type instanceof Number ? ((Number) type).intValue() : 0);
+        writeVarInt(out, type == null ? message.size() : message.size() - 1);
+        for (Map.Entry<String, Object> entry : message.entrySet()) {
+            if (TYPE_KEY.equals(entry.getKey())) continue;
+            writeString(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    public static Message decode(ByteBuf in) {
+        if (in.readByte() != FORMAT_MARKER) throw new DecoderException("Not a binary message frame");
+        Message message = Message.create();
+        int typeId = readVarInt(in);
+        if (typeId != 0) message.set(TYPE_KEY, (double) typeId);
+        int size = readSize(in);
+        for (int i = 0; i < size; i++) {
+            message.put(readString(in), readValue(in));
+        }
+        return message;
+    }
+
+    private static void writeValue(ByteBuf out, Object value) {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof CharSequence) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (CharSequence) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(TAG_INT);
+            writeVarInt(out, zigZag(((Number) value).intValue()));
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            writeVarLong(out, zigZag((Long) value));
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(TAG_MAP);
+            writeVarInt(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(out, String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            out.writeByte(TAG_LIST);
+            writeVarInt(out, collection.size());
+            for (Object element : collection) {
+                writeValue(out, element);
+            }
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            out.writeByte(TAG_LIST);
+            writeVarInt(out, length);
+            for (int i = 0; i < length; i++) {
+                writeValue(out, Array.get(value, i));
+            }
+        } else if (value instanceof JsonElement) {
+            writeJson(out, (JsonElement) value);
+        } else { // Objects (e.g. LogEntry) are sent the same way Gson would serialize them
+            writeJson(out, GsonFactory.getGson().toJsonTree(value));
+        }
+    }
+
+    private static void writeJson(ByteBuf out, JsonElement json) {
+        if (json == null || json.isJsonNull()) {
+            out.writeByte(TAG_NULL);
+        } else if (json.isJsonObject()) {
+            JsonObject object = json.getAsJsonObject();
+            out.writeByte(TAG_MAP);
+            writeVarInt(out, object.size());
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                writeString(out, entry.getKey());
+                writeJson(out, entry.getValue());
+            }
+        } else if (json.isJsonArray()) {
+            JsonArray array = json.getAsJsonArray();
+            out.writeByte(TAG_LIST);
+            writeVarInt(out, array.size());
+            for (JsonElement element : array) {
+                writeJson(out, element);
+            }
+        } else {
+            JsonPrimitive primitive = json.getAsJsonPrimitive();
+            if (primitive.isBoolean()) out.writeByte(primitive.getAsBoolean() ? TAG_TRUE : TAG_FALSE);
+            else if (primitive.isNumber()) {
+                out.writeByte(TAG_DOUBLE);
+                out.writeDouble(primitive.getAsDouble());
+            } else {
+                out.writeByte(TAG_STRING);
+                writeString(out, primitive.getAsString());
+            }
+        }
+    }
+
+    private static Object readValue(ByteBuf in) {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(in);
+            case TAG_INT:
+                return (double) unZigZag(readVarInt(in));
+            case TAG_LONG:
+                return (double) unZigZag(readVarLong(in));
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_TRUE:
+                return true;
+            case TAG_FALSE:
+                return false;
+            case TAG_LIST: {
+                int size = readSize(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) list.add(readValue(in));
+                return list;
+            }
+            case TAG_MAP: {
+                int size = readSize(in);
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) map.put(readString(in), readValue(in));
+                return map;
+            }
+            default:
+                throw new DecoderException("Unknown value tag: " + tag);
+        }
+    }
+
+    private static void writeString(ByteBuf out, CharSequence string) {
+        writeVarInt(out, ByteBufUtil.utf8Bytes(string));
+        ByteBufUtil.writeUtf8(out, string);
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = readSize(in);
+        if (in.readableBytes() < length) throw new DecoderException("String length exceeds frame");
+        String string = in.toString(in.readerIndex(), length, CharsetUtil.UTF_8);
+        in.skipBytes(length);
+        return string;
+    }
+
+    private static int readSize(ByteBuf in) {
+        int size = readVarInt(in);
+        if (size < 0 || size > MAX_COLLECTION_SIZE) throw new DecoderException("Invalid size: " + size);
+        return size;
+    }
+
+    static void writeVarInt(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(ByteBuf in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new DecoderException("VarInt too long");
+    }
+
+    private static void writeVarLong(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(ByteBuf in) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new DecoderException("VarLong too long");
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
@@ -1,7 +1,7 @@
 package cloud.timo.TimoCloud.common.protocol;
 
 import cloud.timo.TimoCloud.common.json.GsonFactory;
-import com.google.gson.GsonBuilder;
+import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
 import java.util.LinkedHashMap;
@@ -13,7 +13,8 @@ public class Message extends LinkedHashMap<String, Object> {
     private static final String TARGET_KEY = "@";
     private static final String DATA_KEY = "d";
 
-    private static final GsonBuilder GSON_BUILDER = GsonFactory.getNewBuilder();
+    private static final Gson GSON = GsonFactory.getGson(); // Gson instances are thread-safe, so there is no need to create one per message
+    private static final Gson PARSER = new Gson();
 
     private Message() {
     }
@@ -31,9 +32,7 @@ public class Message extends LinkedHashMap<String, Object> {
     }
 
     public static Message createFromJsonString(String json) {
-        return new GsonBuilder()
-                .create()
-                .fromJson(json, Message.class);
+        return PARSER.fromJson(json, Message.class);
     }
 
     public Message set(String key, Object value) {
@@ -74,6 +73,10 @@ public class Message extends LinkedHashMap<String, Object> {
         return (T) get(key);
     }
 
+    public boolean hasType() {
+        return containsKey(TYPE_KEY);
+    }
+
     public MessageType getType() {
         return MessageType.fromId(((Number) get(TYPE_KEY)).intValue());
     }
@@ -87,15 +90,11 @@ public class Message extends LinkedHashMap<String, Object> {
     }
 
     public JsonObject toJsonObject() {
-        return GSON_BUILDER
-                .create()
-                .toJsonTree(this).getAsJsonObject();
+        return GSON.toJsonTree(this).getAsJsonObject();
     }
 
     public String toJson() {
-        return GSON_BUILDER
-                .create()
-                .toJson(this);
+        return GSON.toJson(this);
     }
 
     @Override
@@ -3,7 +3,7 @@ package cloud.timo.TimoCloud.common.protocol;
 import java.util.HashMap;
 import java.util.Map;
 
-// NEXT FREE ID: 56
+// NEXT FREE ID: 68
 
 public enum MessageType {
     CORE_PARSE_COMMAND                          (1),
@@ -19,6 +19,7 @@ public enum MessageType {
     PROXY_SET_PLAYER_COUNT                      (7),
     PROXY_TRANSFER_FINISHED                     (8),
     PROXY_LOG_ENTRY                             (9),
+    PROXY_LOG_ENTRIES                           (67), // Compressed batch of log entries, see LogShipper
     PROXY_ADD_SERVER                            (10),
     PROXY_REMOVE_SERVER                         (11),
 
@@ -35,6 +36,7 @@ public enum MessageType {
     SERVER_REGISTER                             (21),
     SERVER_TRANSFER_FINISHED                    (22),
     SERVER_LOG_ENTRY                            (23),
+    SERVER_LOG_ENTRIES                          (66), // Compressed batch of log entries, see LogShipper
 
     BASE_HANDSHAKE                              (24),
     BASE_HANDSHAKE_SUCCESS                      (25),
@@ -63,12 +65,22 @@ public enum MessageType {
     API_DATA                                    (43),
     SEND_PLUGIN_MESSAGE                         (44),
     ON_PLUGIN_MESSAGE                           (45),
+    API_REQUESTS                                (63), // Batch of API requests, see APIRequestBatcher
+    API_RESPONSES                               (64), // The responses to one API_REQUESTS frame
     TRANSFER_TEMPLATE                           (46),
+    TEMPLATE_TRANSFER_OFFER                     (58), // Core announces the files of a streamed template transfer
+    TEMPLATE_TRANSFER_ACCEPT                    (59), // Base answers with the offsets it already has, the core streams the rest
+    TEMPLATE_TRANSFER_CHUNK                     (60),
+    TEMPLATE_TRANSFER_END                       (61),
+    TEMPLATE_TRANSFER_DELTA                     (62), // Block delta of a file against the version the base already has
     FIRE_EVENT                                  (47),
     EVENT_FIRED                                 (48),
 
     ENCRYPTION_PUBLIC_KEY                       (49), // Client sends public key to Core, Core returns ENCRYPTION_AES_KEY
-    ENCRYPTION_AES_KEY                          (50)
+    ENCRYPTION_AES_KEY                          (50),
+    PROTOCOL_CODEC                              (56), // Core tells a client which codec it uses from now on, see BinaryMessageCodec
+    PROTOCOL_CIPHER                             (57), // Switches both directions of a channel to AES-GCM, see AESCipher
+    PROTOCOL_BATCH                              (65)  // Core tells a client that the frames it sends from now on may contain several messages, see FlushConsolidator
     ;
 
     private static final Map<Integer, MessageType> BY_ID;
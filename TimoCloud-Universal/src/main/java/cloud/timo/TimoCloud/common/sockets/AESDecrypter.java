@@ -1,27 +1,39 @@
 package cloud.timo.TimoCloud.common.sockets;
 
-import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
+import cloud.timo.TimoCloud.common.encryption.AESCipher;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.MessageToMessageDecoder;
 
 import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
 import java.util.List;
 
-public class AESDecrypter extends ByteToMessageDecoder {
+public class AESDecrypter extends MessageToMessageDecoder<ByteBuf> {
 
-    private SecretKey aesKey;
+    private final AESCipher cipher;
 
-    public AESDecrypter(SecretKey aesKey) {
-        this.aesKey = aesKey;
+    public AESDecrypter(SecretKey aesKey) throws GeneralSecurityException {
+        this.cipher = new AESCipher(aesKey);
+    }
+
+    /**
+     * Has to be called from the channel's event loop, so that every frame read afterwards is decrypted using AES-GCM
+     */
+    public void enableGcm() throws GeneralSecurityException {
+        cipher.enableGcm(false);
     }
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf byteBuf, List<Object> out) throws Exception {
-        byte[] bytes = new byte[byteBuf.readableBytes()];
-        byteBuf.readBytes(bytes);
-        out.add(Unpooled.wrappedBuffer(AESEncryptionUtil.decrypt(aesKey, bytes)));
+        ByteBuf decrypted = ctx.alloc().ioBuffer(byteBuf.readableBytes()); // Plain text is never longer than the encrypted frame
+        try {
+            cipher.decrypt(byteBuf, decrypted);
+            out.add(decrypted);
+        } catch (Exception e) {
+            decrypted.release();
+            throw e;
+        }
     }
 
 }
@@ -1,25 +1,41 @@
 package cloud.timo.TimoCloud.common.sockets;
 
-import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
+import cloud.timo.TimoCloud.common.encryption.AESCipher;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
 import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
 
 public class AESEncrypter extends MessageToByteEncoder<ByteBuf> {
 
-    private final SecretKey aesKey;
+    private final AESCipher cipher;
 
-    public AESEncrypter(SecretKey aesKey) {
-        this.aesKey = aesKey;
+    public AESEncrypter(SecretKey aesKey) throws GeneralSecurityException {
+        this.cipher = new AESCipher(aesKey);
+    }
+
+    /**
+     * Has to be called from the channel's event loop, so that every frame written afterwards is encrypted using AES-GCM
+     */
+    public void enableGcm(boolean initiator) throws GeneralSecurityException {
+        cipher.enableGcm(initiator);
+    }
+
+    public boolean isGcm() {
+        return cipher.isGcm();
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect) {
+        int length = cipher.getEncryptedLength(msg.readableBytes());
+        return preferDirect ? ctx.alloc().ioBuffer(length) : ctx.alloc().heapBuffer(length);
     }
 
     @Override
     protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) throws Exception {
-        byte[] inBytes = new byte[in.readableBytes()];
-        in.readBytes(inBytes);
-        out.writeBytes(AESEncryptionUtil.encrypt(aesKey, inBytes));
+        cipher.encrypt(in, out);
     }
 
 }
@@ -1,5 +1,6 @@
 package cloud.timo.TimoCloud.common.sockets;
 
+import cloud.timo.TimoCloud.common.protocol.Message;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 
@@ -31,6 +32,14 @@ public class BasicSocketClientHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    public void sendMessage(Message message) {
+        if (channel == null) {
+            queue.append(message.toJson());
+        } else {
+            channel.writeAndFlush(message); // Encoded by the channel's MessageEncoder
+        }
+    }
+
 
     public Channel getChannel() {
         return channel;
@@ -1,24 +1,82 @@
 package cloud.timo.TimoCloud.common.sockets;
 
+import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
 import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
+import cloud.timo.TimoCloud.common.protocol.BinaryMessageCodec;
 import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 
-public abstract class BasicStringHandler extends SimpleChannelInboundHandler<String> {
+public abstract class BasicStringHandler extends SimpleChannelInboundHandler<Object> {
 
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, String message) throws Exception {
+    public boolean acceptInboundMessage(Object msg) {
+        return msg instanceof String || msg instanceof Message;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, Object message) throws Exception {
         Channel channel = ctx.channel();
+        if (message instanceof Message) { // Already decoded by the binary codec
+            try {
+                handle((Message) message, null, channel);
+            } catch (Throwable e) {
+                TimoCloudLogger.getLogger().severe("Error while handling binary message: " + message);
+                TimoCloudLogger.getLogger().severe(e);
+            }
+            return;
+        }
         try {
-            handleMessage(Message.createFromJsonString(message), message, channel);
+            handle(Message.createFromJsonString((String) message), (String) message, channel);
         } catch (Throwable e) {
             TimoCloudLogger.getLogger().severe("Error while parsing JSON message: " + message);
             TimoCloudLogger.getLogger().severe(e);
         }
     }
 
+    private void handle(Message message, String originalMessage, Channel channel) {
+        if (message != null && message.hasType() && message.getType() == MessageType.PROTOCOL_CODEC) {
+            if (BinaryMessageCodec.NAME.equals(message.getData())) MessageEncoder.useBinary(channel);
+            return;
+        }
+        if (message != null && message.hasType() && message.getType() == MessageType.PROTOCOL_CIPHER) {
+            if (AESEncryptionUtil.GCM_NAME.equals(message.getData())) enableGcm(channel);
+            return;
+        }
+        if (message != null && message.hasType() && message.getType() == MessageType.PROTOCOL_BATCH) {
+            if (channel.pipeline().get("decrypter") != null && channel.pipeline().get(FrameSplitter.class) == null) {
+                channel.pipeline().addAfter("decrypter", "frameSplitter", new FrameSplitter()); // Takes effect with the next frame, since we run on the event loop
+            }
+            return;
+        }
+        handleMessage(message, originalMessage, channel);
+    }
+
+    /**
+     * The side initiating the switch sends PROTOCOL_CIPHER as its last CBC frame, the other side answers the same way.
+     * Since we run on the event loop, no frame can be read or written in between receiving and switching.
+     */
+    private void enableGcm(Channel channel) {
+        AESDecrypter decrypter = channel.pipeline().get(AESDecrypter.class);
+        AESEncrypter encrypter = channel.pipeline().get(AESEncrypter.class);
+        if (decrypter == null || encrypter == null) return;
+        try {
+            decrypter.enableGcm();
+            if (encrypter.isGcm()) return; // We initiated the switch and the other side has acknowledged it
+            channel.writeAndFlush(Message.create().setType(MessageType.PROTOCOL_CIPHER).setData(AESEncryptionUtil.GCM_NAME));
+            encrypter.enableGcm(false);
+        } catch (Exception e) {
+            TimoCloudLogger.getLogger().severe("Error while enabling AES-GCM: ");
+            TimoCloudLogger.getLogger().severe(e);
+            closeChannel(channel);
+        }
+    }
+
+    /**
+     * @param originalMessage The raw JSON string, or null if the message has been received in binary format
+     */
     public abstract void handleMessage(Message message, String originalMessage, Channel channel);
 
     public void closeChannel(Channel channel) {
@@ -0,0 +1,168 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds back flushes, so that messages written shortly after each other leave the channel with one syscall.
+ * A flush is done at the end of the current event loop turn, which is after the read loop if the flush was requested while reading,
+ * or after a delay if one is configured. If enough messages or bytes are waiting, they are flushed at once.
+ * <p>
+ * While the channel is not writable, flushes are not held back: its outbound buffer is already above the high water mark, and holding back
+ * the flush would only delay draining it. If the channel becomes unwritable while a flush is held back, it is done at once.
+ * <p>
+ * Once batching has been enabled, all messages of a flush are packed into one frame, so that they are encrypted and length-prefixed once
+ * instead of once each. Every message is prefixed with its length inside the frame, the other side splits them with a {@link FrameSplitter}.
+ * <p>
+ * Has to be placed right before the AES encrypter. All fields are only accessed from the channel's event loop.
+ */
+public class FlushConsolidator extends ChannelDuplexHandler {
+
+    private static final int MAX_BATCH_SIZE = 256 * 1024; // Bytes
+
+    private final int maxMessages;
+    private final int maxBytes;
+    private final long delay;
+    private final FlushStatistics statistics;
+
+    private ChannelHandlerContext ctx;
+    private boolean batching;
+    private final List<ByteBuf> batch = new ArrayList<>();
+    private final List<ChannelPromise> batchPromises = new ArrayList<>();
+    private int batchSize;
+    private int pendingMessages;
+    private long pendingBytes;
+    private int pendingFrames;
+    private boolean flushRequested;
+    private boolean flushScheduled;
+
+    private final Runnable scheduledFlush = () -> {
+        flushScheduled = false;
+        if (flushRequested) flushNow();
+    };
+
+    /**
+     * @param maxMessages Number of messages after which a requested flush is done at once
+     * @param maxBytes    Number of bytes after which a requested flush is done at once
+     * @param delay       Milliseconds a flush may be held back, 0 to only hold it back until the end of the event loop turn
+     */
+    public FlushConsolidator(int maxMessages, int maxBytes, long delay, FlushStatistics statistics) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.delay = delay;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Has to be called from the channel's event loop, after the other side has been told that the following frames are batched
+     */
+    public void enableBatching() {
+        this.batching = true;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        if (flushRequested) flushNow();
+        else writeBatch();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (!(msg instanceof ByteBuf)) {
+            writeBatch();
+            pendingFrames++;
+            ctx.write(msg, promise);
+            return;
+        }
+        ByteBuf message = (ByteBuf) msg;
+        pendingMessages++;
+        pendingBytes += message.readableBytes();
+        if (batching) {
+            if (!batch.isEmpty() && batchSize + 4 + message.readableBytes() > MAX_BATCH_SIZE) writeBatch();
+            batch.add(message);
+            batchPromises.add(promise);
+            batchSize += 4 + message.readableBytes();
+        } else {
+            pendingFrames++;
+            ctx.write(message, promise);
+        }
+        if (flushRequested && isThresholdReached()) flushNow();
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (pendingMessages == 0 && pendingFrames == 0) return; // Everything has been flushed already
+        flushRequested = true;
+        if (isThresholdReached() || !ctx.channel().isWritable()) {
+            flushNow();
+            return;
+        }
+        if (flushScheduled) return;
+        flushScheduled = true;
+        if (delay > 0) ctx.executor().schedule(scheduledFlush, delay, TimeUnit.MILLISECONDS);
+        else ctx.executor().execute(scheduledFlush);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (!ctx.channel().isWritable() && flushRequested) flushNow();
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        if (flushRequested) flushNow();
+        else writeBatch();
+        ctx.close(promise);
+    }
+
+    private boolean isThresholdReached() {
+        return pendingMessages >= maxMessages || pendingBytes >= maxBytes;
+    }
+
+    private void flushNow() {
+        writeBatch();
+        statistics.recordFlush(pendingMessages, pendingFrames);
+        pendingMessages = 0;
+        pendingBytes = 0;
+        pendingFrames = 0;
+        flushRequested = false;
+        ctx.flush();
+    }
+
+    private void writeBatch() {
+        if (batch.isEmpty()) return;
+        List<ChannelPromise> promises = new ArrayList<>(batchPromises);
+        ByteBuf frame = ctx.alloc().buffer(batchSize);
+        try {
+            for (ByteBuf message : batch) {
+                frame.writeInt(message.readableBytes());
+                frame.writeBytes(message);
+            }
+        } finally {
+            for (ByteBuf message : batch) message.release();
+            batch.clear();
+            batchPromises.clear();
+            batchSize = 0;
+        }
+        pendingFrames++;
+        ctx.write(frame).addListener(future -> {
+            for (ChannelPromise promise : promises) {
+                if (future.isSuccess()) promise.trySuccess();
+                else promise.tryFailure(future.cause());
+            }
+        });
+    }
+
+}
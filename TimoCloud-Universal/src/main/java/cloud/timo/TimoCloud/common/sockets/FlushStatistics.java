@@ -0,0 +1,47 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How many messages the flushes of a set of channels carried, see {@link FlushConsolidator}
+ */
+public class FlushStatistics {
+
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final AtomicLong maxMessagesPerFlush = new AtomicLong();
+
+    void recordFlush(int messages, int frames) {
+        flushes.increment();
+        this.messages.add(messages);
+        this.frames.add(frames);
+        maxMessagesPerFlush.accumulateAndGet(messages, Math::max);
+    }
+
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    /**
+     * @return Number of encrypted frames written, smaller than the number of messages if frames are batched
+     */
+    public long getFrames() {
+        return frames.sum();
+    }
+
+    public double getAverageMessagesPerFlush() {
+        long flushes = getFlushes();
+        return flushes == 0 ? 0 : (double) getMessages() / flushes;
+    }
+
+    public long getMaxMessagesPerFlush() {
+        return maxMessagesPerFlush.get();
+    }
+
+}
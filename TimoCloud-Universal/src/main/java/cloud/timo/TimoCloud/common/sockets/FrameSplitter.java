@@ -0,0 +1,22 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+
+import java.util.List;
+
+/**
+ * Splits decrypted frames which have been batched by a {@link FlushConsolidator} into their messages
+ */
+public class FrameSplitter extends MessageToMessageDecoder<ByteBuf> {
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf byteBuf, List<Object> out) throws Exception {
+        while (byteBuf.isReadable()) {
+            int length = byteBuf.readInt();
+            out.add(byteBuf.readRetainedSlice(length));
+        }
+    }
+
+}
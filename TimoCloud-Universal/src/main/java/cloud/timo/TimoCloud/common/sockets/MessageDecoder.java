@@ -0,0 +1,25 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import cloud.timo.TimoCloud.common.protocol.BinaryMessageCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.util.CharsetUtil;
+
+import java.util.List;
+
+/**
+ * Replaces the former StringDecoder: Binary frames are decoded to {@link cloud.timo.TimoCloud.common.protocol.Message}s, JSON frames are passed on as Strings
+ */
+public class MessageDecoder extends MessageToMessageDecoder<ByteBuf> {
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf byteBuf, List<Object> out) throws Exception {
+        if (BinaryMessageCodec.isBinaryFrame(byteBuf)) {
+            out.add(BinaryMessageCodec.decode(byteBuf));
+        } else {
+            out.add(byteBuf.toString(CharsetUtil.UTF_8));
+        }
+    }
+
+}
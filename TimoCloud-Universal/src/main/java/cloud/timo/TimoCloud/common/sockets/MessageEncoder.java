@@ -0,0 +1,63 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import cloud.timo.TimoCloud.common.protocol.BinaryMessageCodec;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+/**
+ * Encodes {@link Message}s written to a channel. Uses JSON until the binary codec has been negotiated for the channel.
+ */
+public class MessageEncoder extends MessageToByteEncoder<Message> {
+
+    private volatile boolean binary;
+
+    /**
+     * {@link SharedMessage}s have been encoded already, the encoded buffer is passed on as it is
+     */
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof SharedMessage) {
+            SharedMessage shared = (SharedMessage) msg;
+            ByteBuf encoded;
+            try {
+                encoded = shared.getEncoded(isBinary());
+            } finally {
+                shared.release();
+            }
+            ctx.write(encoded, promise);
+            return;
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Message message, ByteBuf out) throws Exception {
+        if (isBinary() && BinaryMessageCodec.canEncode(message)) {
+            BinaryMessageCodec.encode(message, out);
+        } else {
+            ByteBufUtil.writeUtf8(out, message.toJson());
+        }
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * Switches the channel's outgoing messages to the binary codec
+     */
+    public static void useBinary(Channel channel) {
+        MessageEncoder encoder = channel.pipeline().get(MessageEncoder.class);
+        if (encoder != null) encoder.setBinary(true);
+    }
+
+}
@@ -44,7 +44,7 @@ public class RSAHandshakeHandler extends SimpleChannelInboundHandler<ByteBuf> {
 
     public interface RSAHandshakeFuture {
 
-        void onCompletion(SecretKey aesKey);
+        void onCompletion(SecretKey aesKey) throws Exception;
 
     }
 }
@@ -0,0 +1,62 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import cloud.timo.TimoCloud.common.protocol.BinaryMessageCodec;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.ReferenceCounted;
+
+/**
+ * A {@link Message} written to many channels. It is encoded at most once per codec, every channel gets a retained duplicate of the same buffer,
+ * so only the per-channel encryption is repeated. Every write consumes one reference, see {@link MessageEncoder}.
+ */
+public class SharedMessage extends AbstractReferenceCounted {
+
+    private final Message message;
+    private final ByteBufAllocator allocator;
+    private ByteBuf json; // Guarded by this
+    private ByteBuf binary; // Guarded by this
+
+    public SharedMessage(Message message, ByteBufAllocator allocator) {
+        this.message = message;
+        this.allocator = allocator;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    /**
+     * @return A retained duplicate of the encoded message which has to be released by the caller
+     */
+    public synchronized ByteBuf getEncoded(boolean binary) {
+        if (binary && BinaryMessageCodec.canEncode(message)) {
+            if (this.binary == null) {
+                this.binary = allocator.directBuffer();
+                BinaryMessageCodec.encode(message, this.binary);
+            }
+            return this.binary.retainedDuplicate();
+        }
+        if (json == null) {
+            json = allocator.directBuffer();
+            ByteBufUtil.writeUtf8(json, message.toJson());
+        }
+        return json.retainedDuplicate();
+    }
+
+    @Override
+    protected synchronized void deallocate() {
+        if (json != null) json.release();
+        if (binary != null) binary.release();
+        json = null;
+        binary = null;
+    }
+
+    @Override
+    public ReferenceCounted touch(Object hint) {
+        return this;
+    }
+
+}
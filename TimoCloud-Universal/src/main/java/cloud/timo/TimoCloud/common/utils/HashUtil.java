@@ -1,19 +1,31 @@
 package cloud.timo.TimoCloud.common.utils;
 
+import cloud.timo.TimoCloud.common.utils.files.FileHashIndex;
 import org.apache.commons.io.FileDeleteStrategy;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.*;
-import java.util.zip.CRC32;
 
 public class HashUtil {
 
     private static final Set<String> IGNORE_NAMES = new HashSet<>(Arrays.asList(".DS_Store"));
 
+    private static volatile FileHashIndex index;
+
+    /**
+     * @param index Index remembering file hashes between calls, or null to hash all files every time
+     */
+    public static void setIndex(FileHashIndex index) {
+        HashUtil.index = index;
+    }
+
+    public static FileHashIndex getIndex() {
+        return index;
+    }
+
     public static List<String> getDifferentFiles(String prefix, Map<String, Object> a, Map<String, Object> b) {
         List<String> differences = new ArrayList<>();
         for (Object key : a.keySet()) {
@@ -72,10 +84,8 @@ public class HashUtil {
     }
 
     private static String getFileHash(File file) throws IOException {
-        CRC32 crc = new CRC32();
-        Path path = file.toPath();
-        crc.update(Files.readAllBytes(path));
-        return crc.getValue() + "";
+        FileHashIndex index = HashUtil.index;
+        return (index != null ? index.getHash(file) : FileHashIndex.computeHash(file.toPath())) + "";
     }
 
     private static String bytesToString(byte[] b) {
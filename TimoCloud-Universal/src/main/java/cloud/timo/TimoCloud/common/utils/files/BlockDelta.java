@@ -0,0 +1,276 @@
+package cloud.timo.TimoCloud.common.utils.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * rsync-style block delta. The receiver splits its old version of a file into blocks and sends their signatures,
+ * the sender finds these blocks anywhere in the new version using a rolling checksum and only sends the bytes in between.
+ * <p>
+ * Delta operations are either a {@link Number} (index of a block of the old file to copy) or a byte array (literal data).
+ */
+public class BlockDelta {
+
+    private static final int MIN_BLOCK_SIZE = 2 * 1024;
+    private static final int MAX_BLOCK_SIZE = 128 * 1024;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * @return A block size of about the square root of the file size, so signatures stay small for large files
+     */
+    public static int chooseBlockSize(long fileSize) {
+        int root = (int) Math.min(Math.sqrt(fileSize), MAX_BLOCK_SIZE);
+        return Math.max(MIN_BLOCK_SIZE, Integer.highestOneBit(Math.max(root, 1)));
+    }
+
+    /**
+     * Calculates the signatures of all complete blocks of the given file
+     */
+    public static Signature computeSignature(File file, int blockSize) throws IOException {
+        long length = file.length();
+        int blocks = (int) (length / blockSize);
+        int[] weak = new int[blocks];
+        String[] strong = new String[blocks];
+        MessageDigest md5 = createDigest();
+        byte[] block = new byte[blockSize];
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int i = 0; i < blocks; i++) {
+                ByteBuffer buffer = ByteBuffer.wrap(block);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, (long) i * blockSize + buffer.position()) == -1) throw new IOException("File " + file + " has been truncated");
+                }
+                weak[i] = weakChecksum(block, 0, blockSize);
+                strong[i] = strongChecksum(md5, block, 0, blockSize);
+            }
+        }
+        return new Signature(blockSize, weak, strong);
+    }
+
+    static int weakChecksum(byte[] data, int offset, int length) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < length; i++) {
+            int value = data[offset + i] & 0xFF;
+            a += value;
+            b += (length - i) * value;
+        }
+        return (a & 0xFFFF) | (b << 16);
+    }
+
+    private static String strongChecksum(MessageDigest md5, byte[] data, int offset, int length) {
+        md5.update(data, offset, length);
+        return Base64.getEncoder().encodeToString(md5.digest());
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JVM has to support MD5
+        }
+    }
+
+    public static class Signature {
+
+        private final int blockSize;
+        private final int[] weak;
+        private final String[] strong;
+
+        public Signature(int blockSize, int[] weak, String[] strong) {
+            this.blockSize = blockSize;
+            this.weak = weak;
+            this.strong = strong;
+        }
+
+        public int getBlockSize() {
+            return blockSize;
+        }
+
+        public int getBlockCount() {
+            return weak.length;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("blockSize", blockSize);
+            List<Integer> weak = new ArrayList<>(this.weak.length);
+            for (int checksum : this.weak) weak.add(checksum);
+            map.put("weak", weak);
+            map.put("strong", Arrays.asList(strong));
+            return map;
+        }
+
+        public static Signature fromMap(Map<String, Object> map) {
+            List<Object> weak = (List<Object>) map.get("weak");
+            List<Object> strong = (List<Object>) map.get("strong");
+            int[] weakArray = new int[weak.size()];
+            String[] strongArray = new String[strong.size()];
+            for (int i = 0; i < weakArray.length; i++) {
+                weakArray[i] = ((Number) weak.get(i)).intValue();
+                strongArray[i] = (String) strong.get(i);
+            }
+            return new Signature(((Number) map.get("blockSize")).intValue(), weakArray, strongArray);
+        }
+    }
+
+    /**
+     * Produces the delta of a file against a {@link Signature} step by step, so it can be sent in chunks without holding the whole file in memory
+     */
+    public static class Encoder implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final long length;
+        private final int blockSize;
+        private final Signature signature;
+        private final Map<Integer, List<Integer>> blocksByWeak;
+        private final MessageDigest md5;
+        private final byte[] buffer;
+        private long bufferStart; // File position of buffer[0]
+        private int bufferLength;
+
+        private long position; // Start of the block currently compared
+        private long literalStart; // Start of the bytes not sent yet
+        private int a;
+        private int b;
+        private boolean checksumValid;
+
+        public Encoder(File file, Signature signature) throws IOException {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            this.length = channel.size();
+            this.blockSize = signature.blockSize;
+            this.signature = signature;
+            this.blocksByWeak = new HashMap<>();
+            for (int i = 0; i < signature.weak.length; i++) {
+                blocksByWeak.computeIfAbsent(signature.weak[i], weak -> new ArrayList<>(1)).add(i);
+            }
+            this.md5 = createDigest();
+            this.buffer = new byte[Math.max(BUFFER_SIZE, 4 * blockSize)];
+        }
+
+        public boolean isFinished() {
+            return literalStart >= length;
+        }
+
+        /**
+         * @param maxLiteralBytes Amount of literal data after which the batch is returned
+         * @return The next delta operations, empty once the whole file has been processed
+         */
+        public List<Object> nextOperations(int maxLiteralBytes) throws IOException {
+            return nextOperations(maxLiteralBytes, Integer.MAX_VALUE);
+        }
+
+        /**
+         * @param maxLiteralBytes Amount of literal data after which the batch is returned
+         * @param maxOperations   Number of operations after which the batch is returned, the encoder continues after the last one next time
+         * @return The next delta operations, empty once the whole file has been processed
+         */
+        public List<Object> nextOperations(int maxLiteralBytes, int maxOperations) throws IOException {
+            List<Object> operations = new ArrayList<>();
+            int literalBytes = 0;
+            while (!isFinished() && literalBytes < maxLiteralBytes && operations.size() < maxOperations) {
+                if (position + blockSize > length) { // No complete block left, the rest is literal
+                    literalBytes += addLiteral(operations, length, maxLiteralBytes - literalBytes);
+                    continue;
+                }
+                fill(position + blockSize);
+                if (!checksumValid) {
+                    int checksum = weakChecksum(buffer, index(position), blockSize);
+                    a = checksum & 0xFFFF;
+                    b = checksum >>> 16;
+                    checksumValid = true;
+                }
+                int match = findBlock((a & 0xFFFF) | (b << 16));
+                if (match >= 0) {
+                    if (literalStart < position) {
+                        literalBytes += addLiteral(operations, position, maxLiteralBytes - literalBytes);
+                        continue; // Emit the pending literal first, the match is found again next time
+                    }
+                    operations.add(match);
+                    position += blockSize;
+                    literalStart = position;
+                    checksumValid = false;
+                    continue;
+                }
+                if (position - literalStart >= maxLiteralBytes - literalBytes) {
+                    literalBytes += addLiteral(operations, position, maxLiteralBytes - literalBytes);
+                    continue;
+                }
+                roll();
+            }
+            return operations;
+        }
+
+        private int findBlock(int weak) {
+            List<Integer> candidates = blocksByWeak.get(weak);
+            if (candidates == null) return -1;
+            md5.update(buffer, index(position), blockSize);
+            String strong = Base64.getEncoder().encodeToString(md5.digest());
+            for (int candidate : candidates) {
+                if (signature.strong[candidate].equals(strong)) return candidate;
+            }
+            return -1;
+        }
+
+        private void roll() throws IOException {
+            int out = buffer[index(position)] & 0xFF;
+            if (position + blockSize >= length) { // Nothing to roll in, remaining bytes are sent literally
+                position++;
+                checksumValid = false;
+                return;
+            }
+            fill(position + blockSize + 1);
+            int in = buffer[index(position + blockSize)] & 0xFF;
+            a = (a - out + in) & 0xFFFF;
+            b = (b - blockSize * out + a) & 0xFFFF;
+            position++;
+        }
+
+        private int addLiteral(List<Object> operations, long end, int maxBytes) throws IOException {
+            int amount = (int) Math.min(end - literalStart, Math.max(maxBytes, 1));
+            fill(literalStart + amount);
+            operations.add(Arrays.copyOfRange(buffer, index(literalStart), index(literalStart) + amount));
+            literalStart += amount;
+            if (position < literalStart) {
+                position = literalStart;
+                checksumValid = false;
+            }
+            return amount;
+        }
+
+        private int index(long filePosition) {
+            return (int) (filePosition - bufferStart);
+        }
+
+        /**
+         * Makes sure all bytes from {@link #literalStart} up to the given position are buffered
+         */
+        private void fill(long end) throws IOException {
+            end = Math.min(end, length);
+            if (end <= bufferStart + bufferLength) return;
+            if (end - bufferStart > buffer.length) { // Drop bytes which have already been sent
+                int keep = (int) (bufferStart + bufferLength - literalStart);
+                System.arraycopy(buffer, index(literalStart), buffer, 0, keep);
+                bufferStart = literalStart;
+                bufferLength = keep;
+            }
+            ByteBuffer target = ByteBuffer.wrap(buffer, bufferLength, buffer.length - bufferLength);
+            while (bufferStart + bufferLength < end) {
+                int read = channel.read(target, bufferStart + bufferLength);
+                if (read == -1) throw new IOException("File has been truncated while creating delta");
+                bufferLength += read;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,284 @@
+package cloud.timo.TimoCloud.common.utils.files;
+
+import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Remembers the CRC32 of files by path, size and modification time, so unchanged files are never read again.
+ * The index is persisted to disk. Watched directories are kept warm: modified files are invalidated and rehashed in the background.
+ */
+public class FileHashIndex implements Closeable {
+
+    private static final int FORMAT_VERSION = 2;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final long SAVE_INTERVAL = 30; // Seconds
+    private static final long SETTLE_TIME = 1000; // Milliseconds without file events before changed files are rehashed
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHUNK_SIZE));
+
+    private final File indexFile;
+    private final Map<String, Entry> entries;
+    private final ScheduledExecutorService saveScheduler;
+    private volatile boolean dirty;
+    private WatchService watchService;
+
+    public FileHashIndex(File indexFile) {
+        this.indexFile = indexFile;
+        this.entries = new ConcurrentHashMap<>();
+        load();
+        this.saveScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TimoCloud-FileHashIndex-Save");
+            thread.setDaemon(true);
+            return thread;
+        });
+        saveScheduler.scheduleWithFixedDelay(this::save, SAVE_INTERVAL, SAVE_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return The file's CRC32, which is only calculated if the file has changed since it has been hashed the last time
+     */
+    public long getHash(File file) throws IOException {
+        Path path = file.toPath();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        String key = getKey(path);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.size == size && entry.modified == modified) return entry.hash;
+        long hash = computeHash(path);
+        entries.put(key, new Entry(size, modified, hash, null));
+        dirty = true;
+        return hash;
+    }
+
+    /**
+     * @return The file's SHA-256 as hex string, which is strong enough to identify files by their content
+     */
+    public String getDigest(File file) throws IOException {
+        Path path = file.toPath();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        String key = getKey(path);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.size == size && entry.modified == modified && entry.digest != null) return entry.digest;
+        long hash = entry != null && entry.size == size && entry.modified == modified ? entry.hash : computeHash(path);
+        String digest = computeDigest(path);
+        entries.put(key, new Entry(size, modified, hash, digest));
+        dirty = true;
+        return digest;
+    }
+
+    public static String computeDigest(Path path) throws IOException {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JVM has to support SHA-256
+        }
+        ByteBuffer buffer = BUFFERS.get();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                sha256.update(buffer);
+                buffer.clear();
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : sha256.digest()) hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    /**
+     * Calculates a file's CRC32 reading it chunk by chunk, so large files are never loaded into memory at once
+     */
+    public static long computeHash(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = BUFFERS.get();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Watches the given directory and all of its subdirectories for changes
+     */
+    public void watch(File directory) throws IOException {
+        synchronized (this) {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread watcher = new Thread(this::processEvents, "TimoCloud-FileHashIndex-Watcher");
+                watcher.setDaemon(true);
+                watcher.start();
+            }
+        }
+        register(directory.toPath());
+    }
+
+    private void register(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void processEvents() {
+        Set<Path> changed = new HashSet<>();
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = changed.isEmpty() ? watchService.take() : watchService.poll(SETTLE_TIME, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            if (watchKey == null) { // No more changes for a while, files have probably been written completely
+                rehash(changed);
+                changed.clear();
+                continue;
+            }
+            Path directory = (Path) watchKey.watchable();
+            for (WatchEvent<?> event : watchKey.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) continue; // Sizes and modification times are still compared
+                Path path = directory.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    invalidate(path, true);
+                    continue;
+                }
+                invalidate(path, false);
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    try {
+                        register(path);
+                    } catch (IOException e) {
+                        TimoCloudLogger.getLogger().warning("Could not watch directory " + path + " for changes: " + e.getMessage());
+                    }
+                    continue;
+                }
+                changed.add(path);
+            }
+            watchKey.reset();
+        }
+    }
+
+    private void invalidate(Path path, boolean deleted) {
+        String key = getKey(path);
+        if (entries.remove(key) != null) dirty = true;
+        if (!deleted) return;
+        String prefix = key + File.separator; // The path might have been a directory
+        if (entries.keySet().removeIf(entry -> entry.startsWith(prefix))) dirty = true;
+    }
+
+    private void rehash(Set<Path> paths) {
+        for (Path path : paths) {
+            if (!Files.isRegularFile(path)) continue;
+            try {
+                getHash(path.toFile());
+            } catch (IOException ignored) { // Deleted or still being written, will be hashed when needed
+            }
+        }
+    }
+
+    private void load() {
+        if (!indexFile.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            int version = in.readInt();
+            if (version > FORMAT_VERSION) return;
+            int amount = in.readInt();
+            for (int i = 0; i < amount; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                long hash = in.readLong();
+                String digest = version >= 2 && in.readBoolean() ? in.readUTF() : null;
+                if (!new File(path).isFile()) { // Deleted while no watcher was running
+                    dirty = true;
+                    continue;
+                }
+                entries.put(path, new Entry(size, modified, hash, digest));
+            }
+        } catch (IOException e) {
+            entries.clear();
+            TimoCloudLogger.getLogger().warning("Could not load file hash index, all template files will be hashed again: " + e.getMessage());
+        }
+    }
+
+    public synchronized void save() {
+        if (!dirty) return;
+        dirty = false;
+        File temporaryFile = new File(indexFile.getPath() + ".tmp");
+        try {
+            indexFile.getAbsoluteFile().getParentFile().mkdirs();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+                Map<String, Entry> snapshot = new HashMap<>(entries);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> entry : snapshot.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().size);
+                    out.writeLong(entry.getValue().modified);
+                    out.writeLong(entry.getValue().hash);
+                    out.writeBoolean(entry.getValue().digest != null);
+                    if (entry.getValue().digest != null) out.writeUTF(entry.getValue().digest);
+                }
+            }
+            Files.move(temporaryFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            TimoCloudLogger.getLogger().warning("Could not save file hash index: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        saveScheduler.shutdown();
+        synchronized (this) {
+            if (watchService != null) watchService.close();
+        }
+        save();
+    }
+
+    private static String getKey(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    private static class Entry {
+
+        private final long size;
+        private final long modified;
+        private final long hash;
+        private final String digest; // Only calculated when requested
+
+        private Entry(long size, long modified, long hash, String digest) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.digest = digest;
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+package cloud.timo.TimoCloud.common.utils.files.tailer;
+
+import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Follows any number of files with one {@link WatchService} thread and a small pool reading the appended lines, instead of a polling
+ * thread per file.
+ * <p>
+ * Each file is read by at most one pool thread at a time, so its lines are passed to its listener in order. In case the watch service misses
+ * an event (or only polls, as on some platforms), all files are checked for new content every {@code sweepInterval} milliseconds.
+ */
+public class FileTailerService {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final long sweepInterval;
+    private final WatchService watchService;
+    private final ExecutorService readers;
+    private final Map<Path, TailedFile> files = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> directories = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    /**
+     * @param threads       Number of threads reading the files
+     * @param sweepInterval Milliseconds after which all files are checked even if no change has been noticed
+     */
+    public FileTailerService(int threads, long sweepInterval) throws IOException {
+        this.sweepInterval = sweepInterval;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.readers = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "TimoCloud-Log-Tailer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread watcher = new Thread(this::watch, "TimoCloud-Log-Watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Starts passing the lines appended to the file to the listener, beginning with the file's current content
+     *
+     * @return The tailer, which has to be stopped once the file is not needed anymore
+     */
+    public Tailer follow(File file, FileTailerListener listener) throws IOException {
+        Path path = file.toPath().toAbsolutePath();
+        Path directory = path.getParent();
+        synchronized (directories) {
+            if (!directories.containsKey(directory)) {
+                directories.put(directory, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+            }
+        }
+        TailedFile tailedFile = new TailedFile(path, FileChannel.open(path, StandardOpenOption.READ), listener);
+        TailedFile old = files.put(path, tailedFile);
+        if (old != null) old.stop();
+        tailedFile.schedule();
+        return tailedFile;
+    }
+
+    /**
+     * Stops following all files
+     */
+    public void shutdown() {
+        running = false;
+        for (TailedFile file : files.values()) file.stop();
+        readers.shutdown();
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Waits until the file tailers have read what has been appended to their files before {@link #shutdown()}
+     *
+     * @return Whether all of them have finished in time
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return readers.awaitTermination(timeout, unit);
+    }
+
+    private void watch() {
+        long lastSweep = System.nanoTime();
+        while (running) {
+            WatchKey key;
+            try {
+                long untilSweep = sweepInterval - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastSweep);
+                key = untilSweep > 0 ? watchService.poll(untilSweep, TimeUnit.MILLISECONDS) : watchService.poll();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastSweep) >= sweepInterval) { // Also if events keep arriving
+                for (TailedFile file : files.values()) file.schedule();
+                lastSweep = System.nanoTime();
+            }
+            if (key == null) continue;
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    for (TailedFile file : files.values()) file.schedule();
+                    continue;
+                }
+                TailedFile file = files.get(directory.resolve((Path) event.context()));
+                if (file != null) file.schedule();
+            }
+            key.reset();
+        }
+    }
+
+    public interface Tailer {
+
+        /**
+         * Reads what has been appended to the file so far, then stops following it
+         */
+        void stop();
+    }
+
+    private class TailedFile implements Tailer, Runnable {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final FileTailerListener listener;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private byte[] line = new byte[256]; // The line which has not been finished yet
+        private int lineLength;
+        private long position;
+        private boolean scheduled; // Guarded by this
+        private boolean pending; // Guarded by this
+        private boolean stopped; // Guarded by this
+        private long stopSize; // Size of the file when it has been stopped, guarded by this
+        private boolean closed; // Only accessed by the reading thread
+
+        private TailedFile(Path path, FileChannel channel, FileTailerListener listener) {
+            this.path = path;
+            this.channel = channel;
+            this.listener = listener;
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (scheduled) {
+                    pending = true;
+                    return;
+                }
+                scheduled = true;
+            }
+            try {
+                readers.execute(this);
+            } catch (Exception e) { // The service has been shut down
+                synchronized (this) {
+                    scheduled = false;
+                }
+            }
+        }
+
+        @Override
+        public void stop() {
+            long size;
+            try {
+                size = channel.size();
+            } catch (IOException e) {
+                size = Long.MAX_VALUE;
+            }
+            synchronized (this) {
+                if (stopped) return;
+                stopped = true;
+                stopSize = size;
+            }
+            files.remove(path, this);
+            schedule(); // The last read closes the channel
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                boolean stop;
+                long limit;
+                synchronized (this) {
+                    pending = false;
+                    stop = stopped;
+                    limit = stopped ? stopSize : Long.MAX_VALUE;
+                }
+                read(limit);
+                if (stop) close();
+                synchronized (this) {
+                    if (!pending || closed) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @param limit Position up to which the file is read
+         */
+        private void read(long limit) {
+            if (closed) return;
+            try {
+                if (channel.size() < position) { // The file has been truncated
+                    position = 0;
+                    lineLength = 0;
+                }
+                int read;
+                while (position < limit) {
+                    buffer.limit((int) Math.min(buffer.capacity(), limit - position));
+                    if ((read = channel.read(buffer, position)) <= 0) break;
+                    position += read;
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        byte b = buffer.get();
+                        if (b == '\n') {
+                            int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                            lineLength = 0;
+                            readLine(new String(line, 0, length, StandardCharsets.UTF_8));
+                            continue;
+                        }
+                        if (lineLength == line.length) line = Arrays.copyOf(line, line.length * 2);
+                        line[lineLength++] = b;
+                    }
+                    buffer.clear();
+                }
+            } catch (IOException e) {
+                listener.handleException(e);
+                close();
+            }
+        }
+
+        private void readLine(String line) {
+            try {
+                listener.readLine(line);
+            } catch (Exception e) {
+                TimoCloudLogger.getLogger().severe("Error while processing read line: ");
+                TimoCloudLogger.getLogger().severe(e);
+            }
+        }
+
+        private void close() {
+            if (closed) return;
+            closed = true;
+            files.remove(path, this);
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+}
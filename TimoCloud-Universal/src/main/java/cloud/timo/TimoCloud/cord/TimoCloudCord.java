@@ -1,9 +1,13 @@
 package cloud.timo.TimoCloud.cord;
 
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
+import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
+import cloud.timo.TimoCloud.api.implementations.async.APIRequestBatcher;
+import cloud.timo.TimoCloud.api.implementations.async.APIRequestImplementation;
 import cloud.timo.TimoCloud.api.implementations.internal.TimoCloudInternalImplementationAPIBasicImplementation;
 import cloud.timo.TimoCloud.api.implementations.managers.APIResponseManager;
 import cloud.timo.TimoCloud.api.implementations.managers.EventManager;
+import cloud.timo.TimoCloud.api.implementations.managers.LogSubscriptionManager;
 import cloud.timo.TimoCloud.api.utils.APIInstanceUtil;
 import cloud.timo.TimoCloud.common.modules.ModuleType;
 import cloud.timo.TimoCloud.common.modules.TimoCloudModule;
@@ -114,6 +118,8 @@ public class TimoCloudCord implements TimoCloudModule {
         APIInstanceUtil.setMessageInstance(new TimoCloudMessageAPICordImplementation());
         APIInstanceUtil.setInternalImplementationAPIInstance(new TimoCloudInternalImplementationAPIBasicImplementation());
         TimoCloudAPI.getMessageAPI().registerMessageListener(new APIResponseManager(), "TIMOCLOUD_API_RESPONSE");
+        TimoCloudAPI.getMessageAPI().registerMessageListener(new LogSubscriptionManager(), "TIMOCLOUD_LOG_ENTRIES");
+        APIRequestImplementation.setBatcher(new APIRequestBatcher(Long.getLong("timocloud-api-batch-window", 20)));
     }
 
     private void scheduleConnecting() {
@@ -163,7 +169,7 @@ public class TimoCloudCord implements TimoCloudModule {
     }
 
     public void onHandshakeSuccess() {
-        getSocketMessageManager().sendMessage(Message.create().setType(MessageType.GET_API_DATA));
+        getSocketMessageManager().sendMessage(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).createDataRequest());
     }
 
     private void initSocketServer() {
@@ -1,21 +1,18 @@
 package cloud.timo.TimoCloud.cord.sockets;
 
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
-import cloud.timo.TimoCloud.api.events.EventType;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudMessageAPIBasicImplementation;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
-import cloud.timo.TimoCloud.api.implementations.managers.EventManager;
+import cloud.timo.TimoCloud.api.implementations.managers.APIResponseManager;
 import cloud.timo.TimoCloud.api.messages.objects.AddressedPluginMessage;
-import cloud.timo.TimoCloud.api.utils.EventUtil;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.sockets.BasicStringHandler;
-import cloud.timo.TimoCloud.common.utils.EnumUtil;
 import cloud.timo.TimoCloud.common.utils.PluginMessageSerializer;
 import cloud.timo.TimoCloud.cord.TimoCloudCord;
-import cloud.timo.TimoCloud.cord.api.TimoCloudUniversalAPICordImplementation;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 
+import java.util.Collection;
 import java.util.Map;
 
 @ChannelHandler.Sharable
@@ -29,14 +26,17 @@ public class CordStringHandler extends BasicStringHandler {
             case "HANDSHAKE_SUCCESS":
                 TimoCloudCord.getInstance().onHandshakeSuccess();
                 break;
-            case "API_DATA": {
-                ((TimoCloudUniversalAPICordImplementation) TimoCloudAPI.getUniversalAPI()).setData((Map<String, Object>) data);
+            case "API_DATA":
+                try {
+                    ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).onData(message);
+                } catch (Exception e) {
+                    System.err.println("Error while parsing API data: ");
+                    TimoCloudCord.getInstance().severe(e);
+                }
                 break;
-            }
             case "EVENT_FIRED":
                 try {
-                    EventType eventType = EnumUtil.valueOf(EventType.class, (String) message.get("eT"));
-                    ((EventManager) TimoCloudAPI.getEventAPI()).callEvent(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper().readValue((String) data, EventUtil.getClassByEventType(eventType)));
+                    ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).onEventFired(message);
                 } catch (Exception e) {
                     System.err.println("Error while parsing event from json: ");
                     TimoCloudCord.getInstance().severe(e);
@@ -47,6 +47,9 @@ public class CordStringHandler extends BasicStringHandler {
                 ((TimoCloudMessageAPIBasicImplementation) TimoCloudAPI.getMessageAPI()).onMessage(addressedPluginMessage);
                 break;
             }
+            case "API_RESPONSES":
+                APIResponseManager.onResponses((Collection<?>) message.get("responses"));
+                break;
             default:
                 TimoCloudCord.getInstance().severe("Could not categorize json message: " + originalMessage);
         }
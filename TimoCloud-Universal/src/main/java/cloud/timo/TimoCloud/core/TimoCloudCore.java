@@ -1,13 +1,18 @@
 package cloud.timo.TimoCloud.core;
 
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
+import cloud.timo.TimoCloud.api.async.APIRequestType;
 import cloud.timo.TimoCloud.api.implementations.internal.TimoCloudInternalImplementationAPIBasicImplementation;
 import cloud.timo.TimoCloud.api.implementations.managers.APIResponseManager;
 import cloud.timo.TimoCloud.api.implementations.managers.EventManager;
+import cloud.timo.TimoCloud.api.implementations.managers.LogSubscriptionManager;
 import cloud.timo.TimoCloud.api.plugins.TimoCloudPlugin;
 import cloud.timo.TimoCloud.api.utils.APIInstanceUtil;
 import cloud.timo.TimoCloud.common.modules.ModuleType;
 import cloud.timo.TimoCloud.common.modules.TimoCloudModule;
+import cloud.timo.TimoCloud.common.utils.EnumUtil;
+import cloud.timo.TimoCloud.common.utils.HashUtil;
+import cloud.timo.TimoCloud.common.utils.files.FileHashIndex;
 import cloud.timo.TimoCloud.common.utils.options.OptionSet;
 import cloud.timo.TimoCloud.core.api.TimoCloudCoreAPIImplementation;
 import cloud.timo.TimoCloud.core.api.TimoCloudInternalMessageAPICoreImplementation;
@@ -31,6 +36,8 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -50,6 +57,7 @@ public class TimoCloudCore implements TimoCloudModule {
     private CoreSocketServerHandler socketServerHandler;
     private CoreStringHandler stringHandler;
     private CoreInstanceManager instanceManager;
+    private InstanceHealthScheduler instanceHealthScheduler;
     private Channel channel;
     private TemplateManager templateManager;
     private CommandManager commandManager;
@@ -58,6 +66,9 @@ public class TimoCloudCore implements TimoCloudModule {
     private PluginManager pluginManager;
     private PluginMessageManager pluginMessageManager;
     private APIRequestManager apiRequestManager;
+    private APIRequestExecutor apiRequestExecutor;
+    private CoreLogSubscriptionManager logSubscriptionManager;
+    private APIStateManager apiStateManager;
     private CorePublicKeyManager corePublicKeyManager;
 
     private boolean running;
@@ -139,9 +150,28 @@ public class TimoCloudCore implements TimoCloudModule {
         for (TimoCloudPlugin plugin : getPluginManager().getPlugins()) {
             plugin.onUnload();
         }
+        getInstanceHealthScheduler().shutdown();
+        getApiRequestExecutor().shutdown();
+        getLogSubscriptionManager().shutdown();
+        if (TimoCloudAPI.getEventAPI() instanceof AsyncEventManager) ((AsyncEventManager) TimoCloudAPI.getEventAPI()).shutdown();
+        try {
+            if (HashUtil.getIndex() != null) HashUtil.getIndex().close();
+        } catch (IOException e) {
+            severe(e);
+        }
         channel.close();
     }
 
+    private void loadHashIndex() {
+        FileHashIndex hashIndex = new FileHashIndex(new File(getFileManager().getBaseDirectory(), "hashes.idx"));
+        HashUtil.setIndex(hashIndex);
+        try {
+            hashIndex.watch(getFileManager().getTemplatesDirectory());
+        } catch (IOException e) {
+            warning("Could not watch templates for changes, template files will be checked on every start: " + e.getMessage());
+        }
+    }
+
     public void waitForCommands() throws IOException {
         TerminalBuilder builder = TerminalBuilder.builder();
         builder.encoding(Charset.defaultCharset());
@@ -162,6 +192,11 @@ public class TimoCloudCore implements TimoCloudModule {
                 node("listgroups"),
                 node("baseinfo", new Completers.TreeCompleter.Node(new BaseNameCompleter(), Collections.emptyList())),
                 node("listbases"),
+                node("eventstats"),
+                node("apistats"),
+                node("netstats"),
+                node("healthstats"),
+                node("autoscaler"),
                 node("sendcommand", new Completers.TreeCompleter.Node(new AggregateCompleter(new ServerGroupNameCompleter(), new ProxyGroupNameCompleter(), new ServerNameCompleter(), new ProxyNameCompleter()), Collections.emptyList())),
                 node("addbase")
         );
@@ -204,10 +239,12 @@ public class TimoCloudCore implements TimoCloudModule {
             System.exit(1);
         }
         fileManager.load();
+        loadHashIndex();
         this.socketServerHandler = new CoreSocketServerHandler();
         this.socketServer = new CoreSocketServer();
         this.stringHandler = new CoreStringHandler();
         this.instanceManager = new CoreInstanceManager();
+        this.instanceHealthScheduler = new InstanceHealthScheduler();
         this.templateManager = new TemplateManager();
         this.commandManager = new CommandManager();
         this.eventManager = new CoreEventManager();
@@ -215,18 +252,28 @@ public class TimoCloudCore implements TimoCloudModule {
         this.pluginManager = new PluginManager();
         this.pluginMessageManager = new PluginMessageManager();
         this.apiRequestManager = new APIRequestManager();
+        this.apiRequestExecutor = createApiRequestExecutor();
+        this.logSubscriptionManager = new CoreLogSubscriptionManager((Integer) getFileManager().getConfig().get("log-subscription-interval"));
+        this.apiStateManager = new APIStateManager();
         this.corePublicKeyManager = new CorePublicKeyManager();
 
-        APIInstanceUtil.setEventInstance(new EventManager());
+        APIInstanceUtil.setEventInstance(createEventManager());
         APIInstanceUtil.setUniversalInstance(new TimoCloudUniversalAPICoreImplementation());
         APIInstanceUtil.setCoreInstance(new TimoCloudCoreAPIImplementation());
         APIInstanceUtil.setMessageInstance(new TimoCloudMessageAPICoreImplementation());
         APIInstanceUtil.setInternalImplementationAPIInstance(new TimoCloudInternalImplementationAPIBasicImplementation());
         APIInstanceUtil.setInternalMessageInstance(new TimoCloudInternalMessageAPICoreImplementation());
-        TimoCloudAPI.getEventAPI().registerListener(getEventManager());
-        TimoCloudAPI.getEventAPI().registerListener(getCloudFlareManager());
+        if (TimoCloudAPI.getEventAPI() instanceof AsyncEventManager) {
+            AsyncEventManager eventManager = (AsyncEventManager) TimoCloudAPI.getEventAPI();
+            eventManager.registerSynchronousListener(getEventManager()); // Keeps the player counts, which must not lag behind or miss events
+            eventManager.registerInternalListener(getCloudFlareManager()); // Sends HTTP requests, which must not be done by the firing thread
+        } else {
+            TimoCloudAPI.getEventAPI().registerListener(getEventManager());
+            TimoCloudAPI.getEventAPI().registerListener(getCloudFlareManager());
+        }
         TimoCloudAPI.getMessageAPI().registerMessageListener(getApiRequestManager(), "TIMOCLOUD_API_REQUEST");
         TimoCloudAPI.getMessageAPI().registerMessageListener(new APIResponseManager(), "TIMOCLOUD_API_RESPONSE");
+        TimoCloudAPI.getMessageAPI().registerMessageListener(new LogSubscriptionManager(), "TIMOCLOUD_LOG_ENTRIES");
     }
 
     private void createLogger() throws IOException {
@@ -254,6 +301,36 @@ public class TimoCloudCore implements TimoCloudModule {
         }
     }
 
+    /**
+     * Listeners are called on separate threads unless async events have been disabled, so that no listener is ever run by a Netty thread
+     */
+    private EventManager createEventManager() {
+        Map config = getFileManager().getConfig();
+        if (!Boolean.TRUE.equals(config.get("async-events"))) return new EventManager();
+        AsyncEventManager.OverflowPolicy overflowPolicy = EnumUtil.valueOf(AsyncEventManager.OverflowPolicy.class, String.valueOf(config.get("event-queue-overflow")).toUpperCase());
+        return new AsyncEventManager(
+                (Integer) config.get("event-queue-size"),
+                overflowPolicy == null ? AsyncEventManager.OverflowPolicy.BLOCK : overflowPolicy,
+                (Integer) config.get("event-threads"));
+    }
+
+    private APIRequestExecutor createApiRequestExecutor() {
+        Map config = getFileManager().getConfig();
+        Map<APIRequestType, Integer> concurrencyLimits = new EnumMap<>(APIRequestType.class);
+        Map<String, Object> configuredLimits = (Map<String, Object>) config.get("api-request-concurrency");
+        if (configuredLimits != null) {
+            for (Map.Entry<String, Object> limit : configuredLimits.entrySet()) {
+                APIRequestType type = EnumUtil.valueOf(APIRequestType.class, limit.getKey());
+                if (type == null) {
+                    warning("Unknown API request type in api-request-concurrency: " + limit.getKey());
+                    continue;
+                }
+                concurrencyLimits.put(type, ((Number) limit.getValue()).intValue());
+            }
+        }
+        return new APIRequestExecutor((Integer) config.get("api-request-threads"), Boolean.TRUE.equals(config.get("api-request-virtual-threads")), concurrencyLimits);
+    }
+
     public int getSocketPort() {
         return (Integer) getFileManager().getConfig().get("socket-port");
     }
@@ -297,6 +374,10 @@ public class TimoCloudCore implements TimoCloudModule {
         return instanceManager;
     }
 
+    public InstanceHealthScheduler getInstanceHealthScheduler() {
+        return instanceHealthScheduler;
+    }
+
     public TemplateManager getTemplateManager() {
         return templateManager;
     }
@@ -325,6 +406,18 @@ public class TimoCloudCore implements TimoCloudModule {
         return apiRequestManager;
     }
 
+    public APIRequestExecutor getApiRequestExecutor() {
+        return apiRequestExecutor;
+    }
+
+    public CoreLogSubscriptionManager getLogSubscriptionManager() {
+        return logSubscriptionManager;
+    }
+
+    public APIStateManager getApiStateManager() {
+        return apiStateManager;
+    }
+
     public CorePublicKeyManager getCorePublicKeyManager() {
         return corePublicKeyManager;
     }
@@ -0,0 +1,32 @@
+package cloud.timo.TimoCloud.core.commands;
+
+import cloud.timo.TimoCloud.api.async.APIRequestType;
+import cloud.timo.TimoCloud.api.core.commands.CommandHandler;
+import cloud.timo.TimoCloud.api.core.commands.CommandSender;
+import cloud.timo.TimoCloud.api.internal.APIRequestFutureStorage;
+import cloud.timo.TimoCloud.api.internal.TimoCloudInternalAPI;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.managers.APIRequestExecutor;
+
+import java.util.List;
+import java.util.Map;
+
+public class APIStatsCommandHandler implements CommandHandler {
+
+    @Override
+    public void onCommand(String command, CommandSender sender, String... args) {
+        List<String> labels = APIRequestExecutor.Statistics.getHistogramLabels();
+        sender.sendMessage("&6API requests: &7" + String.join(" ", labels));
+        for (Map.Entry<APIRequestType, APIRequestExecutor.Statistics> entry : TimoCloudCore.getInstance().getApiRequestExecutor().getStatistics().entrySet()) {
+            APIRequestExecutor.Statistics statistics = entry.getValue();
+            if (statistics.getProcessed() == 0 && statistics.getQueued() == 0) continue;
+            StringBuilder histogram = new StringBuilder();
+            for (long count : statistics.getHistogram()) histogram.append(' ').append(count);
+            sender.sendMessage(String.format("  &b%s&7: &2%d &7processed, &2%d &7queued, latency&2%s",
+                    entry.getKey().name(), statistics.getProcessed(), statistics.getQueued(), histogram));
+        }
+        APIRequestFutureStorage storage = TimoCloudInternalAPI.getApiRequestStorage();
+        sender.sendMessage(String.format("&6Responses to the core's own API requests: &2%d &7pending, &2%d &7timed out", storage.getPendingCount(), storage.getTimedOutCount()));
+    }
+
+}
@@ -0,0 +1,49 @@
+package cloud.timo.TimoCloud.core.commands;
+
+import cloud.timo.TimoCloud.api.core.commands.CommandHandler;
+import cloud.timo.TimoCloud.api.core.commands.CommandSender;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.managers.AutoScaler;
+import cloud.timo.TimoCloud.core.objects.Group;
+import cloud.timo.TimoCloud.core.objects.ServerGroup;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class AutoScalerCommandHandler implements CommandHandler {
+
+    private static final int DEFAULT_DECISIONS = 10;
+
+    @Override
+    public void onCommand(String command, CommandSender sender, String... args) {
+        AutoScaler autoScaler = TimoCloudCore.getInstance().getInstanceManager().getAutoScaler();
+        int amount = DEFAULT_DECISIONS;
+        if (args.length > 0) {
+            try {
+                amount = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                sender.sendError("Usage: autoscaler [amount of decisions]");
+                return;
+            }
+        }
+        sender.sendMessage(String.format("&6Ticks: &2%d &7(&2%d &7full scans), last tick looked at &2%d &7groups in &2%.2fms",
+                autoScaler.getTicks(), autoScaler.getFullScans(), autoScaler.getLastTickGroups(), autoScaler.getLastTickMillis()));
+        for (ServerGroup group : TimoCloudCore.getInstance().getInstanceManager().getServerGroups()) {
+            sender.sendMessage(String.format("  &b%s&7: &2%d &7running, &2%d &7starting, &2%d &7wanted",
+                    group.getName(), autoScaler.getRunning(group), autoScaler.getStarting(group), group.getOnlineAmount()));
+        }
+        if (!autoScaler.getWaitingGroups().isEmpty()) {
+            sender.sendMessage("&6Waiting for a base: &e" + autoScaler.getWaitingGroups().stream().map(Group::getName).sorted().collect(Collectors.joining("&7, &e")));
+        }
+        List<AutoScaler.Decision> decisions = autoScaler.getDecisions();
+        SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss");
+        sender.sendMessage("&6Latest decisions:");
+        for (AutoScaler.Decision decision : decisions.subList(Math.max(0, decisions.size() - amount), decisions.size())) {
+            sender.sendMessage(String.format("  &7%s &b%s &7(needed &2%d&7): %s",
+                    format.format(new Date(decision.getTime())), decision.getGroup(), decision.getNeeded(), decision.getAction()));
+        }
+    }
+
+}
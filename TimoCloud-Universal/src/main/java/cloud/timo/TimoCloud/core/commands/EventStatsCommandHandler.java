@@ -0,0 +1,24 @@
+package cloud.timo.TimoCloud.core.commands;
+
+import cloud.timo.TimoCloud.api.TimoCloudAPI;
+import cloud.timo.TimoCloud.api.core.commands.CommandHandler;
+import cloud.timo.TimoCloud.api.core.commands.CommandSender;
+import cloud.timo.TimoCloud.core.managers.AsyncEventManager;
+
+public class EventStatsCommandHandler implements CommandHandler {
+
+    @Override
+    public void onCommand(String command, CommandSender sender, String... args) {
+        if (!(TimoCloudAPI.getEventAPI() instanceof AsyncEventManager)) {
+            sender.sendMessage("&cAsync events are disabled, listeners are called directly.");
+            return;
+        }
+        sender.sendMessage("&6Event listeners:");
+        for (AsyncEventManager.ListenerQueue queue : ((AsyncEventManager) TimoCloudAPI.getEventAPI()).getQueues()) {
+            sender.sendMessage(String.format("  &b%s&7: &2%d &7handled, &2%d &7queued, &c%d &7dropped, waiting &2%.2fms&7, handling &2%.2fms &7(max &2%.2fms&7)",
+                    queue.getName(), queue.getHandled(), queue.getQueued(), queue.getDropped(),
+                    queue.getAverageWaitingTime(), queue.getAverageHandlingTime(), queue.getMaxHandlingTime()));
+        }
+    }
+
+}
@@ -0,0 +1,19 @@
+package cloud.timo.TimoCloud.core.commands;
+
+import cloud.timo.TimoCloud.api.core.commands.CommandHandler;
+import cloud.timo.TimoCloud.api.core.commands.CommandSender;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.managers.InstanceHealthScheduler;
+
+public class HealthStatsCommandHandler implements CommandHandler {
+
+    @Override
+    public void onCommand(String command, CommandSender sender, String... args) {
+        InstanceHealthScheduler scheduler = TimoCloudCore.getInstance().getInstanceHealthScheduler();
+        sender.sendMessage(String.format("&6Instances: &2%d&7, unanswered PID requests: &2%d",
+                scheduler.getInstanceCount(), scheduler.getBacklog()));
+        sender.sendMessage(String.format("&6Last check: &7took &2%dms&7, started &2%dms &7late (max &2%dms&7)",
+                scheduler.getLastSweepDuration(), scheduler.getLastTickLatency(), scheduler.getMaxTickLatency()));
+    }
+
+}
@@ -22,6 +22,11 @@ public class HelpCommandHandler implements CommandHandler {
         sender.sendMessage("  &6listgroups &7- &7lists all groups and started servers");
         sender.sendMessage("  &6baseinfo &7<&2baseName&7> - displays base info");
         sender.sendMessage("  &6listbases &7- &7lists all bases");
+        sender.sendMessage("  &6eventstats &7- &7shows how fast event listeners are handling their events");
+        sender.sendMessage("  &6apistats &7- &7shows how many API requests are queued, how long they took and how many responses are pending");
+        sender.sendMessage("  &6netstats &7- &7shows how many messages are sent to the instances per flush");
+        sender.sendMessage("  &6healthstats &7- &7shows how many instances are checked for timeouts, how long the last check took and how many PID requests are unanswered");
+        sender.sendMessage("  &6autoscaler &7(&2amount of decisions&7) - &7shows which groups the autoscaler looked at and what it decided");
         sender.sendMessage("  &6sendcommand &7<&2groupName&7 | &2serverName&7 | &2proxyName&7> <&2command&7> - &7sends the given command to all server of a given group or the given server");
     }
 
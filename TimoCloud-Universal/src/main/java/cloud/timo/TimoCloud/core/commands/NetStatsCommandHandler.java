@@ -0,0 +1,22 @@
+package cloud.timo.TimoCloud.core.commands;
+
+import cloud.timo.TimoCloud.api.core.commands.CommandHandler;
+import cloud.timo.TimoCloud.api.core.commands.CommandSender;
+import cloud.timo.TimoCloud.common.sockets.FlushStatistics;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+
+public class NetStatsCommandHandler implements CommandHandler {
+
+    @Override
+    public void onCommand(String command, CommandSender sender, String... args) {
+        if (! Boolean.TRUE.equals(TimoCloudCore.getInstance().getFileManager().getConfig().get("flush-consolidation"))) {
+            sender.sendMessage("&cFlush consolidation is disabled, every message is flushed on its own.");
+            return;
+        }
+        FlushStatistics statistics = TimoCloudCore.getInstance().getSocketServerHandler().getFlushStatistics();
+        sender.sendMessage(String.format("&6Flushes: &2%d&7, carrying &2%d &7messages in &2%d &7frames, &2%.2f &7messages per flush (max &2%d&7)",
+                statistics.getFlushes(), statistics.getMessages(), statistics.getFrames(),
+                statistics.getAverageMessagesPerFlush(), statistics.getMaxMessagesPerFlush()));
+    }
+
+}
@@ -20,6 +20,7 @@ public class CommandFormatUtil {
             sender.sendMessage("    &e" + server.getName() +
                     " &7(&6Base&7: &2" + server.getBase().getName() + "&7) " +
                     " &7(&6State&7: " + server.getState() + "&7) " +
+                    formatProcessStats(server.getResidentSetSize(), server.getCpuUsage()) +
                     (server.getMap() == null || server.getMap().equals("") ? "" : (" &7(&6Map&7: &e" + server.getMap() + "&7)")));
         }
     }
@@ -41,7 +42,8 @@ public class CommandFormatUtil {
         for (Proxy proxy : group.getProxies()) {
             sender.sendMessage("    " + proxy.getName() +
                     " &7(&6Base&7: &2" + proxy.getBase().getName() + "&7) " +
-                    " &7(&6Players&7: &2" + proxy.getOnlinePlayerCount() + "&7) ");
+                    " &7(&6Players&7: &2" + proxy.getOnlinePlayerCount() + "&7) " +
+                    formatProcessStats(proxy.getResidentSetSize(), proxy.getCpuUsage()));
         }
     }
 
@@ -74,6 +76,14 @@ public class CommandFormatUtil {
         return b ? "&2true" : "&cfalse";
     }
 
+    /**
+     * @return The process' memory and CPU usage as reported by its base, or nothing if the base has not reported them yet
+     */
+    public static String formatProcessStats(long residentSetSize, double cpuUsage) {
+        if (residentSetSize <= 0) return "";
+        return String.format(" &7(&6Memory&7: &2%dMB&7, &6CPU&7: &2%.1f%%&7) ", residentSetSize / (1024 * 1024), cpuUsage);
+    }
+
     public static String formatIp(InetAddress ip) {
         if (ip == null) return "null";
         String s = ip.toString();
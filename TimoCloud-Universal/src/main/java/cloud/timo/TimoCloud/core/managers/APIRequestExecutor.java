@@ -0,0 +1,229 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.api.async.APIRequest;
+import cloud.timo.TimoCloud.api.async.APIRequestError;
+import cloud.timo.TimoCloud.api.async.APIRequestType;
+import cloud.timo.TimoCloud.api.implementations.async.APIResponse;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Processes API requests off the Netty threads, since some of them write configs to disk or look at all instances.
+ * <p>
+ * Requests with the same target are processed in the order they arrived. Request types may be limited to a number of requests
+ * processed at the same time, e.g. group creations which save all groups. A lane whose next request has to wait for such a limit
+ * does not block its thread, it is scheduled again once a request of that type has been processed.
+ */
+public class APIRequestExecutor {
+
+    private static final int LANES = 64; // Requests are ordered per target by putting all requests of a target into the same lane
+    private static final long[] HISTOGRAM_BOUNDS = {1, 5, 10, 50, 100, 500, 1000}; // Milliseconds, the last bucket holds everything above
+
+    private final ExecutorService executor;
+    private final Lane[] lanes = new Lane[LANES];
+    private final Map<APIRequestType, Limit> limits = new EnumMap<>(APIRequestType.class);
+    private final Map<APIRequestType, Statistics> statistics = new EnumMap<>(APIRequestType.class);
+
+    /**
+     * @param threads           Size of the pool if virtual threads are not used
+     * @param useVirtualThreads Whether to use a virtual thread per request if the JVM supports them
+     * @param concurrencyLimits Maximum number of requests of a type processed at the same time, types without a limit are not limited
+     */
+    public APIRequestExecutor(int threads, boolean useVirtualThreads, Map<APIRequestType, Integer> concurrencyLimits) {
+        ExecutorService executor = useVirtualThreads ? createVirtualThreadExecutor() : null;
+        if (executor == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "TimoCloud-API-Requests-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.executor = executor;
+        for (int i = 0; i < LANES; i++) lanes[i] = new Lane();
+        for (Map.Entry<APIRequestType, Integer> limit : concurrencyLimits.entrySet()) limits.put(limit.getKey(), new Limit(limit.getValue()));
+        for (APIRequestType type : APIRequestType.values()) statistics.put(type, new Statistics());
+    }
+
+    /**
+     * Virtual threads exist since Java 21, TimoCloud is built for Java 8
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return A future completed with the response once the request has been processed
+     */
+    public <T> CompletableFuture<APIResponse<T>> submit(APIRequest<T> request, APIRequestManager manager) {
+        CompletableFuture<APIResponse<T>> future = new CompletableFuture<>();
+        Statistics statistics = this.statistics.get(request.getType());
+        statistics.queued.incrementAndGet();
+        long submitted = System.nanoTime();
+        lanes[Math.floorMod(Objects.hashCode(request.getTarget()), LANES)].add(new Task(request.getType(), () -> {
+            statistics.queued.decrementAndGet();
+            APIResponse<T> response;
+            try {
+                response = manager.processRequest(request);
+            } catch (Throwable e) {
+                response = new APIResponse<>(request, new APIRequestError(String.format("An unknown error occurred: %s", e.getMessage()), 1));
+            }
+            statistics.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitted)); // Before completing, so the response is already counted
+            future.complete(response);
+        }));
+        return future;
+    }
+
+    public Map<APIRequestType, Statistics> getStatistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static class Task {
+
+        private final APIRequestType type;
+        private final Runnable runnable;
+
+        private Task(APIRequestType type, Runnable runnable) {
+            this.type = type;
+            this.runnable = runnable;
+        }
+    }
+
+    /**
+     * Requests which have to be processed one after another. At most one thread processes a lane's requests at a time.
+     */
+    private class Lane implements Runnable {
+
+        private final ArrayDeque<Task> pending = new ArrayDeque<>(); // Guarded by this
+        private boolean scheduled; // Guarded by this
+        private boolean permitGranted; // Set by a released limit before the lane is scheduled again
+
+        private void add(Task task) {
+            boolean schedule;
+            synchronized (this) {
+                pending.addLast(task);
+                schedule = !scheduled;
+                scheduled = true;
+            }
+            if (schedule) executor.execute(this);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Task task;
+                synchronized (this) {
+                    task = pending.peekFirst();
+                    if (task == null) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                Limit limit = limits.get(task.type);
+                if (limit != null && !permitGranted && !limit.tryAcquire(this)) return; // Stays scheduled until the limit hands over a permit
+                permitGranted = false;
+                synchronized (this) {
+                    pending.pollFirst();
+                }
+                try {
+                    task.runnable.run();
+                } finally {
+                    if (limit != null) limit.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of requests of a type which may be processed at the same time. Lanes waiting for a permit are scheduled again in the order they
+     * started waiting, with the permit handed over to them.
+     */
+    private class Limit {
+
+        private int available; // Guarded by this
+        private final ArrayDeque<Lane> waiting = new ArrayDeque<>(); // Guarded by this
+
+        private Limit(int permits) {
+            this.available = permits;
+        }
+
+        /**
+         * @return Whether a permit has been taken, otherwise the lane is scheduled again once one is free
+         */
+        private synchronized boolean tryAcquire(Lane lane) {
+            if (available > 0) {
+                available--;
+                return true;
+            }
+            waiting.addLast(lane);
+            return false;
+        }
+
+        private void release() {
+            Lane lane;
+            synchronized (this) {
+                lane = waiting.pollFirst();
+                if (lane == null) {
+                    available++;
+                    return;
+                }
+            }
+            lane.permitGranted = true;
+            executor.execute(lane);
+        }
+    }
+
+    /**
+     * Queue depth and latency (from arrival to response) of one request type
+     */
+    public static class Statistics {
+
+        private final AtomicInteger queued = new AtomicInteger();
+        private final LongAdder processed = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BOUNDS.length + 1);
+
+        private void record(long millis) {
+            processed.increment();
+            int bucket = 0;
+            while (bucket < HISTOGRAM_BOUNDS.length && millis > HISTOGRAM_BOUNDS[bucket]) bucket++;
+            histogram.incrementAndGet(bucket);
+        }
+
+        public int getQueued() {
+            return queued.get();
+        }
+
+        public long getProcessed() {
+            return processed.sum();
+        }
+
+        /**
+         * @return Number of requests per latency bucket, as labeled by {@link #getHistogramLabels()}
+         */
+        public long[] getHistogram() {
+            long[] counts = new long[histogram.length()];
+            for (int i = 0; i < counts.length; i++) counts[i] = histogram.get(i);
+            return counts;
+        }
+
+        public static List<String> getHistogramLabels() {
+            List<String> labels = new ArrayList<>();
+            for (long bound : HISTOGRAM_BOUNDS) labels.add("<=" + bound + "ms");
+            labels.add(">" + HISTOGRAM_BOUNDS[HISTOGRAM_BOUNDS.length - 1] + "ms");
+            return labels;
+        }
+    }
+
+}
@@ -5,29 +5,44 @@ import cloud.timo.TimoCloud.api.async.APIRequest;
 import cloud.timo.TimoCloud.api.async.APIRequestError;
 import cloud.timo.TimoCloud.api.implementations.async.APIRequestImplementation;
 import cloud.timo.TimoCloud.api.implementations.async.APIResponse;
+import cloud.timo.TimoCloud.api.messages.exceptions.MalformedAddressException;
 import cloud.timo.TimoCloud.api.messages.listeners.MessageListener;
 import cloud.timo.TimoCloud.api.messages.objects.AddressedPluginMessage;
+import cloud.timo.TimoCloud.api.messages.objects.MessageClientAddress;
 import cloud.timo.TimoCloud.api.objects.ProxyChooseStrategy;
+import cloud.timo.TimoCloud.api.objects.log.LogLevel;
 import cloud.timo.TimoCloud.api.objects.properties.ProxyGroupProperties;
 import cloud.timo.TimoCloud.api.objects.properties.ServerGroupProperties;
 import cloud.timo.TimoCloud.common.datatypes.TypeMap;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyUtil;
 import cloud.timo.TimoCloud.common.json.JsonConverter;
 import cloud.timo.TimoCloud.common.log.LogEntry;
+import cloud.timo.TimoCloud.common.log.LogStorage;
+import cloud.timo.TimoCloud.common.utils.EnumUtil;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
 import cloud.timo.TimoCloud.core.objects.*;
 
 import java.security.PublicKey;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
-// Next free error code: 16
+// Next free error code: 21 (16 and 17 are used by APIRequestFutureImplementation)
 public class APIRequestManager implements MessageListener {
 
     @Override
     public void onPluginMessage(AddressedPluginMessage message) {
         APIRequest request = APIRequestImplementation.fromMap(message.getMessage().getData());
-        APIResponse response = processRequest(request);
-        TimoCloudAPI.getMessageAPI().sendMessage(new AddressedPluginMessage(message.getSender(), response.toPluginMessage()));
+        submitRequest(request).thenAccept(response ->
+                TimoCloudAPI.getMessageAPI().sendMessage(new AddressedPluginMessage(message.getSender(), response.toPluginMessage())));
+    }
+
+    /**
+     * Processes the request on the API request executor
+     */
+    public <T> CompletableFuture<APIResponse<T>> submitRequest(APIRequest<T> request) {
+        return TimoCloudCore.getInstance().getApiRequestExecutor().submit(request, this);
     }
 
     public <T> APIResponse<T> processRequest(APIRequest<T> request) {
@@ -399,6 +414,17 @@ public class APIRequestManager implements MessageListener {
                             Long startTime = data.getLong("startTime");
                             Long endTime = data.getLong("endTime");
                             Collection<LogEntry> entries = server.getLogStorage().queryEntries(startTime, endTime);
+                            break;
+                        }
+                        case S_SUBSCRIBE_LOG: {
+                            subscribeToLog(data, server.getLogStorage());
+                            break;
+                        }
+                        case S_UNSUBSCRIBE_LOG: {
+                            String subscription = data.getString("subscription");
+                            validateNotNull(subscription, "Subscription");
+                            TimoCloudCore.getInstance().getLogSubscriptionManager().unsubscribe(subscription);
+                            break;
                         }
                     }
                     break;
@@ -445,6 +471,16 @@ public class APIRequestManager implements MessageListener {
                             proxy.stop();
                             break;
                         }
+                        case P_SUBSCRIBE_LOG: {
+                            subscribeToLog(data, proxy.getLogStorage());
+                            break;
+                        }
+                        case P_UNSUBSCRIBE_LOG: {
+                            String subscription = data.getString("subscription");
+                            validateNotNull(subscription, "Subscription");
+                            TimoCloudCore.getInstance().getLogSubscriptionManager().unsubscribe(subscription);
+                            break;
+                        }
                     }
                     break;
                 }
@@ -457,6 +493,37 @@ public class APIRequestManager implements MessageListener {
         return new APIResponse<>(request, responseData);
     }
 
+    private static void subscribeToLog(TypeMap data, LogStorage storage) throws APIRequestError {
+        String subscription = data.getString("subscription");
+        validateNotNull(subscription, "Subscription");
+        String subscriberAddress = data.getString("subscriber");
+        validateNotNull(subscriberAddress, "Subscriber");
+        MessageClientAddress subscriber;
+        try {
+            subscriber = MessageClientAddress.fromString(subscriberAddress);
+        } catch (MalformedAddressException e) {
+            throw new APIRequestError(String.format("Invalid subscriber address '%s'", subscriberAddress), 20, Collections.singleton(subscriberAddress));
+        }
+        Long cursor = data.getLong("cursor");
+        validateMinimum(cursor, -1, "Cursor");
+        LogLevel minimumLevel = null;
+        if (data.getString("minimumLevel") != null) {
+            minimumLevel = EnumUtil.valueOf(LogLevel.class, data.getString("minimumLevel"));
+            if (minimumLevel == null) {
+                throw new APIRequestError(String.format("Unknown log level '%s'", data.getString("minimumLevel")), 19, Collections.singleton(data.getString("minimumLevel")));
+            }
+        }
+        Pattern pattern = null;
+        if (data.getString("pattern") != null) {
+            try {
+                pattern = Pattern.compile(data.getString("pattern"));
+            } catch (PatternSyntaxException e) {
+                throw new APIRequestError(String.format("Invalid pattern: %s", e.getDescription()), 18, Collections.singleton(data.getString("pattern")));
+            }
+        }
+        TimoCloudCore.getInstance().getLogSubscriptionManager().subscribe(subscription, subscriber, storage, cursor, minimumLevel, pattern);
+    }
+
     private static void validateNotNull(Object o) throws APIRequestError {
         validateNotNull(o, null);
     }
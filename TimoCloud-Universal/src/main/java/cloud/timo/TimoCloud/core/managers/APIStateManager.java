@@ -0,0 +1,230 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.api.TimoCloudAPI;
+import cloud.timo.TimoCloud.api.events.Event;
+import cloud.timo.TimoCloud.api.events.EventType;
+import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
+import cloud.timo.TimoCloud.api.objects.IdentifiableObject;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+import cloud.timo.TimoCloud.common.utils.RandomIdGenerator;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.objects.EventSubscription;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.channel.Channel;
+
+import java.util.*;
+
+/**
+ * Replicates the API state to servers, proxies and cords. Every fired event is a change of the state and gets a version number.
+ * The last events are kept, so clients which already know the state (reconnecting cords) only receive what they missed.
+ * New clients get a snapshot, which is shared by all requests until too many events happened since it was taken, plus the events since then.
+ * <p>
+ * Clients are subscribed to events when requesting the data. They may limit the subscription to some event types, groups and instances,
+ * events are only sent to the subscribers of their type.
+ */
+public class APIStateManager {
+
+    private static final int BACKLOG_SIZE = 4096; // Events kept for clients to catch up
+    private static final int MAX_SNAPSHOT_AGE = 256; // Events after which a new snapshot is taken instead of sending the events since the cached one
+
+    private final String epoch = RandomIdGenerator.generateId(16); // Versions are only comparable within one run of the core
+    private final ArrayDeque<PublishedEvent> backlog = new ArrayDeque<>(); // Guarded by this
+    private long version; // Guarded by this
+    private final Map<Channel, EventSubscription> subscriptions = new HashMap<>(); // Guarded by this
+    private final Map<EventType, Set<Channel>> subscribers = new EnumMap<>(EventType.class); // Guarded by this
+    private int filteredSubscriptions; // Subscriptions with group or instance filters, guarded by this
+    private final Object snapshotLock = new Object();
+    private volatile Snapshot snapshot;
+
+    /**
+     * Assigns the next version to a fired event and sends it to all clients subscribed to it
+     *
+     * @param message The EVENT_FIRED message containing the serialized event
+     */
+    public synchronized void publish(Event event, Message message) {
+        message.set("v", ++version);
+        Collection<Channel> channels = subscribers.getOrDefault(event.getType(), Collections.emptySet());
+        Set<String> scope = filteredSubscriptions > 0 ? EventSubscription.getScope(event) : null;
+        backlog.addLast(new PublishedEvent(event.getType(), scope, message));
+        if (backlog.size() > BACKLOG_SIZE) backlog.removeFirst();
+        if (scope != null) {
+            List<Channel> matching = new ArrayList<>(channels.size());
+            for (Channel channel : channels) {
+                if (subscriptions.get(channel).matches(event.getType(), scope)) matching.add(channel);
+            }
+            channels = matching;
+        }
+        TimoCloudCore.getInstance().getSocketServerHandler().broadcast(message, channels);
+    }
+
+    synchronized void subscribe(Channel channel, EventSubscription subscription) {
+        EventSubscription old = subscriptions.put(channel, subscription);
+        if (old == null) channel.closeFuture().addListener(future -> unsubscribe(channel));
+        else removeSubscriber(channel, old);
+        addSubscriber(channel, subscription);
+    }
+
+    synchronized void unsubscribe(Channel channel) {
+        EventSubscription subscription = subscriptions.remove(channel);
+        if (subscription != null) removeSubscriber(channel, subscription);
+    }
+
+    /**
+     * Adds the channel to the index of subscribers by event type, so publishing an event does not have to look at clients which are not interested in it
+     */
+    private void addSubscriber(Channel channel, EventSubscription subscription) {
+        for (EventType type : getTypes(subscription)) subscribers.computeIfAbsent(type, t -> new LinkedHashSet<>()).add(channel);
+        if (subscription.hasFilters()) filteredSubscriptions++;
+    }
+
+    private void removeSubscriber(Channel channel, EventSubscription subscription) {
+        for (EventType type : getTypes(subscription)) {
+            Set<Channel> channels = subscribers.get(type);
+            if (channels != null && channels.remove(channel) && channels.isEmpty()) subscribers.remove(type);
+        }
+        if (subscription.hasFilters()) filteredSubscriptions--;
+    }
+
+    private static Collection<EventType> getTypes(EventSubscription subscription) {
+        return subscription.getTypes() == null ? Arrays.asList(EventType.values()) : subscription.getTypes();
+    }
+
+    /**
+     * Answers a GET_API_DATA request. Clients which do not send 'versioned' get a fresh snapshot, like before versions existed.
+     */
+    public void onDataRequest(Channel channel, Message request) throws JsonProcessingException {
+        EventSubscription subscription = EventSubscription.fromMap((Map<String, Object>) request.get("subscription"));
+        if (!Boolean.TRUE.equals(request.get("versioned"))) {
+            Message data = createSnapshot(currentVersion()).data;
+            synchronized (this) {
+                subscribe(channel, subscription);
+                send(channel, Message.create().setType(MessageType.API_DATA).setData(data));
+            }
+            return;
+        }
+        if (epoch.equals(request.get("epoch")) && request.get("v") instanceof Number) {
+            synchronized (this) {
+                List<Map<String, Object>> events = getEventsSince(((Number) request.get("v")).longValue(), subscription);
+                if (events != null) {
+                    subscribe(channel, subscription);
+                    send(channel, Message.create()
+                            .setType(MessageType.API_DATA)
+                            .set("epoch", epoch)
+                            .set("v", version)
+                            .set("events", events));
+                    return;
+                }
+            }
+        }
+        boolean forceNew = false;
+        while (true) {
+            Snapshot snapshot = getSnapshot(forceNew);
+            synchronized (this) {
+                List<Map<String, Object>> events = getEventsSince(snapshot.version, subscription);
+                if (events != null) {
+                    subscribe(channel, subscription);
+                    send(channel, Message.create()
+                            .setType(MessageType.API_DATA)
+                            .setData(snapshot.data)
+                            .set("epoch", epoch)
+                            .set("v", version)
+                            .set("events", events));
+                    return;
+                }
+            }
+            forceNew = true; // The backlog overflowed while the snapshot was sent to someone else
+        }
+    }
+
+    private void send(Channel channel, Message message) {
+        TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, message);
+    }
+
+    /**
+     * @return Events fired after the given version, or null if they are not in the backlog anymore
+     */
+    private List<Map<String, Object>> getEventsSince(long since, EventSubscription subscription) {
+        if (since > version) return null;
+        if (since < version - backlog.size()) return null;
+        List<Map<String, Object>> events = new ArrayList<>((int) (version - since));
+        Iterator<PublishedEvent> iterator = backlog.descendingIterator();
+        while (iterator.hasNext()) {
+            PublishedEvent published = iterator.next();
+            Message event = published.message;
+            if (((Number) event.get("v")).longValue() <= since) break;
+            if (!subscription.matches(published.type, published.scope == null ? Collections.emptySet() : published.scope)) continue;
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("eT", event.get("eT"));
+            entry.put("data", event.getData());
+            entry.put("v", event.get("v"));
+            events.add(entry);
+        }
+        Collections.reverse(events);
+        return events;
+    }
+
+    private synchronized long currentVersion() {
+        return version;
+    }
+
+    private Snapshot getSnapshot(boolean forceNew) throws JsonProcessingException {
+        synchronized (snapshotLock) { // Only one snapshot is taken at a time, concurrent requests wait for it and share it
+            Snapshot snapshot = this.snapshot;
+            long version = currentVersion();
+            if (forceNew || snapshot == null || version - snapshot.version > MAX_SNAPSHOT_AGE) {
+                snapshot = createSnapshot(version);
+                this.snapshot = snapshot;
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * The version is taken before the state is read, so events fired meanwhile are sent again. Applying an event twice does not change the state.
+     */
+    private Snapshot createSnapshot(long version) throws JsonProcessingException {
+        ObjectMapper objectMapper = ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper();
+        Message data = Message.create()
+                .set("serverGroups", serialize(objectMapper, TimoCloudAPI.getUniversalAPI().getServerGroups()))
+                .set("proxyGroups", serialize(objectMapper, TimoCloudAPI.getUniversalAPI().getProxyGroups()))
+                .set("servers", serialize(objectMapper, TimoCloudAPI.getUniversalAPI().getServers()))
+                .set("proxies", serialize(objectMapper, TimoCloudAPI.getUniversalAPI().getProxies()))
+                .set("players", serialize(objectMapper, TimoCloudAPI.getUniversalAPI().getPlayers()))
+                .set("bases", serialize(objectMapper, TimoCloudAPI.getUniversalAPI().getBases()))
+                .set("cords", serialize(objectMapper, TimoCloudAPI.getUniversalAPI().getCords()));
+        return new Snapshot(version, data);
+    }
+
+    private static Set<String> serialize(ObjectMapper objectMapper, Collection<? extends IdentifiableObject> objects) throws JsonProcessingException {
+        Set<String> serialized = new HashSet<>();
+        for (IdentifiableObject object : objects) serialized.add(objectMapper.writeValueAsString(object));
+        return serialized;
+    }
+
+    private static class PublishedEvent {
+
+        private final EventType type;
+        private final Set<String> scope; // Only determined while any subscription uses filters
+        private final Message message;
+
+        private PublishedEvent(EventType type, Set<String> scope, Message message) {
+            this.type = type;
+            this.scope = scope;
+            this.message = message;
+        }
+    }
+
+    private static class Snapshot {
+
+        private final long version;
+        private final Message data;
+
+        private Snapshot(long version, Message data) {
+            this.version = version;
+            this.data = data;
+        }
+    }
+
+}
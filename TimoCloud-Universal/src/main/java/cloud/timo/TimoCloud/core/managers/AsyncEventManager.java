@@ -0,0 +1,313 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.api.events.Event;
+import cloud.timo.TimoCloud.api.events.Listener;
+import cloud.timo.TimoCloud.api.implementations.managers.EventManager;
+import cloud.timo.TimoCloud.api.objects.*;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.ThreadExecutorMap;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers events to listeners on worker threads instead of the thread firing them, which is often a Netty event loop.
+ * <p>
+ * Every listener has a bounded queue, split into lanes by the object the event concerns. Events concerning the same player,
+ * server, proxy, base, cord or group always end up in the same lane and are delivered in the order they were fired.
+ * If a listener's queue is full, the firing thread either waits (BLOCK) or the event is not delivered to that listener (DROP).
+ * Netty event loops and listeners firing events themselves never wait, their events are dropped instead, so that neither the connection
+ * nor the thread which would empty the queue is blocked.
+ * <p>
+ * The core's own listeners are never dropped: synchronous listeners are called by the firing thread, internal listeners have a queue
+ * without a bound.
+ */
+public class AsyncEventManager extends EventManager {
+
+    private static final int LANES = 16; // Per listener
+    private static final int BATCH_SIZE = 64; // Events delivered before a lane gives other lanes a turn
+    private static final long SLOW_HANDLER_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final Map<Class<?>, List<Method>> SOURCE_METHODS = new ConcurrentHashMap<>();
+    private static final List<Class<?>> SOURCE_TYPES = Arrays.asList( // In order of preference
+            PlayerObject.class, ServerObject.class, ProxyObject.class, BaseObject.class, CordObject.class, ServerGroupObject.class, ProxyGroupObject.class);
+
+    public enum OverflowPolicy {
+        BLOCK, DROP
+    }
+
+    private final int queueSize;
+    private final OverflowPolicy overflowPolicy;
+    private final ExecutorService executor;
+    private final Map<Listener, ListenerQueue> queues = new ConcurrentHashMap<>();
+    private final Set<Listener> synchronousListeners = ConcurrentHashMap.newKeySet();
+    private final Set<Listener> internalListeners = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<Boolean> delivering = ThreadLocal.withInitial(() -> false);
+
+    public AsyncEventManager(int queueSize, OverflowPolicy overflowPolicy, int threads) {
+        this.queueSize = queueSize;
+        this.overflowPolicy = overflowPolicy;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "TimoCloud-Events-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers a listener which is called by the thread firing the event, e.g. one which keeps the player counts. Its handlers have to be fast.
+     */
+    public synchronized void registerSynchronousListener(Listener listener) {
+        synchronousListeners.add(listener);
+        registerListener(listener);
+    }
+
+    /**
+     * Registers a listener of the core whose queue has no bound, so that none of its events are dropped and the firing thread never waits
+     */
+    public synchronized void registerInternalListener(Listener listener) {
+        internalListeners.add(listener);
+        registerListener(listener);
+    }
+
+    @Override
+    public synchronized void unregisterListener(Listener listener) {
+        super.unregisterListener(listener);
+        synchronousListeners.remove(listener);
+        internalListeners.remove(listener);
+        queues.remove(listener); // Events already queued are still delivered
+    }
+
+    @Override
+    protected void fireEvent(Event event) {
+        RegisteredHandler[] handlers = getHandlers(event.getClass());
+        if (handlers.length == 0) return;
+        int lane = Math.floorMod(Objects.hashCode(getSourceId(event)), LANES);
+        long fired = System.nanoTime();
+        int from = 0;
+        for (int i = 1; i <= handlers.length; i++) {
+            if (i < handlers.length && handlers[i].getListener() == handlers[from].getListener()) continue;
+            Listener listener = handlers[from].getListener();
+            if (synchronousListeners.contains(listener)) {
+                for (int j = from; j < i; j++) handlers[j].handle(event);
+            } else {
+                queues.computeIfAbsent(listener, ListenerQueue::new).enqueue(lane, event, Arrays.copyOfRange(handlers, from, i), fired);
+            }
+            from = i;
+        }
+    }
+
+    private static boolean isEventLoop() {
+        EventExecutor executor = ThreadExecutorMap.currentExecutor();
+        return executor != null && executor.inEventLoop();
+    }
+
+    /**
+     * @return The ID of the object the event concerns, null if there is none
+     */
+    private static String getSourceId(Event event) {
+        for (Method method : SOURCE_METHODS.computeIfAbsent(event.getClass(), AsyncEventManager::findSourceMethods)) {
+            try {
+                Object source = method.invoke(event);
+                if (source != null) return ((IdentifiableObject) source).getId();
+            } catch (Exception ignored) {
+            }
+        }
+        return null;
+    }
+
+    private static List<Method> findSourceMethods(Class<?> eventClass) {
+        List<Method> methods = new ArrayList<>();
+        for (Class<?> type : SOURCE_TYPES) {
+            for (Method method : eventClass.getMethods()) {
+                if (method.getParameterCount() != 0 || Modifier.isStatic(method.getModifiers())) continue;
+                if (type.isAssignableFrom(method.getReturnType())) methods.add(method);
+            }
+        }
+        return methods;
+    }
+
+    public Collection<ListenerQueue> getQueues() {
+        return queues.values();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * The queue of a single listener and how fast it is handling its events
+     */
+    public class ListenerQueue {
+
+        private final String name;
+        private final boolean bounded;
+        private final Semaphore capacity = new Semaphore(queueSize);
+        private final AtomicInteger queued = new AtomicInteger();
+        private final Lane[] lanes = new Lane[LANES];
+        private final LongAdder handled = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder waitingNanos = new LongAdder();
+        private final LongAdder handlingNanos = new LongAdder();
+        private volatile long maxHandlingNanos;
+
+        private ListenerQueue(Listener listener) {
+            this.name = listener.getClass().getName();
+            this.bounded = !internalListeners.contains(listener);
+            for (int i = 0; i < LANES; i++) lanes[i] = new Lane(this);
+        }
+
+        private void enqueue(int lane, Event event, RegisteredHandler[] handlers, long fired) {
+            if (!bounded) {
+                queued.incrementAndGet();
+                lanes[lane].add(new Delivery(event, handlers, fired, false));
+                return;
+            }
+            boolean acquired = capacity.tryAcquire();
+            if (!acquired && (overflowPolicy == OverflowPolicy.DROP || isEventLoop())) {
+                drop();
+                return;
+            }
+            if (!acquired && !delivering.get()) { // Listeners firing events must not wait, they might wait for themselves
+                try {
+                    capacity.acquire();
+                    acquired = true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop();
+                    return;
+                }
+            }
+            queued.incrementAndGet();
+            lanes[lane].add(new Delivery(event, handlers, fired, acquired));
+        }
+
+        private void drop() {
+            dropped.increment();
+            if (dropped.sum() % 1000 == 1) {
+                TimoCloudCore.getInstance().warning("The event queue of " + name + " is full, " + dropped.sum() + " events have not been delivered to it so far.");
+            }
+        }
+
+        private void deliver(Delivery delivery) {
+            long started = System.nanoTime();
+            try {
+                for (RegisteredHandler handler : delivery.handlers) handler.handle(delivery.event);
+            } finally {
+                long finished = System.nanoTime();
+                long took = finished - started;
+                handled.increment();
+                waitingNanos.add(started - delivery.fired);
+                handlingNanos.add(took);
+                if (took > maxHandlingNanos) maxHandlingNanos = took;
+                if (took >= SLOW_HANDLER_NANOS) {
+                    TimoCloudCore.getInstance().warning(name + " took " + TimeUnit.NANOSECONDS.toMillis(took) + "ms to handle " + delivery.event.getType() + ".");
+                }
+                queued.decrementAndGet();
+                if (delivery.acquired) capacity.release();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getHandled() {
+            return handled.sum();
+        }
+
+        public long getDropped() {
+            return dropped.sum();
+        }
+
+        public int getQueued() {
+            return queued.get();
+        }
+
+        /**
+         * @return Average time in milliseconds between firing an event and the listener starting to handle it
+         */
+        public double getAverageWaitingTime() {
+            long handled = getHandled();
+            return handled == 0 ? 0 : waitingNanos.sum() / 1e6 / handled;
+        }
+
+        /**
+         * @return Average time in milliseconds the listener took to handle an event
+         */
+        public double getAverageHandlingTime() {
+            long handled = getHandled();
+            return handled == 0 ? 0 : handlingNanos.sum() / 1e6 / handled;
+        }
+
+        public double getMaxHandlingTime() {
+            return maxHandlingNanos / 1e6;
+        }
+    }
+
+    /**
+     * Events of one listener which have to be delivered in order. At most one worker thread delivers a lane's events at a time.
+     */
+    private class Lane implements Runnable {
+
+        private final ListenerQueue queue;
+        private final ArrayDeque<Delivery> pending = new ArrayDeque<>(); // Guarded by this
+        private boolean scheduled; // Guarded by this
+
+        private Lane(ListenerQueue queue) {
+            this.queue = queue;
+        }
+
+        private void add(Delivery delivery) {
+            boolean schedule;
+            synchronized (this) {
+                pending.addLast(delivery);
+                schedule = !scheduled;
+                scheduled = true;
+            }
+            if (schedule) executor.execute(this);
+        }
+
+        @Override
+        public void run() {
+            delivering.set(true);
+            try {
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    Delivery delivery;
+                    synchronized (this) {
+                        delivery = pending.pollFirst();
+                        if (delivery == null) {
+                            scheduled = false;
+                            return;
+                        }
+                    }
+                    queue.deliver(delivery);
+                }
+            } finally {
+                delivering.set(false);
+            }
+            executor.execute(this);
+        }
+    }
+
+    private static class Delivery {
+
+        private final Event event;
+        private final RegisteredHandler[] handlers;
+        private final long fired;
+        private final boolean acquired; // False if the queue was full and the event was fired by a listener, or if the queue has no bound
+
+        private Delivery(Event event, RegisteredHandler[] handlers, long fired, boolean acquired) {
+            this.event = event;
+            this.handlers = handlers;
+            this.fired = fired;
+            this.acquired = acquired;
+        }
+    }
+
+}
@@ -0,0 +1,318 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.core.objects.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of what the instance demands depend on, so that {@link CoreInstanceManager#processInstanceDemands()} only has to look at
+ * groups which changed since the last tick instead of scanning all groups, instances and bases.
+ * <p>
+ * Groups are marked as changed when one of their instances is added, removed, changes its state or player count, or when the group itself
+ * is changed. Groups which need instances but found no base wait until a base's capacity grows. Since a missed change would leave a group
+ * alone forever, all groups are looked at again every {@code fullScanInterval} ticks.
+ */
+public class AutoScaler {
+
+    private static final int MAX_DECISIONS = 100;
+
+    private enum InstanceState {
+        STARTING, RUNNING, INACTIVE
+    }
+
+    private final int fullScanInterval;
+    private final Set<Group> changedGroups = ConcurrentHashMap.newKeySet();
+    private final Set<Group> waitingForBase = ConcurrentHashMap.newKeySet();
+    private final Map<Server, InstanceState> serverStates = new HashMap<>(); // Guarded by itself
+    private final Map<ServerGroup, Integer> running = new HashMap<>(); // Guarded by serverStates
+    private final Map<ServerGroup, Integer> starting = new HashMap<>(); // Guarded by serverStates
+    private final TreeSet<BaseCapacity> freeBases = new TreeSet<>(); // Guarded by itself
+    private final Map<Base, BaseCapacity> baseCapacities = new HashMap<>(); // Guarded by freeBases
+    private final Deque<Decision> decisions = new ArrayDeque<>(); // Guarded by itself
+    private volatile boolean fullScanRequested = true;
+    private int ticksSinceFullScan;
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong fullScans = new AtomicLong();
+    private volatile int lastTickGroups;
+    private volatile long lastTickNanos;
+
+    /**
+     * @param fullScanInterval Number of ticks after which all groups are looked at again, even if no change has been noticed
+     */
+    public AutoScaler(int fullScanInterval) {
+        this.fullScanInterval = fullScanInterval;
+    }
+
+    /**
+     * Called at the beginning of a tick
+     *
+     * @param allGroups All groups which currently exist
+     * @param allBases  All bases which currently exist, only needed for full scans
+     * @return The groups whose demand has to be calculated again
+     */
+    public Collection<Group> pollChangedGroups(Collection<Group> allGroups, Collection<Base> allBases) {
+        ticks.incrementAndGet();
+        if (fullScanRequested || ++ticksSinceFullScan >= fullScanInterval) {
+            fullScanRequested = false;
+            ticksSinceFullScan = 0;
+            fullScans.incrementAndGet();
+            changedGroups.clear();
+            waitingForBase.clear();
+            synchronized (serverStates) { // Servers changing meanwhile are counted after the reset, not lost by it
+                serverStates.clear();
+                running.clear();
+                starting.clear();
+                for (Group group : allGroups) {
+                    if (group instanceof ServerGroup) recount((ServerGroup) group);
+                }
+            }
+            synchronized (freeBases) {
+                freeBases.clear();
+                baseCapacities.clear();
+            }
+            for (Base base : allBases) baseChanged(base);
+            return allGroups;
+        }
+        Set<Group> existing = new HashSet<>(allGroups);
+        List<Group> changed = new ArrayList<>();
+        for (Iterator<Group> iterator = changedGroups.iterator(); iterator.hasNext(); ) {
+            Group group = iterator.next();
+            iterator.remove();
+            if (existing.contains(group)) changed.add(group);
+            else forget(group);
+        }
+        return changed;
+    }
+
+    /**
+     * Called at the end of a tick
+     */
+    public void tickFinished(int groups, long nanos) {
+        this.lastTickGroups = groups;
+        this.lastTickNanos = nanos;
+    }
+
+    /**
+     * Makes the next tick look at all groups and recount their instances
+     */
+    public void requestFullScan() {
+        fullScanRequested = true;
+    }
+
+    public void groupChanged(Group group) {
+        if (group instanceof ServerGroup) recount((ServerGroup) group); // Sort out states may have changed
+        waitingForBase.remove(group);
+        changedGroups.add(group);
+    }
+
+    public void serverChanged(Server server) {
+        ServerGroup group = server.getGroup();
+        if (group.getServerById(server.getId()) != server) return; // Not started yet or already removed
+        synchronized (serverStates) {
+            InstanceState state = server.isStarting() ? InstanceState.STARTING
+                    : CoreInstanceManager.isStateActive(server.getState(), group) ? InstanceState.RUNNING : InstanceState.INACTIVE;
+            InstanceState old = serverStates.put(server, state);
+            if (old != state) {
+                count(group, old, -1);
+                count(group, state, 1);
+            }
+        }
+        changedGroups.add(group);
+    }
+
+    public void serverRemoved(Server server) {
+        synchronized (serverStates) {
+            count(server.getGroup(), serverStates.remove(server), -1);
+        }
+        changedGroups.add(server.getGroup());
+    }
+
+    public void proxyChanged(Proxy proxy) {
+        changedGroups.add(proxy.getGroup());
+    }
+
+    /**
+     * @return Number of servers of the group which are started but not registered yet
+     */
+    public int getStarting(ServerGroup group) {
+        synchronized (serverStates) {
+            return starting.getOrDefault(group, 0);
+        }
+    }
+
+    /**
+     * @return Number of registered servers of the group which are not sorted out
+     */
+    public int getRunning(ServerGroup group) {
+        synchronized (serverStates) {
+            return running.getOrDefault(group, 0);
+        }
+    }
+
+    /**
+     * Has to be called while holding the lock of serverStates
+     */
+    private void count(ServerGroup group, InstanceState state, int delta) {
+        if (state == InstanceState.STARTING) starting.merge(group, delta, Integer::sum);
+        else if (state == InstanceState.RUNNING) running.merge(group, delta, Integer::sum);
+    }
+
+    private void recount(ServerGroup group) {
+        for (Server server : group.getServers()) serverChanged(server);
+    }
+
+    private void forget(Group group) {
+        waitingForBase.remove(group);
+        synchronized (serverStates) {
+            running.remove(group);
+            starting.remove(group);
+            serverStates.keySet().removeIf(server -> server.getGroup() == group);
+        }
+    }
+
+    /**
+     * Updates the base's position in the capacity index. Groups waiting for a base are looked at again if they might fit on it now.
+     */
+    public void baseChanged(Base base) {
+        boolean usable = base.isConnected() && base.isReady() && !base.isStaticOnly();
+        int availableRam = base.getAvailableRam();
+        synchronized (freeBases) {
+            BaseCapacity old = baseCapacities.remove(base);
+            if (old != null) freeBases.remove(old);
+            if (!usable) return;
+            BaseCapacity capacity = new BaseCapacity(base, availableRam);
+            freeBases.add(capacity);
+            baseCapacities.put(base, capacity);
+            if (old != null && old.availableRam >= availableRam) return; // Nothing fits which did not fit before
+        }
+        for (Iterator<Group> iterator = waitingForBase.iterator(); iterator.hasNext(); ) {
+            Group group = iterator.next();
+            if (group.getRam() > availableRam || (group.getBase() != null && !group.getBase().equals(base))) continue;
+            iterator.remove();
+            changedGroups.add(group);
+        }
+    }
+
+    public void baseRemoved(Base base) {
+        synchronized (freeBases) {
+            BaseCapacity old = baseCapacities.remove(base);
+            if (old != null) freeBases.remove(old);
+        }
+    }
+
+    /**
+     * @return The usable base with the least available RAM the group fits on, null if there is none
+     */
+    public Base getFreeBase(Group group) {
+        if (group.isStatic() && group.getBase() == null) return null; // A static group has to have a base specified statically
+        synchronized (freeBases) {
+            if (group.getBase() != null) {
+                BaseCapacity capacity = baseCapacities.get(group.getBase());
+                return capacity != null && capacity.availableRam >= group.getRam() ? capacity.base : null;
+            }
+            BaseCapacity capacity = freeBases.ceiling(new BaseCapacity(null, group.getRam()));
+            return capacity == null ? null : capacity.base;
+        }
+    }
+
+    /**
+     * The group needs instances but no base has enough capacity. It is looked at again once a base's capacity grows.
+     */
+    public void waitForBase(Group group) {
+        waitingForBase.add(group);
+    }
+
+    public Collection<Group> getWaitingGroups() {
+        return Collections.unmodifiableSet(waitingForBase);
+    }
+
+    public void recordDecision(Group group, int needed, String action) {
+        synchronized (decisions) {
+            if (decisions.size() >= MAX_DECISIONS) decisions.removeFirst();
+            decisions.addLast(new Decision(System.currentTimeMillis(), group.getName(), needed, action));
+        }
+    }
+
+    /**
+     * @return The latest scheduling decisions, oldest first
+     */
+    public List<Decision> getDecisions() {
+        synchronized (decisions) {
+            return new ArrayList<>(decisions);
+        }
+    }
+
+    public long getTicks() {
+        return ticks.get();
+    }
+
+    public long getFullScans() {
+        return fullScans.get();
+    }
+
+    /**
+     * @return Number of groups whose demand was calculated during the last tick
+     */
+    public int getLastTickGroups() {
+        return lastTickGroups;
+    }
+
+    public double getLastTickMillis() {
+        return lastTickNanos / 1e6;
+    }
+
+    private static class BaseCapacity implements Comparable<BaseCapacity> {
+
+        private final Base base; // Null for lookups
+        private final int availableRam;
+
+        private BaseCapacity(Base base, int availableRam) {
+            this.base = base;
+            this.availableRam = availableRam;
+        }
+
+        @Override
+        public int compareTo(BaseCapacity o) {
+            if (availableRam != o.availableRam) return Integer.compare(availableRam, o.availableRam);
+            if (base == null || o.base == null) return base == null ? (o.base == null ? 0 : -1) : 1; // Lookups come before all bases with the same RAM
+            return base.getId().compareTo(o.base.getId());
+        }
+    }
+
+    public static class Decision {
+
+        private final long time;
+        private final String group;
+        private final int needed;
+        private final String action;
+
+        private Decision(long time, String group, int needed, String action) {
+            this.time = time;
+            this.group = group;
+            this.needed = needed;
+            this.action = action;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        /**
+         * @return How many instances the group needed when the decision was made, negative if it had too many
+         */
+        public int getNeeded() {
+            return needed;
+        }
+
+        public String getAction() {
+            return action;
+        }
+    }
+
+}
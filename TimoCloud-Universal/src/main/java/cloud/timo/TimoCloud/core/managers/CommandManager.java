@@ -43,6 +43,11 @@ public class CommandManager {
         registerCommand(new DebugCommandHandler(), "debug");
         registerCommand(new DeleteGroupCommand(), "deletegroup", "removegroup");
         registerCommand(new EditGroupCommandHandler(), "editgroup");
+        registerCommand(new EventStatsCommandHandler(), "eventstats", "events");
+        registerCommand(new APIStatsCommandHandler(), "apistats");
+        registerCommand(new NetStatsCommandHandler(), "netstats");
+        registerCommand(new HealthStatsCommandHandler(), "healthstats", "health");
+        registerCommand(new AutoScalerCommandHandler(), "autoscaler", "scaling");
         registerCommand(new GroupInfoCommandHandler(), "groupinfo", "group");
         registerCommand(new HelpCommandHandler(), "help", "?");
         registerCommand(new ListBasesCommand(), "listbases", "bases", "showbases");
@@ -15,10 +15,8 @@ import cloud.timo.TimoCloud.api.objects.ServerObject;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
-import cloud.timo.TimoCloud.core.objects.Base;
 import cloud.timo.TimoCloud.core.objects.Proxy;
 import cloud.timo.TimoCloud.core.objects.Server;
-import cloud.timo.TimoCloud.core.sockets.Communicatable;
 
 public class CoreEventManager implements Listener {
 
@@ -27,10 +25,7 @@ public class CoreEventManager implements Listener {
                 .setType(MessageType.EVENT_FIRED)
                 .set("eT", event.getType().name())
                 .setData(eventToJSON(event));
-        for (Communicatable communicatable : TimoCloudCore.getInstance().getInstanceManager().getAllCommunicatableInstances()) {
-            if (communicatable instanceof Base) continue; // Bases do not support events
-            communicatable.sendMessage(message);
-        }
+        TimoCloudCore.getInstance().getApiStateManager().publish(event, message);
         ((EventManager) TimoCloudAPI.getEventAPI()).callEvent(event);
     }
 
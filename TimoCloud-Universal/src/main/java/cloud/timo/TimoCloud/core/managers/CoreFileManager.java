@@ -177,6 +177,13 @@ public class CoreFileManager {
         return logsDirectory;
     }
 
+    /**
+     * @return The directory the logs of servers and proxies are written to once they do not fit into memory anymore
+     */
+    public File getInstanceLogsDirectory() {
+        return new File(getLogsDirectory(), "instances/");
+    }
+
     public File getDebugDirectory() {
         return debugDirectory;
     }
@@ -8,6 +8,7 @@ import cloud.timo.TimoCloud.api.objects.ServerObject;
 import cloud.timo.TimoCloud.api.objects.properties.BaseProperties;
 import cloud.timo.TimoCloud.common.events.EventTransmitter;
 import cloud.timo.TimoCloud.common.json.GsonFactory;
+import cloud.timo.TimoCloud.common.log.LogStorage;
 import cloud.timo.TimoCloud.common.utils.RandomIdGenerator;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
 import cloud.timo.TimoCloud.core.objects.*;
@@ -17,6 +18,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.reflect.TypeToken;
 import io.netty.channel.Channel;
+import org.apache.commons.io.FileDeleteStrategy;
 
 import java.io.File;
 import java.net.InetAddress;
@@ -27,12 +29,13 @@ import java.util.stream.Stream;
 
 public class CoreInstanceManager {
 
-    private IdentifiableStorage<ServerGroup> serverGroups;
-    private IdentifiableStorage<ProxyGroup> proxyGroups;
-    private IdentifiableStorage<Server> servers;
-    private IdentifiableStorage<Proxy> proxies;
-    private IdentifiableStorage<Base> bases;
-    private IdentifiableStorage<Cord> cords;
+    private volatile IdentifiableStorage<ServerGroup> serverGroups;
+    private volatile IdentifiableStorage<ProxyGroup> proxyGroups;
+    private volatile IdentifiableStorage<Server> servers;
+    private volatile IdentifiableStorage<Proxy> proxies;
+    private volatile IdentifiableStorage<Base> bases;
+    private volatile IdentifiableStorage<Cord> cords;
+    private AutoScaler autoScaler;
     // TODO Store players here, not in proxy objects
 
     private static final int MAX_SERVERS = 2500;
@@ -51,6 +54,8 @@ public class CoreInstanceManager {
         proxies = new IdentifiableStorage<>();
         bases = new IdentifiableStorage<>();
         cords = new IdentifiableStorage<>();
+        autoScaler = new AutoScaler((Integer) TimoCloudCore.getInstance().getFileManager().getConfig().get("autoscaler-full-scan-interval"));
+        FileDeleteStrategy.FORCE.deleteQuietly(TimoCloudCore.getInstance().getFileManager().getInstanceLogsDirectory()); // Instances of the last run do not exist anymore
     }
 
     /**
@@ -81,6 +86,7 @@ public class CoreInstanceManager {
                 serverGroups.add(serverGroup);
             }
             this.serverGroups = serverGroups;
+            autoScaler.requestFullScan();
         } catch (Exception e) {
             TimoCloudCore.getInstance().severe("Error while loading server groups: ");
             e.printStackTrace();
@@ -106,6 +112,7 @@ public class CoreInstanceManager {
                 proxyGroups.add(proxyGroup);
             }
             this.proxyGroups = proxyGroups;
+            autoScaler.requestFullScan();
         } catch (Exception e) {
             TimoCloudCore.getInstance().severe("Error while loading proxy groups: ");
             e.printStackTrace();
@@ -131,6 +138,7 @@ public class CoreInstanceManager {
                 }
             }
             this.bases = bases;
+            autoScaler.requestFullScan();
         } catch (Exception e) {
             TimoCloudCore.getInstance().severe("Error while loading bases: ");
             e.printStackTrace();
@@ -275,6 +283,7 @@ public class CoreInstanceManager {
      */
     public void createGroup(ServerGroup group) {
         serverGroups.add(group);
+        autoScaler.groupChanged(group);
         saveServerGroups();
         EventTransmitter.sendEvent(new ServerGroupCreatedEventBasicImplementation(group.toGroupObject()));
     }
@@ -286,6 +295,7 @@ public class CoreInstanceManager {
      */
     public void createGroup(ProxyGroup group) {
         proxyGroups.add(group);
+        autoScaler.groupChanged(group);
         saveProxyGroups();
         EventTransmitter.sendEvent(new ProxyGroupCreatedEventBasicImplementation(group.toGroupObject()));
     }
@@ -317,12 +327,20 @@ public class CoreInstanceManager {
     /**
      * Looks for a free base and starts an instance if a free base is found
      *
-     * @param group The group of which an instance shall be started
+     * @param group  The group of which an instance shall be started
+     * @param needed How many instances the group needs, for the decision log
+     * @return Whether a free base has been found
      */
-    private void startInstance(Group group) {
+    private boolean startInstance(Group group, int needed) {
         Base base = getFreeBase(group);
-        if (base == null) return;
+        if (base == null) {
+            autoScaler.waitForBase(group);
+            autoScaler.recordDecision(group, needed, "No base with " + group.getRam() + "MB free RAM available");
+            return false;
+        }
         startInstance(group, base);
+        autoScaler.recordDecision(group, needed, "Starting an instance on base " + base.getName());
+        return true;
     }
 
     /**
@@ -419,36 +437,29 @@ public class CoreInstanceManager {
 
     /**
      * @param group The group a free base shall be searched for
-     * @return A base object if a free base is found, otherwise null
+     * @return The connected and ready base with the least available RAM the group fits on, null if there is none
      */
     public Base getFreeBase(Group group) {
-        if (group.isStatic() && group.getBase() == null)
-            return null; // A static group has to have a base specified statically
-        return getBases().stream()
-                .filter(Base::isConnected)
-                .filter(Base::isReady)
-                .filter(base -> !base.isStaticOnly())
-                .filter(base -> group.getBase() == null || group.getBase().equals(base))
-                .filter(base -> base.getAvailableRam() >= group.getRam())
-                .min(Comparator.comparingInt(Base::getAvailableRam)).orElse(null);
+        return autoScaler.getFreeBase(group);
     }
 
     /**
      * This is TimoCloud's core method.
      * It stops unneeded servers/proxies, checks how many instances of server- & proxy groups are needed, looks for free bases and starts the instances
      * First, demands of static groups will be processed, then the demands of dynamic groups follow
+     * Only groups which changed since the last call are looked at, see {@link AutoScaler}
      */
     public void processInstanceDemands() {
         if (TimoCloudCore.getInstance().isShuttingDown()) return;
-
-        stopUnneededServers();
-        stopUnneededProxies();
+        long started = System.nanoTime();
+        Collection<Group> groups = autoScaler.pollChangedGroups(getGroups(), getBases());
 
         Queue<GroupInstanceDemand> demands = new PriorityQueue<>();
         Queue<GroupInstanceDemand> staticDemands = new PriorityQueue<>();
 
-        for (Group group : getGroups()) {
+        for (Group group : groups) {
             int amount = needed(group);
+            if (amount < 0) stopUnneededInstances(group, amount);
             if (amount <= 0) continue;
             if (group.isStatic()) staticDemands.add(new GroupInstanceDemand(group, 1));
             else demands.add(new GroupInstanceDemand(group, amount));
@@ -456,50 +467,43 @@ public class CoreInstanceManager {
 
         while (!staticDemands.isEmpty()) { // Start static instances first
             GroupInstanceDemand demand = staticDemands.poll();
-            startInstance(demand.getGroup());
+            startInstance(demand.getGroup(), demand.getAmount());
         }
 
         while (!demands.isEmpty()) { // Start non-static instances
             GroupInstanceDemand demand = demands.poll();
-            startInstance(demand.getGroup());
+            if (!startInstance(demand.getGroup(), demand.getAmount())) continue; // The group waits until a base has enough capacity
             demand.changeAmount(-1);
             if (demand.getAmount() > 0) demands.add(demand);
         }
+        autoScaler.tickFinished(groups.size(), System.nanoTime() - started);
     }
 
     /**
-     * If there are empty, unneeded servers, they will be stopped
+     * If there are empty, unneeded servers/proxies, they will be stopped
+     *
+     * @param needed How many instances the group needs, negative
      */
-    private void stopUnneededServers() {
-        for (ServerGroup group : getServerGroups()) {
-            int amount = serversNeeded(group);
-            int stopAmount = -amount;
-            for (int i = 0; i < stopAmount; i++) {
-                for (Server server : group.getServers()) {
-                    if (server.getOnlinePlayerCount() == 0 && isStateActive(server.getState(), server.getGroup())) {
-                        TimoCloudCore.getInstance().info("Stopping server " + server.getName() + " because no players are online and it is no longer needed.");
-                        server.stop();
-                        break;
-                    }
+    private void stopUnneededInstances(Group group, int needed) {
+        int stopAmount = -needed;
+        if (group instanceof ServerGroup) {
+            for (Server server : ((ServerGroup) group).getServers()) {
+                if (stopAmount == 0) break;
+                if (server.getOnlinePlayerCount() == 0 && isStateActive(server.getState(), server.getGroup())) {
+                    TimoCloudCore.getInstance().info("Stopping server " + server.getName() + " because no players are online and it is no longer needed.");
+                    autoScaler.recordDecision(group, needed, "Stopping server " + server.getName());
+                    server.stop();
+                    stopAmount--;
                 }
             }
-        }
-    }
-
-    /**
-     * If there are empty, unneeded proxies, they will be stopped
-     */
-    private void stopUnneededProxies() {
-        for (ProxyGroup group : getProxyGroups()) {
-            int amount = proxiesNeeded(group);
-            int stopAmount = -amount;
-            for (int i = 0; i < stopAmount; i++) {
-                for (Proxy proxy : group.getProxies()) {
-                    if (proxy.getOnlinePlayerCount() == 0) {
-                        TimoCloudCore.getInstance().info("Stopping proxy " + proxy.getName() + " because no players are online and it is no longer needed.");
-                        proxy.stop();
-                        break;
-                    }
+        } else if (group instanceof ProxyGroup) {
+            for (Proxy proxy : ((ProxyGroup) group).getProxies()) {
+                if (stopAmount == 0) break;
+                if (proxy.getOnlinePlayerCount() == 0) {
+                    TimoCloudCore.getInstance().info("Stopping proxy " + proxy.getName() + " because no players are online and it is no longer needed.");
+                    autoScaler.recordDecision(group, needed, "Stopping proxy " + proxy.getName());
+                    proxy.stop();
+                    stopAmount--;
                 }
             }
         }
@@ -590,7 +594,7 @@ public class CoreInstanceManager {
      * @return How many additional instances of the given group are needed. Negative if more servers are online than needed
      */
     private int serversNeeded(ServerGroup group) {
-        int running = (int) group.getServers().stream().filter((server) -> isStateActive(server.getState(), group) || server.isStarting()).count();
+        int running = autoScaler.getRunning(group) + autoScaler.getStarting(group);
         int needed = group.getOnlineAmount() - running;
         return group.getMaxAmount() > 0 ? Math.min(needed, group.getMaxAmount() - group.getServers().size()) : needed;
     }
@@ -618,7 +622,7 @@ public class CoreInstanceManager {
      * @param group A server group
      * @return Whether a server with the given state is considered as active (free) or as used
      */
-    private boolean isStateActive(String state, ServerGroup group) {
+    static boolean isStateActive(String state, ServerGroup group) {
         return !(state.equals("OFFLINE") || group.getSortOutStates().contains(state));
     }
 
@@ -795,6 +799,7 @@ public class CoreInstanceManager {
      */
     public void addServer(Server server) {
         servers.add(server);
+        autoScaler.serverChanged(server);
     }
 
     /**
@@ -802,6 +807,8 @@ public class CoreInstanceManager {
      */
     public void removeServer(Server server) {
         servers.remove(server);
+        autoScaler.serverRemoved(server);
+        server.closeLogStorage();
     }
 
     /**
@@ -809,6 +816,7 @@ public class CoreInstanceManager {
      */
     public void addProxy(Proxy proxy) {
         proxies.add(proxy);
+        autoScaler.proxyChanged(proxy);
     }
 
     /**
@@ -816,6 +824,52 @@ public class CoreInstanceManager {
      */
     public void removeProxy(Proxy proxy) {
         proxies.remove(proxy);
+        autoScaler.proxyChanged(proxy);
+        proxy.closeLogStorage();
+    }
+
+    /**
+     * Creates the storage for the log of the server or proxy with the given id, limited as configured
+     */
+    public LogStorage createLogStorage(String instanceId) {
+        Map<String, Object> config = TimoCloudCore.getInstance().getFileManager().getConfig();
+        return new LogStorage(
+                (Integer) config.get("log-storage-segment-size"),
+                (Integer) config.get("log-storage-segments"),
+                new File(TimoCloudCore.getInstance().getFileManager().getInstanceLogsDirectory(), instanceId),
+                ((Number) config.get("log-storage-disk")).longValue());
+    }
+
+    /**
+     * Called when something the server's group's demand depends on changed, e.g. its state or player count
+     */
+    public void onServerChanged(Server server) {
+        autoScaler.serverChanged(server);
+    }
+
+    /**
+     * Called when something the proxy's group's demand depends on changed, e.g. its player count
+     */
+    public void onProxyChanged(Proxy proxy) {
+        autoScaler.proxyChanged(proxy);
+    }
+
+    /**
+     * Called when a setting the group's demand depends on changed
+     */
+    public void onGroupChanged(Group group) {
+        autoScaler.groupChanged(group);
+    }
+
+    /**
+     * Called when the base's connection, readiness or available RAM changed
+     */
+    public void onBaseChanged(Base base) {
+        autoScaler.baseChanged(base);
+    }
+
+    public AutoScaler getAutoScaler() {
+        return autoScaler;
     }
 
     /**
@@ -908,14 +962,9 @@ public class CoreInstanceManager {
      * @return A cord object with the given properties
      */
     public Cord getOrCreateCord(String name, InetAddress address, Channel channel) {
-        Cord cord = cords.getByIdentifier(name);
-        if (cord == null) {
-            cord = new Cord(name, address, channel);
-            cords.add(cord);
-        } else {
-            cord.setChannel(channel);
-            cord.setAddress(address);
-        }
+        Cord cord = cords.getByIdentifierOrAdd(name, () -> new Cord(name, address, channel));
+        cord.setChannel(channel);
+        cord.setAddress(address);
         return cord;
     }
 
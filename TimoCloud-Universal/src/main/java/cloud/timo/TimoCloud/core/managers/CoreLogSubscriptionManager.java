@@ -0,0 +1,168 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.api.TimoCloudAPI;
+import cloud.timo.TimoCloud.api.messages.objects.AddressedPluginMessage;
+import cloud.timo.TimoCloud.api.messages.objects.MessageClientAddress;
+import cloud.timo.TimoCloud.api.messages.objects.PluginMessage;
+import cloud.timo.TimoCloud.api.objects.log.LogEntryObject;
+import cloud.timo.TimoCloud.api.objects.log.LogLevel;
+import cloud.timo.TimoCloud.common.log.LogEntry;
+import cloud.timo.TimoCloud.common.log.LogStorage;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Sends the entries of a server's or proxy's log to the API clients following it. Entries are filtered here and collected for a short
+ * interval, so that only matching entries are sent, several at once.
+ */
+public class CoreLogSubscriptionManager {
+
+    private static final int MAX_ENTRIES_PER_MESSAGE = 256;
+
+    private final long interval;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * @param interval Milliseconds entries are collected before they are sent
+     */
+    public CoreLogSubscriptionManager(long interval) {
+        this.interval = interval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TimoCloud-Log-Subscriptions");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts sending the storage's entries from the cursor on. A subscription with the same id is replaced, which is how clients continue
+     * after reconnecting.
+     *
+     * @param cursor       Sequence number of the first entry to send, -1 for new entries only
+     * @param minimumLevel Null for all levels
+     * @param pattern      Null for all messages
+     */
+    public void subscribe(String id, MessageClientAddress subscriber, LogStorage storage, long cursor, LogLevel minimumLevel, Pattern pattern) {
+        unsubscribe(id);
+        Subscription subscription = new Subscription(id, subscriber, storage, minimumLevel, pattern);
+        subscriptions.put(id, subscription);
+        storage.addListener(cursor, subscription);
+    }
+
+    public void unsubscribe(String id) {
+        Subscription subscription = subscriptions.remove(id);
+        if (subscription != null) subscription.storage.removeListener(subscription);
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    private class Subscription implements LogStorage.Listener {
+
+        private final String id;
+        private final MessageClientAddress subscriber;
+        private final LogStorage storage;
+        private final LogLevel minimumLevel;
+        private final Pattern pattern;
+        private final Object sendLock = new Object();
+        private List<LogEntry> entries = new ArrayList<>(); // Guarded by this
+        private List<Long> sequences = new ArrayList<>(); // Guarded by this
+        private long cursor = -1; // Guarded by this
+        private boolean scheduled; // Guarded by this
+
+        private Subscription(String id, MessageClientAddress subscriber, LogStorage storage, LogLevel minimumLevel, Pattern pattern) {
+            this.id = id;
+            this.subscriber = subscriber;
+            this.storage = storage;
+            this.minimumLevel = minimumLevel;
+            this.pattern = pattern;
+        }
+
+        /**
+         * Called while the storage is locked, so entries are only handed over to the scheduler, which filters and sends them
+         */
+        @Override
+        public void onEntry(LogEntry entry, long sequence) {
+            boolean sendNow = false;
+            boolean schedule = false;
+            synchronized (this) {
+                cursor = sequence + 1; // Entries which do not match do not have to be looked at again when continuing
+                entries.add(entry);
+                sequences.add(sequence);
+                if (entries.size() >= MAX_ENTRIES_PER_MESSAGE) {
+                    sendNow = true;
+                } else if (!scheduled) {
+                    scheduled = true;
+                    schedule = true;
+                }
+            }
+            if (sendNow) scheduler.execute(this::send);
+            else if (schedule) scheduler.schedule(this::send, interval, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void onClose() {
+            scheduler.execute(() -> {
+                send();
+                subscriptions.remove(id, this);
+            });
+        }
+
+        private boolean matches(LogEntry entry) {
+            if (minimumLevel != null && entry.getLevel() != null && entry.getLevel().ordinal() < minimumLevel.ordinal()) return false;
+            return pattern == null || (entry.getMessage() != null && pattern.matcher(entry.getMessage()).find());
+        }
+
+        /**
+         * Only called by the scheduler
+         */
+        private void send() {
+            synchronized (sendLock) { // Batches have to arrive in order, the client ignores entries before its cursor
+                List<LogEntry> entries;
+                List<Long> sequences;
+                long cursor;
+                synchronized (this) {
+                    scheduled = false;
+                    if (this.entries.isEmpty()) return;
+                    entries = this.entries;
+                    sequences = this.sequences;
+                    cursor = this.cursor;
+                    this.entries = new ArrayList<>();
+                    this.sequences = new ArrayList<>();
+                }
+                List<LogEntryObject> matching = new ArrayList<>();
+                List<Long> matchingSequences = new ArrayList<>();
+                for (int i = 0; i < entries.size(); i++) {
+                    if (!matches(entries.get(i))) continue;
+                    matching.add(entries.get(i).toLogEntryObject());
+                    matchingSequences.add(sequences.get(i));
+                }
+                if (matching.isEmpty()) return; // The client's cursor is moved on with the next batch
+                if (TimoCloudCore.getInstance().getPluginMessageManager().isReachable(subscriber)) {
+                    TimoCloudAPI.getMessageAPI().sendMessage(new AddressedPluginMessage(subscriber, new PluginMessage("TIMOCLOUD_LOG_ENTRIES")
+                            .set("subscription", id)
+                            .set("entries", matching)
+                            .set("sequences", matchingSequences)
+                            .set("cursor", cursor)));
+                    return;
+                }
+            }
+            unsubscribe(id); // The client is gone and will subscribe again if it comes back. Not done while sending, as it locks the storage
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.objects.Base;
+import cloud.timo.TimoCloud.core.objects.Instance;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks all servers' and proxies' timeouts and asks their bases whether their processes are still running.
+ * All instances are handled in one sweep on a single hashed wheel timer thread, PID requests are batched per base.
+ */
+public class InstanceHealthScheduler {
+
+    private static final long CHECK_INTERVAL = 5000; // Milliseconds
+    private static final long TICK_DURATION = 100; // Milliseconds
+
+    private final long checkInterval;
+    private final Map<String, Instance> instances;
+    private final Map<String, Long> pendingProbes; // Instance id -> time the PID request has been sent
+    private final HashedWheelTimer timer;
+    private volatile long nextSweep;
+
+    private volatile long lastTickLatency;
+    private volatile long maxTickLatency;
+    private volatile long lastSweepDuration;
+
+    public InstanceHealthScheduler() {
+        this(CHECK_INTERVAL);
+    }
+
+    /**
+     * @param checkInterval Milliseconds between two sweeps
+     */
+    InstanceHealthScheduler(long checkInterval) {
+        this.checkInterval = checkInterval;
+        this.instances = new ConcurrentHashMap<>();
+        this.pendingProbes = new ConcurrentHashMap<>();
+        this.timer = new HashedWheelTimer(new DefaultThreadFactory("TimoCloud-InstanceHealth", true), TICK_DURATION, TimeUnit.MILLISECONDS);
+        scheduleSweep(System.currentTimeMillis() + checkInterval);
+    }
+
+    public void register(Instance instance) {
+        instances.put(instance.getId(), instance);
+    }
+
+    public void unregister(Instance instance) {
+        instances.remove(instance.getId(), instance);
+        pendingProbes.remove(instance.getId());
+    }
+
+    private void scheduleSweep(long time) {
+        nextSweep = time;
+        timer.newTimeout(this::sweep, Math.max(0, time - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private void sweep(Timeout timeout) {
+        long start = System.currentTimeMillis();
+        lastTickLatency = Math.max(0, start - nextSweep);
+        maxTickLatency = Math.max(maxTickLatency, lastTickLatency);
+        try {
+            Map<Base, Map<String, Integer>> probes = new HashMap<>();
+            for (Instance instance : instances.values()) {
+                try {
+                    instance.checkTimeout();
+                    if (! instances.containsKey(instance.getId())) continue; // Has been killed because of a timeout
+                    if (instance.getPid() == -1 || instance.getBase() == null) continue;
+                    probes.computeIfAbsent(instance.getBase(), base -> new LinkedHashMap<>()).put(instance.getId(), instance.getPid());
+                } catch (Exception e) {
+                    TimoCloudCore.getInstance().severe("Error while checking health of instance " + instance.getName() + ": ");
+                    TimoCloudCore.getInstance().severe(e);
+                }
+            }
+            for (Map.Entry<Base, Map<String, Integer>> entry : probes.entrySet()) {
+                requestPidStatus(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            lastSweepDuration = System.currentTimeMillis() - start;
+            scheduleSweep(start + checkInterval);
+        }
+    }
+
+    private void requestPidStatus(Base base, Map<String, Integer> pids) {
+        long now = System.currentTimeMillis();
+        for (String id : pids.keySet()) pendingProbes.putIfAbsent(id, now);
+        if (base.isBatchedPidRequests()) {
+            base.sendMessage(Message.create()
+                    .setType(MessageType.BASE_PID_EXIST_REQUEST)
+                    .set("pids", pids));
+            return;
+        }
+        for (Map.Entry<String, Integer> entry : pids.entrySet()) { // Bases which do not support batched requests yet
+            base.sendMessage(Message.create()
+                    .setType(MessageType.BASE_PID_EXIST_REQUEST)
+                    .set("pid", entry.getValue())
+                    .set("id", entry.getKey()));
+        }
+    }
+
+    /**
+     * Called when a base answered whether an instance's process is still running
+     */
+    public void onPidStatus(String id, boolean running) {
+        pendingProbes.remove(id);
+        if (running) return;
+        Instance instance = instances.get(id);
+        if (instance != null) instance.onProcessNotFound();
+    }
+
+    public void onProcessStats(String id, long residentSetSize, long cpuTime) {
+        Instance instance = instances.get(id);
+        if (instance != null) instance.onProcessStats(residentSetSize, cpuTime);
+    }
+
+    public void shutdown() {
+        timer.stop();
+    }
+
+    /**
+     * @return How many milliseconds the last sweep started later than planned
+     */
+    public long getLastTickLatency() {
+        return lastTickLatency;
+    }
+
+    /**
+     * @return The most milliseconds a sweep started later than planned
+     */
+    public long getMaxTickLatency() {
+        return maxTickLatency;
+    }
+
+    /**
+     * @return How many milliseconds the last sweep took
+     */
+    public long getLastSweepDuration() {
+        return lastSweepDuration;
+    }
+
+    /**
+     * @return The amount of PID requests which have not been answered yet
+     */
+    public int getBacklog() {
+        return pendingProbes.size();
+    }
+
+    public int getInstanceCount() {
+        return instances.size();
+    }
+
+}
@@ -3,6 +3,8 @@ package cloud.timo.TimoCloud.core.managers;
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudMessageAPIBasicImplementation;
 import cloud.timo.TimoCloud.api.messages.objects.AddressedPluginMessage;
+import cloud.timo.TimoCloud.api.messages.objects.MessageClientAddress;
+import cloud.timo.TimoCloud.api.messages.objects.MessageClientAddressType;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
@@ -11,21 +13,11 @@ import cloud.timo.TimoCloud.core.sockets.Communicatable;
 public class PluginMessageManager {
 
     public void onMessage(AddressedPluginMessage message) {
-        Communicatable communicatable = null;
-        switch (message.getRecipient().getType()) {
-            case CORE: // Message is addressed to us, call the event
-                ((TimoCloudMessageAPIBasicImplementation) TimoCloudAPI.getMessageAPI()).onMessage(message);
-                return;
-            case SERVER:
-                communicatable = TimoCloudCore.getInstance().getInstanceManager().getServerByIdentifier(message.getRecipient().getName());
-                break;
-            case PROXY:
-                communicatable = TimoCloudCore.getInstance().getInstanceManager().getProxyByIdentifier(message.getRecipient().getName());
-                break;
-            case CORD:
-                communicatable = TimoCloudCore.getInstance().getInstanceManager().getCord(message.getRecipient().getName());
-                break;
+        if (message.getRecipient().getType() == MessageClientAddressType.CORE) { // Message is addressed to us, call the event
+            ((TimoCloudMessageAPIBasicImplementation) TimoCloudAPI.getMessageAPI()).onMessage(message);
+            return;
         }
+        Communicatable communicatable = getRecipient(message.getRecipient());
         if (communicatable == null) {
             TimoCloudCore.getInstance().severe("Unknown plugin message recipient: " + message.getRecipient());
             return;
@@ -34,4 +26,24 @@ public class PluginMessageManager {
                 .setType(MessageType.ON_PLUGIN_MESSAGE)
                 .setData(message));
     }
+
+    /**
+     * @return Whether messages to the given address can be delivered right now
+     */
+    public boolean isReachable(MessageClientAddress address) {
+        return address.getType() == MessageClientAddressType.CORE || getRecipient(address) != null;
+    }
+
+    private Communicatable getRecipient(MessageClientAddress address) {
+        switch (address.getType()) {
+            case SERVER:
+                return TimoCloudCore.getInstance().getInstanceManager().getServerByIdentifier(address.getName());
+            case PROXY:
+                return TimoCloudCore.getInstance().getInstanceManager().getProxyByIdentifier(address.getName());
+            case CORD:
+                return TimoCloudCore.getInstance().getInstanceManager().getCord(address.getName());
+            default:
+                return null;
+        }
+    }
 }
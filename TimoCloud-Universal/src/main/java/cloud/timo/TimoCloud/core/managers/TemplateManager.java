@@ -1,10 +1,23 @@
 package cloud.timo.TimoCloud.core.managers;
 
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+import cloud.timo.TimoCloud.common.utils.HashUtil;
+import cloud.timo.TimoCloud.common.utils.RandomIdGenerator;
+import cloud.timo.TimoCloud.common.utils.files.BlockDelta;
+import cloud.timo.TimoCloud.common.utils.files.FileHashIndex;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.objects.Base;
+import cloud.timo.TimoCloud.core.sockets.TemplateChunkedInput;
+import io.netty.channel.Channel;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
-import java.util.Collection;
+import java.util.*;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -38,4 +51,101 @@ public class TemplateManager {
             return;
         }
     }
+
+    /**
+     * Sends the given files of a template to a base. Bases supporting it get an offer for a streamed transfer, older ones one zipped message.
+     *
+     * @param transferType SERVER_TEMPLATE, SERVER_GLOBAL_TEMPLATE, PROXY_TEMPLATE or PROXY_GLOBAL_TEMPLATE
+     * @param template     Name of the template directory, null for global templates
+     * @param differences  Paths relative to the template directory, as returned by {@link HashUtil#getDifferentFiles(String, Map, Map)}
+     */
+    public void sendTemplate(Base base, Channel channel, String targetId, String transferType, String template, List<String> differences) throws IOException {
+        File directory = getTemplateDirectory(transferType, template);
+        List<File> files = differences.stream().map(fileName -> new File(directory, fileName)).collect(Collectors.toList());
+        if (! base.isStreamedTemplates()) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            zipFiles(files, directory, outputStream);
+            channel.writeAndFlush(Message.create()
+                    .setType(MessageType.TRANSFER_TEMPLATE)
+                    .set("transferType", transferType)
+                    .setIfNotNull("template", template)
+                    .set("file", Base64.getEncoder().encodeToString(outputStream.toByteArray()))
+                    .setTarget(targetId)
+                    .toString());
+            return;
+        }
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (File file : files) addTransferEntries(file, directory, entries);
+        channel.writeAndFlush(Message.create()
+                .setType(MessageType.TEMPLATE_TRANSFER_OFFER)
+                .setTarget(targetId)
+                .set("transferId", RandomIdGenerator.generateId(16))
+                .set("transferType", transferType)
+                .setIfNotNull("template", template)
+                .set("files", entries));
+    }
+
+    private static void addTransferEntries(File file, File base, List<Map<String, Object>> entries) throws IOException {
+        if (! file.exists()) return;
+        if (file.isDirectory() && file.listFiles().length > 0) {
+            for (File file1 : file.listFiles()) addTransferEntries(file1, base, entries);
+            return;
+        }
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("path", base.toURI().relativize(file.toURI()).getPath());
+        if (file.isDirectory()) {
+            entry.put("directory", true);
+        } else {
+            entry.put("size", file.length());
+            entry.put("modified", file.lastModified());
+            entry.put("digest", HashUtil.getIndex() != null ? HashUtil.getIndex().getDigest(file) : FileHashIndex.computeDigest(file.toPath()));
+        }
+        entries.add(entry);
+    }
+
+    /**
+     * Called when a base accepted a streamed transfer. Streams all requested files starting at the offsets the base already has,
+     * files the base sent block signatures for are sent as delta against the base's old version.
+     */
+    public void onTransferAccepted(Channel channel, Message message) {
+        File directory = getTemplateDirectory((String) message.get("transferType"), (String) message.get("template"));
+        Map<String, Object> requested = (Map<String, Object>) message.get("offsets");
+        Map<String, Object> requestedSignatures = message.containsKey("signatures") ? (Map<String, Object>) message.get("signatures") : Collections.emptyMap();
+        Map<String, Long> offsets = new LinkedHashMap<>();
+        Map<String, BlockDelta.Signature> signatures = new HashMap<>();
+        for (Map.Entry<String, Object> entry : requested.entrySet()) {
+            if (! isInside(directory, new File(directory, entry.getKey()))) {
+                TimoCloudCore.getInstance().severe("Base requested file " + entry.getKey() + " which is not part of template " + directory.getName() + ", ignoring it.");
+                continue;
+            }
+            offsets.put(entry.getKey(), ((Number) entry.getValue()).longValue());
+            if (requestedSignatures.containsKey(entry.getKey())) {
+                signatures.put(entry.getKey(), BlockDelta.Signature.fromMap((Map<String, Object>) requestedSignatures.get(entry.getKey())));
+            }
+        }
+        channel.writeAndFlush(new TemplateChunkedInput((String) message.get("transferId"), message.getTarget(), directory, offsets, signatures));
+    }
+
+    private File getTemplateDirectory(String transferType, String template) {
+        switch (transferType) {
+            case "SERVER_TEMPLATE":
+                return new File(TimoCloudCore.getInstance().getFileManager().getServerTemplatesDirectory(), template);
+            case "SERVER_GLOBAL_TEMPLATE":
+                return TimoCloudCore.getInstance().getFileManager().getServerGlobalDirectory();
+            case "PROXY_TEMPLATE":
+                return new File(TimoCloudCore.getInstance().getFileManager().getProxyTemplatesDirectory(), template);
+            case "PROXY_GLOBAL_TEMPLATE":
+                return TimoCloudCore.getInstance().getFileManager().getProxyGlobalDirectory();
+            default:
+                throw new IllegalArgumentException("Unknown transfer type " + transferType);
+        }
+    }
+
+    private static boolean isInside(File directory, File file) {
+        try {
+            return file.getCanonicalPath().startsWith(directory.getCanonicalPath() + File.separator);
+        } catch (IOException e) {
+            return false;
+        }
+    }
 }
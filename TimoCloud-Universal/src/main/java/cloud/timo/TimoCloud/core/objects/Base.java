@@ -34,6 +34,8 @@ public class Base implements PublicKeyIdentifiable, Communicatable {
     private boolean connected;
     private boolean ready;
     private boolean staticOnly;
+    private boolean batchedPidRequests;
+    private boolean streamedTemplates;
     private Set<Server> servers;
     private Set<Proxy> proxies;
     /**
@@ -152,6 +154,17 @@ public class Base implements PublicKeyIdentifiable, Communicatable {
                 boolean ready = (boolean) map.get("ready") && cpuLoad <= getMaxCpuLoad();
                 setReady(ready);
                 break;
+            case BASE_PID_EXIST_RESPONSE:
+                Map<String, Object> running = (Map<String, Object>) message.get("running");
+                Map<String, Object> processes = message.containsKey("processes") ? (Map<String, Object>) message.get("processes") : Collections.emptyMap();
+                for (Map.Entry<String, Object> entry : running.entrySet()) {
+                    Map<String, Object> stats = (Map<String, Object>) processes.get(entry.getKey());
+                    if (stats != null) {
+                        TimoCloudCore.getInstance().getInstanceHealthScheduler().onProcessStats(entry.getKey(), ((Number) stats.get("rss")).longValue(), ((Number) stats.get("cpuTime")).longValue());
+                    }
+                    TimoCloudCore.getInstance().getInstanceHealthScheduler().onPidStatus(entry.getKey(), (boolean) entry.getValue());
+                }
+                break;
             default:
                 sendMessage(message);
         }
@@ -159,7 +172,7 @@ public class Base implements PublicKeyIdentifiable, Communicatable {
 
     @Override
     public void sendMessage(Message message) {
-        if (getChannel() != null) getChannel().writeAndFlush(message.toJson());
+        if (getChannel() != null) getChannel().writeAndFlush(message);
     }
 
     @Override
@@ -229,6 +242,7 @@ public class Base implements PublicKeyIdentifiable, Communicatable {
     public void setAvailableRam(int availableRam) {
         int oldValue = getAvailableRam();
         this.availableRam = availableRam;
+        TimoCloudCore.getInstance().getInstanceManager().onBaseChanged(this);
         EventTransmitter.sendEvent(new BaseAvailableRamChangeEventBasicImplementation(toBaseObject(), oldValue, availableRam));
     }
 
@@ -287,11 +301,34 @@ public class Base implements PublicKeyIdentifiable, Communicatable {
         boolean oldValue = isConnected();
         this.connected = connected;
         if (oldValue != connected) {
+            TimoCloudCore.getInstance().getInstanceManager().onBaseChanged(this);
             if (connected) EventTransmitter.sendEvent(new BaseConnectEventBasicImplementation(toBaseObject()));
             else EventTransmitter.sendEvent(new BaseDisconnectEventBasicImplementation(toBaseObject()));
         }
     }
 
+    /**
+     * @return Whether the base accepts one PID request for many instances
+     */
+    public boolean isBatchedPidRequests() {
+        return batchedPidRequests;
+    }
+
+    public void setBatchedPidRequests(boolean batchedPidRequests) {
+        this.batchedPidRequests = batchedPidRequests;
+    }
+
+    /**
+     * @return Whether templates may be streamed to the base in chunks instead of one zipped message
+     */
+    public boolean isStreamedTemplates() {
+        return streamedTemplates;
+    }
+
+    public void setStreamedTemplates(boolean streamedTemplates) {
+        this.streamedTemplates = streamedTemplates;
+    }
+
     public boolean isReady() {
         return ready;
     }
@@ -300,6 +337,7 @@ public class Base implements PublicKeyIdentifiable, Communicatable {
         boolean oldValue = isReady();
         this.ready = ready;
         if (oldValue != ready) {
+            TimoCloudCore.getInstance().getInstanceManager().onBaseChanged(this);
             if (ready) EventTransmitter.sendEvent(new BaseReadyEventBasicImplementation(toBaseObject()));
             else EventTransmitter.sendEvent(new BaseNotReadyEventBasicImplementation(toBaseObject()));
         }
@@ -355,6 +393,7 @@ public class Base implements PublicKeyIdentifiable, Communicatable {
 
     public void setStaticOnly(boolean staticOnly) {
         this.staticOnly = staticOnly;
+        TimoCloudCore.getInstance().getInstanceManager().onBaseChanged(this);
     }
 
     public BaseObjectLink toLink() {
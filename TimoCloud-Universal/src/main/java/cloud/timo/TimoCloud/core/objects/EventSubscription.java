@@ -0,0 +1,125 @@
+package cloud.timo.TimoCloud.core.objects;
+
+import cloud.timo.TimoCloud.api.events.Event;
+import cloud.timo.TimoCloud.api.events.EventType;
+import cloud.timo.TimoCloud.api.objects.*;
+import cloud.timo.TimoCloud.common.utils.EnumUtil;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The events a server, proxy or cord wants to receive. Without filters, every event is received.
+ * Group and instance filters only apply to events concerning servers, proxies or their groups; all other events pass.
+ */
+public class EventSubscription {
+
+    public static final EventSubscription ALL = new EventSubscription(null, null, null);
+
+    private static final Map<Class<?>, List<Method>> SCOPE_METHODS = new ConcurrentHashMap<>();
+
+    private final Set<EventType> types; // null means all
+    private final Set<String> groups; // Lower case names, null means no filter
+    private final Set<String> instances; // Lower case names, null means no filter
+
+    private EventSubscription(Set<EventType> types, Set<String> groups, Set<String> instances) {
+        this.types = types;
+        this.groups = groups;
+        this.instances = instances;
+    }
+
+    /**
+     * @param map As sent by the client along with GET_API_DATA, may be null
+     */
+    public static EventSubscription fromMap(Map<String, Object> map) {
+        if (map == null) return ALL;
+        Set<EventType> types = null;
+        if (map.get("types") != null) {
+            types = EnumSet.noneOf(EventType.class);
+            for (Object type : (Collection<?>) map.get("types")) {
+                EventType eventType = EnumUtil.valueOf(EventType.class, String.valueOf(type).toUpperCase());
+                if (eventType != null) types.add(eventType);
+            }
+        }
+        return new EventSubscription(types, toLowerCaseSet(map.get("groups")), toLowerCaseSet(map.get("instances")));
+    }
+
+    private static Set<String> toLowerCaseSet(Object names) {
+        if (names == null) return null;
+        Set<String> set = new HashSet<>();
+        for (Object name : (Collection<?>) names) set.add(String.valueOf(name).toLowerCase());
+        return set;
+    }
+
+    /**
+     * @return The types this subscription is limited to, or null if all types are subscribed
+     */
+    public Set<EventType> getTypes() {
+        return types;
+    }
+
+    public boolean hasFilters() {
+        return groups != null || instances != null;
+    }
+
+    /**
+     * @param scope As returned by {@link #getScope(Event)}
+     */
+    public boolean matches(EventType type, Collection<String> scope) {
+        if (types != null && !types.contains(type)) return false;
+        if (!hasFilters() || scope.isEmpty()) return true;
+        for (String name : scope) {
+            if (groups != null && groups.contains(name)) return true;
+            if (instances != null && instances.contains(name)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Lower case names of all servers, proxies and groups the event concerns
+     */
+    public static Set<String> getScope(Event event) {
+        Set<String> scope = new HashSet<>();
+        for (Method method : SCOPE_METHODS.computeIfAbsent(event.getClass(), EventSubscription::findScopeMethods)) {
+            try {
+                addScope(method.invoke(event), scope);
+            } catch (Exception ignored) { // Objects which cannot be resolved do not limit the scope
+            }
+        }
+        return scope;
+    }
+
+    private static void addScope(Object object, Set<String> scope) {
+        if (object instanceof ServerObject) {
+            scope.add(((ServerObject) object).getName().toLowerCase());
+            if (((ServerObject) object).getGroup() != null) scope.add(((ServerObject) object).getGroup().getName().toLowerCase());
+        } else if (object instanceof ProxyObject) {
+            scope.add(((ProxyObject) object).getName().toLowerCase());
+            if (((ProxyObject) object).getGroup() != null) scope.add(((ProxyObject) object).getGroup().getName().toLowerCase());
+        } else if (object instanceof ServerGroupObject) {
+            scope.add(((ServerGroupObject) object).getName().toLowerCase());
+        } else if (object instanceof ProxyGroupObject) {
+            scope.add(((ProxyGroupObject) object).getName().toLowerCase());
+        } else if (object instanceof PlayerObject) {
+            addScope(((PlayerObject) object).getServer(), scope);
+            addScope(((PlayerObject) object).getProxy(), scope);
+        }
+    }
+
+    private static List<Method> findScopeMethods(Class<?> eventClass) {
+        List<Method> methods = new ArrayList<>();
+        for (Method method : eventClass.getMethods()) {
+            if (method.getParameterCount() != 0 || Modifier.isStatic(method.getModifiers())) continue;
+            Class<?> returnType = method.getReturnType();
+            if (ServerObject.class.isAssignableFrom(returnType) || ProxyObject.class.isAssignableFrom(returnType)
+                    || ServerGroupObject.class.isAssignableFrom(returnType) || ProxyGroupObject.class.isAssignableFrom(returnType)
+                    || PlayerObject.class.isAssignableFrom(returnType)) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+
+}
@@ -4,9 +4,34 @@ public interface Instance extends PublicKeyIdentifiable {
 
     Group getGroup();
 
+    Base getBase();
+
+    /**
+     * @return The process id on the base, or -1 if unknown
+     */
+    int getPid();
+
     void start();
     void stop();
     void register();
     void unregister();
     void kill();
+
+    /**
+     * Kills the instance if it has not contacted the core within its group's timeout
+     */
+    void checkTimeout();
+
+    /**
+     * Called when the base reported that the instance's process is not running anymore
+     */
+    void onProcessNotFound();
+
+    /**
+     * Called with the process' resource usage reported by the base
+     *
+     * @param residentSetSize Memory used by the process in bytes
+     * @param cpuTime         Total CPU time used by the process in milliseconds
+     */
+    void onProcessStats(long residentSetSize, long cpuTime);
 }
@@ -11,6 +11,7 @@ import cloud.timo.TimoCloud.common.encryption.RSAKeyUtil;
 import cloud.timo.TimoCloud.common.events.EventTransmitter;
 import cloud.timo.TimoCloud.common.json.JsonConverter;
 import cloud.timo.TimoCloud.common.log.LogEntry;
+import cloud.timo.TimoCloud.common.log.LogShipper;
 import cloud.timo.TimoCloud.common.log.LogStorage;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
@@ -29,9 +30,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class Proxy implements Instance, Communicatable {
@@ -50,11 +48,14 @@ public class Proxy implements Instance, Communicatable {
     private boolean connected;
     private Collection<DnsRecord> dnsRecords;
     private Set<Server> registeredServers;
-    private LogStorage logStorage;
+    private volatile LogStorage logStorage; // Created once the first entry arrives
     private PublicKey publicKey;
-    private int pid;
-    private final ScheduledExecutorService scheduler;
-    private long lastContact = System.currentTimeMillis();
+    private volatile int pid;
+    private volatile long lastContact = System.currentTimeMillis();
+    private volatile long residentSetSize;
+    private volatile long cpuTime;
+    private volatile double cpuUsage;
+    private long cpuTimeMeasured;
 
     private DoAfterAmount templateUpdate;
 
@@ -66,16 +67,14 @@ public class Proxy implements Instance, Communicatable {
         this.address = new InetSocketAddress(base.getPublicAddress(), 0);
         this.onlinePlayers = Collections.synchronizedSet(new HashSet<>());
         this.registeredServers = new HashSet<>();
-        this.logStorage = new LogStorage();
         this.dnsRecords = new HashSet<>();
         this.pid = -1;
 
-        scheduler = Executors.newScheduledThreadPool(1);
-        scheduler.scheduleAtFixedRate(this::requestPidStatus, 5, 5, TimeUnit.SECONDS);
-        scheduler.scheduleAtFixedRate(this::checkTimeout, 5, 5, TimeUnit.SECONDS);
+        TimoCloudCore.getInstance().getInstanceHealthScheduler().register(this);
     }
 
-    private void checkTimeout() {
+    @Override
+    public void checkTimeout() {
         if (getGroup().getTimeout() != -1 && System.currentTimeMillis() - lastContact > getGroup().getTimeout()) {
             //Timeout
             kill();
@@ -83,6 +82,22 @@ public class Proxy implements Instance, Communicatable {
         }
     }
 
+    @Override
+    public void onProcessNotFound() {
+        unregister();
+        TimoCloudCore.getInstance().info("Process of Proxy " + getName() + " not found.");
+        onShutdown();
+    }
+
+    @Override
+    public void onProcessStats(long residentSetSize, long cpuTime) {
+        long now = System.currentTimeMillis();
+        if (cpuTimeMeasured > 0 && now > cpuTimeMeasured) this.cpuUsage = Math.max(0, (cpuTime - this.cpuTime) * 100.0 / (now - cpuTimeMeasured));
+        this.cpuTimeMeasured = now;
+        this.cpuTime = cpuTime;
+        this.residentSetSize = residentSetSize;
+    }
+
 
     @Override
     public void register() {
@@ -106,7 +121,7 @@ public class Proxy implements Instance, Communicatable {
         getBase().removeProxy(this);
         TimoCloudCore.getInstance().getCloudFlareManager().unregisterProxy(this);
         getBase().sendMessage(Message.create().setType(MessageType.BASE_PROXY_STOPPED).setData(getId()));
-        scheduler.shutdown();
+        TimoCloudCore.getInstance().getInstanceHealthScheduler().unregister(this);
     }
 
     @Override
@@ -150,16 +165,6 @@ public class Proxy implements Instance, Communicatable {
         getGroup().addProxy(this);
     }
 
-
-    public void requestPidStatus() {
-        if (getPid() == -1) return;
-        Message message = Message.create()
-                .setType(MessageType.BASE_PID_EXIST_REQUEST)
-                .set("pid", getPid())
-                .set("id", getId());
-        getBase().sendMessage(message);
-    }
-
     @Override
     public void stop() {
         sendMessage(Message.create().setType(MessageType.PROXY_STOP));
@@ -177,18 +182,34 @@ public class Proxy implements Instance, Communicatable {
     }
 
     public void registerServer(Server server) {
-        sendMessage(Message.create()
+        sendMessage(createAddServerMessage(server));
+        onServerAdded(server);
+    }
+
+    public void unregisterServer(Server server) {
+        sendMessage(createRemoveServerMessage(server));
+        onServerRemoved(server);
+    }
+
+    static Message createAddServerMessage(Server server) {
+        return Message.create()
                 .setType(MessageType.PROXY_ADD_SERVER)
                 .set("name", server.getName())
                 .set("address", server.getAddress().getAddress().getHostAddress())
-                .set("port", server.getPort()));
-        if (!registeredServers.contains(server)) registeredServers.add(server);
+                .set("port", server.getPort());
     }
 
-    public void unregisterServer(Server server) {
-        sendMessage(Message.create()
+    static Message createRemoveServerMessage(Server server) {
+        return Message.create()
                 .setType(MessageType.PROXY_REMOVE_SERVER)
-                .set("name", server.getName()));
+                .set("name", server.getName());
+    }
+
+    void onServerAdded(Server server) {
+        if (!registeredServers.contains(server)) registeredServers.add(server);
+    }
+
+    void onServerRemoved(Server server) {
         registeredServers.remove(server);
     }
 
@@ -243,15 +264,14 @@ public class Proxy implements Instance, Communicatable {
             case PROXY_LOG_ENTRY:
                 if (isRegistered() && sender instanceof Base) break;
                 LogEntry logEntry = JsonConverter.convertMapIfNecessary(data, LogEntry.class);
-                logStorage.addEntry(logEntry);
+                getLogStorage().addEntry(logEntry);
+                break;
+            case PROXY_LOG_ENTRIES:
+                if (isRegistered() && sender instanceof Base) break;
+                for (LogEntry entry : LogShipper.readBatch(message)) getLogStorage().addEntry(entry);
                 break;
             case BASE_PID_EXIST_RESPONSE:
-                final boolean running = (boolean) message.get("running");
-                if (!running) {
-                    unregister();
-                    TimoCloudCore.getInstance().info("Process of Proxy " + getName() + " not found.");
-                    onShutdown();
-                }
+                TimoCloudCore.getInstance().getInstanceHealthScheduler().onPidStatus(getId(), (boolean) message.get("running"));
                 break;
             default:
                 sendMessage(message);
@@ -260,7 +280,7 @@ public class Proxy implements Instance, Communicatable {
 
     @Override
     public void sendMessage(Message message) {
-        if (getChannel() != null) getChannel().writeAndFlush(message.toJson());
+        if (getChannel() != null) getChannel().writeAndFlush(message);
     }
 
     @Override
@@ -356,6 +376,27 @@ public class Proxy implements Instance, Communicatable {
         return pid;
     }
 
+    /**
+     * @return Memory used by the process in bytes, as last reported by the base
+     */
+    public long getResidentSetSize() {
+        return residentSetSize;
+    }
+
+    /**
+     * @return Total CPU time used by the process in milliseconds, as last reported by the base
+     */
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * @return CPU usage between the last two reports in percent of one core
+     */
+    public double getCpuUsage() {
+        return cpuUsage;
+    }
+
     public void setPid(int pid) {
         this.pid = pid;
     }
@@ -395,13 +436,27 @@ public class Proxy implements Instance, Communicatable {
     }
 
     public LogStorage getLogStorage() {
+        if (logStorage == null) {
+            synchronized (this) {
+                if (logStorage == null) logStorage = TimoCloudCore.getInstance().getInstanceManager().createLogStorage(getId());
+            }
+        }
         return logStorage;
     }
 
+    /**
+     * Deletes the parts of the log which have been written to disk, called once the proxy has been removed
+     */
+    public void closeLogStorage() {
+        LogStorage logStorage = this.logStorage;
+        if (logStorage != null) logStorage.close();
+    }
+
     public void setOnlinePlayerCount(int onlinePlayerCount) {
         int oldValue = getOnlinePlayerCount();
         this.onlinePlayerCount = onlinePlayerCount;
         if (onlinePlayerCount != oldValue) {
+            TimoCloudCore.getInstance().getInstanceManager().onProxyChanged(this);
             EventTransmitter.sendEvent(new ProxyOnlinePlayerCountChangeEventBasicImplementation(toProxyObject(), oldValue, onlinePlayerCount));
         }
     }
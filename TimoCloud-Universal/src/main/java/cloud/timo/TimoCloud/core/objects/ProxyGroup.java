@@ -9,6 +9,7 @@ import cloud.timo.TimoCloud.common.events.EventTransmitter;
 import cloud.timo.TimoCloud.common.utils.EnumUtil;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
 import cloud.timo.TimoCloud.core.api.ProxyGroupObjectCoreImplementation;
+import io.netty.channel.Channel;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -151,11 +152,21 @@ public class ProxyGroup implements Group {
     }
 
     public void registerServer(Server server) {
-        for (Proxy proxy : getProxies()) proxy.registerServer(server);
+        Collection<Proxy> proxies = getProxies();
+        TimoCloudCore.getInstance().getSocketServerHandler().broadcast(Proxy.createAddServerMessage(server), getChannels(proxies));
+        for (Proxy proxy : proxies) proxy.onServerAdded(server);
     }
 
     public void unregisterServer(Server server) {
-        for (Proxy proxy : getProxies()) proxy.unregisterServer(server);
+        Collection<Proxy> proxies = getProxies();
+        TimoCloudCore.getInstance().getSocketServerHandler().broadcast(Proxy.createRemoveServerMessage(server), getChannels(proxies));
+        for (Proxy proxy : proxies) proxy.onServerRemoved(server);
+    }
+
+    private static List<Channel> getChannels(Collection<Proxy> proxies) {
+        List<Channel> channels = new ArrayList<>(proxies.size());
+        for (Proxy proxy : proxies) channels.add(proxy.getChannel());
+        return channels;
     }
 
     public void stopAllProxies() {
@@ -203,6 +214,7 @@ public class ProxyGroup implements Group {
     public void setMaxPlayerCountPerProxy(int maxPlayerCountPerProxy) {
         int oldValue = maxPlayerCountPerProxy;
         this.maxPlayerCountPerProxy = maxPlayerCountPerProxy;
+        TimoCloudCore.getInstance().getInstanceManager().onGroupChanged(this);
         EventTransmitter.sendEvent(new ProxyGroupMaxPlayerCountPerProxyChangeEventBasicImplementation(toGroupObject(), oldValue, maxPlayerCountPerProxy));
     }
 
@@ -213,6 +225,7 @@ public class ProxyGroup implements Group {
     public void setMaxPlayerCount(int maxPlayerCount) {
         int oldValue = getMaxPlayerCount();
         this.maxPlayerCount = maxPlayerCount;
+        TimoCloudCore.getInstance().getInstanceManager().onGroupChanged(this);
         EventTransmitter.sendEvent(new ProxyGroupMaxPlayerCountChangeEventBasicImplementation(toGroupObject(), oldValue, maxPlayerCount));
     }
 
@@ -223,6 +236,7 @@ public class ProxyGroup implements Group {
     public void setKeepFreeSlots(int keepFreeSlots) {
         int oldValue = getKeepFreeSlots();
         this.keepFreeSlots = keepFreeSlots;
+        TimoCloudCore.getInstance().getInstanceManager().onGroupChanged(this);
         EventTransmitter.sendEvent(new ProxyGroupKeepFreeSlotsChangeEventBasicImplementation(toGroupObject(), oldValue, keepFreeSlots));
     }
 
@@ -233,6 +247,7 @@ public class ProxyGroup implements Group {
     public void setMinAmount(int minAmount) {
         int oldValue = getMinAmount();
         this.minAmount = minAmount;
+        TimoCloudCore.getInstance().getInstanceManager().onGroupChanged(this);
         EventTransmitter.sendEvent(new ProxyGroupMinAmountChangeEventBasicImplementation(toGroupObject(), oldValue, minAmount));
     }
 
@@ -243,6 +258,7 @@ public class ProxyGroup implements Group {
     public void setMaxAmount(int maxAmount) {
         int oldValue = getMaxAmount();
         this.maxAmount = maxAmount;
+        TimoCloudCore.getInstance().getInstanceManager().onGroupChanged(this);
         EventTransmitter.sendEvent(new ProxyGroupMaxAmountChangeEventBasicImplementation(toGroupObject(), oldValue, maxAmount));
     }
 
@@ -275,6 +291,7 @@ public class ProxyGroup implements Group {
     public void setRam(int ram) {
         int oldValue = getRam();
         this.ram = ram;
+        TimoCloudCore.getInstance().getInstanceManager().onGroupChanged(this);
         EventTransmitter.sendEvent(new ProxyGroupRamChangeEventBasicImplementation(toGroupObject(), oldValue, ram));
     }
 
@@ -304,6 +321,7 @@ public class ProxyGroup implements Group {
     public void setStatic(boolean aStatic) {
         boolean oldValue = isStatic();
         isStatic = aStatic;
+        TimoCloudCore.getInstance().getInstanceManager().onGroupChanged(this);
         EventTransmitter.sendEvent(new ProxyGroupStaticChangeEventBasicImplementation(toGroupObject(), oldValue, isStatic));
 
     }
@@ -360,6 +378,7 @@ public class ProxyGroup implements Group {
     public void setBase(Base base) {
         Base oldValue = getBase();
         this.base = base;
+        TimoCloudCore.getInstance().getInstanceManager().onGroupChanged(this);
         EventTransmitter.sendEvent(new ProxyGroupBaseChangeEventBasicImplementation(toGroupObject(), oldValue.toBaseObject(), base.toBaseObject()));
     }
 
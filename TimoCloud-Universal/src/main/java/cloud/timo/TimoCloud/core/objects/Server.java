@@ -9,6 +9,7 @@ import cloud.timo.TimoCloud.common.encryption.RSAKeyUtil;
 import cloud.timo.TimoCloud.common.events.EventTransmitter;
 import cloud.timo.TimoCloud.common.json.JsonConverter;
 import cloud.timo.TimoCloud.common.log.LogEntry;
+import cloud.timo.TimoCloud.common.log.LogShipper;
 import cloud.timo.TimoCloud.common.log.LogStorage;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
@@ -26,9 +27,6 @@ import java.security.PublicKey;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class Server implements Instance, Communicatable {
@@ -50,11 +48,14 @@ public class Server implements Instance, Communicatable {
     private boolean starting;
     private boolean registered;
     private boolean connected;
-    private LogStorage logStorage;
+    private volatile LogStorage logStorage; // Created once the first entry arrives
     private PublicKey publicKey;
-    private int pid;
-    private final ScheduledExecutorService scheduler;
-    private long lastContact = System.currentTimeMillis();
+    private volatile int pid;
+    private volatile long lastContact = System.currentTimeMillis();
+    private volatile long residentSetSize;
+    private volatile long cpuTime;
+    private volatile double cpuUsage;
+    private long cpuTimeMeasured;
 
     private DoAfterAmount templateUpdate;
 
@@ -67,15 +68,13 @@ public class Server implements Instance, Communicatable {
         this.onlinePlayers = Collections.synchronizedSet(new HashSet<>());
         this.map = map;
         if (this.map == null) this.map = "";
-        this.logStorage = new LogStorage();
         this.pid = -1;
 
-        scheduler = Executors.newScheduledThreadPool(1);
-        scheduler.scheduleAtFixedRate(this::requestPidStatus, 5, 5, TimeUnit.SECONDS);
-        scheduler.scheduleAtFixedRate(this::checkTimeout, 5, 5, TimeUnit.SECONDS);
+        TimoCloudCore.getInstance().getInstanceHealthScheduler().register(this);
     }
 
-    private void checkTimeout() {
+    @Override
+    public void checkTimeout() {
         if (getGroup().getTimeout() != -1 && System.currentTimeMillis() - lastContact > getGroup().getTimeout()) {
             //Timeout
             kill();
@@ -83,6 +82,22 @@ public class Server implements Instance, Communicatable {
         }
     }
 
+    @Override
+    public void onProcessNotFound() {
+        unregister();
+        TimoCloudCore.getInstance().info("Process of Server " + getName() + " not found.");
+        onShutdown();
+    }
+
+    @Override
+    public void onProcessStats(long residentSetSize, long cpuTime) {
+        long now = System.currentTimeMillis();
+        if (cpuTimeMeasured > 0 && now > cpuTimeMeasured) this.cpuUsage = Math.max(0, (cpuTime - this.cpuTime) * 100.0 / (now - cpuTimeMeasured));
+        this.cpuTimeMeasured = now;
+        this.cpuTime = cpuTime;
+        this.residentSetSize = residentSetSize;
+    }
+
     public boolean isStatic() {
         return getGroup().isStatic();
     }
@@ -169,6 +184,7 @@ public class Server implements Instance, Communicatable {
         }
         this.starting = false;
         this.registered = true;
+        TimoCloudCore.getInstance().getInstanceManager().onServerChanged(this);
         TimoCloudCore.getInstance().info("Server " + getName() + " registered.");
         TimoCloudCore.getInstance().getEventManager().fireEvent(new ServerRegisterEventBasicImplementation(toServerObject()));
     }
@@ -198,15 +214,6 @@ public class Server implements Instance, Communicatable {
         onShutdown();
     }
 
-    public void requestPidStatus() {
-        if(getPid() == -1) return;
-        Message message = Message.create()
-                .setType(MessageType.BASE_PID_EXIST_REQUEST)
-                .set("pid", getPid())
-                .set("id", getId());
-        getBase().sendMessage(message);
-    }
-
     /**
      * Called when the server is completely shut down
      */
@@ -215,7 +222,7 @@ public class Server implements Instance, Communicatable {
         getBase().removeServer(this);
 
         getBase().sendMessage(Message.create().setType(MessageType.BASE_SERVER_STOPPED).setData(getId()));
-        scheduler.shutdown();
+        TimoCloudCore.getInstance().getInstanceHealthScheduler().unregister(this);
     }
 
     public void onPlayerConnect(PlayerObject playerObject) {
@@ -281,15 +288,14 @@ public class Server implements Instance, Communicatable {
             case SERVER_LOG_ENTRY:
                 if (isRegistered() && sender instanceof Base) break;
                 LogEntry logEntry = JsonConverter.convertMapIfNecessary(data, LogEntry.class);
-                logStorage.addEntry(logEntry);
+                getLogStorage().addEntry(logEntry);
+                break;
+            case SERVER_LOG_ENTRIES:
+                if (isRegistered() && sender instanceof Base) break;
+                for (LogEntry entry : LogShipper.readBatch(message)) getLogStorage().addEntry(entry);
                 break;
             case BASE_PID_EXIST_RESPONSE:
-                final boolean running = (boolean) message.get("running");
-                if (!running) {
-                    unregister();
-                    TimoCloudCore.getInstance().info("Process of Server " + getName() + " not found.");
-                    onShutdown();
-                }
+                TimoCloudCore.getInstance().getInstanceHealthScheduler().onPidStatus(getId(), (boolean) message.get("running"));
                 break;
             default:
                 sendMessage(message);
@@ -298,7 +304,7 @@ public class Server implements Instance, Communicatable {
 
     @Override
     public void sendMessage(Message message) {
-        if (getChannel() != null) getChannel().writeAndFlush(message.toJson());
+        if (getChannel() != null) getChannel().writeAndFlush(message);
     }
 
     @Override
@@ -358,6 +364,7 @@ public class Server implements Instance, Communicatable {
     public void setState(String state) {
         String oldValue = getState();
         this.state = state;
+        TimoCloudCore.getInstance().getInstanceManager().onServerChanged(this);
         if (this.isRegistered())
             EventTransmitter.sendEvent(new ServerStateChangeEventBasicImplementation(toServerObject(), oldValue, state));
     }
@@ -406,6 +413,27 @@ public class Server implements Instance, Communicatable {
         return pid;
     }
 
+    /**
+     * @return Memory used by the process in bytes, as last reported by the base
+     */
+    public long getResidentSetSize() {
+        return residentSetSize;
+    }
+
+    /**
+     * @return Total CPU time used by the process in milliseconds, as last reported by the base
+     */
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * @return CPU usage between the last two reports in percent of one core
+     */
+    public double getCpuUsage() {
+        return cpuUsage;
+    }
+
     public int getOnlinePlayerCount() {
         return onlinePlayerCount;
     }
@@ -414,6 +442,7 @@ public class Server implements Instance, Communicatable {
         int oldValue = getOnlinePlayerCount();
         this.onlinePlayerCount = onlinePlayerCount;
         if (onlinePlayerCount != oldValue) {
+            TimoCloudCore.getInstance().getInstanceManager().onServerChanged(this); // Empty servers may be stopped now
             EventTransmitter.sendEvent(new ServerOnlinePlayerCountChangeEventBasicImplementation(toServerObject(), oldValue, onlinePlayerCount));
         }
     }
@@ -449,9 +478,22 @@ public class Server implements Instance, Communicatable {
     }
 
     public LogStorage getLogStorage() {
+        if (logStorage == null) {
+            synchronized (this) {
+                if (logStorage == null) logStorage = TimoCloudCore.getInstance().getInstanceManager().createLogStorage(getId());
+            }
+        }
         return logStorage;
     }
 
+    /**
+     * Deletes the parts of the log which have been written to disk, called once the server has been removed
+     */
+    public void closeLogStorage() {
+        LogStorage logStorage = this.logStorage;
+        if (logStorage != null) logStorage.close();
+    }
+
     @Override
     public PublicKey getPublicKey() {
         return publicKey;
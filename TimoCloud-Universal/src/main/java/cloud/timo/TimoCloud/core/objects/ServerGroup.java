@@ -166,12 +166,14 @@ public class ServerGroup implements Group {
     public void setOnlineAmount(int onlineAmount) {
         int oldValue = getOnlineAmount();
         this.onlineAmount = onlineAmount;
+        TimoCloudCore.getInstance().getInstanceManager().onGroupChanged(this);
         EventTransmitter.sendEvent(new ServerGroupOnlineAmountChangeEventBasicImplementation(toGroupObject(), oldValue, onlineAmount));
     }
 
     public void setMaxAmount(int maxAmount) {
         int oldValue = getMaxAmount();
         this.maxAmount = maxAmount;
+        TimoCloudCore.getInstance().getInstanceManager().onGroupChanged(this);
         EventTransmitter.sendEvent(new ServerGroupMaxAmountChangeEventBasicImplementation(toGroupObject(), oldValue, maxAmount));
     }
 
@@ -189,12 +191,14 @@ public class ServerGroup implements Group {
     public void setRam(int ram) {
         int oldValue = getRam();
         this.ram = ram;
+        TimoCloudCore.getInstance().getInstanceManager().onGroupChanged(this);
         EventTransmitter.sendEvent(new ServerGroupRamChangeEventBasicImplementation(toGroupObject(), oldValue, ram));
     }
 
     public void setStatic(boolean isStatic) {
         Boolean oldValue = isStatic();
         this.isStatic = isStatic;
+        TimoCloudCore.getInstance().getInstanceManager().onGroupChanged(this);
         EventTransmitter.sendEvent(new ServerGroupStaticChangeEventBasicImplementation(toGroupObject(), oldValue, isStatic));
     }
 
@@ -252,6 +256,7 @@ public class ServerGroup implements Group {
     public void setBase(Base base) {
         Base oldValue = getBase();
         this.base = base;
+        TimoCloudCore.getInstance().getInstanceManager().onGroupChanged(this);
         EventTransmitter.sendEvent(new ServerGroupBaseChangeEventBasicImplementation(toGroupObject(), oldValue.toBaseObject(), base.toBaseObject()));
     }
 
@@ -266,6 +271,7 @@ public class ServerGroup implements Group {
 
     public void setSortOutStates(Collection<String> sortOutStates) {
         this.sortOutStates = new HashSet<>(sortOutStates);
+        TimoCloudCore.getInstance().getInstanceManager().onGroupChanged(this);
     }
 
     public ServerGroupObject toGroupObject() {
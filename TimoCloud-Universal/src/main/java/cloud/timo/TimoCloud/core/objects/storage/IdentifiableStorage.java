@@ -4,34 +4,41 @@ import cloud.timo.TimoCloud.core.objects.Identifiable;
 import cloud.timo.TimoCloud.core.objects.PublicKeyIdentifiable;
 
 import java.security.PublicKey;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedHashSet;
-import java.util.Map;
-
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe storage indexing {@link Identifiable}s by id, name (case-insensitive) and public key.
+ * Reads never block, writes are serialized and publish all indexes before the next snapshot of {@link #values()} is taken.
+ */
 public class IdentifiableStorage <T extends Identifiable> {
 
-    private Map<String, Collection<T>> byName;
-    private Map<String, T> byId;
-    private Map<PublicKey, T> byPublicKey;
+    private final Map<String, List<T>> byName; // Buckets are immutable and replaced on change
+    private final Map<String, Entry<T>> byId;
+    private final Map<PublicKey, T> byPublicKey;
+    private final Object writeLock = new Object();
+    private volatile Collection<T> values;
 
     public IdentifiableStorage() {
-        byName = new HashMap<>();
-        byId = new HashMap<>();
-        byPublicKey = new HashMap<>();
+        byName = new ConcurrentHashMap<>();
+        byId = new ConcurrentHashMap<>();
+        byPublicKey = new ConcurrentHashMap<>();
+        values = Collections.emptyList();
     }
 
     public T getById(String id) {
         if (id == null) return null;
-        return byId.get(id);
+        Entry<T> entry = byId.get(id);
+        return entry == null ? null : entry.getIdentifiable();
     }
 
     public T getByName(String name) {
         if (name == null) return null;
         name = name.toLowerCase(); // Case-insensitive
-        Collection<T> identifiables = byName.get(name);
+        List<T> identifiables = byName.get(name);
         if (identifiables == null || identifiables.size() == 0) return null;
-        return identifiables.iterator().next();
+        return identifiables.get(0);
     }
 
     public T getByPublicKey(PublicKey publicKey) {
@@ -49,39 +56,115 @@ public class IdentifiableStorage <T extends Identifiable> {
         return idResult != null ? idResult : getByName(identifier);
     }
 
+    /**
+     * Atomically looks up an identifiable by id or name and stores a newly created one if none has been found
+     *
+     * @param factory Creates the identifiable if none exists yet, called at most once
+     */
+    public T getByIdentifierOrAdd(String identifier, Supplier<T> factory) {
+        T identifiable = getByIdentifier(identifier);
+        if (identifiable != null) return identifiable;
+        synchronized (writeLock) {
+            identifiable = getByIdentifier(identifier);
+            if (identifiable != null) return identifiable;
+            identifiable = factory.get();
+            add(identifiable);
+            return identifiable;
+        }
+    }
+
     public void add(T identifiable) {
-        remove(identifiable);
-        byId.put(identifiable.getId(), identifiable);
-        if (identifiable instanceof PublicKeyIdentifiable) byPublicKey.put(((PublicKeyIdentifiable) identifiable).getPublicKey(), identifiable);
-        byName.putIfAbsent(identifiable.getName().toLowerCase(), new LinkedHashSet<>());
-        byName.get(identifiable.getName().toLowerCase()).add(identifiable);
+        synchronized (writeLock) {
+            removeIndexes(identifiable.getId());
+            Entry<T> entry = new Entry<>(identifiable);
+            byId.put(identifiable.getId(), entry);
+            if (entry.getPublicKey() != null) byPublicKey.put(entry.getPublicKey(), identifiable);
+            List<T> bucket = byName.get(entry.getNameKey());
+            List<T> newBucket = new ArrayList<>(bucket == null ? 1 : bucket.size() + 1);
+            if (bucket != null) newBucket.addAll(bucket);
+            newBucket.add(identifiable);
+            byName.put(entry.getNameKey(), Collections.unmodifiableList(newBucket));
+            updateValues();
+        }
     }
 
     public void remove(T identifiable) {
-        byId.remove(identifiable.getId());
-        if (identifiable instanceof PublicKeyIdentifiable) byPublicKey.remove(((PublicKeyIdentifiable) identifiable).getPublicKey());
-        if (byName.containsKey(identifiable.getName().toLowerCase())) {
-            byName.get(identifiable.getName().toLowerCase()).remove(identifiable);
+        synchronized (writeLock) {
+            if (removeIndexes(identifiable.getId())) updateValues();
         }
     }
 
     public void update(T identifiable) { // Called when keys like name or pulic key changed
-        remove(identifiable);
-        add(identifiable);
+        add(identifiable); // Removes the keys the identifiable has been stored with before
     }
 
     public boolean contains(T identifiable) {
         return getById(identifiable.getId()) != null || getByName(identifiable.getName()) != null || identifiable instanceof PublicKeyIdentifiable && getByPublicKey(((PublicKeyIdentifiable) identifiable).getPublicKey()) != null;
     }
 
+    /**
+     * @return An unmodifiable snapshot which is not affected by later changes, so it may be iterated while other threads modify this storage
+     */
     public Collection<T> values() {
-        return byId.values();
+        return values;
     }
 
     public void clear() {
-        byName.clear();
-        byId.clear();
-        byPublicKey.clear();
+        synchronized (writeLock) {
+            byName.clear();
+            byId.clear();
+            byPublicKey.clear();
+            updateValues();
+        }
+    }
+
+    /**
+     * Removes all index entries using the keys the identifiable with the given id has been added with, since its name or public key might have changed in the meantime
+     */
+    private boolean removeIndexes(String id) {
+        Entry<T> entry = byId.remove(id);
+        if (entry == null) return false;
+        if (entry.getPublicKey() != null) byPublicKey.remove(entry.getPublicKey(), entry.getIdentifiable());
+        List<T> bucket = byName.get(entry.getNameKey());
+        if (bucket != null) {
+            List<T> newBucket = new ArrayList<>(bucket);
+            newBucket.remove(entry.getIdentifiable());
+            if (newBucket.isEmpty()) byName.remove(entry.getNameKey());
+            else byName.put(entry.getNameKey(), Collections.unmodifiableList(newBucket));
+        }
+        return true;
+    }
+
+    private void updateValues() {
+        List<T> values = new ArrayList<>(byId.size());
+        for (Entry<T> entry : byId.values()) values.add(entry.getIdentifiable());
+        this.values = Collections.unmodifiableList(values);
+    }
+
+    private static class Entry<T extends Identifiable> {
+
+        private final T identifiable;
+        private final String nameKey;
+        private final PublicKey publicKey;
+
+        private Entry(T identifiable) {
+            this.identifiable = identifiable;
+            this.nameKey = identifiable.getName().toLowerCase();
+            this.publicKey = identifiable instanceof PublicKeyIdentifiable ? ((PublicKeyIdentifiable) identifiable).getPublicKey() : null;
+        }
+
+        private T getIdentifiable() {
+            return identifiable;
+        }
+
+        private String getNameKey() {
+            return nameKey;
+        }
+
+        private PublicKey getPublicKey() {
+            return publicKey;
+        }
+
     }
 
 }
@@ -4,12 +4,14 @@ import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyUtil;
 import cloud.timo.TimoCloud.common.sockets.AESDecrypter;
 import cloud.timo.TimoCloud.common.sockets.AESEncrypter;
+import cloud.timo.TimoCloud.common.sockets.FlushConsolidator;
+import cloud.timo.TimoCloud.common.sockets.MessageDecoder;
+import cloud.timo.TimoCloud.common.sockets.MessageEncoder;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
 import io.netty.util.AttributeKey;
 import io.netty.util.CharsetUtil;
@@ -50,10 +52,13 @@ public class CoreRSAHandshakeHandler extends SimpleChannelInboundHandler<ByteBuf
             channel.attr(AES_KEY_ATTRIBUTE_KEY).set(aesKey);
             channel.writeAndFlush(RSAKeyUtil.encrypt(publicKey, aesKey.getEncoded())); // Send AES key encrypted with the received public key. If the client is really permitted (possesses the corresponding private key), it is able to decrypt the AES key and send protocol encrypted with it
             channel.pipeline().addBefore("prepender", "decrypter", new AESDecrypter(aesKey));
-            channel.pipeline().addBefore("prepender", "decoder", new StringDecoder(CharsetUtil.UTF_8));
+            channel.pipeline().addBefore("prepender", "decoder", new MessageDecoder());
             channel.pipeline().addBefore("prepender", "handler", TimoCloudCore.getInstance().getStringHandler());
             channel.pipeline().addLast("encrypter", new AESEncrypter(aesKey));
             channel.pipeline().addLast("encoder", new StringEncoder(CharsetUtil.UTF_8));
+            channel.pipeline().addLast("messageEncoder", new MessageEncoder());
+            FlushConsolidator flushConsolidator = TimoCloudCore.getInstance().getSocketServerHandler().createFlushConsolidator();
+            if (flushConsolidator != null) channel.pipeline().addAfter("encrypter", "flushConsolidator", flushConsolidator);
 
             channel.pipeline().remove(this);
 
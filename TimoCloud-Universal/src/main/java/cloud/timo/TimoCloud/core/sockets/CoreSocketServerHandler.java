@@ -1,6 +1,11 @@
 package cloud.timo.TimoCloud.core.sockets;
 
 import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.sockets.FlushConsolidator;
+import cloud.timo.TimoCloud.common.sockets.FlushStatistics;
+import cloud.timo.TimoCloud.common.sockets.SharedMessage;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -13,13 +18,43 @@ import java.util.Map;
 public class CoreSocketServerHandler extends ChannelInboundHandlerAdapter {
 
     private Map<Channel, Communicatable> communicatables;
+    private final FlushStatistics flushStatistics;
 
     public CoreSocketServerHandler() {
         communicatables = new HashMap<>();
+        flushStatistics = new FlushStatistics();
+    }
+
+    /**
+     * @return A new consolidator for a channel's flushes, or null if flushes are not consolidated
+     */
+    public FlushConsolidator createFlushConsolidator() {
+        Map config = TimoCloudCore.getInstance().getFileManager().getConfig();
+        if (! Boolean.TRUE.equals(config.get("flush-consolidation"))) return null;
+        return new FlushConsolidator((Integer) config.get("flush-max-messages"), (Integer) config.get("flush-max-bytes"), ((Number) config.get("flush-delay")).longValue(), flushStatistics);
+    }
+
+    public FlushStatistics getFlushStatistics() {
+        return flushStatistics;
     }
 
     public void sendMessage(Channel channel, Message json) {
-        if (channel != null && channel.isActive()) channel.writeAndFlush(json.toJson());
+        if (channel != null && channel.isActive()) channel.writeAndFlush(json);
+    }
+
+    /**
+     * Sends a message to many channels, encoding it only once per codec. The message must not be changed afterwards.
+     */
+    public void broadcast(Message message, Iterable<Channel> channels) {
+        SharedMessage shared = new SharedMessage(message, PooledByteBufAllocator.DEFAULT);
+        try {
+            for (Channel channel : channels) {
+                if (channel == null || !channel.isActive()) continue;
+                channel.writeAndFlush(shared.retain());
+            }
+        } finally {
+            shared.release();
+        }
     }
 
     @Override
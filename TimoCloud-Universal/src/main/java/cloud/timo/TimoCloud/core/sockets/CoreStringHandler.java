@@ -4,31 +4,37 @@ import cloud.timo.TimoCloud.api.TimoCloudAPI;
 import cloud.timo.TimoCloud.api.core.commands.CommandSender;
 import cloud.timo.TimoCloud.api.events.EventType;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
+import cloud.timo.TimoCloud.api.implementations.async.APIRequestImplementation;
+import cloud.timo.TimoCloud.api.implementations.async.APIResponse;
+import cloud.timo.TimoCloud.api.implementations.managers.APIResponseManager;
 import cloud.timo.TimoCloud.api.messages.objects.AddressedPluginMessage;
-import cloud.timo.TimoCloud.api.objects.*;
 import cloud.timo.TimoCloud.api.utils.EventUtil;
+import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
+import cloud.timo.TimoCloud.common.protocol.BinaryMessageCodec;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
+import cloud.timo.TimoCloud.common.sockets.AESEncrypter;
 import cloud.timo.TimoCloud.common.sockets.BasicStringHandler;
+import cloud.timo.TimoCloud.common.sockets.FlushConsolidator;
+import cloud.timo.TimoCloud.common.sockets.MessageEncoder;
 import cloud.timo.TimoCloud.common.utils.DoAfterAmount;
 import cloud.timo.TimoCloud.common.utils.EnumUtil;
 import cloud.timo.TimoCloud.common.utils.PluginMessageSerializer;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.managers.TemplateManager;
 import cloud.timo.TimoCloud.core.objects.Base;
 import cloud.timo.TimoCloud.core.objects.Cord;
 import cloud.timo.TimoCloud.core.objects.Proxy;
 import cloud.timo.TimoCloud.core.objects.Server;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
+import io.netty.handler.stream.ChunkedWriteHandler;
 
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.security.PublicKey;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 @ChannelHandler.Sharable
 public class CoreStringHandler extends BasicStringHandler {
@@ -67,6 +73,9 @@ public class CoreStringHandler extends BasicStringHandler {
                 TimoCloudCore.getInstance().getSocketServerHandler().setCommunicatable(channel, server);
                 server.onConnect(channel);
                 server.onHandshakeSuccess();
+                negotiateCodec(message, channel);
+                negotiateCipher(message, channel);
+                negotiateBatching(message, channel);
                 channel.attr(CoreRSAHandshakeHandler.HANDSHAKE_PERFORMED_ATTRIBUTE_KEY).set(true);
                 return;
             }
@@ -86,6 +95,9 @@ public class CoreStringHandler extends BasicStringHandler {
                 TimoCloudCore.getInstance().getSocketServerHandler().setCommunicatable(channel, proxy);
                 proxy.onConnect(channel);
                 proxy.onHandshakeSuccess();
+                negotiateCodec(message, channel);
+                negotiateCipher(message, channel);
+                negotiateBatching(message, channel);
                 channel.attr(CoreRSAHandshakeHandler.HANDSHAKE_PERFORMED_ATTRIBUTE_KEY).set(true);
                 return;
             }
@@ -121,7 +133,15 @@ public class CoreStringHandler extends BasicStringHandler {
                 }
                 TimoCloudCore.getInstance().getSocketServerHandler().setCommunicatable(channel, base);
                 base.onConnect(channel, address, publicAddress);
+                base.setBatchedPidRequests(Boolean.TRUE.equals(message.get("batchedPidRequests")));
+                base.setStreamedTemplates(Boolean.TRUE.equals(message.get("streamedTemplates")));
+                if (base.isStreamedTemplates() && channel.pipeline().get(ChunkedWriteHandler.class) == null) {
+                    channel.pipeline().addLast("chunkedWriter", new ChunkedWriteHandler()); // Outermost outbound handler, so chunks are encoded and encrypted like all other messages
+                }
                 base.onHandshakeSuccess();
+                negotiateCodec(message, channel);
+                negotiateCipher(message, channel);
+                negotiateBatching(message, channel);
                 channel.attr(CoreRSAHandshakeHandler.HANDSHAKE_PERFORMED_ATTRIBUTE_KEY).set(true);
                 return;
             }
@@ -148,50 +168,11 @@ public class CoreStringHandler extends BasicStringHandler {
 
         switch (type) {
             case GET_API_DATA: {
-                Set<String> serverGroups = new HashSet<>();
-                Set<String> proxyGroups = new HashSet<>();
-                Set<String> servers = new HashSet<>();
-                Set<String> proxies = new HashSet<>();
-                Set<String> bases = new HashSet<>();
-                Set<String> players = new HashSet<>();
-                Set<String> cords = new HashSet<>();
-                ObjectMapper objectMapper = ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper();
                 try {
-                    for (ServerGroupObject serverGroupObject : TimoCloudAPI.getUniversalAPI().getServerGroups()) {
-                        serverGroups.add(objectMapper.writeValueAsString(serverGroupObject));
-                    }
-                    for (ProxyGroupObject proxyGroupObject : TimoCloudAPI.getUniversalAPI().getProxyGroups()) {
-                        proxyGroups.add(objectMapper.writeValueAsString(proxyGroupObject));
-                    }
-                    for (ServerObject serverObject : TimoCloudAPI.getUniversalAPI().getServers()) {
-                        servers.add(objectMapper.writeValueAsString(serverObject));
-                    }
-                    for (ProxyObject proxyObject : TimoCloudAPI.getUniversalAPI().getProxies()) {
-                        proxies.add(objectMapper.writeValueAsString(proxyObject));
-                    }
-                    for (PlayerObject playerObject : TimoCloudAPI.getUniversalAPI().getPlayers()) {
-                        players.add(objectMapper.writeValueAsString(playerObject));
-                    }
-                    for (BaseObject baseObject : TimoCloudAPI.getUniversalAPI().getBases()) {
-                        bases.add(objectMapper.writeValueAsString(baseObject));
-                    }
-                    for (CordObject cordObject : TimoCloudAPI.getUniversalAPI().getCords()) {
-                        cords.add(objectMapper.writeValueAsString(cordObject));
-                    }
-                    TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, Message.create()
-                            .setType(MessageType.API_DATA)
-                            .setData(
-                                    Message.create()
-                                            .set("serverGroups", serverGroups)
-                                            .set("proxyGroups", proxyGroups)
-                                            .set("servers", servers)
-                                            .set("proxies", proxies)
-                                            .set("players", players)
-                                            .set("bases", bases)
-                                            .set("cords", cords)
-                            ));
+                    TimoCloudCore.getInstance().getApiStateManager().onDataRequest(channel, message);
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    TimoCloudCore.getInstance().severe("Error while sending API data: ");
+                    TimoCloudCore.getInstance().severe(e);
                 }
                 break;
             }
@@ -235,6 +216,24 @@ public class CoreStringHandler extends BasicStringHandler {
                 TimoCloudCore.getInstance().getPluginMessageManager().onMessage(addressedPluginMessage);
                 break;
             }
+            case API_REQUESTS: {
+                List<CompletableFuture<APIResponse>> futures = new ArrayList<>();
+                for (Object request : (List) message.get("requests")) {
+                    futures.add(TimoCloudCore.getInstance().getApiRequestManager().submitRequest(APIRequestImplementation.fromMap((Map) request)));
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenRun(() -> {
+                    List<APIResponse> responses = new ArrayList<>(futures.size());
+                    for (CompletableFuture<APIResponse> future : futures) responses.add(future.join());
+                    if (channel == null) { // Sent by the core itself
+                        APIResponseManager.onResponses(responses);
+                    } else {
+                        TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, Message.create()
+                                .setType(MessageType.API_RESPONSES)
+                                .set("responses", responses));
+                    }
+                });
+                break;
+            }
             case BASE_SERVER_TEMPLATE_REQUEST: {
                 server.getBase().setAvailableRam(server.getBase().getAvailableRam() + server.getGroup().getRam()); // Start paused, hence ram is free
                 TimoCloudCore.getInstance().info("Base requested template update for server " + server.getName() + ". Sending update and starting server again...");
@@ -251,53 +250,13 @@ public class CoreStringHandler extends BasicStringHandler {
                 DoAfterAmount doAfterAmount = new DoAfterAmount(amount, server::start);
                 server.setTemplateUpdate(doAfterAmount);
                 try {
-                    if (templateDifferences != null) {
-                        File templateDirectory = new File(TimoCloudCore.getInstance().getFileManager().getServerTemplatesDirectory(), template);
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        TimoCloudCore.getInstance().getTemplateManager().zipFiles(
-                                templateDifferences.stream().map(fileName -> new File(templateDirectory, fileName)).collect(Collectors.toList()),
-                                templateDirectory,
-                                outputStream);
-                        String content = byteArrayToString(outputStream.toByteArray());
-                        channel.writeAndFlush(Message.create()
-                                .setType(MessageType.TRANSFER_TEMPLATE)
-                                .set("transferType", "SERVER_TEMPLATE")
-                                .set("template", template)
-                                .set("file", content)
-                                .setTarget(targetId)
-                                .toString());
-                    }
-                    if (mapDifferences != null) {
-                        File mapDirectory = new File(TimoCloudCore.getInstance().getFileManager().getServerTemplatesDirectory(), server.getGroup().getName() + "_" + map);
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        TimoCloudCore.getInstance().getTemplateManager().zipFiles(
-                                mapDifferences.stream().map(fileName -> new File(mapDirectory, fileName)).collect(Collectors.toList()),
-                                mapDirectory,
-                                outputStream);
-                        String content = byteArrayToString(outputStream.toByteArray());
-                        channel.writeAndFlush(Message.create()
-                                .setType(MessageType.TRANSFER_TEMPLATE)
-                                .set("transferType", "SERVER_TEMPLATE")
-                                .set("template", server.getGroup().getName() + "_" + map)
-                                .set("file", content)
-                                .setTarget(targetId)
-                                .toString());
-                    }
-                    if (globalDifferences != null) {
-                        File templateDirectory = TimoCloudCore.getInstance().getFileManager().getServerGlobalDirectory();
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        TimoCloudCore.getInstance().getTemplateManager().zipFiles(
-                                globalDifferences.stream().map(fileName -> new File(templateDirectory, fileName)).collect(Collectors.toList()),
-                                templateDirectory,
-                                outputStream);
-                        String content = byteArrayToString(outputStream.toByteArray());
-                        channel.writeAndFlush(Message.create()
-                                .setType(MessageType.TRANSFER_TEMPLATE)
-                                .set("transferType", "SERVER_GLOBAL_TEMPLATE")
-                                .set("file", content)
-                                .setTarget(targetId)
-                                .toString());
-                    }
+                    TemplateManager templateManager = TimoCloudCore.getInstance().getTemplateManager();
+                    if (templateDifferences != null)
+                        templateManager.sendTemplate(server.getBase(), channel, targetId, "SERVER_TEMPLATE", template, templateDifferences);
+                    if (mapDifferences != null)
+                        templateManager.sendTemplate(server.getBase(), channel, targetId, "SERVER_TEMPLATE", server.getGroup().getName() + "_" + map, mapDifferences);
+                    if (globalDifferences != null)
+                        templateManager.sendTemplate(server.getBase(), channel, targetId, "SERVER_GLOBAL_TEMPLATE", null, globalDifferences);
                     doAfterAmount.setAmount(amount);
                 } catch (Exception e) {
                     TimoCloudCore.getInstance().severe("Error while sending template files: ");
@@ -318,37 +277,11 @@ public class CoreStringHandler extends BasicStringHandler {
                 DoAfterAmount doAfterAmount = new DoAfterAmount(amount, proxy::start);
                 proxy.setTemplateUpdate(doAfterAmount);
                 try {
-                    if (templateDifferences != null) {
-                        File templateDirectory = new File(TimoCloudCore.getInstance().getFileManager().getProxyTemplatesDirectory(), template);
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        TimoCloudCore.getInstance().getTemplateManager().zipFiles(
-                                templateDifferences.stream().map(fileName -> new File(templateDirectory, fileName)).collect(Collectors.toList()),
-                                templateDirectory,
-                                outputStream);
-                        String content = byteArrayToString(outputStream.toByteArray());
-                        channel.writeAndFlush(Message.create()
-                                .setType(MessageType.TRANSFER_TEMPLATE)
-                                .set("transferType", "PROXY_TEMPLATE")
-                                .set("template", template)
-                                .set("file", content)
-                                .setTarget(targetId)
-                                .toString());
-                    }
-                    if (globalDifferences != null) {
-                        File templateDirectory = TimoCloudCore.getInstance().getFileManager().getProxyGlobalDirectory();
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        TimoCloudCore.getInstance().getTemplateManager().zipFiles(
-                                globalDifferences.stream().map(fileName -> new File(templateDirectory, fileName)).collect(Collectors.toList()),
-                                templateDirectory,
-                                outputStream);
-                        String content = byteArrayToString(outputStream.toByteArray());
-                        channel.writeAndFlush(Message.create()
-                                .setType(MessageType.TRANSFER_TEMPLATE)
-                                .set("transferType", "PROXY_GLOBAL_TEMPLATE")
-                                .set("file", content)
-                                .setTarget(targetId)
-                                .toString());
-                    }
+                    TemplateManager templateManager = TimoCloudCore.getInstance().getTemplateManager();
+                    if (templateDifferences != null)
+                        templateManager.sendTemplate(proxy.getBase(), channel, targetId, "PROXY_TEMPLATE", template, templateDifferences);
+                    if (globalDifferences != null)
+                        templateManager.sendTemplate(proxy.getBase(), channel, targetId, "PROXY_GLOBAL_TEMPLATE", null, globalDifferences);
                     doAfterAmount.setAmount(amount);
                 } catch (Exception e) {
                     TimoCloudCore.getInstance().severe("Error while sending template files: ");
@@ -356,13 +289,20 @@ public class CoreStringHandler extends BasicStringHandler {
                 }
                 break;
             }
-            case SERVER_LOG_ENTRY: {
+            case TEMPLATE_TRANSFER_ACCEPT: {
+                if (! (sender instanceof Base)) break;
+                TimoCloudCore.getInstance().getTemplateManager().onTransferAccepted(channel, message);
+                break;
+            }
+            case SERVER_LOG_ENTRY:
+            case SERVER_LOG_ENTRIES: {
                 if (target instanceof Server) {
                     target.onMessage(message, sender);
                 }
                 break;
             }
-            case PROXY_LOG_ENTRY: {
+            case PROXY_LOG_ENTRY:
+            case PROXY_LOG_ENTRIES: {
                 if (target instanceof Proxy) {
                     target.onMessage(message, sender);
                 }
@@ -373,8 +313,45 @@ public class CoreStringHandler extends BasicStringHandler {
         }
     }
 
-    private String byteArrayToString(byte[] bytes) throws Exception {
-        return Base64.getEncoder().encodeToString(bytes);
+    /**
+     * Switches the channel to the binary codec if the client announced support for it in its handshake. Older clients keep using JSON.
+     */
+    private void negotiateCodec(Message handshake, Channel channel) {
+        if (! BinaryMessageCodec.NAME.equals(handshake.get("codec"))) return;
+        TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, Message.create()
+                .setType(MessageType.PROTOCOL_CODEC)
+                .setData(BinaryMessageCodec.NAME));
+        MessageEncoder.useBinary(channel);
+    }
+
+    private void negotiateCipher(Message handshake, Channel channel) {
+        if (! AESEncryptionUtil.GCM_NAME.equals(handshake.get("cipher"))) return;
+        AESEncrypter encrypter = channel.pipeline().get(AESEncrypter.class);
+        if (encrypter == null) return;
+        TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, Message.create()
+                .setType(MessageType.PROTOCOL_CIPHER)
+                .setData(AESEncryptionUtil.GCM_NAME));
+        try {
+            encrypter.enableGcm(true);
+        } catch (Exception e) {
+            TimoCloudCore.getInstance().severe("Error while enabling AES-GCM: ");
+            TimoCloudCore.getInstance().severe(e);
+            closeChannel(channel);
+        }
+    }
+
+    /**
+     * Packs the messages of a flush into one frame if the client can split them. Has to be done after the cipher has been negotiated,
+     * so that the client reads PROTOCOL_BATCH with the cipher it also uses for the batched frames.
+     */
+    private void negotiateBatching(Message handshake, Channel channel) {
+        if (! Boolean.TRUE.equals(handshake.get("batchedFrames"))) return;
+        if (! Boolean.TRUE.equals(TimoCloudCore.getInstance().getFileManager().getConfig().get("batched-frames"))) return;
+        FlushConsolidator flushConsolidator = channel.pipeline().get(FlushConsolidator.class);
+        if (flushConsolidator == null) return;
+        TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, Message.create()
+                .setType(MessageType.PROTOCOL_BATCH));
+        flushConsolidator.enableBatching();
     }
 
 }
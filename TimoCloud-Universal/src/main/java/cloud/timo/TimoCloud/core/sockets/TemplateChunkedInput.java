@@ -0,0 +1,166 @@
+package cloud.timo.TimoCloud.core.sockets;
+
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+import cloud.timo.TimoCloud.common.utils.files.BlockDelta;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Reads the files of a streamed template transfer chunk by chunk. Written to a channel with a {@link io.netty.handler.stream.ChunkedWriteHandler},
+ * the next chunk is only read once the channel is writable again, so at most a few chunks are held in memory.
+ * Every chunk has to pass the channel's AES encrypter, which is why the files cannot be sent as zero-copy {@link io.netty.channel.FileRegion}s.
+ * Chunk data is Base64 encoded since neither message codec has a binary field type, which makes chunks a third larger than the file content.
+ * Files which have been deleted since the offer are announced with a {@code removed} chunk, so the base does not expect them anymore.
+ * <p>
+ * Files the base already has an old version of are sent as {@link BlockDelta} operations instead of raw chunks.
+ */
+public class TemplateChunkedInput implements ChunkedInput<Message> {
+
+    public static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_DELTA_OPERATIONS = 4096;
+
+    private final String transferId;
+    private final String targetId;
+    private final File directory;
+    private final Iterator<Map.Entry<String, Long>> files;
+    private final Map<String, BlockDelta.Signature> signatures;
+    private final byte[] buffer;
+
+    private String currentPath;
+    private FileChannel currentFile;
+    private BlockDelta.Encoder currentDelta;
+    private long position;
+    private long progress;
+    private boolean endSent;
+
+    /**
+     * @param offsets    Files to send, relative to the template directory, and the offsets to continue from
+     * @param signatures Block signatures of the base's old versions of some of the files
+     */
+    public TemplateChunkedInput(String transferId, String targetId, File directory, Map<String, Long> offsets, Map<String, BlockDelta.Signature> signatures) {
+        this.transferId = transferId;
+        this.targetId = targetId;
+        this.directory = directory;
+        this.files = offsets.entrySet().iterator();
+        this.signatures = signatures;
+        this.buffer = new byte[CHUNK_SIZE];
+    }
+
+    @Override
+    public boolean isEndOfInput() {
+        return endSent;
+    }
+
+    @Override
+    public void close() throws Exception {
+        closeCurrentFile();
+    }
+
+    @Deprecated
+    @Override
+    public Message readChunk(ChannelHandlerContext ctx) throws Exception {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public Message readChunk(ByteBufAllocator allocator) throws Exception {
+        if (endSent) return null;
+        while (true) {
+            if (currentFile == null && currentDelta == null) {
+                if (!files.hasNext()) {
+                    endSent = true;
+                    return Message.create()
+                            .setType(MessageType.TEMPLATE_TRANSFER_END)
+                            .setTarget(targetId)
+                            .set("transferId", transferId);
+                }
+                Map.Entry<String, Long> next = files.next();
+                File file = new File(directory, next.getKey());
+                if (!file.isFile()) { // Deleted in the meantime, the base must not wait for it
+                    return Message.create()
+                            .setType(MessageType.TEMPLATE_TRANSFER_CHUNK)
+                            .setTarget(targetId)
+                            .set("transferId", transferId)
+                            .set("path", next.getKey())
+                            .set("removed", true);
+                }
+                currentPath = next.getKey();
+                BlockDelta.Signature signature = signatures.get(currentPath);
+                if (signature != null) {
+                    currentDelta = new BlockDelta.Encoder(file, signature);
+                } else {
+                    currentFile = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                    position = next.getValue();
+                }
+            }
+            Message chunk = currentDelta != null ? readDelta() : readRaw();
+            if (chunk != null) return chunk;
+            closeCurrentFile();
+        }
+    }
+
+    private Message readRaw() throws IOException {
+        int read = currentFile.read(ByteBuffer.wrap(buffer), position);
+        if (read == -1) return null;
+        Message chunk = Message.create()
+                .setType(MessageType.TEMPLATE_TRANSFER_CHUNK)
+                .setTarget(targetId)
+                .set("transferId", transferId)
+                .set("path", currentPath)
+                .set("offset", position)
+                .set("data", Base64.getEncoder().encodeToString(read == buffer.length ? buffer : Arrays.copyOf(buffer, read)));
+        position += read;
+        progress += read;
+        return chunk;
+    }
+
+    private Message readDelta() throws IOException {
+        if (currentDelta.isFinished()) return null;
+        List<Object> operations = new ArrayList<>();
+        for (Object operation : currentDelta.nextOperations(CHUNK_SIZE, MAX_DELTA_OPERATIONS)) {
+            if (operation instanceof byte[]) {
+                progress += ((byte[]) operation).length;
+                operations.add(Base64.getEncoder().encodeToString((byte[]) operation));
+            } else {
+                operations.add(operation);
+            }
+        }
+        return Message.create()
+                .setType(MessageType.TEMPLATE_TRANSFER_DELTA)
+                .setTarget(targetId)
+                .set("transferId", transferId)
+                .set("path", currentPath)
+                .set("operations", operations);
+    }
+
+    private void closeCurrentFile() throws IOException {
+        if (currentFile != null) currentFile.close();
+        if (currentDelta != null) currentDelta.close();
+        currentFile = null;
+        currentDelta = null;
+        currentPath = null;
+    }
+
+    @Override
+    public long length() {
+        return -1;
+    }
+
+    /**
+     * @return How many bytes of file content have been sent so far, not counting blocks the base already had
+     */
+    @Override
+    public long progress() {
+        return progress;
+    }
+
+}
@@ -4,18 +4,26 @@ package cloud.timo.TimoCloud.velocity;
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudBungeeAPIImplementation;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
+import cloud.timo.TimoCloud.api.implementations.async.APIRequestBatcher;
+import cloud.timo.TimoCloud.api.implementations.async.APIRequestImplementation;
 import cloud.timo.TimoCloud.api.implementations.internal.TimoCloudInternalImplementationAPIBasicImplementation;
 import cloud.timo.TimoCloud.api.implementations.managers.APIResponseManager;
 import cloud.timo.TimoCloud.api.implementations.managers.EventManager;
+import cloud.timo.TimoCloud.api.implementations.managers.LogSubscriptionManager;
 import cloud.timo.TimoCloud.api.utils.APIInstanceUtil;
+import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
 import cloud.timo.TimoCloud.common.encryption.RSAKeyPairRetriever;
 import cloud.timo.TimoCloud.common.global.logging.TimoCloudLogger;
+import cloud.timo.TimoCloud.common.log.LogShipper;
 import cloud.timo.TimoCloud.common.log.utils.LogInjectionUtil;
 import cloud.timo.TimoCloud.common.manager.LobbyManager;
+import cloud.timo.TimoCloud.common.protocol.BinaryMessageCodec;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.common.sockets.AESDecrypter;
 import cloud.timo.TimoCloud.common.sockets.AESEncrypter;
+import cloud.timo.TimoCloud.common.sockets.MessageDecoder;
+import cloud.timo.TimoCloud.common.sockets.MessageEncoder;
 import cloud.timo.TimoCloud.common.sockets.RSAHandshakeHandler;
 import cloud.timo.TimoCloud.common.utils.ChatColorUtil;
 import cloud.timo.TimoCloud.velocity.api.TimoCloudInternalMessageAPIVelocityImplementation;
@@ -39,7 +47,6 @@ import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.proxy.ProxyServer;
 import io.netty.channel.Channel;
-import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
 import io.netty.util.CharsetUtil;
 import lombok.Getter;
@@ -65,6 +72,7 @@ public class TimoCloudVelocity implements TimoCloudLogger {
     private VelocitySocketMessageManager socketMessageManager;
     private VelocityStringHandler velocityStringHandler;
     private TimoCloudCommand timoCloudCommand;
+    private LogShipper logShipper;
     private String prefix;
     private boolean shuttingDown = false;
 
@@ -120,6 +128,7 @@ public class TimoCloudVelocity implements TimoCloudLogger {
     public void onProxyShutdown(ProxyShutdownEvent event) {
         setShuttingDown(true);
         info("&cSuccessfully stopped &bTimoCloudVelocity!");
+        if (logShipper != null) logShipper.flush();
     }
 
     private void makeInstances() throws Exception {
@@ -140,6 +149,8 @@ public class TimoCloudVelocity implements TimoCloudLogger {
         APIInstanceUtil.setMessageInstance(new TimoCloudMessageAPIVelocityImplementation());
         APIInstanceUtil.setInternalImplementationAPIInstance(new TimoCloudInternalImplementationAPIBasicImplementation());
         TimoCloudAPI.getMessageAPI().registerMessageListener(new APIResponseManager(), "TIMOCLOUD_API_RESPONSE");
+        TimoCloudAPI.getMessageAPI().registerMessageListener(new LogSubscriptionManager(), "TIMOCLOUD_LOG_ENTRIES");
+        APIRequestImplementation.setBatcher(new APIRequestBatcher(Long.getLong("timocloud-api-batch-window", 20)));
     }
 
     private void registerCommands() {
@@ -181,12 +192,13 @@ public class TimoCloudVelocity implements TimoCloudLogger {
             KeyPair keyPair = new RSAKeyPairRetriever(new File(getFileManager().getBaseDirectory(), "/keys/")).getKeyPair();
             new RSAHandshakeHandler(channel, keyPair, (aesKey -> {
                 channel.pipeline().addBefore("prepender", "decrypter", new AESDecrypter(aesKey));
-                channel.pipeline().addBefore("prepender", "decoder", new StringDecoder(CharsetUtil.UTF_8));
+                channel.pipeline().addBefore("prepender", "decoder", new MessageDecoder());
                 channel.pipeline().addBefore("prepender", "handler", getVelocityStringHandler());
                 channel.pipeline().addLast("encrypter", new AESEncrypter(aesKey));
                 channel.pipeline().addLast("encoder", new StringEncoder(CharsetUtil.UTF_8));
+                channel.pipeline().addLast("messageEncoder", new MessageEncoder());
 
-                getSocketMessageManager().sendMessage(Message.create().setType(MessageType.PROXY_HANDSHAKE).setTarget(getProxyId()));
+                getSocketMessageManager().sendMessage(Message.create().setType(MessageType.PROXY_HANDSHAKE).setTarget(getProxyId()).set("codec", BinaryMessageCodec.NAME).set("cipher", AESEncryptionUtil.GCM_NAME).set("batchedFrames", true));
             })).startHandshake();
         } catch (Exception e) {
             severe("Error during public key authentification, please report this!");
@@ -201,11 +213,9 @@ public class TimoCloudVelocity implements TimoCloudLogger {
     }
 
     public void onHandshakeSuccess() {
-        LogInjectionUtil.injectSystemOutAndErr(logEntry ->
-                getSocketMessageManager().sendMessage(Message.create()
-                        .setType(MessageType.PROXY_LOG_ENTRY)
-                        .setData(logEntry))
-        );
+        logShipper = new LogShipper(MessageType.PROXY_LOG_ENTRIES, null, message -> getSocketMessageManager().sendMessage(message),
+                LogShipper.DEFAULT_LINES_PER_SECOND, LogShipper.DEFAULT_INTERVAL);
+        LogInjectionUtil.injectSystemOutAndErr(logShipper);
         requestApiData();
         everySecond();
     }
@@ -220,7 +230,7 @@ public class TimoCloudVelocity implements TimoCloudLogger {
     }
 
     private void requestApiData() {
-        getSocketMessageManager().sendMessage(Message.create().setType(MessageType.GET_API_DATA));
+        getSocketMessageManager().sendMessage(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).createDataRequest());
     }
 
     private void sendEverything() {
@@ -6,7 +6,7 @@ import cloud.timo.TimoCloud.velocity.TimoCloudVelocity;
 public class VelocitySocketMessageManager {
 
     public void sendMessage(Message message) {
-        TimoCloudVelocity.getInstance().getSocketClientHandler().sendMessage(message.toJson());
+        TimoCloudVelocity.getInstance().getSocketClientHandler().sendMessage(message);
     }
 
 }
@@ -1,26 +1,23 @@
 package cloud.timo.TimoCloud.velocity.sockets;
 
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
-import cloud.timo.TimoCloud.api.events.EventType;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudMessageAPIBasicImplementation;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
-import cloud.timo.TimoCloud.api.implementations.managers.EventManager;
+import cloud.timo.TimoCloud.api.implementations.managers.APIResponseManager;
 import cloud.timo.TimoCloud.api.messages.objects.AddressedPluginMessage;
-import cloud.timo.TimoCloud.api.utils.EventUtil;
 import cloud.timo.TimoCloud.common.protocol.Message;
 import cloud.timo.TimoCloud.common.protocol.MessageType;
 import cloud.timo.TimoCloud.common.sockets.BasicStringHandler;
-import cloud.timo.TimoCloud.common.utils.EnumUtil;
 import cloud.timo.TimoCloud.common.utils.PluginMessageSerializer;
 import cloud.timo.TimoCloud.common.utils.network.InetAddressUtil;
 import cloud.timo.TimoCloud.velocity.TimoCloudVelocity;
-import cloud.timo.TimoCloud.velocity.api.TimoCloudUniversalAPIVelocityImplementation;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.server.ServerInfo;
 import io.netty.channel.Channel;
 import net.kyori.adventure.text.Component;
 
 import java.net.InetSocketAddress;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -41,12 +38,16 @@ public class VelocityStringHandler extends BasicStringHandler {
                 TimoCloudVelocity.getInstance().onHandshakeSuccess();
                 break;
             case API_DATA:
-                ((TimoCloudUniversalAPIVelocityImplementation) TimoCloudAPI.getUniversalAPI()).setData((Map<String, Object>) data);
+                try {
+                    ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).onData(message);
+                } catch (Exception e) {
+                    System.err.println("Error while parsing API data: ");
+                    TimoCloudVelocity.getInstance().severe(e);
+                }
                 break;
             case EVENT_FIRED:
                 try {
-                    EventType eventType = EnumUtil.valueOf(EventType.class, (String) message.get("eT"));
-                    ((EventManager) TimoCloudAPI.getEventAPI()).callEvent(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper().readValue((String) data, EventUtil.getClassByEventType(eventType)));
+                    ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).onEventFired(message);
                 } catch (Exception e) {
                     System.err.println("Error while parsing event from json: ");
                     TimoCloudVelocity.getInstance().severe(e);
@@ -94,6 +95,9 @@ public class VelocityStringHandler extends BasicStringHandler {
                 ((TimoCloudMessageAPIBasicImplementation) TimoCloudAPI.getMessageAPI()).onMessage(addressedPluginMessage);
                 break;
             }
+            case API_RESPONSES:
+                APIResponseManager.onResponses((Collection<?>) message.get("responses"));
+                break;
             case PROXY_STOP: {
                 TimoCloudVelocity.getInstance().stop();
                 break;
@@ -0,0 +1,98 @@
+package cloud.timo.TimoCloud.api.implementations;
+
+import cloud.timo.TimoCloud.api.events.Event;
+import cloud.timo.TimoCloud.api.events.EventHandler;
+import cloud.timo.TimoCloud.api.events.EventType;
+import cloud.timo.TimoCloud.api.events.Listener;
+import cloud.timo.TimoCloud.api.implementations.managers.EventManager;
+import cloud.timo.TimoCloud.api.implementations.objects.*;
+import cloud.timo.TimoCloud.api.implementations.storage.IdentifiableObjectStorage;
+import cloud.timo.TimoCloud.api.objects.ServerObject;
+import cloud.timo.TimoCloud.api.utils.APIInstanceUtil;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TimoCloudUniversalAPIBasicImplementationTest {
+
+    private TimoCloudUniversalAPIBasicImplementation api;
+    private final List<Long> received = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        EventManager eventManager = new EventManager();
+        APIInstanceUtil.setEventInstance(eventManager);
+        eventManager.registerListener(new RecordingListener());
+        api = new TimoCloudUniversalAPIBasicImplementation(ServerObjectBasicImplementation.class, ProxyObjectBasicImplementation.class,
+                ServerGroupObjectBasicImplementation.class, ProxyGroupObjectBasicImplementation.class, PlayerObjectBasicImplementation.class,
+                BaseObjectBasicImplementation.class, CordObjectBasicImplementation.class) {
+            @Override
+            Event readEvent(Message message) {
+                return new TestEvent(((Number) message.get("v")).longValue());
+            }
+        };
+    }
+
+    @Test
+    public void replayedEventsAreNotPassedToListeners() throws Exception {
+        api.onData(Message.create()
+                .setData(emptySnapshot())
+                .set("epoch", "epoch")
+                .set("v", 3)
+                .set("events", Arrays.asList(event(2), event(3))));
+        assertTrue(received.isEmpty());
+
+        api.onEventFired(event(3)); // Part of the state already
+        api.onEventFired(event(4));
+        assertEquals(Collections.singletonList(4L), received);
+    }
+
+    @Test
+    public void snapshotReplacesState() throws Exception {
+        api.onData(Message.create().setData(emptySnapshot()).set("epoch", "epoch").set("v", 1).set("events", Collections.emptyList()));
+        IdentifiableObjectStorage<ServerObject> first = api.getServerStorage();
+        api.onData(Message.create().setData(emptySnapshot()).set("epoch", "other").set("v", 1).set("events", Collections.emptyList()));
+        assertNotSame(first, api.getServerStorage());
+        assertTrue(api.getServers().isEmpty());
+        assertTrue(api.gotAnyData());
+    }
+
+    private static Map<String, Object> emptySnapshot() {
+        Map<String, Object> data = new HashMap<>();
+        for (String key : Arrays.asList("serverGroups", "proxyGroups", "servers", "proxies", "bases", "players", "cords")) {
+            data.put(key, Collections.emptyList());
+        }
+        return data;
+    }
+
+    private static Message event(long version) {
+        return Message.create().set("v", version).set("eT", EventType.PLAYER_CONNECT.name()).setData("{}");
+    }
+
+    public class RecordingListener implements Listener {
+
+        @EventHandler
+        public void onTestEvent(TestEvent event) {
+            received.add(event.version);
+        }
+    }
+
+    public static class TestEvent implements Event {
+
+        private final long version;
+
+        private TestEvent(long version) {
+            this.version = version;
+        }
+
+        @Override
+        public EventType getType() {
+            return EventType.PLAYER_CONNECT;
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+package cloud.timo.TimoCloud.api.implementations.async;
+
+import cloud.timo.TimoCloud.api.async.APIRequestFuture;
+import cloud.timo.TimoCloud.api.async.APIRequestType;
+import cloud.timo.TimoCloud.api.implementations.managers.APIResponseManager;
+import cloud.timo.TimoCloud.api.utils.APIInstanceUtil;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class APIRequestBatcherTest {
+
+    private final List<String> sent = new ArrayList<>();
+    private APIRequestBatcher batcher;
+
+    @Before
+    public void setUp() throws Exception {
+        APIInstanceUtil.setInternalMessageInstance(sent::add);
+        batcher = new APIRequestBatcher(60000);
+        APIRequestImplementation.setBatcher(batcher);
+    }
+
+    @After
+    public void tearDown() {
+        APIRequestImplementation.setBatcher(null);
+    }
+
+    @Test
+    public void collapsesSettersAndCompletesAllFutures() {
+        APIRequestImplementation<Void> first = new APIRequestImplementation<>(APIRequestType.S_SET_STATE, "Lobby-1", "STARTING");
+        APIRequestImplementation<Void> extra = new APIRequestImplementation<>(APIRequestType.S_SET_EXTRA, "Lobby-1", "Map: Castle");
+        APIRequestImplementation<Void> last = new APIRequestImplementation<>(APIRequestType.S_SET_STATE, "Lobby-1", "INGAME");
+        APIRequestFuture<Void> firstFuture = first.submit();
+        APIRequestFuture<Void> extraFuture = extra.submit();
+        APIRequestFuture<Void> lastFuture = last.submit();
+
+        batcher.flush();
+
+        assertEquals(1, sent.size());
+        List<Map> requests = getRequests(0);
+        assertEquals(2, requests.size());
+        assertEquals("S_SET_STATE", requests.get(0).get("rtype")); // At the position of the first setter
+        assertEquals("INGAME", ((Map) requests.get(0).get("data")).get("value"));
+        assertEquals("S_SET_EXTRA", requests.get(1).get("rtype"));
+
+        APIResponseManager.onResponses(Arrays.asList(new APIResponse<>(last, (Void) null), new APIResponse<>(extra, (Void) null)));
+
+        assertTrue(firstFuture.isSuccess());
+        assertTrue(extraFuture.isSuccess());
+        assertTrue(lastFuture.isSuccess());
+    }
+
+    @Test
+    public void settersAreNotCollapsedAcrossOtherRequests() {
+        new APIRequestImplementation<>(APIRequestType.S_SET_STATE, "Lobby-1", "STARTING").submit();
+        new APIRequestImplementation<>(APIRequestType.S_STOP, "Lobby-1").submit();
+        new APIRequestImplementation<>(APIRequestType.S_SET_STATE, "Lobby-1", "INGAME").submit();
+        new APIRequestImplementation<>(APIRequestType.S_SET_STATE, "Lobby-1", "ENDING").submit();
+
+        batcher.flush();
+
+        List<Map> requests = getRequests(0);
+        assertEquals(3, requests.size()); // In the order they were submitted
+        assertEquals("STARTING", ((Map) requests.get(0).get("data")).get("value"));
+        assertEquals("S_STOP", requests.get(1).get("rtype"));
+        assertEquals("ENDING", ((Map) requests.get(2).get("data")).get("value"));
+    }
+
+    private List<Map> getRequests(int frame) {
+        return (List<Map>) Message.createFromJsonString(sent.get(frame)).get("requests");
+    }
+
+}
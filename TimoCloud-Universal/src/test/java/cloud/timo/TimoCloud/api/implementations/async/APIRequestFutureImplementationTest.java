@@ -0,0 +1,62 @@
+package cloud.timo.TimoCloud.api.implementations.async;
+
+import cloud.timo.TimoCloud.api.async.APIRequestError;
+import cloud.timo.TimoCloud.api.async.APIRequestType;
+import cloud.timo.TimoCloud.api.internal.APIRequestFutureStorage;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class APIRequestFutureImplementationTest {
+
+    @Test
+    public void failsAndIsEvictedAfterDeadline() throws Exception {
+        APIRequestFutureStorage storage = new APIRequestFutureStorage();
+        APIRequestImplementation<String> request = new APIRequestImplementation<>(APIRequestType.G_CREATE_SERVER_GROUP);
+        APIRequestFutureImplementation<String> future = new APIRequestFutureImplementation<>(request);
+        storage.addFuture(request.getId(), future, 50, TimeUnit.MILLISECONDS, () -> future.requestTimedOut(50));
+        assertEquals(1, storage.getPendingCount());
+
+        try {
+            future.awaitResponse();
+            fail("The request should have timed out");
+        } catch (APIRequestError e) {
+            assertEquals(APIRequestFutureImplementation.TIMEOUT_ERROR_CODE, (int) e.getErrorCode());
+        }
+        assertEquals(0, storage.getPendingCount());
+        assertEquals(1, storage.getTimedOutCount());
+        assertNull(storage.pollFuture(request.getId()));
+    }
+
+    @Test
+    public void lateResponseIsIgnoredAfterCancel() {
+        APIRequestImplementation<String> request = new APIRequestImplementation<>(APIRequestType.G_CREATE_SERVER_GROUP);
+        APIRequestFutureImplementation<String> future = new APIRequestFutureImplementation<>(request);
+        CompletableFuture<String> completableFuture = future.toCompletableFuture();
+
+        assertTrue(future.cancel());
+        future.requestComplete(new APIResponse<>(request, "Lobby"));
+
+        assertTrue(future.isCancelled());
+        assertFalse(future.isSuccess());
+        assertNull(future.getResponse());
+        assertTrue(completableFuture.isCompletedExceptionally());
+        assertFalse(future.cancel());
+    }
+
+    @Test
+    public void completableFutureReceivesResponse() throws Exception {
+        APIRequestImplementation<String> request = new APIRequestImplementation<>(APIRequestType.G_CREATE_SERVER_GROUP);
+        APIRequestFutureImplementation<String> future = new APIRequestFutureImplementation<>(request);
+        CompletableFuture<String> completableFuture = future.toCompletableFuture();
+
+        future.requestComplete(new APIResponse<>(request, "Lobby"));
+
+        assertEquals("Lobby", completableFuture.get(1, TimeUnit.SECONDS));
+        assertEquals("Lobby", future.awaitResponse(1, TimeUnit.SECONDS));
+    }
+
+}
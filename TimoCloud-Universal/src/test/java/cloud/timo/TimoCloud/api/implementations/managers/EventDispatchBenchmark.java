@@ -0,0 +1,94 @@
+package cloud.timo.TimoCloud.api.implementations.managers;
+
+import cloud.timo.TimoCloud.api.events.Event;
+import cloud.timo.TimoCloud.api.events.EventHandler;
+import cloud.timo.TimoCloud.api.events.Listener;
+import cloud.timo.TimoCloud.api.events.player.PlayerConnectEvent;
+import cloud.timo.TimoCloud.api.events.player.PlayerConnectEventBasicImplementation;
+import cloud.timo.TimoCloud.api.events.player.PlayerDisconnectEvent;
+import cloud.timo.TimoCloud.api.events.server.ServerRegisterEvent;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the indexed {@link EventManager} with looking up and invoking the handler methods reflectively on every event, as it used to be done.
+ * Every listener handles three event types, only one of which is fired.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=cloud.timo.TimoCloud.api.implementations.managers.EventDispatchBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventDispatchBenchmark {
+
+    @Param({"1", "10", "50"})
+    private int listenerCount;
+
+    private EventManager eventManager;
+    private List<Listener> listeners;
+    private Event event;
+
+    @Setup
+    public void setUp() {
+        eventManager = new EventManager();
+        listeners = new ArrayList<>();
+        for (int i = 0; i < listenerCount; i++) {
+            Listener listener = new BenchmarkListener();
+            listeners.add(listener);
+            eventManager.registerListener(listener);
+        }
+        event = new PlayerConnectEventBasicImplementation(null);
+    }
+
+    @Benchmark
+    public void indexed() {
+        eventManager.callEvent(event);
+    }
+
+    @Benchmark
+    public void reflective() throws Exception {
+        for (Listener listener : listeners) {
+            for (Method method : listener.getClass().getDeclaredMethods()) {
+                if (method.getAnnotation(EventHandler.class) == null) continue;
+                if (method.getParameterTypes().length != 1 || !method.getParameterTypes()[0].isAssignableFrom(event.getClass())) continue;
+                method.invoke(listener, event);
+            }
+        }
+    }
+
+    public static class BenchmarkListener implements Listener {
+
+        private long handled;
+
+        @EventHandler
+        public void onPlayerConnect(PlayerConnectEvent event) {
+            handled++;
+        }
+
+        @EventHandler
+        public void onPlayerDisconnect(PlayerDisconnectEvent event) {
+            handled++;
+        }
+
+        @EventHandler
+        public void onServerRegister(ServerRegisterEvent event) {
+            handled++;
+        }
+
+        public void notAHandler(PlayerConnectEvent event) {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(EventDispatchBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,293 @@
+package cloud.timo.TimoCloud.base.managers;
+
+import cloud.timo.TimoCloud.TimoCloudTest;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+import cloud.timo.TimoCloud.common.utils.files.BlockDelta;
+import cloud.timo.TimoCloud.common.utils.files.FileHashIndex;
+import cloud.timo.TimoCloud.core.sockets.TemplateChunkedInput;
+import io.netty.buffer.ByteBufAllocator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+public class BaseTemplateManagerTest extends TimoCloudTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File templates;
+    private File source;
+    private BaseTemplateManager templateManager;
+
+    @Before
+    public void setUp() throws Exception {
+        templates = folder.newFolder("templates");
+        source = folder.newFolder("source");
+        when(getBase().getFileManager().getServerTemplatesDirectory()).thenReturn(templates);
+        when(getBase().getFileManager().getCacheDirectory()).thenReturn(folder.newFolder("cache"));
+        templateManager = new BaseTemplateManager();
+    }
+
+    @Test
+    public void receivesOfferedFiles() throws Exception {
+        Map<String, Long> offsets = templateManager.onTransferOffer("1", "SERVER_TEMPLATE", "Lobby", Arrays.asList(
+                entry("server.properties", "motd=Lobby"),
+                directory("plugins/")));
+
+        assertEquals(Long.valueOf(0), offsets.get("server.properties"));
+        templateManager.onTransferChunk("1", "server.properties", 0, bytes("motd=Lobby"));
+
+        assertEquals("SERVER_TEMPLATE", finish("1"));
+        assertEquals("motd=Lobby", read(new File(templates, "Lobby/server.properties")));
+        assertTrue(new File(templates, "Lobby/plugins").isDirectory());
+        assertNull(templateManager.onTransferEnd("1"));
+        expectNoException();
+    }
+
+    @Test
+    public void resumesPartiallyReceivedFiles() throws Exception {
+        List<Map<String, Object>> files = Collections.singletonList(entry("server.properties", "motd=Lobby"));
+        templateManager.onTransferOffer("1", "SERVER_TEMPLATE", "Lobby", files);
+        templateManager.onTransferChunk("1", "server.properties", 0, bytes("motd="));
+        templateManager.abortTransfers(); // Connection lost
+
+        Map<String, Long> offsets = templateManager.onTransferOffer("2", "SERVER_TEMPLATE", "Lobby", files);
+        assertEquals(Long.valueOf(5), offsets.get("server.properties"));
+        templateManager.onTransferChunk("2", "server.properties", 5, bytes("Lobby"));
+
+        assertEquals("SERVER_TEMPLATE", finish("2"));
+        assertEquals("motd=Lobby", read(new File(templates, "Lobby/server.properties")));
+    }
+
+    @Test
+    public void finishesTransferOfRemovedFile() throws Exception {
+        write(new File(templates, "Lobby/old.txt"), "old");
+        templateManager.onTransferOffer("1", "SERVER_TEMPLATE", "Lobby", Arrays.asList(
+                entry("old.txt", "new"),
+                entry("server.properties", "motd=Lobby")));
+        templateManager.onTransferFileRemoved("1", "old.txt");
+        templateManager.onTransferChunk("1", "server.properties", 0, bytes("motd=Lobby"));
+
+        assertEquals("SERVER_TEMPLATE", finish("1"));
+        assertFalse(new File(templates, "Lobby/old.txt").exists());
+        assertEquals("motd=Lobby", read(new File(templates, "Lobby/server.properties")));
+    }
+
+    @Test
+    public void requestsIncompleteFilesAgain() throws Exception {
+        templateManager.onTransferOffer("1", "SERVER_TEMPLATE", "Lobby", Collections.singletonList(entry("server.properties", "motd=Lobby")));
+        templateManager.onTransferChunk("1", "server.properties", 0, bytes("motd="));
+
+        BaseTemplateManager.TransferEnd end = templateManager.onTransferEnd("1");
+        assertFalse(end.isFinished());
+        assertEquals("Lobby", end.getTemplate());
+        assertEquals(Collections.singletonMap("server.properties", 0L), end.getRequestedAgain());
+        templateManager.onTransferChunk("1", "server.properties", 0, bytes("motd=Lobby"));
+
+        assertEquals("SERVER_TEMPLATE", finish("1"));
+        assertEquals("motd=Lobby", read(new File(templates, "Lobby/server.properties")));
+    }
+
+    @Test
+    public void movesNothingBeforeAllFilesAreComplete() throws Exception {
+        templateManager.onTransferOffer("1", "SERVER_TEMPLATE", "Lobby", Arrays.asList(
+                entry("server.properties", "motd=Lobby"),
+                entry("bukkit.yml", "settings: {}")));
+        templateManager.onTransferChunk("1", "server.properties", 0, bytes("motd=Lobby"));
+        templateManager.onTransferChunk("1", "bukkit.yml", 0, bytes("settings"));
+
+        assertEquals(Collections.singleton("bukkit.yml"), templateManager.onTransferEnd("1").getRequestedAgain().keySet());
+        assertFalse(new File(templates, "Lobby/server.properties").exists());
+        templateManager.onTransferChunk("1", "bukkit.yml", 0, bytes("settings: {}"));
+
+        assertEquals("SERVER_TEMPLATE", finish("1"));
+        assertEquals("motd=Lobby", read(new File(templates, "Lobby/server.properties")));
+        assertEquals("settings: {}", read(new File(templates, "Lobby/bukkit.yml")));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFilesOutsideOfTemplate() throws Exception {
+        templateManager.onTransferOffer("1", "SERVER_TEMPLATE", "Lobby", Collections.singletonList(entry("../Other/server.properties", "motd=Other")));
+    }
+
+    @Test
+    public void receivesEmptyFiles() throws Exception {
+        templateManager.onTransferOffer("1", "SERVER_TEMPLATE", "Lobby", Collections.singletonList(entry("empty.txt", "")));
+
+        assertEquals("SERVER_TEMPLATE", finish("1"));
+        assertTrue(new File(templates, "Lobby/empty.txt").isFile());
+    }
+
+    @Test
+    public void reconstructsFilesFromDelta() throws Exception {
+        Random random = new Random(42);
+        byte[] oldContent = new byte[100 * 1024];
+        random.nextBytes(oldContent);
+        byte[] newContent = oldContent.clone();
+        Arrays.fill(newContent, 50 * 1024, 50 * 1024 + 100, (byte) 7);
+        File target = new File(templates, "Lobby/plugin.jar");
+        target.getParentFile().mkdirs();
+        Files.write(target.toPath(), oldContent);
+
+        templateManager.onTransferOffer("1", "SERVER_TEMPLATE", "Lobby", Collections.singletonList(entry("plugin.jar", newContent)));
+        Map<String, Object> signature = (Map<String, Object>) templateManager.getSignatures("1").get("plugin.jar");
+        assertNotNull(signature);
+        try (BlockDelta.Encoder encoder = new BlockDelta.Encoder(new File(source, "plugin.jar"), BlockDelta.Signature.fromMap(signature))) {
+            while (!encoder.isFinished()) {
+                List<Object> operations = new ArrayList<>();
+                for (Object operation : encoder.nextOperations(64 * 1024)) {
+                    operations.add(operation instanceof byte[] ? Base64.getEncoder().encodeToString((byte[]) operation) : operation);
+                }
+                templateManager.onTransferDelta("1", "plugin.jar", operations);
+            }
+        }
+
+        assertEquals("SERVER_TEMPLATE", finish("1"));
+        assertArrayEquals(newContent, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void reconstructsLargeFilesStreamedAsDelta() throws Exception {
+        byte[] oldContent = new byte[12 * 1024 * 1024]; // More than 4096 blocks, which do not fit into a single delta chunk
+        new Random(42).nextBytes(oldContent);
+        byte[] newContent = oldContent.clone();
+        newContent[newContent.length - 1]++;
+        File target = new File(templates, "Lobby/plugin.jar");
+        target.getParentFile().mkdirs();
+        Files.write(target.toPath(), oldContent);
+
+        Map<String, Long> offsets = templateManager.onTransferOffer("1", "SERVER_TEMPLATE", "Lobby", Collections.singletonList(entry("plugin.jar", newContent)));
+        Map<String, BlockDelta.Signature> signatures = new HashMap<>();
+        templateManager.getSignatures("1").forEach((path, signature) -> signatures.put(path, BlockDelta.Signature.fromMap((Map<String, Object>) signature)));
+        TemplateChunkedInput input = new TemplateChunkedInput("1", "Lobby-1", source, offsets, signatures);
+        int deltaChunks = 0;
+        for (Message chunk = input.readChunk(ByteBufAllocator.DEFAULT); chunk != null; chunk = input.readChunk(ByteBufAllocator.DEFAULT)) {
+            if (chunk.getType() == MessageType.TEMPLATE_TRANSFER_DELTA) {
+                templateManager.onTransferDelta("1", (String) chunk.get("path"), (List<Object>) chunk.get("operations"));
+                deltaChunks++;
+            } else {
+                assertEquals(MessageType.TEMPLATE_TRANSFER_END, chunk.getType());
+            }
+        }
+        input.close();
+
+        assertTrue("Sent " + deltaChunks + " delta chunks", deltaChunks > 1);
+        assertEquals("SERVER_TEMPLATE", finish("1"));
+        assertArrayEquals(newContent, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void reusesStoredObjects() throws Exception {
+        byte[] content = new byte[20 * 1024];
+        new Random(42).nextBytes(content);
+        templateManager.onTransferOffer("1", "SERVER_TEMPLATE", "Lobby", Collections.singletonList(entry("plugin.jar", content)));
+        templateManager.onTransferChunk("1", "plugin.jar", 0, content);
+        templateManager.onTransferEnd("1");
+
+        Map<String, Long> offsets = templateManager.onTransferOffer("2", "SERVER_TEMPLATE", "Other", Collections.singletonList(entry("plugin.jar", content)));
+
+        assertTrue(offsets.isEmpty());
+        assertEquals("SERVER_TEMPLATE", finish("2"));
+        assertArrayEquals(content, Files.readAllBytes(new File(templates, "Other/plugin.jar").toPath()));
+    }
+
+    @Test
+    public void keepsOldVersionOfFilesCorruptedTwiceWithoutStoringThem() throws Exception {
+        byte[] content = new byte[20 * 1024];
+        new Random(42).nextBytes(content);
+        write(new File(templates, "Lobby/plugin.jar"), "old");
+        List<Map<String, Object>> files = Arrays.asList(entry("plugin.jar", content), entry("server.properties", "motd=Lobby"));
+        templateManager.onTransferOffer("1", "SERVER_TEMPLATE", "Lobby", files);
+        templateManager.onTransferChunk("1", "plugin.jar", 0, new byte[content.length]);
+        templateManager.onTransferChunk("1", "server.properties", 0, bytes("motd=Lobby"));
+
+        assertFalse(templateManager.onTransferEnd("1").isFinished());
+        templateManager.onTransferChunk("1", "plugin.jar", 0, new byte[content.length]);
+
+        assertEquals("SERVER_TEMPLATE", finish("1"));
+        assertEquals("old", read(new File(templates, "Lobby/plugin.jar")));
+        assertEquals("motd=Lobby", read(new File(templates, "Lobby/server.properties")));
+        assertEquals(Long.valueOf(0), templateManager.onTransferOffer("2", "SERVER_TEMPLATE", "Other", files).get("plugin.jar"));
+    }
+
+    @Test
+    public void fallsBackToCompleteTransferIfDeltaFails() throws Exception {
+        byte[] oldContent = new byte[100 * 1024];
+        new Random(42).nextBytes(oldContent);
+        byte[] newContent = oldContent.clone();
+        newContent[0]++;
+        File target = new File(templates, "Lobby/plugin.jar");
+        target.getParentFile().mkdirs();
+        Files.write(target.toPath(), oldContent);
+        List<Map<String, Object>> files = Collections.singletonList(entry("plugin.jar", newContent));
+
+        templateManager.onTransferOffer("1", "SERVER_TEMPLATE", "Lobby", files);
+        Map<String, Object> signature = (Map<String, Object>) templateManager.getSignatures("1").get("plugin.jar");
+        List<Object> operations = new ArrayList<>();
+        for (int block = 0; block < BlockDelta.Signature.fromMap(signature).getBlockCount(); block++) operations.add(block); // Misses the changed byte
+        templateManager.onTransferDelta("1", "plugin.jar", operations);
+
+        assertEquals(Collections.singletonMap("plugin.jar", 0L), templateManager.onTransferEnd("1").getRequestedAgain());
+        templateManager.onTransferChunk("1", "plugin.jar", 0, newContent);
+        assertEquals("SERVER_TEMPLATE", finish("1"));
+        assertArrayEquals(newContent, Files.readAllBytes(target.toPath()));
+
+        Files.write(target.toPath(), oldContent);
+        templateManager.onTransferOffer("2", "SERVER_TEMPLATE", "Lobby", files);
+        assertTrue(templateManager.getSignatures("2").isEmpty());
+    }
+
+    private String finish(String transferId) throws IOException {
+        BaseTemplateManager.TransferEnd end = templateManager.onTransferEnd(transferId);
+        assertTrue(end.isFinished());
+        return end.getTransferType();
+    }
+
+    private static Map<String, Object> directory(String path) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("path", path);
+        entry.put("directory", true);
+        return entry;
+    }
+
+    private Map<String, Object> entry(String path, String content) throws Exception {
+        return entry(path, bytes(content));
+    }
+
+    private Map<String, Object> entry(String path, byte[] content) throws Exception {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("path", path);
+        File file = new File(source, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content);
+        entry.put("size", file.length());
+        entry.put("modified", file.lastModified());
+        entry.put("digest", FileHashIndex.computeDigest(file.toPath()));
+        return entry;
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void write(File file, String content) throws Exception {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), bytes(content));
+    }
+
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+}
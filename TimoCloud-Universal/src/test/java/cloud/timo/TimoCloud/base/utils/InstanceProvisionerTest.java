@@ -0,0 +1,94 @@
+package cloud.timo.TimoCloud.base.utils;
+
+import cloud.timo.TimoCloud.TimoCloudTest;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class InstanceProvisionerTest extends TimoCloudTest { // Reflink support is logged by the base
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File template;
+
+    @Before
+    public void setUp() throws Exception {
+        template = folder.newFolder("template");
+        write(new File(template, "spigot.jar"), "server");
+        write(new File(template, "plugins/TimoCloud.jar"), "plugin");
+        write(new File(template, "server.properties"), "motd=Lobby");
+    }
+
+    @Test
+    public void hardLinksMatchingFilesWithoutChangingTheirPermissions() throws Exception {
+        File instance = folder.newFolder("instance");
+        InstanceProvisioner.Statistics statistics = new InstanceProvisioner.Statistics();
+        new InstanceProvisioner(InstanceProvisioner.Mode.HARDLINK, Collections.singletonList("*.jar")).provisionDirectory(template, instance, statistics);
+
+        assertTrue(Files.isSameFile(new File(template, "spigot.jar").toPath(), new File(instance, "spigot.jar").toPath()));
+        assertTrue(Files.isSameFile(new File(template, "plugins/TimoCloud.jar").toPath(), new File(instance, "plugins/TimoCloud.jar").toPath()));
+        assertFalse(Files.isSameFile(new File(template, "server.properties").toPath(), new File(instance, "server.properties").toPath()));
+        assertTrue(new File(template, "spigot.jar").canWrite()); // Templates and the plugin jar have to stay replaceable
+        assertEquals("motd=Lobby", read(new File(instance, "server.properties")));
+        assertEquals(12, statistics.getLinkedBytes());
+        assertEquals(10, statistics.getCopiedBytes());
+    }
+
+    @Test
+    public void replacingTemplateFileLeavesLinkedInstanceUntouched() throws Exception {
+        File instance = folder.newFolder("instance");
+        new InstanceProvisioner(InstanceProvisioner.Mode.HARDLINK, Collections.singletonList("*.jar"))
+                .provisionDirectory(template, instance, new InstanceProvisioner.Statistics());
+
+        File updated = folder.newFile("spigot.jar.part");
+        write(updated, "updated server");
+        Files.move(updated.toPath(), new File(template, "spigot.jar").toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals("server", read(new File(instance, "spigot.jar")));
+    }
+
+    @Test
+    public void copyModeCopiesEverything() throws Exception {
+        File instance = folder.newFolder("instance");
+        InstanceProvisioner.Statistics statistics = new InstanceProvisioner.Statistics();
+        new InstanceProvisioner(InstanceProvisioner.Mode.COPY, Collections.singletonList("*.jar")).provisionDirectory(template, instance, statistics);
+
+        assertFalse(Files.isSameFile(new File(template, "spigot.jar").toPath(), new File(instance, "spigot.jar").toPath()));
+        assertEquals(0, statistics.getLinkedBytes());
+        assertEquals(22, statistics.getCopiedBytes());
+    }
+
+    @Test
+    public void autoModeProvisionsWholeTemplate() throws Exception {
+        File instance = folder.newFolder("instance");
+        write(new File(instance, "server.properties"), "motd=Old");
+        InstanceProvisioner.Statistics statistics = new InstanceProvisioner.Statistics();
+        new InstanceProvisioner(InstanceProvisioner.Mode.AUTO, Collections.singletonList("*.jar")).provisionDirectory(template, instance, statistics);
+
+        // Cloned copy-on-write where the file system supports it, hard linked otherwise
+        assertEquals("server", read(new File(instance, "spigot.jar")));
+        assertEquals("plugin", read(new File(instance, "plugins/TimoCloud.jar")));
+        assertEquals("motd=Lobby", read(new File(instance, "server.properties")));
+        assertEquals(22, statistics.getLinkedBytes() + statistics.getCopiedBytes());
+    }
+
+    private static void write(File file, String content) throws Exception {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,56 @@
+package cloud.timo.TimoCloud.base.utils;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ProcessTableTest {
+
+    @Test
+    public void parsesCpuTicksFromStat() {
+        String stat = "1234 (java) S 1 1234 1234 0 -1 4194560 52000 0 12 0 1500 250 0 0 20 0 45 0 2011 5000000000 80000 18446744073709551615\n";
+        assertEquals(1750, ProcessTable.parseCpuTicks(stat));
+    }
+
+    @Test
+    public void parsesCpuTicksOfCommandsWithSpacesAndBrackets() {
+        String stat = "1234 (Server Thread) (1)) R 1 1234 1234 0 -1 4194560 52000 0 12 0 7 3 0 0 20 0 45 0 2011 5000000000 80000\n";
+        assertEquals(10, ProcessTable.parseCpuTicks(stat));
+    }
+
+    @Test
+    public void parsesResidentSetSizeFromStatus() {
+        assertEquals(524288L * 1024, ProcessTable.parseResidentSetSize(Arrays.asList(
+                "Name:\tjava",
+                "VmPeak:\t 4000000 kB",
+                "VmRSS:\t  524288 kB",
+                "RssAnon:\t  500000 kB")));
+    }
+
+    @Test
+    public void residentSetSizeOfZombiesIsZero() {
+        assertEquals(0, ProcessTable.parseResidentSetSize(Collections.singletonList("Name:\tjava")));
+    }
+
+    @Test
+    public void readsStatsOfOwnProcess() {
+        Assume.assumeTrue(new File("/proc").isDirectory());
+        int pid = Integer.parseInt(ManagementFactory.getRuntimeMXBean().getName().split("@")[0]);
+
+        ProcessTable table = ProcessTable.scan(null);
+        assertTrue(table.isRunning(pid));
+        ProcessTable.ProcessStats stats = table.getStats(pid);
+        assertNotNull(stats);
+        assertTrue(stats.getResidentSetSize() > 0);
+        assertTrue(stats.getCpuTime() > 0);
+        assertSame(stats, table.getStats(pid));
+        assertNull(table.getStats(-1));
+    }
+
+}
@@ -0,0 +1,76 @@
+package cloud.timo.TimoCloud.common.encryption;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+public class AESCipherTest {
+
+    private static final String PLAIN_TEXT = "{\"type\":\"SERVER_HANDSHAKE\",\"target\":\"Lobby-1\"}";
+
+    @Test
+    public void cbcFramesAreCompatibleWithAESEncryptionUtil() throws Exception {
+        SecretKey key = AESEncryptionUtil.generateAESKey();
+        AESCipher cipher = new AESCipher(key);
+
+        ByteBuf encrypted = encrypt(cipher, PLAIN_TEXT);
+        assertEquals(PLAIN_TEXT, new String(AESEncryptionUtil.decrypt(key, ByteBufUtil.getBytes(encrypted)), CharsetUtil.UTF_8));
+
+        ByteBuf legacy = Unpooled.wrappedBuffer(AESEncryptionUtil.encrypt(key, PLAIN_TEXT.getBytes(CharsetUtil.UTF_8)));
+        assertEquals(PLAIN_TEXT, decrypt(new AESCipher(key), legacy));
+        encrypted.release();
+    }
+
+    @Test
+    public void gcmRoundTrip() throws Exception {
+        SecretKey key = AESEncryptionUtil.generateAESKey();
+        AESCipher encrypter = new AESCipher(key);
+        AESCipher decrypter = new AESCipher(key);
+        encrypter.enableGcm(true);
+        decrypter.enableGcm(false);
+
+        for (int i = 0; i < 3; i++) { // Every frame uses a new nonce
+            assertEquals(PLAIN_TEXT + i, decrypt(decrypter, encrypt(encrypter, PLAIN_TEXT + i)));
+        }
+    }
+
+    @Test(expected = Exception.class)
+    public void gcmRejectsTamperedFrames() throws Exception {
+        SecretKey key = AESEncryptionUtil.generateAESKey();
+        AESCipher encrypter = new AESCipher(key);
+        AESCipher decrypter = new AESCipher(key);
+        encrypter.enableGcm(true);
+        decrypter.enableGcm(false);
+
+        ByteBuf encrypted = encrypt(encrypter, PLAIN_TEXT);
+        encrypted.setByte(20, encrypted.getByte(20) ^ 1);
+        decrypt(decrypter, encrypted);
+    }
+
+    private static ByteBuf encrypt(AESCipher cipher, String plainText) throws Exception {
+        ByteBuf in = Unpooled.copiedBuffer(plainText, CharsetUtil.UTF_8);
+        ByteBuf out = PooledByteBufAllocator.DEFAULT.directBuffer(cipher.getEncryptedLength(in.readableBytes()));
+        cipher.encrypt(in, out);
+        assertFalse(in.isReadable());
+        in.release();
+        return out;
+    }
+
+    private static String decrypt(AESCipher cipher, ByteBuf encrypted) throws Exception {
+        ByteBuf out = PooledByteBufAllocator.DEFAULT.directBuffer(encrypted.readableBytes());
+        try {
+            cipher.decrypt(encrypted, out);
+            return out.toString(CharsetUtil.UTF_8);
+        } finally {
+            out.release();
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package cloud.timo.TimoCloud.common.log;
+
+import cloud.timo.TimoCloud.api.objects.log.LogLevel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading log lines with regular expressions, as {@link LogEntryReader} used to, with {@link LogLineParser}.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=cloud.timo.TimoCloud.common.log.LogEntryReaderBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogEntryReaderBenchmark {
+
+    @Param({"spigot", "bungee", "velocity"})
+    private String format;
+
+    private String[] lines;
+    private final LogEntryReader reader = new LogEntryReader(entry -> {}, LogLevel.INFO);
+
+    @Setup
+    public void setUp() {
+        switch (format) {
+            case "spigot":
+                lines = LogLines.SPIGOT;
+                break;
+            case "bungee":
+                lines = LogLines.BUNGEE;
+                break;
+            default:
+                lines = LogLines.VELOCITY;
+        }
+    }
+
+    @Benchmark
+    public void regularExpressions(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(RegexLogLineParser.getLogLevel(line));
+            blackhole.consume(RegexLogLineParser.getPrefix(line));
+            blackhole.consume(RegexLogLineParser.getMessage(line));
+        }
+    }
+
+    @Benchmark
+    public void parser(Blackhole blackhole) {
+        for (String line : lines) blackhole.consume(reader.read(line));
+    }
+
+    /**
+     * Only finds prefix and level, without creating the entry's strings
+     */
+    @Benchmark
+    public void parserWithoutEntry(Blackhole blackhole) {
+        for (String line : lines) blackhole.consume(LogLineParser.parse(line, 0, line.length()));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(LogEntryReaderBenchmark.class.getSimpleName()).addProfiler("gc").build()).run();
+    }
+
+}
@@ -0,0 +1,83 @@
+package cloud.timo.TimoCloud.common.log;
+
+import cloud.timo.TimoCloud.api.objects.log.LogLevel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LogLineParserTest {
+
+    @Test
+    public void spigotLine() {
+        LogEntry entry = read("[12:00:03 WARN]: **** SERVER IS RUNNING IN OFFLINE/INSECURE MODE!");
+        assertEquals(LogLevel.WARNING, entry.getLevel());
+        assertEquals("[12:00:03 WARN]: ", entry.getPrefix());
+        assertEquals("**** SERVER IS RUNNING IN OFFLINE/INSECURE MODE!", entry.getMessage());
+    }
+
+    @Test
+    public void bungeeLine() {
+        LogEntry entry = read("12:01:20 [SEVERE] Task encountered an exception");
+        assertEquals(LogLevel.SEVERE, entry.getLevel());
+        assertEquals("12:01:20 [SEVERE] ", entry.getPrefix());
+        assertEquals("Task encountered an exception", entry.getMessage());
+    }
+
+    @Test
+    public void velocityPluginLine() {
+        LogEntry entry = read("[12:01:11 WARN] [luckperms]: Unable to load user data for Timo");
+        assertEquals(LogLevel.WARNING, entry.getLevel());
+        assertEquals("[12:01:11 WARN] [luckperms]: ", entry.getPrefix());
+        assertEquals("Unable to load user data for Timo", entry.getMessage());
+    }
+
+    @Test
+    public void lineWithoutPrefixUsesDefaultLevel() {
+        LogEntry entry = new LogEntryReader(e -> {}, LogLevel.SEVERE).read("\tat cloud.timo.TimoCloud.Main.main(Main.java:12)");
+        assertEquals(LogLevel.SEVERE, entry.getLevel());
+        assertEquals("", entry.getPrefix());
+        assertEquals("at cloud.timo.TimoCloud.Main.main(Main.java:12)", entry.getMessage());
+    }
+
+    @Test
+    public void parsesSlices() {
+        String line = "xx[12:00:00 INFO]: Done";
+        long parsed = LogLineParser.parse(line, 2, line.length());
+        assertEquals(LogLevel.INFO, LogLineParser.getLevel(parsed));
+        assertEquals(line.indexOf("Done"), LogLineParser.getPrefixEnd(parsed));
+        parsed = LogLineParser.parse(line, 0, 8); // The bracket is not closed within the slice
+        assertNull(LogLineParser.getLevel(parsed));
+        assertEquals(0, LogLineParser.getPrefixEnd(parsed));
+    }
+
+    @Test
+    public void readsLikeRegularExpressions() {
+        List<String> lines = new ArrayList<>();
+        for (String[] format : Arrays.asList(LogLines.SPIGOT, LogLines.BUNGEE, LogLines.VELOCITY, LogLines.OTHER)) lines.addAll(Arrays.asList(format));
+        Random random = new Random(42);
+        char[] alphabet = "[] :INFOwarnERROR severe\tx".toCharArray();
+        for (int i = 0; i < 10000; i++) {
+            char[] line = new char[random.nextInt(24)];
+            for (int j = 0; j < line.length; j++) line[j] = alphabet[random.nextInt(alphabet.length)];
+            lines.add(new String(line));
+        }
+        for (String line : lines) {
+            LogEntry entry = new LogEntryReader(e -> {}, LogLevel.WARNING).read(line);
+            LogLevel expectedLevel = RegexLogLineParser.getLogLevel(line);
+            assertEquals(line, expectedLevel == null ? LogLevel.WARNING : expectedLevel, entry.getLevel());
+            assertEquals(line, RegexLogLineParser.getPrefix(line), entry.getPrefix());
+            assertEquals(line, RegexLogLineParser.getMessage(line), entry.getMessage());
+        }
+    }
+
+    private static LogEntry read(String line) {
+        return new LogEntryReader(e -> {}).read(line);
+    }
+
+}
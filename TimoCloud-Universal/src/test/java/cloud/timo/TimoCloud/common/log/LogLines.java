@@ -0,0 +1,56 @@
+package cloud.timo.TimoCloud.common.log;
+
+/**
+ * Log lines as written by the server and proxy software TimoCloud starts
+ */
+class LogLines {
+
+    static final String[] SPIGOT = {
+            "[12:00:00 INFO]: Starting minecraft server version 1.20.4",
+            "[12:00:01 INFO]: Loading properties",
+            "[12:00:03 WARN]: **** SERVER IS RUNNING IN OFFLINE/INSECURE MODE!",
+            "[12:00:04 INFO]: [TimoCloud] Enabling TimoCloud v6.7.0",
+            "[12:00:05 INFO]: Done (4.512s)! For help, type \"help\"",
+            "[12:01:10 INFO]: Timo[/127.0.0.1:51234] logged in with entity id 182 at ([world]-212.5, 64.0, 88.3)",
+            "[12:01:12 ERROR]: Could not pass event PlayerJoinEvent to Essentials v2.20.1",
+            "[12:01:12 SCHWERWIEGEND]: java.lang.NullPointerException: Cannot invoke \"Object.toString()\" because \"value\" is null",
+    };
+
+    static final String[] BUNGEE = {
+            "12:00:00 [INFO] Using mmap() for native transport",
+            "12:00:01 [INFO] Enabled BungeeCord version git:BungeeCord-Bootstrap:1.20-R0.3-SNAPSHOT:b2d3e4f:1820",
+            "12:00:01 [INFO] [TimoCloud] Successfully connected to the core",
+            "12:00:02 [INFO] Listening on /0.0.0.0:25565",
+            "12:01:10 [INFO] [Timo] <-> ServerConnector [Lobby-1] has connected",
+            "12:01:15 [WARNING] Error authenticating Timo with minecraft.net",
+            "12:01:20 [SEVERE] Task BungeeTask(sched=net.md_5.bungee.scheduler.BungeeScheduler@1b2c3d4) encountered an exception",
+    };
+
+    static final String[] VELOCITY = {
+            "[12:00:00 INFO]: Booting up Velocity 3.3.0-SNAPSHOT (git-2b8f4a1c-b371)...",
+            "[12:00:01 INFO]: Loaded 3 plugins",
+            "[12:00:01 INFO] [timocloud]: Successfully connected to the core",
+            "[12:00:02 INFO]: Listening on /[0:0:0:0:0:0:0:0%0]:25565",
+            "[12:01:10 INFO]: [connected player] Timo (/127.0.0.1:51240) has connected",
+            "[12:01:11 WARN] [luckperms]: Unable to load user data for Timo",
+            "[12:01:20 ERROR]: Exception in thread \"Netty epoll Worker #3\" io.netty.handler.codec.DecoderException",
+    };
+
+    static final String[] OTHER = {
+            "",
+            "   ",
+            ">",
+            "Plain line without any brackets",
+            "[unclosed bracket",
+            "no closing ] before [ open",
+            "[] empty",
+            "  [12:00:00 INFO]:   indented and padded   ",
+            "[12:00:00 INFO][Second]:message",
+            "[12:00:00 INFO] [unclosed second",
+            "\tat org.bukkit.plugin.java.JavaPluginLoader.enablePlugin(JavaPluginLoader.java:264) ~[spigot-api.jar:?]",
+            "[12:00:00 info]: lower case level",
+            "[12:00:00 Fine]: unknown level",
+            "[Ünïcödé 😀 INFO]: Ümlauts 😀",
+    };
+
+}
@@ -0,0 +1,73 @@
+package cloud.timo.TimoCloud.common.log;
+
+import cloud.timo.TimoCloud.api.objects.log.LogLevel;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class LogShipperTest {
+
+    @Test
+    public void batchRoundTrip() {
+        List<LogEntry> entries = Arrays.asList(
+                new LogEntry(1, 1000, LogLevel.INFO, "Done (3.2s)! For help, type \"help\"", "[12:00:00 INFO]: "),
+                new LogEntry(2, 1001, LogLevel.SEVERE, "Ümlauts and emoji 😀", ""),
+                new LogEntry(3, 1002, LogLevel.WARNING, null, null));
+        List<LogEntry> decoded = LogShipper.decode(LogShipper.encode(entries));
+        assertEquals(entries, decoded);
+        assertEquals("[12:00:00 INFO]: ", decoded.get(0).getPrefix());
+        assertEquals(1001, decoded.get(1).getTimestamp());
+    }
+
+    @Test
+    public void entriesAreSentInOneBatch() {
+        List<Message> sent = new CopyOnWriteArrayList<>();
+        LogShipper shipper = new LogShipper(MessageType.SERVER_LOG_ENTRIES, "server", sent::add, 1000, 60000);
+        for (int i = 0; i < 10; i++) shipper.accept(entry(i));
+        assertTrue(sent.isEmpty()); // Waits for the interval
+        shipper.flush();
+        assertEquals(1, sent.size());
+        Message message = sent.get(0);
+        assertEquals(MessageType.SERVER_LOG_ENTRIES, message.getType());
+        assertEquals("server", message.getTarget());
+        assertEquals(10, LogShipper.readBatch(message).size());
+    }
+
+    @Test
+    public void entriesBeyondRateLimitAreDropped() {
+        List<Message> sent = new ArrayList<>();
+        LogShipper shipper = new LogShipper(MessageType.PROXY_LOG_ENTRIES, null, sent::add, 5, 60000);
+        for (int i = 0; i < 100; i++) shipper.accept(entry(i));
+        shipper.flush();
+        assertTrue(shipper.getDroppedEntries() >= 90);
+        List<LogEntry> entries = LogShipper.readBatch(sent.get(0));
+        assertEquals(100 - shipper.getDroppedEntries() + 1, entries.size()); // The last entry tells how many were dropped
+        assertEquals(LogLevel.WARNING, entries.get(entries.size() - 1).getLevel());
+        assertNull(sent.get(0).getTarget());
+    }
+
+    @Test
+    public void droppedEntriesAreReportedWithoutFurtherEntries() throws Exception {
+        List<Message> sent = new CopyOnWriteArrayList<>();
+        LogShipper shipper = new LogShipper(MessageType.SERVER_LOG_ENTRIES, "server", sent::add, 1, 50);
+        shipper.accept(entry(0));
+        shipper.flush();
+        for (int i = 1; i <= 5; i++) shipper.accept(entry(i)); // All of them are dropped
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sent.size() < 2 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(2, sent.size());
+        assertEquals(5, ((Number) sent.get(1).get("dropped")).longValue());
+    }
+
+    private static LogEntry entry(int i) {
+        return new LogEntry(i, i, LogLevel.INFO, "Message " + i, "");
+    }
+
+}
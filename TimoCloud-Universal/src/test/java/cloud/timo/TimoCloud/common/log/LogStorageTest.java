@@ -0,0 +1,180 @@
+package cloud.timo.TimoCloud.common.log;
+
+import cloud.timo.TimoCloud.api.objects.log.LogLevel;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class LogStorageTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void queryReturnsEntriesInOrder() {
+        LogStorage storage = new LogStorage();
+        for (int i = 0; i < 100; i++) storage.addEntry(entry(i, 1000 + i % 3)); // Timestamps are not unique
+        List<LogEntry> entries = storage.queryEntries(null, Long.MAX_VALUE);
+        assertEquals(100, entries.size());
+        for (int i = 0; i < 100; i++) assertEquals("Message " + i, entries.get(i).getMessage());
+    }
+
+    @Test
+    public void queryFiltersByTime() {
+        LogStorage storage = new LogStorage();
+        for (int i = 0; i < 10; i++) storage.addEntry(entry(i, i * 10));
+        List<LogEntry> entries = storage.queryEntries(20L, 40L);
+        assertEquals(3, entries.size());
+        assertEquals(20, entries.get(0).getTimestamp());
+        assertEquals(40, entries.get(2).getTimestamp());
+        assertEquals(2, storage.queryEntriesByEnd(10).size());
+        assertEquals(3, storage.queryEntriesByStart(70).size());
+    }
+
+    @Test
+    public void memoryIsLimited() {
+        LogStorage storage = new LogStorage(1024, 2, null, 0);
+        for (int i = 0; i < 1000; i++) storage.addEntry(entry(i, i));
+        List<LogEntry> entries = storage.queryEntriesByStart(0);
+        assertTrue(entries.size() < 1000);
+        assertEquals(1000, entries.size() + storage.getDroppedEntries());
+        assertEquals("Message 999", entries.get(entries.size() - 1).getMessage());
+    }
+
+    @Test
+    public void evictedSegmentsAreSpilledToDisk() throws Exception {
+        File directory = folder.newFolder();
+        LogStorage storage = new LogStorage(1024, 2, directory, Long.MAX_VALUE, Runnable::run);
+        for (int i = 0; i < 1000; i++) storage.addEntry(entry(i, i));
+        assertTrue(storage.getSpilledBytes() > 0);
+        assertEquals(0, storage.getDroppedEntries());
+        List<LogEntry> entries = storage.queryEntriesByStart(0);
+        assertEquals(1000, entries.size());
+        for (int i = 0; i < 1000; i++) assertEquals(i, entries.get(i).getNanoTime());
+        assertEquals(LogLevel.WARNING, entries.get(0).getLevel());
+        assertEquals("[Test] ", entries.get(0).getPrefix());
+
+        storage.close();
+        assertFalse(directory.exists());
+    }
+
+    @Test
+    public void spilledSegmentsAreLimited() throws Exception {
+        LogStorage storage = new LogStorage(1024, 2, folder.newFolder(), 2048, Runnable::run);
+        for (int i = 0; i < 10000; i++) storage.addEntry(entry(i, i));
+        assertTrue(storage.getSpilledBytes() <= 2048);
+        assertTrue(storage.getDroppedEntries() > 0);
+        assertEquals(10000, storage.queryEntriesByStart(0).size() + storage.getDroppedEntries());
+    }
+
+    @Test
+    public void segmentsAreReadFromMemoryUntilWritten() throws Exception {
+        File directory = folder.newFolder();
+        Deque<Runnable> writes = new ArrayDeque<>();
+        LogStorage storage = new LogStorage(1024, 2, directory, Long.MAX_VALUE, writes::add);
+        for (int i = 0; i < 100; i++) storage.addEntry(entry(i, i));
+        assertFalse(writes.isEmpty());
+        assertEquals(0, storage.getSpilledBytes());
+        assertEquals(100, storage.queryEntriesByStart(0).size());
+        List<Long> sequences = new ArrayList<>();
+        storage.addListener(0, (entry, sequence) -> sequences.add(sequence));
+        assertEquals(100, sequences.size());
+
+        while (!writes.isEmpty()) writes.poll().run();
+        assertTrue(storage.getSpilledBytes() > 0);
+        assertEquals(100, storage.queryEntriesByStart(0).size());
+        assertEquals(0, storage.getDroppedEntries());
+    }
+
+    @Test
+    public void segmentsAreDroppedIfWriterFallsBehind() throws Exception {
+        Deque<Runnable> writes = new ArrayDeque<>();
+        LogStorage storage = new LogStorage(1024, 2, folder.newFolder(), Long.MAX_VALUE, writes::add);
+        for (int i = 0; i < 1000; i++) storage.addEntry(entry(i, i));
+        assertTrue(storage.getDroppedEntries() > 0);
+        assertEquals(1000, storage.queryEntriesByStart(0).size() + storage.getDroppedEntries());
+    }
+
+    @Test
+    public void closingDeletesSegmentsWrittenAfterwards() throws Exception {
+        File directory = folder.newFolder();
+        Deque<Runnable> writes = new ArrayDeque<>();
+        LogStorage storage = new LogStorage(1024, 2, directory, Long.MAX_VALUE, writes::add);
+        for (int i = 0; i < 100; i++) storage.addEntry(entry(i, i));
+        storage.close();
+        while (!writes.isEmpty()) writes.poll().run();
+        assertFalse(directory.exists());
+    }
+
+    @Test
+    public void longEntriesAreTruncated() {
+        LogStorage storage = new LogStorage(256, 2, null, 0);
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 1000; i++) message.append('x');
+        storage.addEntry(new LogEntry(0, 0, LogLevel.INFO, message.toString(), ""));
+        List<LogEntry> entries = storage.queryEntriesByStart(0);
+        assertEquals(1, entries.size());
+        assertTrue(entries.get(0).getMessage().length() < 256);
+    }
+
+    @Test
+    public void listenerContinuesAtCursor() throws Exception {
+        LogStorage storage = new LogStorage(1024, 2, folder.newFolder(), Long.MAX_VALUE, Runnable::run);
+        for (int i = 0; i < 500; i++) storage.addEntry(entry(i, i));
+        List<Long> sequences = new ArrayList<>();
+        storage.addListener(123, (entry, sequence) -> {
+            assertEquals(sequence, entry.getNanoTime());
+            sequences.add(sequence);
+        });
+        for (int i = 500; i < 600; i++) storage.addEntry(entry(i, i));
+        assertEquals(477, sequences.size());
+        assertEquals(123L, (long) sequences.get(0));
+        assertEquals(599L, (long) sequences.get(sequences.size() - 1));
+    }
+
+    @Test
+    public void listenerWithoutCursorOnlyReceivesNewEntries() {
+        LogStorage storage = new LogStorage();
+        storage.addEntry(entry(0, 0));
+        List<Long> sequences = new ArrayList<>();
+        LogStorage.Listener listener = (entry, sequence) -> sequences.add(sequence);
+        storage.addListener(-1, listener);
+        storage.addEntry(entry(1, 1));
+        storage.removeListener(listener);
+        storage.addEntry(entry(2, 2));
+        assertEquals(Collections.singletonList(1L), sequences);
+    }
+
+    @Test
+    public void listenerCanRemoveItselfWhileCalled() {
+        LogStorage storage = new LogStorage();
+        List<Long> sequences = new ArrayList<>();
+        storage.addListener(-1, new LogStorage.Listener() {
+            @Override
+            public void onEntry(LogEntry entry, long sequence) {
+                sequences.add(sequence);
+                storage.removeListener(this);
+            }
+
+            @Override
+            public void onClose() {
+                storage.removeListener(this);
+            }
+        });
+        storage.addListener(-1, (entry, sequence) -> {});
+        storage.addEntry(entry(0, 0));
+        storage.addEntry(entry(1, 1));
+        storage.close();
+        assertEquals(Collections.singletonList(0L), sequences);
+    }
+
+    private static LogEntry entry(int i, long timestamp) {
+        return new LogEntry(i, timestamp, i % 2 == 0 ? LogLevel.WARNING : LogLevel.INFO, "Message " + i, "[Test] ");
+    }
+
+}
@@ -0,0 +1,35 @@
+package cloud.timo.TimoCloud.common.log;
+
+import cloud.timo.TimoCloud.api.objects.log.LogLevel;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * How {@link LogEntryReader} used to read log lines, used as reference for {@link LogLineParser}
+ */
+class RegexLogLineParser {
+
+    private static final Pattern LOG_LEVEL_SEARCH_PATTERN = Pattern.compile("\\[(.*?)]");
+    private static final Pattern PREFIX_SEARCH_PATTERN = Pattern.compile("(^.*?\\[.*?] ?(\\[.*?])?:? ?)");
+
+    static LogLevel getLogLevel(String line) {
+        Matcher matcher = LOG_LEVEL_SEARCH_PATTERN.matcher(line);
+        if (!matcher.find()) return null;
+        String levelString = matcher.group().toLowerCase();
+        if (levelString.contains("info")) return LogLevel.INFO;
+        if (levelString.contains("warn")) return LogLevel.WARNING;
+        if (levelString.contains("severe") || levelString.contains("error") || levelString.contains("schwerwiegend")) return LogLevel.SEVERE;
+        return null;
+    }
+
+    static String getPrefix(String line) {
+        Matcher matcher = PREFIX_SEARCH_PATTERN.matcher(line);
+        return matcher.find() ? matcher.group() : "";
+    }
+
+    static String getMessage(String line) {
+        return line.trim().replaceFirst(PREFIX_SEARCH_PATTERN.pattern(), "").trim();
+    }
+
+}
@@ -0,0 +1,80 @@
+package cloud.timo.TimoCloud.common.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.EncoderException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BinaryMessageCodecTest {
+
+    @Test
+    public void roundTrip() {
+        Message message = Message.create()
+                .setType(MessageType.SERVER_LOG_ENTRY)
+                .setTarget("Lobby-1_abcdef")
+                .set("port", 25565)
+                .set("timestamp", 1600000000000L)
+                .set("cpuLoad", 0.75)
+                .set("static", true)
+                .set("nothing", null)
+                .set("javaParameters", Arrays.asList("-Xmx1G", "-Dfile.encoding=UTF8"))
+                .setData(Message.create()
+                        .set("name", "Timo \u00e4\u00f6\u00fc")
+                        .set("age", -100));
+
+        ByteBuf byteBuf = Unpooled.buffer();
+        BinaryMessageCodec.encode(message, byteBuf);
+        assertTrue(BinaryMessageCodec.isBinaryFrame(byteBuf));
+        Message decoded = BinaryMessageCodec.decode(byteBuf);
+
+        assertEquals(0, byteBuf.readableBytes());
+        assertEquals(MessageType.SERVER_LOG_ENTRY, decoded.getType());
+        assertEquals("Lobby-1_abcdef", decoded.getTarget());
+        assertEquals(25565, ((Number) decoded.get("port")).intValue());
+        assertEquals(1600000000000L, ((Number) decoded.get("timestamp")).longValue());
+        assertEquals(0.75, (Double) decoded.get("cpuLoad"), 0);
+        assertEquals(true, decoded.get("static"));
+        assertTrue(decoded.containsKey("nothing"));
+        assertNull(decoded.get("nothing"));
+        assertEquals(Arrays.asList("-Xmx1G", "-Dfile.encoding=UTF8"), decoded.get("javaParameters", List.class));
+        Map data = (Map) decoded.getData();
+        assertEquals("Timo \u00e4\u00f6\u00fc", data.get("name"));
+        assertEquals(-100, ((Number) data.get("age")).intValue());
+    }
+
+    @Test
+    public void numbersAreDecodedLikeJson() {
+        Message message = Message.create().setType(MessageType.BASE_RESOURCES).set("freeRam", 2048);
+        ByteBuf byteBuf = Unpooled.buffer();
+        BinaryMessageCodec.encode(message, byteBuf);
+        Message binary = BinaryMessageCodec.decode(byteBuf);
+        Message json = Message.createFromJsonString(message.toJson());
+        assertEquals(json.get("freeRam"), binary.get("freeRam"));
+        assertEquals(json.get("t"), binary.get("t"));
+    }
+
+    @Test
+    public void jsonFramesAreNotMistakenForBinary() {
+        ByteBuf byteBuf = Unpooled.copiedBuffer(Message.create().setType(MessageType.GET_API_DATA).toJson().getBytes());
+        assertFalse(BinaryMessageCodec.isBinaryFrame(byteBuf));
+    }
+
+    @Test
+    public void rejectsTypesWithoutId() {
+        Message message = Message.create().set("t", "CUSTOM").set("value", 1);
+        assertFalse(BinaryMessageCodec.canEncode(message));
+        assertTrue(BinaryMessageCodec.canEncode(Message.create().setType(MessageType.BASE_RESOURCES)));
+        try {
+            BinaryMessageCodec.encode(message, Unpooled.buffer());
+            fail("Type has been dropped silently");
+        } catch (EncoderException ignored) {
+        }
+    }
+
+}
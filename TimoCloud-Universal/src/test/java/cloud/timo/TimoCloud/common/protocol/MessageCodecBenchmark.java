@@ -0,0 +1,137 @@
+package cloud.timo.TimoCloud.common.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JSON message path (Gson) with the binary codec, including the (pooled) buffer the frame is written to.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=cloud.timo.TimoCloud.common.protocol.MessageCodecBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    private final ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+
+    private Message logEntry;
+    private Message playerCount;
+    private Message startServer;
+    private ByteBuf jsonFrame;
+    private ByteBuf binaryFrame;
+
+    @Setup
+    public void setUp() {
+        logEntry = Message.create()
+                .setType(MessageType.SERVER_LOG_ENTRY)
+                .setTarget("Lobby-12_a8f3b2c1d4")
+                .setData(Message.create()
+                        .set("timestamp", System.currentTimeMillis())
+                        .set("level", "INFO")
+                        .set("prefix", "[Server thread/INFO]")
+                        .set("message", "Timo joined the game"));
+        playerCount = Message.create()
+                .setType(MessageType.SERVER_SET_PLAYERS)
+                .setTarget("Lobby-12_a8f3b2c1d4")
+                .setData("12/50");
+        startServer = Message.create()
+                .setType(MessageType.BASE_START_SERVER)
+                .set("name", "Lobby-12")
+                .set("id", "Lobby-12_a8f3b2c1d4")
+                .set("group", "Lobby")
+                .set("ram", 1024)
+                .set("static", false)
+                .set("javaParameters", Arrays.asList("-XX:+UseG1GC", "-Dfile.encoding=UTF8"))
+                .set("spigotParameters", Arrays.asList("--nogui"))
+                .set("jrePath", "java")
+                .set("timeout", 180000);
+
+        jsonFrame = allocator.buffer();
+        ByteBufUtil.writeUtf8(jsonFrame, logEntry.toJson());
+        binaryFrame = allocator.buffer();
+        BinaryMessageCodec.encode(logEntry, binaryFrame);
+    }
+
+    @TearDown
+    public void tearDown() {
+        jsonFrame.release();
+        binaryFrame.release();
+    }
+
+    @Benchmark
+    public int encodeLogEntryJson() {
+        return encodeJson(logEntry);
+    }
+
+    @Benchmark
+    public int encodeLogEntryBinary() {
+        return encodeBinary(logEntry);
+    }
+
+    @Benchmark
+    public int encodePlayerCountJson() {
+        return encodeJson(playerCount);
+    }
+
+    @Benchmark
+    public int encodePlayerCountBinary() {
+        return encodeBinary(playerCount);
+    }
+
+    @Benchmark
+    public int encodeStartServerJson() {
+        return encodeJson(startServer);
+    }
+
+    @Benchmark
+    public int encodeStartServerBinary() {
+        return encodeBinary(startServer);
+    }
+
+    @Benchmark
+    public Message decodeLogEntryJson() {
+        return Message.createFromJsonString(jsonFrame.toString(jsonFrame.readerIndex(), jsonFrame.readableBytes(), CharsetUtil.UTF_8));
+    }
+
+    @Benchmark
+    public Message decodeLogEntryBinary() {
+        return BinaryMessageCodec.decode(binaryFrame.duplicate());
+    }
+
+    private int encodeJson(Message message) {
+        ByteBuf out = allocator.buffer();
+        try {
+            ByteBufUtil.writeUtf8(out, message.toJson());
+            return out.readableBytes();
+        } finally {
+            out.release();
+        }
+    }
+
+    private int encodeBinary(Message message) {
+        ByteBuf out = allocator.buffer();
+        try {
+            BinaryMessageCodec.encode(message, out);
+            return out.readableBytes();
+        } finally {
+            out.release();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(MessageCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,83 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import cloud.timo.TimoCloud.common.encryption.AESEncryptionUtil;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.SecretKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding a message for every recipient with encoding it once and writing shared duplicates, through the encoder and encrypter of each channel.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=cloud.timo.TimoCloud.common.sockets.BroadcastBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    private int recipients;
+
+    @Param({"false", "true"})
+    private boolean binary;
+
+    private EmbeddedChannel[] channels;
+    private Message message;
+
+    @Setup
+    public void setUp() throws Exception {
+        channels = new EmbeddedChannel[recipients];
+        for (int i = 0; i < recipients; i++) {
+            SecretKey key = AESEncryptionUtil.generateAESKey();
+            MessageEncoder encoder = new MessageEncoder();
+            encoder.setBinary(binary);
+            channels[i] = new EmbeddedChannel(new AESEncrypter(key), encoder);
+        }
+        message = Message.create()
+                .setType(MessageType.EVENT_FIRED)
+                .set("eT", "PLAYER_CONNECT")
+                .setData("{\"player\":{\"name\":\"Timo\",\"uuid\":\"c1ea7a6b-3a8d-4b6c-9f71-2a5c5e0bd1a4\",\"server\":\"Lobby-12_a8f3b2c1d4\"," +
+                        "\"proxy\":\"Proxy-1_0b1c2d3e4f\",\"online\":true,\"onlineSince\":1500000000000}}")
+                .set("v", 123456);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (EmbeddedChannel channel : channels) channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public void encodePerRecipient() {
+        for (EmbeddedChannel channel : channels) {
+            channel.writeOutbound(message);
+            channel.releaseOutbound();
+        }
+    }
+
+    @Benchmark
+    public void encodeOnce() {
+        SharedMessage shared = new SharedMessage(message, PooledByteBufAllocator.DEFAULT);
+        try {
+            for (EmbeddedChannel channel : channels) {
+                channel.writeOutbound(shared.retain());
+                channel.releaseOutbound();
+            }
+        } finally {
+            shared.release();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(BroadcastBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
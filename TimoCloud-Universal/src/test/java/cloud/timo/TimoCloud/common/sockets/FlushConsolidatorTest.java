@@ -0,0 +1,118 @@
+package cloud.timo.TimoCloud.common.sockets;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FlushConsolidatorTest {
+
+    private static ByteBuf message(String text) {
+        return Unpooled.copiedBuffer(text, CharsetUtil.UTF_8);
+    }
+
+    private static String read(ByteBuf buf) {
+        try {
+            return buf.toString(CharsetUtil.UTF_8);
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void flushesAtTheEndOfTheEventLoopTurn() {
+        FlushStatistics statistics = new FlushStatistics();
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushConsolidator(64, 65536, 0, statistics));
+
+        channel.writeAndFlush(message("a"));
+        channel.writeAndFlush(message("b"));
+        channel.writeAndFlush(message("c"));
+        assertNull(channel.readOutbound());
+
+        channel.runPendingTasks();
+        assertEquals("a", read(channel.readOutbound()));
+        assertEquals("b", read(channel.readOutbound()));
+        assertEquals("c", read(channel.readOutbound()));
+        assertEquals(1, statistics.getFlushes());
+        assertEquals(3, statistics.getMaxMessagesPerFlush());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void flushesAtOnceWhenThresholdIsReached() {
+        FlushStatistics statistics = new FlushStatistics();
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushConsolidator(2, 65536, 0, statistics));
+
+        channel.writeAndFlush(message("a"));
+        assertNull(channel.readOutbound());
+        channel.writeAndFlush(message("b"));
+        assertEquals("a", read(channel.readOutbound()));
+        assertEquals("b", read(channel.readOutbound()));
+        assertEquals(1, statistics.getFlushes());
+
+        channel.runPendingTasks(); // The scheduled flush has nothing left to do
+        assertEquals(1, statistics.getFlushes());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void flushesAtOnceWhenChannelBecomesUnwritable() {
+        FlushStatistics statistics = new FlushStatistics();
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushConsolidator(64, 65536, 0, statistics));
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(4, 8));
+
+        channel.writeAndFlush(message("a"));
+        assertNull(channel.readOutbound());
+        channel.writeAndFlush(message("more than eight bytes"));
+        assertEquals("a", read(channel.readOutbound()));
+        assertEquals("more than eight bytes", read(channel.readOutbound()));
+        assertEquals(1, statistics.getFlushes());
+        assertTrue(channel.isWritable());
+
+        channel.runPendingTasks(); // The scheduled flush has nothing left to do
+        assertEquals(1, statistics.getFlushes());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void doesNotHoldBackFlushesWhileUnwritable() {
+        FlushStatistics statistics = new FlushStatistics();
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushConsolidator(64, 65536, 0, statistics));
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+
+        channel.writeAndFlush(message("a"));
+        assertEquals("a", read(channel.readOutbound()));
+        assertEquals(1, statistics.getFlushes());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void batchedFramesAreSplitIntoTheirMessages() {
+        FlushStatistics statistics = new FlushStatistics();
+        FlushConsolidator consolidator = new FlushConsolidator(64, 65536, 0, statistics);
+        EmbeddedChannel sender = new EmbeddedChannel(consolidator);
+        consolidator.enableBatching();
+
+        sender.writeAndFlush(message("first"));
+        sender.writeAndFlush(message(""));
+        sender.writeAndFlush(message("third"));
+        sender.runPendingTasks();
+        ByteBuf frame = sender.readOutbound();
+        assertNull(sender.readOutbound());
+        assertEquals(3, statistics.getMessages());
+        assertEquals(1, statistics.getFrames());
+
+        EmbeddedChannel receiver = new EmbeddedChannel(new FrameSplitter());
+        receiver.writeInbound(frame);
+        assertEquals("first", read(receiver.readInbound()));
+        assertEquals("", read(receiver.readInbound()));
+        assertEquals("third", read(receiver.readInbound()));
+        assertFalse(sender.finish());
+        assertFalse(receiver.finish());
+    }
+
+}
@@ -0,0 +1,82 @@
+package cloud.timo.TimoCloud.common.utils.files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BlockDeltaTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void deltaReconstructsNewVersion() throws Exception {
+        Random random = new Random(42);
+        byte[] oldContent = new byte[300 * 1024];
+        random.nextBytes(oldContent);
+        byte[] inserted = new byte[70 * 1024];
+        random.nextBytes(inserted);
+        ByteArrayOutputStream newContent = new ByteArrayOutputStream();
+        newContent.write(oldContent, 0, 1000);
+        newContent.write(new byte[]{1, 2, 3, 4, 5}); // Shifts all following blocks
+        newContent.write(oldContent, 1000, 150 * 1024);
+        newContent.write(inserted);
+        newContent.write(oldContent, 200 * 1024, 100 * 1024);
+        newContent.write(7);
+
+        File oldFile = folder.newFile("plugin-old.jar");
+        File newFile = folder.newFile("plugin.jar");
+        Files.write(oldFile.toPath(), oldContent);
+        Files.write(newFile.toPath(), newContent.toByteArray());
+
+        BlockDelta.Signature signature = BlockDelta.Signature.fromMap(BlockDelta.computeSignature(oldFile, BlockDelta.chooseBlockSize(oldContent.length)).toMap());
+        ByteArrayOutputStream reconstructed = new ByteArrayOutputStream();
+        int literalBytes = 0;
+        try (BlockDelta.Encoder encoder = new BlockDelta.Encoder(newFile, signature)) {
+            while (!encoder.isFinished()) {
+                for (Object operation : encoder.nextOperations(64 * 1024)) {
+                    if (operation instanceof Number) {
+                        reconstructed.write(oldContent, ((Number) operation).intValue() * signature.getBlockSize(), signature.getBlockSize());
+                    } else {
+                        reconstructed.write((byte[]) operation);
+                        literalBytes += ((byte[]) operation).length;
+                    }
+                }
+            }
+        }
+
+        assertArrayEquals(newContent.toByteArray(), reconstructed.toByteArray());
+        assertTrue("Sent " + literalBytes + " literal bytes", literalBytes < inserted.length + 4 * signature.getBlockSize());
+    }
+
+    @Test
+    public void limitsOperationsPerBatchWithoutSkippingBlocks() throws Exception {
+        byte[] content = new byte[64 * 1024];
+        new Random(42).nextBytes(content);
+        File file = folder.newFile("plugin.jar");
+        Files.write(file.toPath(), content);
+
+        BlockDelta.Signature signature = BlockDelta.computeSignature(file, 2 * 1024);
+        int blocks = 0;
+        try (BlockDelta.Encoder encoder = new BlockDelta.Encoder(file, signature)) {
+            while (!encoder.isFinished()) {
+                List<Object> operations = encoder.nextOperations(64 * 1024, 5);
+                assertTrue(operations.size() <= 5);
+                for (Object operation : operations) {
+                    assertEquals(blocks++, ((Number) operation).intValue());
+                }
+            }
+        }
+
+        assertEquals(signature.getBlockCount(), blocks);
+    }
+
+}
@@ -0,0 +1,86 @@
+package cloud.timo.TimoCloud.common.utils.files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+public class FileHashIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void hashMatchesCrc32OfWholeFile() throws Exception {
+        byte[] content = new byte[200 * 1024 + 17]; // Spans several chunks
+        for (int i = 0; i < content.length; i++) content[i] = (byte) (i * 31);
+        File file = folder.newFile("spigot.jar");
+        Files.write(file.toPath(), content);
+
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        assertEquals(crc.getValue(), FileHashIndex.computeHash(file.toPath()));
+    }
+
+    @Test
+    public void unchangedFilesAreNotReadAgain() throws Exception {
+        File file = folder.newFile("server.properties");
+        Files.write(file.toPath(), "online-mode=false".getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(1000000L);
+        FileHashIndex index = new FileHashIndex(new File(folder.getRoot(), "hashes.idx"));
+        long hash = index.getHash(file);
+
+        Files.write(file.toPath(), "online-mode=true!".getBytes(StandardCharsets.UTF_8)); // Same size
+        file.setLastModified(1000000L);
+        assertEquals(hash, index.getHash(file));
+
+        file.setLastModified(2000000L);
+        assertEquals(FileHashIndex.computeHash(file.toPath()), index.getHash(file));
+        index.close();
+    }
+
+    @Test
+    public void indexIsPersisted() throws Exception {
+        File indexFile = new File(folder.getRoot(), "hashes.idx");
+        File file = folder.newFile("config.yml");
+        Files.write(file.toPath(), "motd: TimoCloud".getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(1000000L);
+        FileHashIndex index = new FileHashIndex(indexFile);
+        long hash = index.getHash(file);
+        index.close();
+
+        Files.write(file.toPath(), "motd: Timocloud".getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(1000000L);
+        FileHashIndex loaded = new FileHashIndex(indexFile);
+        assertEquals(hash, loaded.getHash(file)); // Taken from the index, the file has not been read
+        loaded.close();
+    }
+
+    @Test
+    public void deletedFilesAreDroppedOnLoad() throws Exception {
+        File indexFile = new File(folder.getRoot(), "hashes.idx");
+        File kept = folder.newFile("config.yml");
+        File deleted = folder.newFile("old.yml");
+        FileHashIndex index = new FileHashIndex(indexFile);
+        index.getHash(kept);
+        index.getHash(deleted);
+        index.close();
+
+        assertTrue(deleted.delete());
+        new FileHashIndex(indexFile).close();
+        try (DataInputStream in = new DataInputStream(new FileInputStream(indexFile))) {
+            in.readInt(); // Format version
+            assertEquals(1, in.readInt());
+            assertEquals(kept.getAbsolutePath(), in.readUTF());
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package cloud.timo.TimoCloud.common.utils.files.tailer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+public class FileTailerServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileTailerService service;
+
+    @Before
+    public void setUp() throws IOException {
+        service = new FileTailerService(2, 50);
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    public void appendedLinesAreReadInOrder() throws Exception {
+        File file = folder.newFile("server.log");
+        append(file, "existing\n");
+        List<String> lines = follow(file);
+        append(file, "first\r\nsecond");
+        append(file, " line\nÜmlaut 😀\n");
+        awaitLines(lines, 4);
+        assertEquals(Arrays.asList("existing", "first", "second line", "Ümlaut 😀"), lines);
+    }
+
+    @Test
+    public void filesAreFollowedIndependently() throws Exception {
+        File a = folder.newFile("a.log");
+        File b = folder.newFile("b.log");
+        List<String> linesA = follow(a);
+        List<String> linesB = follow(b);
+        for (int i = 0; i < 1000; i++) append(i % 2 == 0 ? a : b, i + "\n");
+        awaitLines(linesA, 500);
+        awaitLines(linesB, 500);
+        for (int i = 0; i < 500; i++) {
+            assertEquals(String.valueOf(i * 2), linesA.get(i));
+            assertEquals(String.valueOf(i * 2 + 1), linesB.get(i));
+        }
+    }
+
+    @Test
+    public void stopReadsRemainingLines() throws Exception {
+        File file = folder.newFile("proxy.log");
+        List<String> lines = new CopyOnWriteArrayList<>();
+        FileTailerService.Tailer tailer = service.follow(file, listener(lines));
+        append(file, "last words\n");
+        tailer.stop();
+        awaitLines(lines, 1);
+        append(file, "after stop\n");
+        Thread.sleep(200);
+        assertEquals(Arrays.asList("last words"), lines);
+    }
+
+    @Test
+    public void sweepFindsUnnoticedChangesWhileOtherEventsArrive() throws Exception {
+        File target = folder.newFile("real.log");
+        File directory = folder.newFolder("logs");
+        File link = new File(directory, "server.log"); // Changes to the target are not reported for the link's directory
+        Files.createSymbolicLink(link.toPath(), target.toPath());
+        File other = new File(directory, "other.log");
+        Thread events = new Thread(() -> {
+            try {
+                while (!Thread.interrupted()) {
+                    append(other, "event\n");
+                    Thread.sleep(5);
+                }
+            } catch (IOException | InterruptedException ignored) {
+            }
+        });
+        events.start();
+        try {
+            List<String> lines = follow(link);
+            Thread.sleep(200); // The first read has happened
+            append(target, "unnoticed\n");
+            awaitLines(lines, 1);
+            assertEquals(Arrays.asList("unnoticed"), lines);
+        } finally {
+            events.interrupt();
+            events.join();
+        }
+    }
+
+    private List<String> follow(File file) throws IOException {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        service.follow(file, listener(lines));
+        return lines;
+    }
+
+    private static FileTailerListener listener(List<String> lines) {
+        return new FileTailerListener() {
+            @Override
+            public void readLine(String line) {
+                lines.add(line);
+            }
+        };
+    }
+
+    private static void append(File file, String content) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void awaitLines(List<String> lines, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (lines.size() < count && System.currentTimeMillis() < deadline) Thread.sleep(10);
+    }
+
+}
@@ -0,0 +1,189 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.api.async.APIRequest;
+import cloud.timo.TimoCloud.api.async.APIRequestFuture;
+import cloud.timo.TimoCloud.api.async.APIRequestType;
+import cloud.timo.TimoCloud.api.implementations.async.APIResponse;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class APIRequestExecutorTest {
+
+    private static final APIRequestType LIMITED = APIRequestType.G_CREATE_SERVER_GROUP;
+    private static final APIRequestType UNLIMITED = APIRequestType.G_CREATE_PROXY_GROUP;
+
+    private APIRequestExecutor executor;
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void requestsOfTheSameTargetAreProcessedInOrder() throws Exception {
+        executor = new APIRequestExecutor(4, false, Collections.emptyMap());
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+        APIRequestManager manager = manager(request -> {
+            processed.add(request.getId());
+            return null;
+        });
+
+        List<String> expected = new ArrayList<>();
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            expected.add(String.valueOf(i));
+            futures.add(executor.submit(new TestRequest(String.valueOf(i), "Lobby", UNLIMITED), manager));
+        }
+        for (CompletableFuture<?> future : futures) future.get(5, TimeUnit.SECONDS);
+        assertEquals(expected, processed);
+    }
+
+    @Test
+    public void concurrencyLimitsAreRespected() throws Exception {
+        executor = new APIRequestExecutor(4, false, Collections.singletonMap(LIMITED, 1));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        APIRequestManager manager = manager(request -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(10);
+            running.decrementAndGet();
+            return null;
+        });
+
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 16; i++) futures.add(executor.submit(new TestRequest(String.valueOf(i), "Group-" + i, LIMITED), manager));
+        for (CompletableFuture<?> future : futures) future.get(5, TimeUnit.SECONDS);
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void waitingForALimitDoesNotBlockOtherRequests() throws Exception {
+        executor = new APIRequestExecutor(2, false, Collections.singletonMap(LIMITED, 1));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        APIRequestManager manager = manager(request -> {
+            if (request.getId().equals("holding")) {
+                started.countDown();
+                await(release);
+            }
+            return null;
+        });
+
+        CompletableFuture<?> holding = executor.submit(new TestRequest("holding", "Group-1", LIMITED), manager);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<?> waiting = executor.submit(new TestRequest("waiting", "Group-2", LIMITED), manager);
+        CompletableFuture<?> other = executor.submit(new TestRequest("other", "Group-3", UNLIMITED), manager);
+
+        other.get(5, TimeUnit.SECONDS); // Would need the thread the waiting request is blocking
+        assertFalse(waiting.isDone());
+        release.countDown();
+        holding.get(5, TimeUnit.SECONDS);
+        waiting.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void failedRequestsAreAnsweredWithAnError() throws Exception {
+        executor = new APIRequestExecutor(1, false, Collections.emptyMap());
+        APIRequestManager manager = manager(request -> {
+            throw new IllegalStateException("Test");
+        });
+
+        APIResponse<Object> response = executor.submit(new TestRequest("1", "Lobby", UNLIMITED), manager).get(5, TimeUnit.SECONDS);
+        assertFalse(response.isSuccess());
+        assertEquals(Integer.valueOf(1), response.getError().getErrorCode());
+        assertTrue(response.getError().getErrorMessage().contains("Test"));
+        assertEquals(1, executor.getStatistics().get(UNLIMITED).getProcessed());
+    }
+
+    @Test
+    public void latenciesAreRecordedInTheHistogram() throws Exception {
+        executor = new APIRequestExecutor(1, false, Collections.emptyMap());
+        APIRequestManager manager = manager(request -> {
+            sleep(20);
+            return null;
+        });
+
+        executor.submit(new TestRequest("1", "Lobby", UNLIMITED), manager).get(5, TimeUnit.SECONDS);
+        APIRequestExecutor.Statistics statistics = executor.getStatistics().get(UNLIMITED);
+        long[] histogram = statistics.getHistogram();
+        assertEquals(APIRequestExecutor.Statistics.getHistogramLabels().size(), histogram.length);
+        assertEquals(0, histogram[0] + histogram[1] + histogram[2]); // At most 10ms
+        assertEquals(1, Arrays.stream(histogram).sum());
+        assertEquals(1, statistics.getProcessed());
+        assertEquals(0, statistics.getQueued());
+        assertEquals(0, executor.getStatistics().get(LIMITED).getProcessed());
+    }
+
+    private static APIRequestManager manager(Function<APIRequest<?>, Object> processor) {
+        return new APIRequestManager() {
+            @Override
+            public <T> APIResponse<T> processRequest(APIRequest<T> request) {
+                return new APIResponse<>(request, (T) processor.apply(request));
+            }
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class TestRequest implements APIRequest<Object> {
+
+        private final String id;
+        private final String target;
+        private final APIRequestType type;
+
+        private TestRequest(String id, String target, APIRequestType type) {
+            this.id = id;
+            this.target = target;
+            this.type = type;
+        }
+
+        @Override
+        public APIRequestFuture<Object> submit() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getTarget() {
+            return target;
+        }
+
+        @Override
+        public APIRequestType getType() {
+            return type;
+        }
+
+        @Override
+        public Map getData() {
+            return Collections.emptyMap();
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.TimoCloudTest;
+import cloud.timo.TimoCloud.api.events.Event;
+import cloud.timo.TimoCloud.api.events.EventType;
+import cloud.timo.TimoCloud.api.events.server.ServerRegisterEventBasicImplementation;
+import cloud.timo.TimoCloud.api.objects.ServerObject;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+import cloud.timo.TimoCloud.core.objects.EventSubscription;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@PowerMockIgnore("io.netty.*")
+public class APIStateManagerTest extends TimoCloudTest {
+
+    private APIStateManager stateManager;
+    private List<Set<Channel>> broadcasts;
+
+    @Before
+    public void setUp() {
+        stateManager = new APIStateManager();
+        broadcasts = new ArrayList<>();
+        doAnswer(invocation -> {
+            Set<Channel> channels = new HashSet<>();
+            for (Channel channel : (Iterable<Channel>) invocation.getArgument(1)) channels.add(channel);
+            broadcasts.add(channels);
+            return null;
+        }).when(getCore().getSocketServerHandler()).broadcast(any(Message.class), any());
+    }
+
+    @Test
+    public void eventsAreSentToSubscribersOfTheirType() {
+        Channel all = new EmbeddedChannel();
+        Channel players = new EmbeddedChannel();
+        stateManager.subscribe(all, EventSubscription.ALL);
+        stateManager.subscribe(players, subscription(Collections.singletonList("PLAYER_CONNECT"), null));
+
+        assertEquals(set(all, players), publish(event(EventType.PLAYER_CONNECT)));
+        assertEquals(set(all), publish(event(EventType.SERVER_REGISTER)));
+    }
+
+    @Test
+    public void resubscribingReplacesTheOldSubscription() {
+        Channel channel = new EmbeddedChannel();
+        stateManager.subscribe(channel, EventSubscription.ALL);
+        stateManager.subscribe(channel, subscription(Collections.singletonList("PLAYER_CONNECT"), null));
+
+        assertEquals(set(channel), publish(event(EventType.PLAYER_CONNECT)));
+        assertEquals(set(), publish(event(EventType.SERVER_REGISTER)));
+    }
+
+    @Test
+    public void closedChannelsAreUnsubscribed() {
+        Channel closed = new EmbeddedChannel();
+        Channel open = new EmbeddedChannel();
+        stateManager.subscribe(closed, EventSubscription.ALL);
+        stateManager.subscribe(open, EventSubscription.ALL);
+        closed.close();
+
+        assertEquals(set(open), publish(event(EventType.PLAYER_CONNECT)));
+        stateManager.unsubscribe(open);
+        assertEquals(set(), publish(event(EventType.PLAYER_CONNECT)));
+    }
+
+    @Test
+    public void filtersAreAppliedUntilTheLastFilteredSubscriptionIsGone() {
+        Channel all = new EmbeddedChannel();
+        Channel lobby = new EmbeddedChannel();
+        Channel other = new EmbeddedChannel();
+        stateManager.subscribe(all, EventSubscription.ALL);
+        stateManager.subscribe(lobby, subscription(null, Collections.singletonList("Lobby-1")));
+        stateManager.subscribe(other, subscription(null, Collections.singletonList("Other-1")));
+
+        assertEquals(set(all, lobby), publish(serverRegistered("Lobby-1")));
+        stateManager.unsubscribe(lobby);
+        assertEquals(set(all), publish(serverRegistered("Lobby-1")));
+        stateManager.subscribe(other, EventSubscription.ALL);
+        assertEquals(set(all, other), publish(serverRegistered("Lobby-1")));
+    }
+
+    private Set<Channel> publish(Event event) {
+        stateManager.publish(event, Message.create().setType(MessageType.EVENT_FIRED));
+        return broadcasts.get(broadcasts.size() - 1);
+    }
+
+    private static Event event(EventType type) {
+        Event event = mock(Event.class);
+        when(event.getType()).thenReturn(type);
+        return event;
+    }
+
+    private static Event serverRegistered(String name) {
+        ServerObject server = mock(ServerObject.class);
+        when(server.getName()).thenReturn(name);
+        return new ServerRegisterEventBasicImplementation(server);
+    }
+
+    private static EventSubscription subscription(List<String> types, List<String> instances) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("types", types);
+        map.put("instances", instances);
+        return EventSubscription.fromMap(map);
+    }
+
+    private static Set<Channel> set(Channel... channels) {
+        return new HashSet<>(Arrays.asList(channels));
+    }
+
+}
@@ -0,0 +1,173 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.TimoCloudTest;
+import cloud.timo.TimoCloud.api.events.Event;
+import cloud.timo.TimoCloud.api.events.EventHandler;
+import cloud.timo.TimoCloud.api.events.EventType;
+import cloud.timo.TimoCloud.api.events.Listener;
+import cloud.timo.TimoCloud.api.objects.PlayerObject;
+import io.netty.channel.DefaultEventLoop;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@PowerMockIgnore("io.netty.*") // Event loops have to be recognized by the manager
+public class AsyncEventManagerTest extends TimoCloudTest { // Dropped events are reported to the core
+
+    private static final int PLAYERS = 8;
+    private static final int EVENTS_PER_PLAYER = 500;
+
+    private AsyncEventManager eventManager;
+
+    @Before
+    public void setUp() {
+        eventManager = new AsyncEventManager(64, AsyncEventManager.OverflowPolicy.BLOCK, 4);
+    }
+
+    @After
+    public void tearDown() {
+        eventManager.shutdown();
+    }
+
+    @Test
+    public void deliversInOrderPerSourceOnWorkerThreads() throws Exception {
+        RecordingListener listener = new RecordingListener(PLAYERS * EVENTS_PER_PLAYER);
+        eventManager.registerListener(listener);
+        List<PlayerObject> players = new ArrayList<>();
+        for (int i = 0; i < PLAYERS; i++) {
+            PlayerObject player = mock(PlayerObject.class);
+            when(player.getId()).thenReturn("player-" + i);
+            players.add(player);
+        }
+
+        for (int sequence = 0; sequence < EVENTS_PER_PLAYER; sequence++) {
+            for (PlayerObject player : players) eventManager.callEvent(new TestEvent(player, sequence));
+        }
+
+        assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+        assertFalse(listener.threads.contains(Thread.currentThread()));
+        for (PlayerObject player : players) {
+            List<Integer> received = listener.received.get(player.getId());
+            assertEquals(EVENTS_PER_PLAYER, received.size());
+            for (int i = 0; i < EVENTS_PER_PLAYER; i++) assertEquals(i, (int) received.get(i));
+        }
+    }
+
+    @Test
+    public void synchronousListenerIsCalledByFiringThread() {
+        RecordingListener listener = new RecordingListener(1);
+        eventManager.registerSynchronousListener(listener);
+        eventManager.callEvent(new TestEvent(player("player"), 0));
+        assertEquals(0, listener.done.getCount());
+        assertEquals(Collections.singleton(Thread.currentThread()), listener.threads);
+    }
+
+    @Test
+    public void internalListenerNeverDropsEvents() throws Exception {
+        AsyncEventManager eventManager = new AsyncEventManager(1, AsyncEventManager.OverflowPolicy.DROP, 1);
+        try {
+            BlockingListener listener = new BlockingListener(100);
+            eventManager.registerInternalListener(listener);
+            PlayerObject player = player("player");
+            for (int i = 0; i < 100; i++) eventManager.callEvent(new TestEvent(player, i));
+            listener.gate.countDown();
+            assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+            for (AsyncEventManager.ListenerQueue queue : eventManager.getQueues()) assertEquals(0, queue.getDropped());
+        } finally {
+            eventManager.shutdown();
+        }
+    }
+
+    @Test
+    public void eventLoopDropsInsteadOfWaiting() throws Exception {
+        AsyncEventManager eventManager = new AsyncEventManager(1, AsyncEventManager.OverflowPolicy.BLOCK, 1);
+        DefaultEventLoop eventLoop = new DefaultEventLoop();
+        try {
+            BlockingListener listener = new BlockingListener(1);
+            eventManager.registerListener(listener);
+            PlayerObject player = player("player");
+            Future<?> firing = eventLoop.submit(() -> {
+                for (int i = 0; i < 10; i++) eventManager.callEvent(new TestEvent(player, i));
+            });
+            firing.get(10, TimeUnit.SECONDS); // Would wait for the listener forever if the event loop was blocked
+            long dropped = 0;
+            for (AsyncEventManager.ListenerQueue queue : eventManager.getQueues()) dropped += queue.getDropped();
+            assertTrue(dropped > 0);
+            listener.gate.countDown();
+        } finally {
+            eventLoop.shutdownGracefully();
+            eventManager.shutdown();
+        }
+    }
+
+    private static PlayerObject player(String id) {
+        PlayerObject player = mock(PlayerObject.class);
+        when(player.getId()).thenReturn(id);
+        return player;
+    }
+
+    public static class BlockingListener implements Listener {
+
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private final CountDownLatch done;
+
+        private BlockingListener(int events) {
+            this.done = new CountDownLatch(events);
+        }
+
+        @EventHandler
+        public void onTestEvent(TestEvent event) throws InterruptedException {
+            gate.await();
+            done.countDown();
+        }
+    }
+
+    public static class TestEvent implements Event {
+
+        private final PlayerObject player;
+        private final int sequence;
+
+        private TestEvent(PlayerObject player, int sequence) {
+            this.player = player;
+            this.sequence = sequence;
+        }
+
+        public PlayerObject getPlayer() {
+            return player;
+        }
+
+        @Override
+        public EventType getType() {
+            return EventType.PLAYER_CONNECT;
+        }
+    }
+
+    public static class RecordingListener implements Listener {
+
+        private final Map<String, List<Integer>> received = Collections.synchronizedMap(new HashMap<>());
+        private final Set<Thread> threads = Collections.synchronizedSet(new HashSet<>());
+        private final CountDownLatch done;
+
+        private RecordingListener(int events) {
+            this.done = new CountDownLatch(events);
+        }
+
+        @EventHandler
+        public void onTestEvent(TestEvent event) {
+            threads.add(Thread.currentThread());
+            received.computeIfAbsent(event.getPlayer().getId(), id -> Collections.synchronizedList(new ArrayList<>())).add(event.sequence);
+            done.countDown();
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.core.objects.Base;
+import cloud.timo.TimoCloud.core.objects.Group;
+import cloud.timo.TimoCloud.core.objects.Server;
+import cloud.timo.TimoCloud.core.objects.ServerGroup;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class AutoScalerTest {
+
+    private AutoScaler autoScaler;
+
+    @Before
+    public void setUp() {
+        autoScaler = new AutoScaler(60);
+        autoScaler.pollChangedGroups(Collections.emptyList(), Collections.emptyList()); // The first tick is a full scan
+    }
+
+    @Test
+    public void getFreeBasePicksSmallestFittingBase() {
+        Base small = mockBase("small", 1024);
+        Base medium = mockBase("medium", 2048);
+        Base large = mockBase("large", 8192);
+        for (Base base : Arrays.asList(large, small, medium)) autoScaler.baseChanged(base);
+        assertSame(medium, autoScaler.getFreeBase(mockGroup("group", 2048, null)));
+        assertSame(large, autoScaler.getFreeBase(mockGroup("group", 4096, null)));
+        assertNull(autoScaler.getFreeBase(mockGroup("group", 16384, null)));
+    }
+
+    @Test
+    public void getFreeBaseIgnoresUnusableBases() {
+        Base base = mockBase("base", 4096);
+        autoScaler.baseChanged(base);
+        when(base.isReady()).thenReturn(false);
+        autoScaler.baseChanged(base);
+        assertNull(autoScaler.getFreeBase(mockGroup("group", 1024, null)));
+    }
+
+    @Test
+    public void getFreeBaseRespectsPinnedBase() {
+        Base pinned = mockBase("pinned", 1024);
+        Base other = mockBase("other", 8192);
+        autoScaler.baseChanged(pinned);
+        autoScaler.baseChanged(other);
+        assertSame(pinned, autoScaler.getFreeBase(mockGroup("group", 1024, pinned)));
+        assertNull(autoScaler.getFreeBase(mockGroup("group", 2048, pinned)));
+    }
+
+    @Test
+    public void waitingGroupIsWokenWhenBaseGrows() {
+        Base base = mockBase("base", 1024);
+        autoScaler.baseChanged(base);
+        Group group = mockGroup("group", 2048, null);
+        autoScaler.waitForBase(group);
+        Collection<Group> groups = Collections.singletonList(group);
+        assertTrue(autoScaler.pollChangedGroups(groups, Collections.singletonList(base)).isEmpty());
+
+        when(base.getAvailableRam()).thenReturn(4096);
+        autoScaler.baseChanged(base);
+        assertTrue(autoScaler.getWaitingGroups().isEmpty());
+        assertEquals(groups, autoScaler.pollChangedGroups(groups, Collections.singletonList(base)));
+    }
+
+    @Test
+    public void deletedGroupsAreNotReturned() {
+        Group group = mockGroup("group", 1024, null);
+        autoScaler.groupChanged(group);
+        assertTrue(autoScaler.pollChangedGroups(Collections.emptyList(), Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void fullScanReturnsAllGroups() {
+        Group group = mockGroup("group", 1024, null);
+        autoScaler.requestFullScan();
+        assertEquals(Collections.singletonList(group), autoScaler.pollChangedGroups(Collections.singletonList(group), Collections.emptyList()));
+        assertEquals(2, autoScaler.getFullScans());
+    }
+
+    @Test
+    public void fullScanRecountsServers() {
+        ServerGroup group = mock(ServerGroup.class);
+        Server running = mockServer("running", group, new AtomicBoolean(false));
+        Server starting = mockServer("starting", group, new AtomicBoolean(true));
+        mockServers(group, running, starting);
+        autoScaler.serverChanged(running);
+        autoScaler.serverChanged(starting);
+
+        autoScaler.requestFullScan();
+        autoScaler.pollChangedGroups(Collections.singletonList(group), Collections.emptyList());
+        assertEquals(1, autoScaler.getRunning(group));
+        assertEquals(1, autoScaler.getStarting(group));
+    }
+
+    @Test
+    public void fullScansDoNotLoseConcurrentChanges() throws Exception {
+        ServerGroup group = mock(ServerGroup.class, withSettings().stubOnly());
+        List<Server> servers = new ArrayList<>();
+        List<AtomicBoolean> startingFlags = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            AtomicBoolean starting = new AtomicBoolean();
+            startingFlags.add(starting);
+            servers.add(mockServer("server-" + i, group, starting));
+        }
+        mockServers(group, servers.toArray(new Server[0]));
+
+        Thread changer = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) {
+                AtomicBoolean starting = startingFlags.get(i % servers.size());
+                starting.set(!starting.get());
+                autoScaler.serverChanged(servers.get(i % servers.size()));
+            }
+        });
+        changer.start();
+        while (changer.isAlive()) {
+            autoScaler.requestFullScan();
+            autoScaler.pollChangedGroups(Collections.singletonList(group), Collections.emptyList());
+        }
+        changer.join();
+
+        int starting = (int) startingFlags.stream().filter(AtomicBoolean::get).count();
+        assertEquals(starting, autoScaler.getStarting(group));
+        assertEquals(servers.size() - starting, autoScaler.getRunning(group));
+    }
+
+    private static Server mockServer(String id, ServerGroup group, AtomicBoolean starting) {
+        Server server = mock(Server.class, withSettings().stubOnly());
+        when(server.getId()).thenReturn(id);
+        when(server.getGroup()).thenReturn(group);
+        when(server.getState()).thenReturn("ONLINE");
+        when(server.isStarting()).thenAnswer(invocation -> starting.get());
+        return server;
+    }
+
+    private static void mockServers(ServerGroup group, Server... servers) {
+        Map<String, Server> byId = new HashMap<>();
+        for (Server server : servers) byId.put(server.getId(), server);
+        when(group.getServers()).thenReturn(byId.values());
+        when(group.getServerById(anyString())).thenAnswer(invocation -> byId.get(invocation.getArgument(0)));
+    }
+
+    private static Base mockBase(String id, int availableRam) {
+        Base base = mock(Base.class);
+        when(base.getId()).thenReturn(id);
+        when(base.isConnected()).thenReturn(true);
+        when(base.isReady()).thenReturn(true);
+        when(base.getAvailableRam()).thenReturn(availableRam);
+        return base;
+    }
+
+    private static Group mockGroup(String name, int ram, Base base) {
+        Group group = mock(Group.class);
+        when(group.getName()).thenReturn(name);
+        when(group.getRam()).thenReturn(ram);
+        when(group.getBase()).thenReturn(base);
+        return group;
+    }
+
+}
@@ -0,0 +1,118 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.TimoCloudTest;
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+import cloud.timo.TimoCloud.core.objects.Base;
+import cloud.timo.TimoCloud.core.objects.Instance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@PowerMockIgnore("io.netty.*")
+public class InstanceHealthSchedulerTest extends TimoCloudTest {
+
+    private InstanceHealthScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new InstanceHealthScheduler(50);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void checksTimeoutsRepeatedly() {
+        Instance instance = instance("Lobby-1", null, -1);
+        scheduler.register(instance);
+
+        verify(instance, timeout(5000).atLeast(2)).checkTimeout();
+        assertEquals(1, scheduler.getInstanceCount());
+        assertTrue(scheduler.getLastSweepDuration() >= 0);
+        assertTrue(scheduler.getMaxTickLatency() >= scheduler.getLastTickLatency());
+        expectNoException();
+    }
+
+    @Test
+    public void unregisteredInstancesAreNotChecked() throws Exception {
+        Instance instance = instance("Lobby-1", null, -1);
+        scheduler.register(instance);
+        scheduler.unregister(instance);
+
+        Thread.sleep(300);
+        verify(instance, never()).checkTimeout();
+        assertEquals(0, scheduler.getInstanceCount());
+    }
+
+    @Test
+    public void batchesPidRequestsPerBase() {
+        Base base = mock(Base.class);
+        when(base.isBatchedPidRequests()).thenReturn(true);
+        Instance running = instance("Lobby-1", base, 100);
+        Instance crashed = instance("Lobby-2", base, 200);
+        scheduler.register(running);
+        scheduler.register(crashed);
+        scheduler.register(instance("Lobby-3", base, -1)); // Not started yet
+
+        ArgumentCaptor<Message> message = ArgumentCaptor.forClass(Message.class);
+        verify(base, timeout(5000).atLeastOnce()).sendMessage(message.capture());
+        assertEquals(MessageType.BASE_PID_EXIST_REQUEST, message.getValue().getType());
+        Map<String, Integer> pids = (Map<String, Integer>) message.getValue().get("pids");
+        assertEquals(2, pids.size());
+        assertEquals(Integer.valueOf(100), pids.get("Lobby-1"));
+        assertEquals(Integer.valueOf(200), pids.get("Lobby-2"));
+        assertEquals(2, scheduler.getBacklog());
+
+        scheduler.shutdown();
+        scheduler.onPidStatus("Lobby-1", true);
+        scheduler.onPidStatus("Lobby-2", false);
+        assertEquals(0, scheduler.getBacklog());
+        verify(running, never()).onProcessNotFound();
+        verify(crashed).onProcessNotFound();
+        expectNoException();
+    }
+
+    @Test
+    public void sendsSingleRequestsToOlderBases() {
+        Base base = mock(Base.class);
+        scheduler.register(instance("Lobby-1", base, 100));
+
+        ArgumentCaptor<Message> message = ArgumentCaptor.forClass(Message.class);
+        verify(base, timeout(5000).atLeastOnce()).sendMessage(message.capture());
+        assertEquals(100, message.getValue().get("pid"));
+        assertEquals("Lobby-1", message.getValue().get("id"));
+        assertFalse(message.getValue().containsKey("pids"));
+    }
+
+    @Test
+    public void continuesAfterFailedCheck() {
+        Instance failing = instance("Lobby-1", null, -1);
+        doThrow(new IllegalStateException("Test")).when(failing).checkTimeout();
+        Instance instance = instance("Lobby-2", null, -1);
+        scheduler.register(failing);
+        scheduler.register(instance);
+
+        verify(instance, timeout(5000).atLeast(2)).checkTimeout();
+        verify(getCore(), atLeastOnce()).severe(any(Throwable.class));
+    }
+
+    private static Instance instance(String id, Base base, int pid) {
+        Instance instance = mock(Instance.class);
+        when(instance.getId()).thenReturn(id);
+        when(instance.getName()).thenReturn(id);
+        when(instance.getBase()).thenReturn(base);
+        when(instance.getPid()).thenReturn(pid);
+        return instance;
+    }
+
+}
@@ -0,0 +1,95 @@
+package cloud.timo.TimoCloud.core.objects.storage;
+
+import cloud.timo.TimoCloud.core.objects.Identifiable;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class IdentifiableStorageTest {
+
+    @Test
+    public void updateRemovesOldName() {
+        IdentifiableStorage<TestIdentifiable> storage = new IdentifiableStorage<>();
+        TestIdentifiable identifiable = new TestIdentifiable("1", "Lobby");
+        storage.add(identifiable);
+        identifiable.name = "Hub";
+        storage.update(identifiable);
+
+        assertNull(storage.getByName("lobby"));
+        assertSame(identifiable, storage.getByName("HUB"));
+        assertEquals(1, storage.values().size());
+    }
+
+    @Test
+    public void valuesIsSnapshot() {
+        IdentifiableStorage<TestIdentifiable> storage = new IdentifiableStorage<>();
+        storage.add(new TestIdentifiable("1", "Lobby"));
+        Collection<TestIdentifiable> values = storage.values();
+        for (TestIdentifiable identifiable : values) {
+            storage.add(new TestIdentifiable("2", "BedWars")); // Must not throw ConcurrentModificationException
+            storage.remove(identifiable);
+        }
+        assertEquals(1, values.size());
+        assertEquals(1, storage.values().size());
+    }
+
+    @Test
+    public void concurrentChurn() throws Exception {
+        IdentifiableStorage<TestIdentifiable> storage = new IdentifiableStorage<>();
+        int threads = 8;
+        int perThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    TestIdentifiable identifiable = new TestIdentifiable(thread + "-" + i, "Server-" + thread + "-" + i);
+                    storage.add(identifiable);
+                    for (TestIdentifiable ignored : storage.values()) ; // Iterate while others write
+                    if (i % 2 == 0) storage.remove(identifiable);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(threads * perThread / 2, storage.values().size());
+        assertNotNull(storage.getByIdentifier("server-0-1"));
+        assertNull(storage.getById("0-0"));
+    }
+
+    private static class TestIdentifiable implements Identifiable {
+
+        private final String id;
+        private String name;
+
+        private TestIdentifiable(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+    }
+
+}
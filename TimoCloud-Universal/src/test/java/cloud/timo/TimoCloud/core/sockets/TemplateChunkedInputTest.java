@@ -0,0 +1,52 @@
+package cloud.timo.TimoCloud.core.sockets;
+
+import cloud.timo.TimoCloud.common.protocol.Message;
+import cloud.timo.TimoCloud.common.protocol.MessageType;
+import io.netty.buffer.ByteBufAllocator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TemplateChunkedInputTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sendsRemainingContentAndAnnouncesRemovedFiles() throws Exception {
+        File directory = folder.newFolder("template");
+        Files.write(new File(directory, "server.properties").toPath(), "motd=Lobby".getBytes(StandardCharsets.UTF_8));
+        Map<String, Long> offsets = new LinkedHashMap<>();
+        offsets.put("deleted.txt", 0L);
+        offsets.put("server.properties", 5L);
+        TemplateChunkedInput input = new TemplateChunkedInput("1", "Lobby-1", directory, offsets, Collections.emptyMap());
+
+        Message removed = input.readChunk(ByteBufAllocator.DEFAULT);
+        assertEquals(MessageType.TEMPLATE_TRANSFER_CHUNK, removed.getType());
+        assertEquals("deleted.txt", removed.get("path"));
+        assertEquals(true, removed.get("removed"));
+
+        Message chunk = input.readChunk(ByteBufAllocator.DEFAULT);
+        assertEquals("server.properties", chunk.get("path"));
+        assertEquals(5L, ((Number) chunk.get("offset")).longValue());
+        assertEquals("Lobby", new String(Base64.getDecoder().decode((String) chunk.get("data")), StandardCharsets.UTF_8));
+
+        Message end = input.readChunk(ByteBufAllocator.DEFAULT);
+        assertEquals(MessageType.TEMPLATE_TRANSFER_END, end.getType());
+        assertEquals("1", end.get("transferId"));
+        assertTrue(input.isEndOfInput());
+        assertEquals(5, input.progress());
+        input.close();
+    }
+
+}